@@ -37,17 +37,30 @@
 
 package net.imglib2.algorithm.gauss3;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
 /**
  * Gaussian convolution.
  *
+ * <p>
+ * {@link RealType RealTypes} are convolved with a recursive filter (see
+ * {@link RecursiveGaussConvolverRealType}) in dimensions where sigma is at
+ * least {@link RecursiveGaussConvolverRealType#MIN_SIGMA}, such that the cost
+ * does not grow with sigma. Smaller sigmas use the FIR kernels of
+ * {@link #halfkernels(double[])}.
+ *
  * @author Tobias Pietzsch <tobias.pietzsch@gmail.com>
  */
 public final class Gauss3
@@ -118,10 +131,154 @@ public final class Gauss3
 	 *             either both {@link RealType RealTypes} or the same type).
 	 */
 	public static < S extends NumericType< S >, T extends NumericType< T > > void gauss( final double[] sigma, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target ) throws IncompatibleTypeException
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		try
+		{
+			gauss( sigma, source, target, service );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Apply Gaussian convolution to source and write the result to output,
+	 * like {@link #gauss(double[], RandomAccessible, RandomAccessibleInterval)},
+	 * using the threads of the given {@link ExecutorService}.  Sharing one
+	 * service between many calls saves creating threads for each call.
+	 *
+	 * @param sigma
+	 *            standard deviation in every dimension.
+	 * @param source
+	 *            source image, must be sufficiently padded.
+	 * @param target
+	 *            target image
+	 * @param service
+	 *            executes the convolution tasks. Must not be called from a
+	 *            task running on that service.
+	 * @throws IncompatibleTypeException
+	 *             if source and target type are not compatible (they must be
+	 *             either both {@link RealType RealTypes} or the same type).
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public static < S extends NumericType< S >, T extends NumericType< T > > void gauss( final double[] sigma, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service ) throws IncompatibleTypeException
+	{
+		final double[][] halfkernels = halfkernels( sigma );
+		final int[] order = new int[ sigma.length ];
+		if ( RecursiveGaussConvolverRealType.useRecursive( sigma, order ) &&
+				SeparableSymmetricConvolution.canUseBufferedConvolver( target, halfkernels ) &&
+				Util.getTypeFromInterval( target ) instanceof RealType &&
+				SeparableSymmetricConvolution.getType( source, target ) instanceof RealType )
+			derivative( sigma, order, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
+		else
+			SeparableSymmetricConvolution.convolve( halfkernels, source, target, service );
+	}
+
+	/**
+	 * Apply isotropic Gaussian convolution to source and write the result to
+	 * output using the threads of the given {@link ExecutorService}.
+	 *
+	 * @see #gauss(double[], RandomAccessible, RandomAccessibleInterval, ExecutorService)
+	 */
+	public static < S extends NumericType< S >, T extends NumericType< T > > void gauss( final double sigma, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service ) throws IncompatibleTypeException
+	{
+		final int n = source.numDimensions();
+		final double[] s = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			s[ d ] = sigma;
+		gauss( s, source, target, service );
+	}
+
+	/**
+	 * Apply Gaussian derivative filter to source and write the result to
+	 * output. Derivatives are computed by the recursive filter of
+	 * {@link RecursiveGaussConvolverRealType} as central differences of the
+	 * smoothed image. Dimensions without derivative are smoothed like in
+	 * {@link #gauss(double[], RandomAccessible, RandomAccessibleInterval, ExecutorService)}.
+	 * In-place operation (source==target) is supported.
+	 *
+	 * <p>
+	 * If the target type T is {@link DoubleType}, all calculations are done in
+	 * double precision, otherwise intermediate results are stored in float
+	 * precision.
+	 *
+	 * @param sigma
+	 *            standard deviation in every dimension.
+	 * @param order
+	 *            order of derivative (0, 1, or 2) in every dimension.
+	 * @param source
+	 *            source image, must be sufficiently padded (e.g.
+	 *            {@link Views#extendMirrorSingle(RandomAccessibleInterval)}) to
+	 *            provide values for the target interval plus a border of half
+	 *            the kernel size.
+	 * @param target
+	 *            target image, lines must not have more than about
+	 *            {@link Integer#MAX_VALUE} pixels.
+	 * @param service
+	 *            executes the convolution tasks. Must not be called from a
+	 *            task running on that service.
+	 */
+	public static < S extends RealType< S >, T extends RealType< T > > void derivative( final double[] sigma, final int[] order, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
 	{
 		final double[][] halfkernels = halfkernels( sigma );
-		final int numthreads = Runtime.getRuntime().availableProcessors();
-		SeparableSymmetricConvolution.convolve( halfkernels, source, target, numthreads );
+		if ( !SeparableSymmetricConvolution.canUseBufferedConvolver( target, halfkernels ) )
+			throw new IllegalArgumentException( "lines of target are too long for the recursive filter" );
+		final Object oTargetType = Util.getTypeFromInterval( target );
+		if ( oTargetType instanceof DoubleType )
+			derivative( halfkernels, sigma, order, source, target, new DoubleType(),
+					DoubleConvolverRealTypeBuffered.< S, DoubleType >factory(),
+					DoubleConvolverRealTypeBuffered.< DoubleType, DoubleType >factory(),
+					DoubleConvolverRealTypeBuffered.< DoubleType, T >factory(),
+					DoubleConvolverRealTypeBuffered.< S, T >factory(), service );
+		else
+			derivative( halfkernels, sigma, order, source, target, new FloatType(),
+					FloatConvolverRealTypeBuffered.< S, FloatType >factory(),
+					FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory(),
+					FloatConvolverRealTypeBuffered.< FloatType, T >factory(),
+					FloatConvolverRealTypeBuffered.< S, T >factory(), service );
+	}
+
+	/**
+	 * Apply Gaussian derivative filter to source and write the result to
+	 * output using as many threads as there are processors.
+	 *
+	 * @see #derivative(double[], int[], RandomAccessible, RandomAccessibleInterval, ExecutorService)
+	 */
+	public static < S extends RealType< S >, T extends RealType< T > > void derivative( final double[] sigma, final int[] order, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target )
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		try
+		{
+			derivative( sigma, order, source, target, service );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	private static < S extends RealType< S >, I extends RealType< I > & NativeType< I >, T extends RealType< T > > void derivative(
+			final double[][] halfkernels, final double[] sigma, final int[] order,
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final I type,
+			final ConvolverFactory< S, I > firSI,
+			final ConvolverFactory< I, I > firII,
+			final ConvolverFactory< I, T > firIT,
+			final ConvolverFactory< S, T > firST,
+			final ExecutorService service )
+	{
+		final int l = sigma.length - 1;
+		final ConvolverFactory< S, I > convolverFactorySI = RecursiveGaussConvolverRealType.factory( sigma, order, firSI );
+		final ConvolverFactory< I, I > convolverFactoryII = RecursiveGaussConvolverRealType.factory( sigma, order, firII );
+		if ( order[ l ] == 0 && sigma[ l ] < RecursiveGaussConvolverRealType.MIN_SIGMA && SeparableSymmetricConvolution.canStream( target, halfkernels ) )
+			SeparableSymmetricConvolution.convolveStreaming( halfkernels, source, target, convolverFactorySI, convolverFactoryII, type, service, SeparableSymmetricConvolution.numTasks( service ) );
+		else
+			SeparableSymmetricConvolution.convolve( halfkernels, source, target,
+					convolverFactorySI, convolverFactoryII,
+					RecursiveGaussConvolverRealType.factory( sigma, order, firIT ),
+					RecursiveGaussConvolverRealType.factory( sigma, order, firST ),
+					SeparableSymmetricConvolution.getImgFactory( target, halfkernels, type ), type, service );
 	}
 
 	public static double[][] halfkernels( final double[] sigma )
@@ -0,0 +1,307 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.gauss3;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A 1-dimensional line convolver that approximates Gaussian convolution and
+ * its first and second derivatives by a recursive (IIR) filter, see
+ *
+ * <p>
+ * I.T. Young, L.J. van Vliet, "Recursive implementation of the Gaussian
+ * filter", Signal Processing 44 (1995) 139--151.
+ *
+ * <p>
+ * The computational cost per pixel is independent of sigma. Each line is
+ * filtered by a third order causal and a third order anti-causal recursion.
+ * Values beyond the buffered line are assumed to continue the first and last
+ * value of the line (the boundary conditions of B. Triggs, M. Sdika,
+ * "Boundary conditions for Young-van Vliet recursive filtering", IEEE Trans.
+ * Signal Processing 54 (2006)). Derivatives are central differences of the
+ * smoothed line.
+ *
+ * <p>
+ * The halfkernel passed to the {@link ConvolverFactory} is only used for its
+ * length: as for the FIR convolvers the line is padded by halfkernel.length-1
+ * values of the (extended) source on either side, which makes the boundary
+ * assumption irrelevant inside the target for halfkernels of about three
+ * sigma. The recursion is computed in double precision in a double[] line
+ * buffer, which limits lines to about {@link Integer#MAX_VALUE} elements.
+ *
+ * @author agent
+ * @see ConvolverFactory
+ *
+ * @param <S>
+ *            input type
+ * @param <T>
+ *            output type
+ */
+public final class RecursiveGaussConvolverRealType< S extends RealType< S >, T extends RealType< T > > implements Runnable
+{
+	/**
+	 * Smallest sigma for which the recursive filter is used for smoothing by
+	 * {@link #factory(double[], int[], ConvolverFactory)}. Below, the FIR
+	 * convolver is faster and more accurate.
+	 */
+	final static public double MIN_SIGMA = 5.0;
+
+	/**
+	 * Smallest sigma for which the recursive filter is defined.  Smaller sigmas
+	 * are treated as this.
+	 */
+	final static public double MIN_VALID_SIGMA = 0.5;
+
+	/**
+	 * Whether {@link #factory(double[], int[], ConvolverFactory)} uses the
+	 * recursive filter in any dimension.
+	 */
+	public static boolean useRecursive( final double[] sigma, final int[] order )
+	{
+		for ( int d = 0; d < sigma.length; ++d )
+			if ( order[ d ] != 0 || sigma[ d ] >= MIN_SIGMA )
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param sigma
+	 *            standard deviation in every dimension.
+	 * @param order
+	 *            order of derivative (0, 1, or 2) in every dimension.
+	 * @param fir
+	 *            {@link ConvolverFactory} used for dimensions with derivative
+	 *            order 0 and sigma smaller than {@link #MIN_SIGMA}.
+	 * @return a {@link ConvolverFactory} producing
+	 *         {@link RecursiveGaussConvolverRealType} for dimensions with
+	 *         derivative order &gt; 0 or sigma &ge; {@link #MIN_SIGMA}, and
+	 *         FIR convolvers otherwise.
+	 */
+	public static < S extends RealType< S >, T extends RealType< T > > ConvolverFactory< S, T > factory( final double[] sigma, final int[] order, final ConvolverFactory< S, T > fir )
+	{
+		final int n = sigma.length;
+		final Coefficients[] coefficients = new Coefficients[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( order[ d ] < 0 || order[ d ] > 2 )
+				throw new IllegalArgumentException( "derivative order must be 0, 1, or 2" );
+			if ( order[ d ] != 0 || sigma[ d ] >= MIN_SIGMA )
+				coefficients[ d ] = new Coefficients( sigma[ d ] );
+		}
+		return new ConvolverFactory< S, T >() {
+			@Override
+			public Runnable create( final double[] halfkernel, final RandomAccess< S > in, final RandomAccess< T > out, final int d, final long lineLength )
+			{
+				if ( coefficients[ d ] == null )
+					return fir.create( halfkernel, in, out, d, lineLength );
+				return new RecursiveGaussConvolverRealType< S, T >( coefficients[ d ], order[ d ], halfkernel.length - 1, in, out, d, lineLength );
+			}
+		};
+	}
+
+	/**
+	 * Recursion coefficients for one sigma.
+	 */
+	final static class Coefficients
+	{
+		final double b;
+
+		final double a1, a2, a3;
+
+		/**
+		 * maps the deviation of the last three causal outputs from the last
+		 * input to the deviation of the first three anti-causal states.
+		 */
+		final double[] m;
+
+		Coefficients( final double sigma )
+		{
+			final double s = Math.max( MIN_VALID_SIGMA, sigma );
+			final double q = s >= 2.5 ?
+					0.98711 * s - 0.96330 :
+					3.97156 - 4.14554 * Math.sqrt( 1 - 0.26891 * s );
+			final double q2 = q * q;
+			final double q3 = q2 * q;
+			final double b0 = 1.57825 + 2.44413 * q + 1.4281 * q2 + 0.422205 * q3;
+			a1 = ( 2.44413 * q + 2.85619 * q2 + 1.26661 * q3 ) / b0;
+			a2 = -( 1.4281 * q2 + 1.26661 * q3 ) / b0;
+			a3 = 0.422205 * q3 / b0;
+			b = 1 - ( a1 + a2 + a3 );
+			m = boundaryMatrix( ( int ) ( 20 * s ) + 100 );
+		}
+
+		/**
+		 * Compute the boundary matrix by running the decaying continuation of
+		 * a unit deviation in each of the last three causal outputs through
+		 * both recursions. This is done once per sigma.
+		 */
+		private double[] boundaryMatrix( final int length )
+		{
+			final double[] m = new double[ 9 ];
+			final double[] w = new double[ length + 3 ];
+			final double[] y = new double[ length + 3 ];
+			for ( int i = 0; i < 3; ++i )
+			{
+				for ( int j = 0; j < w.length; ++j )
+					w[ j ] = 0;
+				w[ 2 - i ] = 1;
+				for ( int j = 3; j < w.length; ++j )
+					w[ j ] = a1 * w[ j - 1 ] + a2 * w[ j - 2 ] + a3 * w[ j - 3 ];
+				double y1 = 0, y2 = 0, y3 = 0;
+				for ( int j = w.length - 1; j >= 3; --j )
+				{
+					final double yj = b * w[ j ] + a1 * y1 + a2 * y2 + a3 * y3;
+					y[ j ] = yj;
+					y3 = y2;
+					y2 = y1;
+					y1 = yj;
+				}
+				m[ i ] = y[ 3 ];
+				m[ 3 + i ] = y[ 4 ];
+				m[ 6 + i ] = y[ 5 ];
+			}
+			return m;
+		}
+	}
+
+	final private Coefficients c;
+
+	final private int order;
+
+	final private RandomAccess< S > in;
+
+	final private RandomAccess< T > out;
+
+	final private int d;
+
+	final private int k1;
+
+	final private int buflen;
+
+	final private double[] buf;
+
+	private RecursiveGaussConvolverRealType( final Coefficients c, final int order, final int k1, final RandomAccess< S > in, final RandomAccess< T > out, final int d, final long lineLength )
+	{
+		assert k1 >= 1 : "Derivatives require a border of at least one pixel.";
+
+		this.c = c;
+		this.order = order;
+		this.in = in;
+		this.out = out;
+		this.d = d;
+		this.k1 = k1;
+
+		buflen = ( int ) lineLength + 2 * k1;
+		buf = new double[ buflen ];
+	}
+
+	@Override
+	public void run()
+	{
+		final double b = c.b;
+		final double a1 = c.a1;
+		final double a2 = c.a2;
+		final double a3 = c.a3;
+
+		for ( int i = 0; i < buflen; ++i )
+		{
+			buf[ i ] = in.get().getRealDouble();
+			in.fwd( d );
+		}
+		final double u = buf[ buflen - 1 ];
+
+		// causal, the steady state of a constant input is the input
+		double w1 = buf[ 0 ], w2 = w1, w3 = w1;
+		for ( int i = 0; i < buflen; ++i )
+		{
+			final double w = b * buf[ i ] + a1 * w1 + a2 * w2 + a3 * w3;
+			buf[ i ] = w;
+			w3 = w2;
+			w2 = w1;
+			w1 = w;
+		}
+
+		// anti-causal
+		final double[] m = c.m;
+		final double e0 = w1 - u;
+		final double e1 = w2 - u;
+		final double e2 = w3 - u;
+		double y1 = u + m[ 0 ] * e0 + m[ 1 ] * e1 + m[ 2 ] * e2;
+		double y2 = u + m[ 3 ] * e0 + m[ 4 ] * e1 + m[ 5 ] * e2;
+		double y3 = u + m[ 6 ] * e0 + m[ 7 ] * e1 + m[ 8 ] * e2;
+		for ( int i = buflen - 1; i >= 0; --i )
+		{
+			final double y = b * buf[ i ] + a1 * y1 + a2 * y2 + a3 * y3;
+			buf[ i ] = y;
+			y3 = y2;
+			y2 = y1;
+			y1 = y;
+		}
+
+		writeLine();
+	}
+
+	private void writeLine()
+	{
+		final int max = buflen - k1;
+		switch ( order )
+		{
+		case 0:
+			for ( int i = k1; i < max; ++i )
+			{
+				out.get().setReal( buf[ i ] );
+				out.fwd( d );
+			}
+			break;
+		case 1:
+			for ( int i = k1; i < max; ++i )
+			{
+				out.get().setReal( 0.5 * ( buf[ i + 1 ] - buf[ i - 1 ] ) );
+				out.fwd( d );
+			}
+			break;
+		default:
+			for ( int i = k1; i < max; ++i )
+			{
+				out.get().setReal( buf[ i + 1 ] - 2 * buf[ i ] + buf[ i - 1 ] );
+				out.fwd( d );
+			}
+		}
+	}
+}
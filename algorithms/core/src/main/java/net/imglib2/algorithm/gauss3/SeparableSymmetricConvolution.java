@@ -37,28 +37,36 @@
 
 package net.imglib2.algorithm.gauss3;
 
+import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import net.imglib2.Cursor;
 import net.imglib2.Dimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.img.cell.CellImgFactory;
 import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.multithreading.SimpleMultiThreading;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
@@ -101,8 +109,38 @@ public final class SeparableSymmetricConvolution
 	 *             if source and target type are not compatible (they must be
 	 *             either both {@link RealType RealTypes} or the same type).
 	 */
-	@SuppressWarnings( { "rawtypes", "unchecked" } )
 	public static < S extends NumericType< S >, T extends NumericType< T > > void convolve( final double[][] halfkernels, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int numThreads ) throws IncompatibleTypeException
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			convolve( halfkernels, source, target, service );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Convolve source with a separable symmetric kernel and write the result to
+	 * output, like {@link #convolve(double[][], RandomAccessible, RandomAccessibleInterval, int)},
+	 * running all passes on the given {@link ExecutorService}.  Must not be
+	 * called from a task running on that service.
+	 *
+	 * <p>
+	 * For {@link RealType RealTypes} of three or more dimensions, the source
+	 * is streamed through slices of the last dimension: all other passes are
+	 * computed slice by slice into a ring of slice buffers and the last pass
+	 * combines the ring into a target slice.  This avoids full size temporary
+	 * images and strided access along the last dimension.
+	 *
+	 * @throws IncompatibleTypeException
+	 *             if source and target type are not compatible (they must be
+	 *             either both {@link RealType RealTypes} or the same type).
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public static < S extends NumericType< S >, T extends NumericType< T > > void convolve( final double[][] halfkernels, final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service ) throws IncompatibleTypeException
 	{
 		final T targetType = Util.getTypeFromInterval( target );
 		final S sourceType = getType( source, target );
@@ -115,61 +153,69 @@ public final class SeparableSymmetricConvolution
 			// TODO: remove casting madness as soon as the bug is fixed
 			final Object oTargetType = targetType;
 			if ( oTargetType instanceof DoubleType )
-				convolveRealTypeDouble( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, numThreads );
+				convolveRealTypeDouble( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
 			else
-				convolveRealTypeFloat( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, numThreads );
+				convolveRealTypeFloat( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
 		}
 		else
 		{
 			if ( ! targetType.getClass().isInstance( sourceType ) )
 				throw new IncompatibleTypeException( sourceType, targetType.getClass().getCanonicalName() + " source required for convolving into a " + targetType.getClass().getCanonicalName() + " target" );
 			if ( targetType instanceof NativeType )
-				convolveNativeType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, numThreads );
+				convolveNativeType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
 			else
-				convolveNumericType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, numThreads );
+				convolveNumericType( halfkernels, ( RandomAccessible ) source, ( RandomAccessibleInterval ) target, service );
 		}
 	}
 
 	private static < S extends RealType< S >, T extends RealType< T > > void convolveRealTypeFloat( final double[][] halfkernels,
-			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int numThreads )
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
 	{
 		final FloatType type = new FloatType();
 		final ImgFactory< FloatType > imgfac = getImgFactory( target, halfkernels, type );
-		if ( canUseBufferedConvolver( target, halfkernels ) )
+		if ( canStream( target, halfkernels ) )
+			convolveStreaming( halfkernels, source, target,
+					FloatConvolverRealTypeBuffered.< S, FloatType >factory(),
+					FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory(), type, service, numTasks( service ) );
+		else if ( canUseBufferedConvolver( target, halfkernels ) )
 			convolve( halfkernels, source, target,
 					FloatConvolverRealTypeBuffered.< S, FloatType >factory(),
 					FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory(),
 					FloatConvolverRealTypeBuffered.< FloatType, T >factory(),
-					FloatConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, numThreads );
+					FloatConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, service );
 		else
 			convolve( halfkernels, source, target,
 					FloatConvolverRealType.< S, FloatType >factory(),
 					FloatConvolverRealType.< FloatType, FloatType >factory(),
 					FloatConvolverRealType.< FloatType, T >factory(),
-					FloatConvolverRealType.< S, T >factory(), imgfac, type, numThreads );
+					FloatConvolverRealType.< S, T >factory(), imgfac, type, service );
 	}
 
 	private static < S extends RealType< S >, T extends RealType< T > > void convolveRealTypeDouble( final double[][] halfkernels,
-			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final int numThreads )
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
 	{
 		final DoubleType type = new DoubleType();
 		final ImgFactory< DoubleType > imgfac = getImgFactory( target, halfkernels, type );
-		if ( canUseBufferedConvolver( target, halfkernels ) )
+		if ( canStream( target, halfkernels ) )
+			convolveStreaming( halfkernels, source, target,
+					DoubleConvolverRealTypeBuffered.< S, DoubleType >factory(),
+					DoubleConvolverRealTypeBuffered.< DoubleType, DoubleType >factory(), type, service, numTasks( service ) );
+		else if ( canUseBufferedConvolver( target, halfkernels ) )
 			convolve( halfkernels, source, target,
 					DoubleConvolverRealTypeBuffered.< S, DoubleType >factory(),
 					DoubleConvolverRealTypeBuffered.< DoubleType, DoubleType >factory(),
 					DoubleConvolverRealTypeBuffered.< DoubleType, T >factory(),
-					DoubleConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, numThreads );
+					DoubleConvolverRealTypeBuffered.< S, T >factory(), imgfac, type, service );
 		else
 			convolve( halfkernels, source, target,
 					DoubleConvolverRealType.< S, DoubleType >factory(),
 					DoubleConvolverRealType.< DoubleType, DoubleType >factory(),
 					DoubleConvolverRealType.< DoubleType, T >factory(),
-					DoubleConvolverRealType.< S, T >factory(), imgfac, type, numThreads );
+					DoubleConvolverRealType.< S, T >factory(), imgfac, type, service );
 	}
 
 	private static < T extends NumericType< T > & NativeType< T > > void convolveNativeType( final double[][] halfkernels,
-			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final int numThreads )
+			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
 	{
 		final T type = Util.getTypeFromInterval( target );
 		final ConvolverFactory< T, T > convfac;
@@ -178,15 +224,15 @@ public final class SeparableSymmetricConvolution
 		else
 			convfac = ConvolverNativeType.factory( type );
 		final ImgFactory< T > imgfac = getImgFactory( target, halfkernels, type );
-		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, imgfac, type, numThreads );
+		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, imgfac, type, service );
 	}
 
 	private static < T extends NumericType< T > > void convolveNumericType( final double[][] halfkernels,
-			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final int numThreads )
+			final RandomAccessible< T > source, final RandomAccessibleInterval< T > target, final ExecutorService service )
 	{
 		final T type = Util.getTypeFromInterval( target );
 		final ConvolverFactory< T, T > convfac = ConvolverNumericType.factory( type );
-		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, new ListImgFactory< T >(), type, numThreads );
+		convolve( halfkernels, source, target, convfac, convfac, convfac, convfac, new ListImgFactory< T >(), type, service );
 	}
 
 	/**
@@ -197,7 +243,7 @@ public final class SeparableSymmetricConvolution
 	 * @param interval
 	 * @return type instance
 	 */
-	private static < T extends NumericType< T > > T getType( final RandomAccessible< T > accessible, final Interval interval )
+	static < T extends NumericType< T > > T getType( final RandomAccessible< T > accessible, final Interval interval )
 	{
 		final RandomAccess< T > a = accessible.randomAccess();
 		interval.min( a );
@@ -209,7 +255,7 @@ public final class SeparableSymmetricConvolution
 			final ConvolverFactory< S, T > convolverFactoryST )
 	{
 	    final long[] sourceOffset = new long[] { 1 - halfkernel.length };
-	    convolveOffset( halfkernel, source, sourceOffset, target, target, 0, convolverFactoryST, 1, 1 );
+	    convolveOffset( halfkernel, source, sourceOffset, target, target, 0, convolverFactoryST, null, 1 );
 	}
 
 	/**
@@ -255,6 +301,32 @@ public final class SeparableSymmetricConvolution
 			final ConvolverFactory< S, T > convolverFactoryST,
 			final ImgFactory< I > imgFactory, final I type,
 			final int numThreads )
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			convolve( halfkernels, source, target, convolverFactorySI, convolverFactoryII, convolverFactoryIT, convolverFactoryST, imgFactory, type, service );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Like
+	 * {@link #convolve(double[][], RandomAccessible, RandomAccessibleInterval, ConvolverFactory, ConvolverFactory, ConvolverFactory, ConvolverFactory, ImgFactory, Object, int)}
+	 * but running all passes on the given {@link ExecutorService}.  Must not
+	 * be called from a task running on that service.
+	 */
+	public static < S, I, T > void convolve( final double[][] halfkernels,
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target,
+			final ConvolverFactory< S, I > convolverFactorySI,
+			final ConvolverFactory< I, I > convolverFactoryII,
+			final ConvolverFactory< I, T > convolverFactoryIT,
+			final ConvolverFactory< S, T > convolverFactoryST,
+			final ImgFactory< I > imgFactory, final I type,
+			final ExecutorService service )
 	{
 		final int n = source.numDimensions();
 		if ( n == 1 )
@@ -263,7 +335,32 @@ public final class SeparableSymmetricConvolution
 		}
 		else
 		{
-			final int numTasks = numThreads > 1 ? numThreads * 4 : 1;
+			final long[][] tmpdims = getTempImageDimensions( target, halfkernels );
+			final Img< I > tmp1 = imgFactory.create( tmpdims[ 0 ], type );
+			final Img< I > tmp2 = n == 2 ? null : imgFactory.create( tmpdims[ 1 ], type );
+			convolve( halfkernels, source, target, convolverFactorySI, convolverFactoryII, convolverFactoryIT, tmp1, tmp2, service, numTasks( service ) );
+		}
+	}
+
+	/**
+	 * The passes of an n &gt; 1 dimensional convolution, using the given
+	 * temporary images which can be recycled between calls.
+	 *
+	 * @param tmp1
+	 *            temporary image of size getTempImageDimensions(...)[ 0 ].
+	 * @param tmp2
+	 *            temporary image of size getTempImageDimensions(...)[ 1 ],
+	 *            not needed for n = 2.
+	 */
+	static < S, I, T > void convolve( final double[][] halfkernels,
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target,
+			final ConvolverFactory< S, I > convolverFactorySI,
+			final ConvolverFactory< I, I > convolverFactoryII,
+			final ConvolverFactory< I, T > convolverFactoryIT,
+			final Img< I > tmp1, final Img< I > tmp2,
+			final ExecutorService service, final int numTasks )
+	{
+		final int n = source.numDimensions();
 		    final long[] sourceOffset = new long[ n ];
 		    final long[] targetOffset = new long[ n ];
 		    target.min( sourceOffset );
@@ -274,33 +371,32 @@ public final class SeparableSymmetricConvolution
 		    }
 
 			final long[][] tmpdims = getTempImageDimensions( target, halfkernels );
-			Img< I > tmp1 = imgFactory.create( tmpdims[ 0 ], type );
 		    if ( n == 2 )
 		    {
-			    convolveOffset( halfkernels[ 0 ], source, sourceOffset, tmp1, tmp1, 0, convolverFactorySI, numThreads, numTasks );
-			    convolveOffset( halfkernels[ 1 ], tmp1, targetOffset, target, target, 1, convolverFactoryIT, numThreads, numTasks );
+			    convolveOffset( halfkernels[ 0 ], source, sourceOffset, tmp1, new FinalInterval( tmpdims[ 0 ] ), 0, convolverFactorySI, service, numTasks );
+			    convolveOffset( halfkernels[ 1 ], tmp1, targetOffset, target, target, 1, convolverFactoryIT, service, numTasks );
 		    }
 		    else
 		    {
-				Img< I > tmp2 = imgFactory.create( tmpdims[ 1 ], type );
+				Img< I > t1 = tmp1;
+				Img< I > t2 = tmp2;
 			    final long[] zeroOffset = new long[ n ];
-			    convolveOffset( halfkernels[ 0 ], source, sourceOffset, tmp1, new FinalInterval( tmpdims[ 0 ] ), 0, convolverFactorySI, numThreads, numTasks );
+			    convolveOffset( halfkernels[ 0 ], source, sourceOffset, t1, new FinalInterval( tmpdims[ 0 ] ), 0, convolverFactorySI, service, numTasks );
 				for( int d = 1; d < n - 1; ++d )
 				{
-				    convolveOffset( halfkernels[ d ], tmp1, zeroOffset, tmp2, new FinalInterval( tmpdims[ d ] ), d, convolverFactoryII, numThreads, numTasks );
-				    final Img< I > tmp = tmp2;
-				    tmp2 = tmp1;
-				    tmp1 = tmp;
+				    convolveOffset( halfkernels[ d ], t1, zeroOffset, t2, new FinalInterval( tmpdims[ d ] ), d, convolverFactoryII, service, numTasks );
+				    final Img< I > tmp = t2;
+				    t2 = t1;
+				    t1 = tmp;
 				}
-			    convolveOffset( halfkernels[ n - 1 ], tmp1, targetOffset, target, target, n - 1, convolverFactoryIT, numThreads, numTasks );
+			    convolveOffset( halfkernels[ n - 1 ], t1, targetOffset, target, target, n - 1, convolverFactoryIT, service, numTasks );
 		    }
-		}
 	}
 
 	/**
 	 * 1D convolution in dimension d.
 	 */
-	static < S, T > void convolveOffset( final double[] halfkernel, final RandomAccessible< S > source, final long[] sourceOffset, final RandomAccessible< T > target, final Interval targetInterval, final int d, final ConvolverFactory< S, T > factory, final int numThreads, final int numTasks )
+	static < S, T > void convolveOffset( final double[] halfkernel, final RandomAccessible< S > source, final long[] sourceOffset, final RandomAccessible< T > target, final Interval targetInterval, final int d, final ConvolverFactory< S, T > factory, final ExecutorService service, final int numTasks )
 	{
 		final int n = source.numDimensions();
 		final int k1 = halfkernel.length - 1;
@@ -326,13 +422,12 @@ public final class SeparableSymmetricConvolution
 			srcmax[ i ] = max[ i ] + sourceOffset[ i ] + 2 * k1;
 		}
 
-		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
-		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
+		final int numLineTasks = service == null ? 1 : ( int ) Math.max( 1, Math.min( numTasks, endIndex ) );
+		final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >( numLineTasks );
+		for ( int taskNum = 0; taskNum < numLineTasks; ++taskNum )
 		{
-			final long myStartIndex = taskNum * ( ( endIndex + 1 ) / numTasks );
-			final long myEndIndex = ( taskNum == numTasks - 1 ) ?
-					endIndex :
-					( taskNum + 1 ) * ( ( endIndex + 1 ) / numTasks );
+			final long myStartIndex = taskNum * endIndex / numLineTasks;
+			final long myEndIndex = ( taskNum + 1 ) * endIndex / numLineTasks;
 			final Runnable r = new Runnable()
 			{
 				@Override
@@ -375,16 +470,164 @@ public final class SeparableSymmetricConvolution
 					}
 				}
 			};
-			ex.execute( r );
+			if ( numLineTasks == 1 )
+				r.run();
+			else
+				futures.add( service.submit( r ) );
 		}
-		ex.shutdown();
-		try
+		SimpleMultiThreading.waitFor( futures );
+	}
+
+	/**
+	 * How many tasks to split each pass into.  Several tasks per thread even
+	 * out lines of different cost.
+	 */
+	static int numTasks( final ExecutorService service )
+	{
+		final int numThreads;
+		if ( service instanceof ThreadPoolExecutor )
+			numThreads = Math.max( 1, ( ( ThreadPoolExecutor ) service ).getMaximumPoolSize() );
+		else
+			numThreads = Runtime.getRuntime().availableProcessors();
+		return numThreads > 1 ? Math.min( numThreads, 1024 ) * 4 : 1;
+	}
+
+	/**
+	 * Convolve n &gt; 2 dimensional source streaming through the slices of
+	 * the last dimension.  The first n-1 passes are computed for one source
+	 * slice at a time into a ring of 2h+1 slice buffers, h being the half
+	 * kernel size of the last dimension, the last pass combines the ring into
+	 * one target slice.  The h slices beyond the upper border are computed
+	 * before the first target slice is written, every other source slice z is
+	 * read before target slice z-h is written, so source and target may be the
+	 * same image even if the out-of-bounds strategy maps the border to slices
+	 * inside the target.
+	 *
+	 * @param <I>
+	 *            type of the slice buffers ({@link FloatType} or
+	 *            {@link DoubleType}).
+	 */
+	static < S, I extends RealType< I > & NativeType< I >, T extends RealType< T > > void convolveStreaming( final double[][] halfkernels,
+			final RandomAccessible< S > source, final RandomAccessibleInterval< T > target,
+			final ConvolverFactory< S, I > convolverFactorySI,
+			final ConvolverFactory< I, I > convolverFactoryII,
+			final I type, final ExecutorService service, final int numTasks )
+	{
+		final int n = target.numDimensions();
+		final int l = n - 1;
+		final double[] kl = halfkernels[ l ];
+		final int h = kl.length - 1;
+		final int w = 2 * h + 1;
+
+		final double[][] sliceHalfkernels = new double[ l ][];
+		System.arraycopy( halfkernels, 0, sliceHalfkernels, 0, l );
+		final long[] sliceMin = new long[ l ];
+		final long[] sliceDims = new long[ l ];
+		for ( int d = 0; d < l; ++d )
 		{
-			ex.awaitTermination( 1000, TimeUnit.DAYS );
+			sliceMin[ d ] = target.min( d );
+			sliceDims[ d ] = target.dimension( d );
 		}
-		catch ( final InterruptedException e )
+		final FinalInterval sliceInterval = new FinalInterval( sliceDims );
+		final int sliceSize = ( int ) Intervals.numElements( sliceInterval );
+
+		/* slice temporaries are recycled for all slices */
+		final ArrayImgFactory< I > imgFactory = new ArrayImgFactory< I >();
+		final long[][] tmpdims = getTempImageDimensions( sliceInterval, sliceHalfkernels );
+		final Img< I > tmp1 = imgFactory.create( tmpdims[ 0 ], type );
+		final Img< I > tmp2 = l == 2 ? null : imgFactory.create( tmpdims[ 1 ], type );
+
+		/* ring slots for slices up to zmax, followed by the h slices beyond zmax */
+		@SuppressWarnings( { "rawtypes", "unchecked" } )
+		final ArrayImg< I, ? >[] buffers = new ArrayImg[ w + h ];
+		final Object[] bufferData = new Object[ w + h ];
+		for ( int i = 0; i < w + h; ++i )
 		{
-			e.printStackTrace();
+			buffers[ i ] = ( ArrayImg< I, ? > ) imgFactory.create( sliceDims, type );
+			bufferData[ i ] = ( ( ArrayDataAccess< ? > ) buffers[ i ].update( null ) ).getCurrentStorageArray();
+		}
+
+		final int numSliceTasks = service == null ? 1 : Math.max( 1, Math.min( numTasks, sliceSize / 1024 ) );
+		final long zmin = target.min( l );
+		final long zmax = target.max( l );
+		for ( long z = zmax + 1; z <= zmax + h; ++z )
+			convolve( sliceHalfkernels, Views.hyperSlice( source, l, z ), Views.translate( buffers[ bufferIndex( z, zmax, w ) ], sliceMin ), convolverFactorySI, convolverFactoryII, convolverFactoryII, tmp1, tmp2, service, numTasks );
+		for ( long z = zmin - h; z <= zmax + h; ++z )
+		{
+			if ( z <= zmax )
+				convolve( sliceHalfkernels, Views.hyperSlice( source, l, z ), Views.translate( buffers[ bufferIndex( z, zmax, w ) ], sliceMin ), convolverFactorySI, convolverFactoryII, convolverFactoryII, tmp1, tmp2, service, numTasks );
+
+			final long zo = z - h;
+			if ( zo < zmin )
+				continue;
+
+			final Object[] slices = new Object[ w ];
+			for ( int j = -h; j <= h; ++j )
+				slices[ j + h ] = bufferData[ bufferIndex( zo + j, zmax, w ) ];
+			final IterableInterval< T > targetSlice = Views.flatIterable( Views.hyperSlice( target, l, zo ) );
+
+			final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >( numSliceTasks );
+			for ( int taskNum = 0; taskNum < numSliceTasks; ++taskNum )
+			{
+				final int myStartIndex = ( int ) ( ( long ) taskNum * sliceSize / numSliceTasks );
+				final int myEndIndex = ( int ) ( ( long ) ( taskNum + 1 ) * sliceSize / numSliceTasks );
+				final Runnable r = new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						final Cursor< T > out = targetSlice.cursor();
+						out.jumpFwd( myStartIndex );
+						if ( slices[ 0 ] instanceof float[] )
+							combine( kl, slices, myStartIndex, myEndIndex, out, new float[ w ][] );
+						else
+							combine( kl, slices, myStartIndex, myEndIndex, out, new double[ w ][] );
+					}
+				};
+				if ( numSliceTasks == 1 )
+					r.run();
+				else
+					futures.add( service.submit( r ) );
+			}
+			SimpleMultiThreading.waitFor( futures );
+		}
+	}
+
+	private static int bufferIndex( final long z, final long zmax, final int w )
+	{
+		if ( z > zmax )
+			return w + ( int ) ( z - zmax - 1 );
+		final int i = ( int ) ( z % w );
+		return i < 0 ? i + w : i;
+	}
+
+	private static < T extends RealType< T > > void combine( final double[] kl, final Object[] slices, final int start, final int end, final Cursor< T > out, final float[][] s )
+	{
+		final int h = kl.length - 1;
+		for ( int j = 0; j < s.length; ++j )
+			s[ j ] = ( float[] ) slices[ j ];
+		for ( int i = start; i < end; ++i )
+		{
+			double v = kl[ 0 ] * s[ h ][ i ];
+			for ( int j = 1; j <= h; ++j )
+				v += kl[ j ] * ( s[ h - j ][ i ] + s[ h + j ][ i ] );
+			out.fwd();
+			out.get().setReal( v );
+		}
+	}
+
+	private static < T extends RealType< T > > void combine( final double[] kl, final Object[] slices, final int start, final int end, final Cursor< T > out, final double[][] s )
+	{
+		final int h = kl.length - 1;
+		for ( int j = 0; j < s.length; ++j )
+			s[ j ] = ( double[] ) slices[ j ];
+		for ( int i = start; i < end; ++i )
+		{
+			double v = kl[ 0 ] * s[ h ][ i ];
+			for ( int j = 1; j <= h; ++j )
+				v += kl[ j ] * ( s[ h - j ][ i ] + s[ h + j ][ i ] );
+			out.fwd();
+			out.get().setReal( v );
 		}
 	}
 
@@ -411,6 +654,21 @@ public final class SeparableSymmetricConvolution
 		return true;
 	}
 
+	/**
+	 * Whether {@link #convolveStreaming} can be used, i.e., n &gt; 2 and the
+	 * slice buffers and temporaries fit into {@link ArrayImg ArrayImgs}.
+	 */
+	static boolean canStream( final Dimensions targetsize, final double[][] halfkernels )
+	{
+		final int n = targetsize.numDimensions();
+		if ( n < 3 || !canUseBufferedConvolver( targetsize, halfkernels ) )
+			return false;
+		long size = targetsize.dimension( 0 );
+		for( int d = 1; d < n - 1; ++d )
+			size *= targetsize.dimension( d ) + 2 * halfkernels[ d ].length;
+		return size <= Integer.MAX_VALUE;
+	}
+
 	static boolean canUseArrayImgFactory( final Dimensions targetsize, final double[][] halfkernels )
 	{
 		final int n = targetsize.numDimensions();
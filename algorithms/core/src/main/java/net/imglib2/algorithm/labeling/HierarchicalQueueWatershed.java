@@ -0,0 +1,483 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.labeling;
+
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.algorithm.OutputAlgorithm;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.labeling.Labeling;
+import net.imglib2.labeling.LabelingMapping;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+/**
+ * Seeded watershed using a hierarchical queue (Meyer's flooding algorithm)
+ * instead of a priority queue of pixel objects. The intensities are quantized
+ * into at most 65536 levels, each level being a FIFO bucket of linear pixel
+ * indices. The buckets are threaded through a single int array, so flooding
+ * runs in O(N + levels) time and does not allocate per pixel.
+ * 
+ * Labels are kept as indices into the {@link LabelingMapping} of the output
+ * {@link NativeImgLabeling}. If the output is backed by an {@link ArrayImg} of
+ * int, the storage array is used directly, otherwise it is copied in and out
+ * once.
+ * 
+ * If the intensity image has an {@link IntegerType} whose value range fits
+ * into the number of levels, every value gets its own level and the result is
+ * identical to that of {@link Watershed}. Otherwise intensities are quantized
+ * linearly between their minimum and maximum, and pixels falling into the
+ * same level are flooded first come, first served.
+ * 
+ * Unlike {@link Watershed}, the intensity image, seeds and output must have
+ * the same dimensions and at most {@link Integer#MAX_VALUE} pixels.
+ * 
+ * @author agent
+ */
+public class HierarchicalQueueWatershed< T extends RealType< T >, L extends Comparable< L >> implements OutputAlgorithm< Labeling< L >>
+{
+	final static public int MAX_LEVELS = 65536;
+
+	protected Img< T > image;
+
+	protected Labeling< L > seeds;
+
+	long[][] structuringElement;
+
+	protected NativeImgLabeling< L, ? > output;
+
+	int numLevels = MAX_LEVELS;
+
+	String errorMessage;
+
+	/**
+	 * Provide the intensity image to be watershedded.
+	 * 
+	 * @param image
+	 *            the intensity image that defines the watershed landscape.
+	 *            Lower values will be labeled first.
+	 */
+	public void setIntensityImage( final Img< T > image )
+	{
+		this.image = image;
+	}
+
+	/**
+	 * Provide the seeds that mark the watersheds.
+	 * 
+	 * @param seeds
+	 *            a labeling of the space, defining the first pixels in the
+	 *            space to be labeled. The seeded pixels will be similarly
+	 *            labeled in the output as will be their watershed neighbors.
+	 */
+	public void setSeeds( final Labeling< L > seeds )
+	{
+		this.seeds = seeds;
+	}
+
+	/**
+	 * Set the structuring element that defines the connectivity
+	 * 
+	 * @param structuringElement
+	 *            an array of offsets where each element of the array gives the
+	 *            offset of a connected pixel from a pixel of interest. Defaults
+	 *            to AllConnectedComponents.getStructuringElement.
+	 */
+	public void setStructuringElement( final long[][] structuringElement )
+	{
+		this.structuringElement = structuringElement;
+	}
+
+	/**
+	 * Set the output labeling where the results will be stored. The class will
+	 * provide one if none is supplied. Pixels that are already labeled in the
+	 * output are treated as barriers, as in {@link Watershed}.
+	 * 
+	 * @param outputLabeling
+	 */
+	public void setOutputLabeling( final NativeImgLabeling< L, ? > outputLabeling )
+	{
+		output = outputLabeling;
+	}
+
+	/**
+	 * Set the number of intensity levels of the hierarchical queue.
+	 * 
+	 * @param numLevels
+	 *            between 1 and {@link #MAX_LEVELS}.
+	 */
+	public void setNumLevels( final int numLevels )
+	{
+		this.numLevels = numLevels;
+	}
+
+	@Override
+	public boolean process()
+	{
+		if ( structuringElement == null && image != null )
+			structuringElement = AllConnectedComponents.getStructuringElement( image.numDimensions() );
+		if ( !checkInput() )
+			return false;
+
+		final int n = image.numDimensions();
+		final long[] dimensions = new long[ n ];
+		image.dimensions( dimensions );
+		if ( output == null )
+			output = new NativeImgLabeling< L, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+
+		final int size = ( int ) image.size();
+		final char[] levels = new char[ size ];
+		computeLevels( levels );
+
+		final int[] storage = storageArray( output );
+		final boolean copyBack = storage == null;
+		final int[] labels = copyBack ? new int[ size ] : storage;
+		if ( copyBack )
+			readIndices( output, labels );
+
+		/*
+		 * The hierarchical queue: head and tail per level, and a link from each
+		 * queued pixel to the one queued after it at the same level. Every
+		 * pixel is queued at most once because it is labeled when queued.
+		 */
+		final int[] head = new int[ numLevels ];
+		final int[] tail = new int[ numLevels ];
+		final int[] next = new int[ size ];
+		for ( int l = 0; l < numLevels; ++l )
+			head[ l ] = -1;
+		int current = numLevels;
+
+		final LabelingMapping< L > mapping = output.getMapping();
+		final SeedCursor seedCursor = new SeedCursor( seeds, mapping );
+		for ( int i = 0; i < size; ++i )
+		{
+			final int label = seedCursor.next();
+			if ( label == 0 )
+				continue;
+			labels[ i ] = label;
+			final int level = levels[ i ];
+			if ( head[ level ] < 0 )
+				head[ level ] = i;
+			else
+				next[ tail[ level ] ] = i;
+			tail[ level ] = i;
+			next[ i ] = -1;
+			if ( level < current )
+				current = level;
+		}
+
+		/*
+		 * Linear offsets and per-dimension bounds of the structuring element.
+		 */
+		final int numOffsets = structuringElement.length;
+		final int[] linearOffsets = new int[ numOffsets ];
+		final long[] steps = new long[ n ];
+		steps[ 0 ] = 1;
+		for ( int d = 1; d < n; ++d )
+			steps[ d ] = steps[ d - 1 ] * dimensions[ d - 1 ];
+		for ( int j = 0; j < numOffsets; ++j )
+		{
+			long o = 0;
+			for ( int d = 0; d < n; ++d )
+				o += structuringElement[ j ][ d ] * steps[ d ];
+			linearOffsets[ j ] = ( int ) o;
+		}
+
+		final long[] position = new long[ n ];
+		while ( current < numLevels )
+		{
+			final int i = head[ current ];
+			if ( i < 0 )
+			{
+				++current;
+				continue;
+			}
+			head[ current ] = next[ i ];
+
+			final int label = labels[ i ];
+			long rest = i;
+			for ( int d = 0; d < n; ++d )
+			{
+				position[ d ] = rest % dimensions[ d ];
+				rest /= dimensions[ d ];
+			}
+A:			for ( int j = 0; j < numOffsets; ++j )
+			{
+				final long[] offset = structuringElement[ j ];
+				for ( int d = 0; d < n; ++d )
+				{
+					final long p = position[ d ] + offset[ d ];
+					if ( p < 0 || p >= dimensions[ d ] )
+						continue A;
+				}
+				final int k = i + linearOffsets[ j ];
+				if ( labels[ k ] != 0 )
+					continue;
+				labels[ k ] = label;
+				final int level = levels[ k ];
+				if ( head[ level ] < 0 )
+					head[ level ] = k;
+				else
+					next[ tail[ level ] ] = k;
+				tail[ level ] = k;
+				next[ k ] = -1;
+				if ( level < current )
+					current = level;
+			}
+		}
+
+		if ( copyBack )
+			writeIndices( output, labels );
+
+		/*
+		 * The storage was written behind the labeling's back, touch one pixel
+		 * through LabelingType to invalidate cached ROIs.
+		 */
+		final LabelingType< L > first = output.firstElement();
+		first.setLabeling( first.getLabeling() );
+
+		return true;
+	}
+
+	/**
+	 * Quantize the intensities into levels in flat iteration order.
+	 */
+	protected void computeLevels( final char[] levels )
+	{
+		final Cursor< T > c = Views.flatIterable( image ).cursor();
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		while ( c.hasNext() )
+		{
+			final double v = c.next().getRealDouble();
+			if ( v < min )
+				min = v;
+			if ( v > max )
+				max = v;
+		}
+
+		c.reset();
+		int i = 0;
+		if ( image.firstElement() instanceof IntegerType && max - min < numLevels )
+		{
+			final long lmin = ( long ) min;
+			while ( c.hasNext() )
+				levels[ i++ ] = ( char ) ( ( ( IntegerType< ? > ) c.next() ).getIntegerLong() - lmin );
+		}
+		else
+		{
+			final double scale = max > min ? ( numLevels - 1 ) / ( max - min ) : 0;
+			while ( c.hasNext() )
+				levels[ i++ ] = ( char ) ( ( c.next().getRealDouble() - min ) * scale );
+		}
+	}
+
+	/**
+	 * The int array backing the storage of {@code labeling}, or null if it is
+	 * not an {@link ArrayImg} of int.
+	 */
+	static int[] storageArray( final NativeImgLabeling< ?, ? > labeling )
+	{
+		final Img< ? > img = labeling.getStorageImg();
+		if ( img instanceof ArrayImg )
+		{
+			final Object access = ( ( ArrayImg< ?, ? > ) img ).update( null );
+			if ( access instanceof IntArray )
+				return ( ( IntArray ) access ).getCurrentStorageArray();
+		}
+		return null;
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	static void readIndices( final NativeImgLabeling< ?, ? > labeling, final int[] indices )
+	{
+		final Cursor< IntegerType > c = Views.flatIterable( ( Img< IntegerType > ) labeling.getStorageImg() ).cursor();
+		int i = 0;
+		while ( c.hasNext() )
+			indices[ i++ ] = c.next().getInteger();
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	static void writeIndices( final NativeImgLabeling< ?, ? > labeling, final int[] indices )
+	{
+		final Cursor< IntegerType > c = Views.flatIterable( ( Img< IntegerType > ) labeling.getStorageImg() ).cursor();
+		int i = 0;
+		while ( c.hasNext() )
+			c.next().setInteger( indices[ i++ ] );
+	}
+
+	/**
+	 * Iterates the seeds in flat order and returns the index of each seed's
+	 * labeling in the output mapping, 0 for unlabeled pixels. Native seeds are
+	 * read through their storage and a table translating between the two
+	 * mappings.
+	 */
+	class SeedCursor
+	{
+		final LabelingMapping< L > outputMapping;
+
+		final Cursor< LabelingType< L >> labelingCursor;
+
+		@SuppressWarnings( "rawtypes" )
+		final Cursor< IntegerType > indexCursor;
+
+		final LabelingMapping< L > seedMapping;
+
+		int[] translation = new int[ 0 ];
+
+		@SuppressWarnings( { "rawtypes", "unchecked" } )
+		SeedCursor( final Labeling< L > seeds, final LabelingMapping< L > outputMapping )
+		{
+			this.outputMapping = outputMapping;
+			if ( seeds instanceof NativeImgLabeling )
+			{
+				final NativeImgLabeling< L, ? > nativeSeeds = ( NativeImgLabeling< L, ? > ) seeds;
+				indexCursor = Views.flatIterable( ( Img< IntegerType > ) nativeSeeds.getStorageImg() ).cursor();
+				seedMapping = nativeSeeds.getMapping();
+				labelingCursor = null;
+			}
+			else
+			{
+				labelingCursor = Views.flatIterable( seeds ).cursor();
+				indexCursor = null;
+				seedMapping = null;
+			}
+		}
+
+		int next()
+		{
+			if ( indexCursor == null )
+			{
+				final List< L > l = labelingCursor.next().getLabeling();
+				return l.isEmpty() ? 0 : outputMapping.indexOf( l );
+			}
+			final int index = indexCursor.next().getInteger();
+			if ( index >= translation.length )
+			{
+				final int[] t = new int[ Math.max( index + 1, seedMapping.numLists() ) ];
+				for ( int j = 0; j < t.length; ++j )
+					t[ j ] = -1;
+				System.arraycopy( translation, 0, t, 0, translation.length );
+				translation = t;
+			}
+			if ( translation[ index ] < 0 )
+			{
+				final List< L > l = seedMapping.listAtIndex( index );
+				translation[ index ] = l.isEmpty() ? 0 : outputMapping.indexOf( l );
+			}
+			return translation[ index ];
+		}
+	}
+
+	@Override
+	public boolean checkInput()
+	{
+		if ( seeds == null )
+		{
+			errorMessage = "The seed labeling was not provided. Call \"setSeeds\" to do this";
+			return false;
+		}
+		if ( image == null )
+		{
+			errorMessage = "The intensity image was not provided. Call \"setIntensityImage\" to do this";
+			return false;
+		}
+		if ( seeds.numDimensions() != image.numDimensions() )
+		{
+			errorMessage = String.format( "The dimensionality of the seed labeling (%dD) does not match that of the intensity image (%dD)", seeds.numDimensions(), image.numDimensions() );
+			return false;
+		}
+		if ( ( output != null ) && ( seeds.numDimensions() != output.numDimensions() ) )
+		{
+			errorMessage = String.format( "The dimensionality of the seed labeling (%dD) does not match that of the output labeling (%dD)", seeds.numDimensions(), output.numDimensions() );
+			return false;
+		}
+		for ( int d = 0; d < image.numDimensions(); ++d )
+		{
+			if ( seeds.dimension( d ) != image.dimension( d ) || ( output != null && output.dimension( d ) != image.dimension( d ) ) )
+			{
+				errorMessage = "The seed labeling, intensity image and output labeling must have the same dimensions";
+				return false;
+			}
+		}
+		if ( image.size() > Integer.MAX_VALUE )
+		{
+			errorMessage = String.format( "The intensity image has %d pixels, at most %d are supported", image.size(), Integer.MAX_VALUE );
+			return false;
+		}
+		if ( numLevels < 1 || numLevels > MAX_LEVELS )
+		{
+			errorMessage = String.format( "The number of levels (%d) must be between 1 and %d", numLevels, MAX_LEVELS );
+			return false;
+		}
+		if ( structuringElement == null )
+		{
+			errorMessage = "The structuring element was not provided. Call \"setStructuringElement\" to do this";
+			return false;
+		}
+		for ( int i = 0; i < structuringElement.length; i++ )
+		{
+			if ( structuringElement[ i ].length != seeds.numDimensions() )
+			{
+				errorMessage = "Some or all of the structuring element offsets do not have the same number of dimensions as the image";
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String getErrorMessage()
+	{
+		return errorMessage;
+	}
+
+	@Override
+	public Labeling< L > getResult()
+	{
+		return output;
+	}
+}
@@ -0,0 +1,673 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.labeling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.labeling.LabelingMapping;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.view.Views;
+
+/**
+ * Label all connected components of a binary image with a two-pass
+ * union-find algorithm. The first pass splits the image into blocks of
+ * consecutive pixels in flat iteration order and links each foreground pixel
+ * to its already visited neighbors in parallel, the equivalences across block
+ * borders are merged afterwards. The second pass replaces every pixel by the
+ * label of its component.
+ * 
+ * Every set is represented by its smallest pixel index, so components are
+ * named in the order of their first pixel in flat iteration order, the same
+ * order {@link AllConnectedComponents} uses for {@link net.imglib2.img.array.ArrayImg
+ * ArrayImgs}. The structuring element is treated as symmetric: if a pixel is
+ * connected to its neighbor at some offset, the neighbor is connected to the
+ * pixel.
+ * 
+ * The labeling is overwritten, background pixels get the empty labeling.
+ * {@link #labelAllConnectedComponents(NativeImgLabeling, RandomAccessibleInterval, Iterator, long[][], ExecutorService)}
+ * needs one int per pixel and writes directly into the storage of an
+ * {@link net.imglib2.img.array.ArrayImg} of int.
+ * {@link #labelAllConnectedComponentsInSlabs(NativeImgLabeling, RandomAccessibleInterval, Iterator, long[][], long, ExecutorService)}
+ * only holds a slab of hyperplanes along the last dimension in memory, for
+ * images backed by cell images that do not fit into RAM.
+ * 
+ * @author agent
+ */
+public class UnionFindConnectedComponents
+{
+	/**
+	 * Label all connected components in the given image using an 8-connected
+	 * structuring element or it's N-dimensional analog.
+	 * 
+	 * @param <T>
+	 *            the type of the labels to apply
+	 * @param labeling
+	 *            Assign labels to this labeling space
+	 * @param img
+	 *            a binary image where true indicates parts of components
+	 * @param names
+	 *            supplies names for the different components as needed
+	 * @throws NoSuchElementException
+	 *             if there are not enough names
+	 */
+	public static < T extends Comparable< T >> void labelAllConnectedComponents( final NativeImgLabeling< T, ? > labeling, final RandomAccessibleInterval< BitType > img, final Iterator< T > names ) throws NoSuchElementException
+	{
+		labelAllConnectedComponents( labeling, img, names, AllConnectedComponents.getStructuringElement( img.numDimensions() ) );
+	}
+
+	/**
+	 * Label all connected components in the given image using an arbitrary
+	 * structuring element and a thread per processor.
+	 * 
+	 * @see #labelAllConnectedComponents(NativeImgLabeling, RandomAccessibleInterval, Iterator, long[][], ExecutorService)
+	 */
+	public static < T extends Comparable< T >> void labelAllConnectedComponents( final NativeImgLabeling< T, ? > labeling, final RandomAccessibleInterval< BitType > img, final Iterator< T > names, final long[][] structuringElement ) throws NoSuchElementException
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		try
+		{
+			labelAllConnectedComponents( labeling, img, names, structuringElement, service );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Label all connected components in the given image using an arbitrary
+	 * structuring element and the threads of the given
+	 * {@link ExecutorService}.
+	 * 
+	 * @param <T>
+	 *            the type of the labels to apply
+	 * @param labeling
+	 *            Assign labels to this labeling space, must have the
+	 *            dimensions of img
+	 * @param img
+	 *            a binary image where true indicates parts of components, at
+	 *            most {@link Integer#MAX_VALUE} pixels
+	 * @param names
+	 *            supplies names for the different components as needed
+	 * @param structuringElement
+	 *            an array of offsets to a pixel of the pixels which are
+	 *            considered connected. For instance, a 4-connected structuring
+	 *            element would be "new int [][] {{-1,0},{1,0},{0,-1},{0,1}}".
+	 * @param service
+	 * @throws NoSuchElementException
+	 *             if there are not enough names
+	 */
+	public static < T extends Comparable< T >> void labelAllConnectedComponents( final NativeImgLabeling< T, ? > labeling, final RandomAccessibleInterval< BitType > img, final Iterator< T > names, final long[][] structuringElement, final ExecutorService service ) throws NoSuchElementException
+	{
+		final long[] dimensions = dimensions( labeling, img );
+		long size = 1;
+		for ( final long s : dimensions )
+			size *= s;
+		if ( size > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Images with more than " + Integer.MAX_VALUE + " pixels have to be labeled in slabs" );
+
+		final Neighbors neighbors = new Neighbors( structuringElement, dimensions );
+		final int[] storage = HierarchicalQueueWatershed.storageArray( labeling );
+		final int[] a = storage == null ? new int[ ( int ) size ] : storage;
+
+		final Equivalences equivalences = new Equivalences();
+		unionFind( img, 0, dimensions, neighbors, a, service );
+		assignIds( a, ( int ) size, 0, null, equivalences );
+		final int[] indices = labelIndices( equivalences, labeling.getMapping(), names );
+
+		final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >();
+		for ( final int[] block : blocks( ( int ) size, service ) )
+		{
+			futures.add( service.submit( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for ( int i = block[ 0 ]; i < block[ 1 ]; ++i )
+						a[ i ] = indices[ a[ i ] ];
+				}
+			} ) );
+		}
+		SimpleMultiThreading.waitFor( futures );
+
+		if ( storage == null )
+			HierarchicalQueueWatershed.writeIndices( labeling, a );
+		touch( labeling );
+	}
+
+	/**
+	 * Label all connected components in the given image using an arbitrary
+	 * structuring element and a thread per processor, processing slabs of
+	 * hyperplanes along the last dimension.
+	 * 
+	 * @see #labelAllConnectedComponentsInSlabs(NativeImgLabeling, RandomAccessibleInterval, Iterator, long[][], long, ExecutorService)
+	 */
+	public static < T extends Comparable< T >> void labelAllConnectedComponentsInSlabs( final NativeImgLabeling< T, ? > labeling, final RandomAccessibleInterval< BitType > img, final Iterator< T > names, final long[][] structuringElement, final long slabSize ) throws NoSuchElementException
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		try
+		{
+			labelAllConnectedComponentsInSlabs( labeling, img, names, structuringElement, slabSize, service );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * Label all connected components in the given image using an arbitrary
+	 * structuring element, processing slabs of hyperplanes along the last
+	 * dimension. Each slab is labeled like in
+	 * {@link #labelAllConnectedComponents(NativeImgLabeling, RandomAccessibleInterval, Iterator, long[][], ExecutorService)}
+	 * together with the last hyperplanes of the previous slab that it touches.
+	 * The provisional ids of its components are written to the storage of the
+	 * labeling and the equivalences between them are recorded. A second
+	 * sequential pass over the storage replaces the provisional ids by the
+	 * label indices.
+	 * 
+	 * Memory is one int per pixel of a slab plus one int per provisional id.
+	 * The integer type of the labeling's storage must be able to hold the
+	 * number of provisional ids.
+	 * 
+	 * @param slabSize
+	 *            number of hyperplanes along the last dimension in a slab
+	 * @throws NoSuchElementException
+	 *             if there are not enough names
+	 * @throws IllegalArgumentException
+	 *             if the storage type of the labeling is too small for the
+	 *             provisional ids
+	 */
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public static < T extends Comparable< T >> void labelAllConnectedComponentsInSlabs( final NativeImgLabeling< T, ? > labeling, final RandomAccessibleInterval< BitType > img, final Iterator< T > names, final long[][] structuringElement, final long slabSize, final ExecutorService service ) throws NoSuchElementException
+	{
+		final long[] dimensions = dimensions( labeling, img );
+		final int n = dimensions.length;
+		final Neighbors neighbors = new Neighbors( structuringElement, dimensions );
+
+		long planeSize = 1;
+		for ( int d = 0; d < n - 1; ++d )
+			planeSize *= dimensions[ d ];
+		final long numPlanes = Math.min( Math.max( 1, slabSize ), dimensions[ n - 1 ] );
+		if ( planeSize * ( numPlanes + neighbors.reach ) > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "A slab must have at most " + Integer.MAX_VALUE + " pixels" );
+
+		final Img< IntegerType > storage = ( Img< IntegerType > ) labeling.getStorageImg();
+		final double maxId = storage.firstElement().getMaxValue();
+
+		final int[] a = new int[ ( int ) ( planeSize * ( numPlanes + neighbors.reach ) ) ];
+		int[] prefix = new int[ 0 ];
+		long prefixPlanes = 0;
+		final long[] windowDimensions = dimensions.clone();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			max[ d ] = dimensions[ d ] - 1;
+
+		final Equivalences equivalences = new Equivalences();
+		for ( long z = 0; z < dimensions[ n - 1 ]; z += numPlanes )
+		{
+			final long planes = Math.min( numPlanes, dimensions[ n - 1 ] - z );
+			windowDimensions[ n - 1 ] = prefixPlanes + planes;
+			final int windowSize = ( int ) ( planeSize * windowDimensions[ n - 1 ] );
+
+			unionFind( img, z - prefixPlanes, windowDimensions, neighbors, a, service );
+			assignIds( a, windowSize, prefix.length, prefix, equivalences );
+			if ( equivalences.size > maxId )
+				throw new IllegalArgumentException( "The storage type of the labeling cannot hold " + equivalences.size + " provisional ids" );
+
+			min[ n - 1 ] = z;
+			max[ n - 1 ] = z + planes - 1;
+			final Cursor< IntegerType > c = Views.flatIterable( Views.interval( storage, new FinalInterval( min, max ) ) ).cursor();
+			for ( int i = prefix.length; i < windowSize; ++i )
+				c.next().setInteger( a[ i ] );
+
+			prefixPlanes = Math.min( neighbors.reach, windowDimensions[ n - 1 ] );
+			final int prefixSize = ( int ) ( planeSize * prefixPlanes );
+			if ( prefix.length != prefixSize )
+				prefix = new int[ prefixSize ];
+			System.arraycopy( a, windowSize - prefixSize, prefix, 0, prefixSize );
+		}
+
+		final int[] indices = labelIndices( equivalences, labeling.getMapping(), names );
+		for ( final IntegerType t : Views.flatIterable( storage ) )
+			t.setInteger( indices[ t.getInteger() ] );
+		touch( labeling );
+	}
+
+	/**
+	 * The backward neighbors of a pixel, those that precede it in flat
+	 * iteration order, as offsets and as linear index offsets.
+	 */
+	static class Neighbors
+	{
+		final long[][] offsets;
+
+		final int[] linear;
+
+		/**
+		 * Largest linear distance to a backward neighbor.
+		 */
+		final int maxBack;
+
+		/**
+		 * Largest distance to a backward neighbor in the last dimension.
+		 */
+		final long reach;
+
+		Neighbors( final long[][] structuringElement, final long[] dimensions )
+		{
+			final int n = dimensions.length;
+			final ArrayList< long[] > backward = new ArrayList< long[] >();
+			final ArrayList< Long > linearBackward = new ArrayList< Long >();
+			int maxBack = 0;
+			long reach = 0;
+			for ( final long[] offset : structuringElement )
+			{
+				if ( offset.length != n )
+					throw new IllegalArgumentException( "Some or all of the structuring element offsets do not have the same number of dimensions as the image" );
+				long l = 0;
+				long step = 1;
+				boolean outside = false;
+				for ( int d = 0; d < n; ++d )
+				{
+					l += offset[ d ] * step;
+					step *= dimensions[ d ];
+					outside |= Math.abs( offset[ d ] ) >= dimensions[ d ];
+				}
+				if ( l == 0 || outside )
+					continue;
+				final long[] o = offset.clone();
+				if ( l > 0 )
+				{
+					l = -l;
+					for ( int d = 0; d < n; ++d )
+						o[ d ] = -o[ d ];
+				}
+				boolean duplicate = false;
+				for ( final long[] b : backward )
+					duplicate |= Arrays.equals( b, o );
+				if ( duplicate )
+					continue;
+				backward.add( o );
+				linearBackward.add( l );
+				maxBack = ( int ) Math.max( maxBack, -l );
+				reach = Math.max( reach, -o[ n - 1 ] );
+			}
+			offsets = backward.toArray( new long[ backward.size() ][] );
+			linear = new int[ offsets.length ];
+			for ( int j = 0; j < linear.length; ++j )
+				linear[ j ] = ( int ) ( long ) linearBackward.get( j );
+			this.maxBack = maxBack;
+			this.reach = reach;
+		}
+	}
+
+	/**
+	 * Union-find forest over provisional ids. Index 0 is the background and
+	 * every set is represented by its smallest id.
+	 */
+	static class Equivalences
+	{
+		int[] parent = new int[ 1024 ];
+
+		int size = 0;
+
+		int add()
+		{
+			if ( ++size == parent.length )
+			{
+				final int[] p = new int[ ( int ) Math.min( Integer.MAX_VALUE, 2L * parent.length ) ];
+				System.arraycopy( parent, 0, p, 0, parent.length );
+				parent = p;
+			}
+			parent[ size ] = size;
+			return size;
+		}
+
+		int find( int i )
+		{
+			return UnionFindConnectedComponents.find( parent, i );
+		}
+
+		void union( final int i, final int j )
+		{
+			UnionFindConnectedComponents.union( parent, i, j );
+		}
+	}
+
+	static int find( final int[] parent, int i )
+	{
+		while ( parent[ i ] != i )
+		{
+			parent[ i ] = parent[ parent[ i ] ];
+			i = parent[ i ];
+		}
+		return i;
+	}
+
+	static void union( final int[] parent, final int i, final int j )
+	{
+		final int ri = find( parent, i );
+		final int rj = find( parent, j );
+		if ( ri < rj )
+			parent[ rj ] = ri;
+		else if ( rj < ri )
+			parent[ ri ] = rj;
+	}
+
+	/**
+	 * Build the union-find forest of the foreground of the hyperplanes [z0,
+	 * z0 + windowDimensions[n-1]) of img in a[], -1 marking background. On
+	 * return, every foreground pixel points directly to the smallest pixel of
+	 * its component.
+	 */
+	static void unionFind( final RandomAccessibleInterval< BitType > img, final long z0, final long[] windowDimensions, final Neighbors neighbors, final int[] a, final ExecutorService service )
+	{
+		final int n = windowDimensions.length;
+		long s = 1;
+		for ( final long d : windowDimensions )
+			s *= d;
+		final int size = ( int ) s;
+		final List< int[] > blocks = blocks( size, service );
+
+		final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >();
+		for ( final int[] block : blocks )
+		{
+			futures.add( service.submit( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					final int start = block[ 0 ];
+					final long[] position = new long[ n ];
+					final long[] imgPosition = new long[ n ];
+					setPosition( start, windowDimensions, position );
+					final RandomAccess< BitType > ra = img.randomAccess();
+					setImgPosition( img, z0, position, imgPosition );
+					ra.setPosition( imgPosition );
+					for ( int i = start; i < block[ 1 ]; ++i )
+					{
+						if ( ra.get().get() )
+						{
+							a[ i ] = i;
+							linkBackward( i, start, position, windowDimensions, neighbors, a );
+						}
+						else
+							a[ i ] = -1;
+
+						if ( fwd( position, windowDimensions ) )
+							ra.fwd( 0 );
+						else if ( i + 1 < block[ 1 ] )
+						{
+							setImgPosition( img, z0, position, imgPosition );
+							ra.setPosition( imgPosition );
+						}
+					}
+				}
+			} ) );
+		}
+		SimpleMultiThreading.waitFor( futures );
+
+		/*
+		 * Merge the equivalences across block borders, only the first maxBack
+		 * pixels of a block have neighbors in earlier blocks.
+		 */
+		final long[] position = new long[ n ];
+		for ( int b = 1; b < blocks.size(); ++b )
+		{
+			final int start = blocks.get( b )[ 0 ];
+			final int end = ( int ) Math.min( blocks.get( b )[ 1 ], ( long ) start + neighbors.maxBack );
+			setPosition( start, windowDimensions, position );
+			for ( int i = start; i < end; ++i )
+			{
+				if ( a[ i ] >= 0 )
+					linkAcross( i, start, position, windowDimensions, neighbors, a );
+				fwd( position, windowDimensions );
+			}
+		}
+
+		futures.clear();
+		for ( final int[] block : blocks )
+		{
+			futures.add( service.submit( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for ( int i = block[ 0 ]; i < block[ 1 ]; ++i )
+					{
+						int r = a[ i ];
+						if ( r < 0 )
+							continue;
+						while ( a[ r ] != r )
+							r = a[ r ];
+						a[ i ] = r;
+					}
+				}
+			} ) );
+		}
+		SimpleMultiThreading.waitFor( futures );
+	}
+
+	/**
+	 * Union pixel i with its foreground backward neighbors at or after start.
+	 */
+	static void linkBackward( final int i, final int start, final long[] position, final long[] dimensions, final Neighbors neighbors, final int[] a )
+	{
+		final long[][] offsets = neighbors.offsets;
+		A: for ( int j = 0; j < offsets.length; ++j )
+		{
+			final int k = i + neighbors.linear[ j ];
+			if ( k < start )
+				continue;
+			for ( int d = 0; d < position.length; ++d )
+			{
+				final long p = position[ d ] + offsets[ j ][ d ];
+				if ( p < 0 || p >= dimensions[ d ] )
+					continue A;
+			}
+			if ( a[ k ] >= 0 )
+				union( a, i, k );
+		}
+	}
+
+	/**
+	 * Union pixel i with its foreground backward neighbors before start.
+	 */
+	static void linkAcross( final int i, final int start, final long[] position, final long[] dimensions, final Neighbors neighbors, final int[] a )
+	{
+		final long[][] offsets = neighbors.offsets;
+		A: for ( int j = 0; j < offsets.length; ++j )
+		{
+			final int k = i + neighbors.linear[ j ];
+			if ( k >= start )
+				continue;
+			for ( int d = 0; d < position.length; ++d )
+			{
+				final long p = position[ d ] + offsets[ j ][ d ];
+				if ( p < 0 || p >= dimensions[ d ] )
+					continue A;
+			}
+			if ( a[ k ] >= 0 )
+				union( a, i, k );
+		}
+	}
+
+	/**
+	 * Replace the roots in a[0, size) by provisional ids, sequentially in flat
+	 * order. Components touching the first prefixSize pixels take the ids
+	 * stored in prefix, all others get new ids.
+	 */
+	static void assignIds( final int[] a, final int size, final int prefixSize, final int[] prefix, final Equivalences equivalences )
+	{
+		for ( int i = 0; i < size; ++i )
+		{
+			final int r = a[ i ];
+			if ( r < 0 )
+				a[ i ] = 0;
+			else if ( i < prefixSize )
+			{
+				if ( r == i )
+					a[ i ] = prefix[ i ];
+				else
+				{
+					equivalences.union( a[ r ], prefix[ i ] );
+					a[ i ] = a[ r ];
+				}
+			}
+			else
+				a[ i ] = r == i ? equivalences.add() : a[ r ];
+		}
+	}
+
+	/**
+	 * Name the components in the order of their smallest provisional id and
+	 * map every provisional id to the mapping index of its component's label.
+	 */
+	static < T extends Comparable< T >> int[] labelIndices( final Equivalences equivalences, final LabelingMapping< T > mapping, final Iterator< T > names ) throws NoSuchElementException
+	{
+		final int[] indices = new int[ equivalences.size + 1 ];
+		for ( int id = 1; id <= equivalences.size; ++id )
+		{
+			final int r = equivalences.find( id );
+			if ( r == id )
+			{
+				final List< T > labeling = new ArrayList< T >( 1 );
+				labeling.add( names.next() );
+				indices[ id ] = mapping.indexOf( labeling );
+			}
+			else
+				indices[ id ] = indices[ r ];
+		}
+		return indices;
+	}
+
+	static long[] dimensions( final NativeImgLabeling< ?, ? > labeling, final RandomAccessibleInterval< BitType > img )
+	{
+		final long[] dimensions = new long[ img.numDimensions() ];
+		img.dimensions( dimensions );
+		if ( labeling.numDimensions() != dimensions.length )
+			throw new IllegalArgumentException( "The labeling and the image must have the same dimensions" );
+		for ( int d = 0; d < dimensions.length; ++d )
+			if ( labeling.dimension( d ) != dimensions[ d ] )
+				throw new IllegalArgumentException( "The labeling and the image must have the same dimensions" );
+		return dimensions;
+	}
+
+	static void setPosition( long index, final long[] dimensions, final long[] position )
+	{
+		for ( int d = 0; d < dimensions.length; ++d )
+		{
+			position[ d ] = index % dimensions[ d ];
+			index /= dimensions[ d ];
+		}
+	}
+
+	static void setImgPosition( final RandomAccessibleInterval< BitType > img, final long z0, final long[] position, final long[] imgPosition )
+	{
+		final int n = position.length;
+		for ( int d = 0; d < n; ++d )
+			imgPosition[ d ] = img.min( d ) + position[ d ];
+		imgPosition[ n - 1 ] += z0;
+	}
+
+	/**
+	 * Advance position in flat iteration order.
+	 * 
+	 * @return false if the position wrapped to the start of the next line.
+	 */
+	static boolean fwd( final long[] position, final long[] dimensions )
+	{
+		if ( ++position[ 0 ] < dimensions[ 0 ] )
+			return true;
+		position[ 0 ] = 0;
+		for ( int d = 1; d < dimensions.length; ++d )
+		{
+			if ( ++position[ d ] < dimensions[ d ] )
+				break;
+			position[ d ] = 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Split [0, size) into ranges of consecutive pixels, several per thread.
+	 */
+	static List< int[] > blocks( final int size, final ExecutorService service )
+	{
+		final int numThreads;
+		if ( service instanceof ThreadPoolExecutor )
+			numThreads = Math.max( 1, ( ( ThreadPoolExecutor ) service ).getMaximumPoolSize() );
+		else
+			numThreads = Runtime.getRuntime().availableProcessors();
+		final int numBlocks = ( int ) Math.max( 1, Math.min( numThreads * 4L, size / 4096 ) );
+		final ArrayList< int[] > blocks = new ArrayList< int[] >( numBlocks );
+		for ( int b = 0; b < numBlocks; ++b )
+			blocks.add( new int[] { ( int ) ( ( long ) size * b / numBlocks ), ( int ) ( ( long ) size * ( b + 1 ) / numBlocks ) } );
+		return blocks;
+	}
+
+	/**
+	 * The storage was written behind the labeling's back, touch one pixel
+	 * through {@link LabelingType} to invalidate cached ROIs.
+	 */
+	static < T extends Comparable< T >> void touch( final NativeImgLabeling< T, ? > labeling )
+	{
+		final LabelingType< T > first = labeling.firstElement();
+		first.setLabeling( first.getLabeling() );
+	}
+
+}
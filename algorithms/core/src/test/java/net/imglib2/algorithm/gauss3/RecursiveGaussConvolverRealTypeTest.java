@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.gauss3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class RecursiveGaussConvolverRealTypeTest
+{
+	@Test
+	public void testConstant()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 50, 40, 30 );
+		for ( final FloatType t : img )
+			t.set( 3 );
+		final double[] sigma = new double[] { 7, 2, 12 };
+
+		final Img< FloatType > smoothed = ArrayImgs.floats( 50, 40, 30 );
+		Gauss3.derivative( sigma, new int[] { 0, 0, 0 }, Views.extendBorder( img ), smoothed );
+		for ( final FloatType t : smoothed )
+			assertEquals( 3, t.get(), 1e-4 );
+
+		final Img< FloatType > derived = ArrayImgs.floats( 50, 40, 30 );
+		Gauss3.derivative( sigma, new int[] { 1, 0, 2 }, Views.extendBorder( img ), derived );
+		for ( final FloatType t : derived )
+			assertEquals( 0, t.get(), 1e-4 );
+	}
+
+	@Test
+	public void testApproximatesFIR() throws IncompatibleTypeException
+	{
+		final double[] sigma = new double[] { 8, 6 };
+		final Img< FloatType > img = ArrayImgs.floats( 200, 150 );
+		final Random rnd = new Random( 0 );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() );
+
+		final Img< FloatType > recursive = ArrayImgs.floats( 200, 150 );
+		Gauss3.gauss( sigma, Views.extendMirrorSingle( img ), recursive );
+
+		final Img< FloatType > fir = ArrayImgs.floats( 200, 150 );
+		final ConvolverFactory< FloatType, FloatType > f = FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory();
+		SeparableSymmetricConvolution.convolve( Gauss3.halfkernels( sigma ), Views.extendMirrorSingle( img ), fir, f, f, f, f, new ArrayImgFactory< FloatType >(), new FloatType(), 1 );
+
+		final Cursor< FloatType > c = recursive.cursor();
+		final RandomAccess< FloatType > a = fir.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( a.get().get(), c.get().get(), 5e-3 );
+		}
+	}
+
+	@Test
+	public void testDerivatives()
+	{
+		final long w = 200;
+		final Img< DoubleType > img = ArrayImgs.doubles( w, w );
+		final Cursor< DoubleType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final double x = c.getDoublePosition( 0 ) - w / 2;
+			final double y = c.getDoublePosition( 1 );
+			c.get().set( 0.5 * x * x + 3 * y );
+		}
+
+		final double[] sigma = new double[] { 10, 5 };
+		final Img< DoubleType > dx = ArrayImgs.doubles( w, w );
+		final Img< DoubleType > dxx = ArrayImgs.doubles( w, w );
+		final Img< DoubleType > dy = ArrayImgs.doubles( w, w );
+		Gauss3.derivative( sigma, new int[] { 1, 0 }, Views.extendMirrorSingle( img ), dx );
+		Gauss3.derivative( sigma, new int[] { 2, 0 }, Views.extendMirrorSingle( img ), dxx );
+		Gauss3.derivative( sigma, new int[] { 0, 1 }, Views.extendMirrorSingle( img ), dy );
+
+		/* away from the mirrored borders */
+		final RandomAccess< DoubleType > ax = dx.randomAccess();
+		final RandomAccess< DoubleType > axx = dxx.randomAccess();
+		final RandomAccess< DoubleType > ay = dy.randomAccess();
+		for ( long y = 70; y < w - 70; y += 7 )
+			for ( long x = 70; x < w - 70; x += 7 )
+			{
+				final long[] pos = new long[] { x, y };
+				ax.setPosition( pos );
+				axx.setPosition( pos );
+				ay.setPosition( pos );
+				assertEquals( x - w / 2, ax.get().get(), 0.05 );
+				assertEquals( 1, axx.get().get(), 0.01 );
+				assertEquals( 3, ay.get().get(), 0.01 );
+			}
+	}
+
+	@Test
+	public void testFactoryChoosesBySigma()
+	{
+		assertTrue( RecursiveGaussConvolverRealType.useRecursive( new double[] { 1, RecursiveGaussConvolverRealType.MIN_SIGMA }, new int[ 2 ] ) );
+		assertTrue( RecursiveGaussConvolverRealType.useRecursive( new double[] { 1, 1 }, new int[] { 0, 1 } ) );
+		assertTrue( !RecursiveGaussConvolverRealType.useRecursive( new double[] { 1, 2 }, new int[ 2 ] ) );
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.algorithm.gauss3;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Compare the slice streaming convolution of {@link RealType RealTypes} with
+ * the convolution using full size temporary images.
+ *
+ * @author agent
+ */
+public class SeparableSymmetricConvolutionTest
+{
+	static Img< FloatType > randomImg( final long... dimensions )
+	{
+		final Img< FloatType > img = ArrayImgs.floats( dimensions );
+		final Random rnd = new Random( 0 );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() );
+		return img;
+	}
+
+	static Img< FloatType > convolveWithTemporaries( final double[][] halfkernels, final Img< FloatType > source )
+	{
+		final long[] dimensions = new long[ source.numDimensions() ];
+		source.dimensions( dimensions );
+		final Img< FloatType > target = ArrayImgs.floats( dimensions );
+		SeparableSymmetricConvolution.convolve( halfkernels, Views.extendMirrorSingle( source ), target,
+				FloatConvolverRealType.< FloatType, FloatType >factory(),
+				FloatConvolverRealType.< FloatType, FloatType >factory(),
+				FloatConvolverRealType.< FloatType, FloatType >factory(),
+				FloatConvolverRealType.< FloatType, FloatType >factory(),
+				new ArrayImgFactory< FloatType >(), new FloatType(), 1 );
+		return target;
+	}
+
+	static < T extends RealType< T > > void assertImgEquals( final Img< FloatType > expected, final Img< T > actual, final double eps )
+	{
+		final Cursor< FloatType > c = expected.localizingCursor();
+		final RandomAccess< T > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().getRealDouble(), a.get().getRealDouble(), eps );
+		}
+	}
+
+	@Test
+	public void testStreaming3D() throws IncompatibleTypeException
+	{
+		final double[][] halfkernels = Gauss3.halfkernels( new double[] { 1.5, 2.0, 3.0 } );
+		final Img< FloatType > source = randomImg( 23, 17, 19 );
+		final Img< FloatType > expected = convolveWithTemporaries( halfkernels, source );
+
+		final Img< FloatType > target = ArrayImgs.floats( 23, 17, 19 );
+		SeparableSymmetricConvolution.convolve( halfkernels, Views.extendMirrorSingle( source ), target, 3 );
+		assertImgEquals( expected, target, 1e-5 );
+	}
+
+	@Test
+	public void testStreaming4DDouble() throws IncompatibleTypeException
+	{
+		final double[][] halfkernels = Gauss3.halfkernels( new double[] { 1.0, 1.0, 0.8, 2.0 } );
+		final Img< FloatType > source = randomImg( 9, 8, 7, 6 );
+		final Img< FloatType > expected = convolveWithTemporaries( halfkernels, source );
+
+		final Img< DoubleType > target = ArrayImgs.doubles( 9, 8, 7, 6 );
+		SeparableSymmetricConvolution.convolve( halfkernels, Views.extendMirrorSingle( source ), target, 2 );
+		assertImgEquals( expected, target, 1e-5 );
+	}
+
+	@Test
+	public void testInPlaceWithSharedService() throws IncompatibleTypeException
+	{
+		final double[] sigma = new double[] { 2.0, 1.0, 2.5 };
+		final Img< FloatType > img = randomImg( 40, 31, 12 );
+		final Img< FloatType > expected = convolveWithTemporaries( Gauss3.halfkernels( sigma ), img );
+
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			Gauss3.gauss( sigma, Views.extendMirrorSingle( img ), img, service );
+			assertImgEquals( expected, img, 1e-5 );
+
+			/* service can be reused */
+			final Img< FloatType > img2 = randomImg( 40, 31, 12 );
+			final Img< FloatType > expected2 = convolveWithTemporaries( Gauss3.halfkernels( sigma ), img2 );
+			final Img< FloatType > target2 = ArrayImgs.floats( 40, 31, 12 );
+			Gauss3.gauss( sigma, Views.extendMirrorSingle( img2 ), target2, service );
+			assertImgEquals( expected2, target2, 1e-5 );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+}
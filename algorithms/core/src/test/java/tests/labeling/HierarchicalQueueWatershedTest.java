@@ -0,0 +1,229 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package tests.labeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.algorithm.labeling.AllConnectedComponents;
+import net.imglib2.algorithm.labeling.HierarchicalQueueWatershed;
+import net.imglib2.algorithm.labeling.Watershed;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link HierarchicalQueueWatershed} to {@link Watershed}.
+ * 
+ * @author agent
+ */
+public class HierarchicalQueueWatershedTest
+{
+	private void testSeededCase2D( final int[][] image, final int[][] seeds, final int[][] expected )
+	{
+		final long[] dimensions = new long[] { image.length, image[ 0 ].length };
+		final Img< IntType > imageImage = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final RandomAccess< IntType > ra = imageImage.randomAccess();
+		final NativeImgLabeling< Integer, IntType > seedLabeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final RandomAccess< LabelingType< Integer >> sa = seedLabeling.randomAccess();
+		for ( int i = 0; i < image.length; ++i )
+			for ( int j = 0; j < image[ 0 ].length; ++j )
+			{
+				ra.setPosition( new int[] { i, j } );
+				ra.get().set( image[ i ][ j ] );
+				if ( seeds[ i ][ j ] != 0 )
+				{
+					sa.setPosition( new int[] { i, j } );
+					sa.get().setLabel( seeds[ i ][ j ] );
+				}
+			}
+
+		final HierarchicalQueueWatershed< IntType, Integer > watershed = new HierarchicalQueueWatershed< IntType, Integer >();
+		watershed.setSeeds( seedLabeling );
+		watershed.setIntensityImage( imageImage );
+		assertTrue( watershed.process() );
+
+		final RandomAccess< LabelingType< Integer >> oa = watershed.getResult().randomAccess();
+		for ( int i = 0; i < expected.length; ++i )
+			for ( int j = 0; j < expected[ 0 ].length; ++j )
+			{
+				oa.setPosition( new int[] { i, j } );
+				final List< Integer > l = oa.get().getLabeling();
+				if ( expected[ i ][ j ] == 0 )
+					assertTrue( l.isEmpty() );
+				else
+				{
+					assertEquals( 1, l.size() );
+					assertEquals( expected[ i ][ j ], l.get( 0 ).intValue() );
+				}
+			}
+	}
+
+	@Test
+	public final void testEmpty()
+	{
+		testSeededCase2D( new int[][] { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } }, new int[][] { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } }, new int[][] { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } } );
+	}
+
+	@Test
+	public final void testOne()
+	{
+		testSeededCase2D( new int[][] { { 0, 0, 0 }, { 0, 0, 0 }, { 0, 0, 0 } }, new int[][] { { 0, 0, 0 }, { 0, 1, 0 }, { 0, 0, 0 } }, new int[][] { { 1, 1, 1 }, { 1, 1, 1 }, { 1, 1, 1 } } );
+	}
+
+	@Test
+	public final void testTwo()
+	{
+		testSeededCase2D( new int[][] { { 0, 0, 0 }, { 0, 0, 0 }, { 1, 1, 1 }, { 0, 0, 0 } }, new int[][] { { 0, 1, 0 }, { 0, 0, 0 }, { 0, 0, 0 }, { 0, 2, 0 } }, new int[][] { { 1, 1, 1 }, { 1, 1, 1 }, { 2, 2, 2 }, { 2, 2, 2 } } );
+	}
+
+	/**
+	 * Random 3D landscape with integer intensities: every value has its own
+	 * level, so the result must equal the priority queue watershed, for native
+	 * int storage as well as for planar short storage.
+	 */
+	@Test
+	public final void testSameAsWatershed()
+	{
+		final long[] dimensions = new long[] { 23, 17, 9 };
+		final Random rnd = new Random( 1234 );
+
+		final Img< UnsignedShortType > image = new ArrayImgFactory< UnsignedShortType >().create( dimensions, new UnsignedShortType() );
+		for ( final UnsignedShortType t : image )
+			t.set( rnd.nextInt( 1000 ) );
+		final NativeImgLabeling< Integer, IntType > seedLabeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final Cursor< LabelingType< Integer >> sc = seedLabeling.cursor();
+		while ( sc.hasNext() )
+		{
+			final LabelingType< Integer > t = sc.next();
+			if ( rnd.nextInt( 200 ) == 0 )
+				t.setLabel( rnd.nextInt( 5 ) );
+		}
+
+		final long[][] strel = AllConnectedComponents.getStructuringElement( 3 );
+		final Watershed< UnsignedShortType, Integer > reference = new Watershed< UnsignedShortType, Integer >();
+		reference.setSeeds( seedLabeling );
+		reference.setIntensityImage( image );
+		reference.setStructuringElement( strel );
+		assertTrue( reference.process() );
+
+		final NativeImgLabeling< Integer, IntType > arrayOutput = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final NativeImgLabeling< Integer, UnsignedShortType > planarOutput = new NativeImgLabeling< Integer, UnsignedShortType >( new PlanarImgFactory< UnsignedShortType >().create( dimensions, new UnsignedShortType() ) );
+		final HierarchicalQueueWatershed< UnsignedShortType, Integer > watershed = new HierarchicalQueueWatershed< UnsignedShortType, Integer >();
+		watershed.setSeeds( seedLabeling );
+		watershed.setIntensityImage( image );
+		watershed.setStructuringElement( strel );
+		watershed.setOutputLabeling( arrayOutput );
+		assertTrue( watershed.process() );
+		watershed.setOutputLabeling( planarOutput );
+		assertTrue( watershed.process() );
+
+		final RandomAccess< LabelingType< Integer >> ra = arrayOutput.randomAccess();
+		final RandomAccess< LabelingType< Integer >> pa = planarOutput.randomAccess();
+		final Cursor< LabelingType< Integer >> rc = reference.getResult().localizingCursor();
+		while ( rc.hasNext() )
+		{
+			final List< Integer > expected = rc.next().getLabeling();
+			assertFalse( expected.isEmpty() );
+			ra.setPosition( rc );
+			pa.setPosition( rc );
+			assertEquals( expected, ra.get().getLabeling() );
+			assertEquals( expected, pa.get().getLabeling() );
+		}
+	}
+
+	/**
+	 * Two basins separated by a ridge at x = 20 in a float image that has to
+	 * be quantized.
+	 */
+	@Test
+	public final void testQuantized()
+	{
+		final long[] dimensions = new long[] { 40, 20 };
+		final Img< FloatType > image = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Cursor< FloatType > c = image.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( ( float ) ( 1e-3 * Math.min( c.getDoublePosition( 0 ), 40 - c.getDoublePosition( 0 ) ) ) );
+		}
+		final NativeImgLabeling< Integer, IntType > seedLabeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		final RandomAccess< LabelingType< Integer >> sa = seedLabeling.randomAccess();
+		sa.setPosition( new int[] { 0, 10 } );
+		sa.get().setLabel( 1 );
+		sa.setPosition( new int[] { 39, 3 } );
+		sa.get().setLabel( 2 );
+
+		final HierarchicalQueueWatershed< FloatType, Integer > watershed = new HierarchicalQueueWatershed< FloatType, Integer >();
+		watershed.setSeeds( seedLabeling );
+		watershed.setIntensityImage( image );
+		watershed.setNumLevels( 256 );
+		assertTrue( watershed.process() );
+
+		final Cursor< LabelingType< Integer >> oc = watershed.getResult().localizingCursor();
+		while ( oc.hasNext() )
+		{
+			final List< Integer > l = oc.next().getLabeling();
+			assertEquals( 1, l.size() );
+			if ( oc.getIntPosition( 0 ) != 20 )
+				assertEquals( oc.getIntPosition( 0 ) < 20 ? 1 : 2, l.get( 0 ).intValue() );
+		}
+	}
+
+	@Test
+	public final void testMismatchedDimensions()
+	{
+		final HierarchicalQueueWatershed< IntType, Integer > watershed = new HierarchicalQueueWatershed< IntType, Integer >();
+		watershed.setSeeds( new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( new long[] { 4, 5 }, new IntType() ) ) );
+		watershed.setIntensityImage( new ArrayImgFactory< IntType >().create( new long[] { 4, 6 }, new IntType() ) );
+		assertFalse( watershed.process() );
+	}
+}
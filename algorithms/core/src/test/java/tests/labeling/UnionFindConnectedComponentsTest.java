@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package tests.labeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.algorithm.labeling.AllConnectedComponents;
+import net.imglib2.algorithm.labeling.UnionFindConnectedComponents;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.labeling.LabelingType;
+import net.imglib2.labeling.NativeImgLabeling;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.IntType;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link UnionFindConnectedComponents} to
+ * {@link AllConnectedComponents}.
+ * 
+ * @author agent
+ */
+public class UnionFindConnectedComponentsTest
+{
+	private static Img< BitType > randomImage( final long[] dimensions, final double density, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		final Img< BitType > img = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		for ( final BitType t : img )
+			t.set( rnd.nextDouble() < density );
+		return img;
+	}
+
+	private static NativeImgLabeling< Integer, IntType > expected( final Img< BitType > img, final long[][] structuringElement )
+	{
+		final long[] dimensions = new long[ img.numDimensions() ];
+		img.dimensions( dimensions );
+		final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		AllConnectedComponents.labelAllConnectedComponents( labeling, img, AllConnectedComponents.getIntegerNames( 1 ), structuringElement );
+		return labeling;
+	}
+
+	private static void assertSameLabeling( final NativeImgLabeling< Integer, ? > expected, final NativeImgLabeling< Integer, ? > actual )
+	{
+		final Cursor< LabelingType< Integer >> c = expected.localizingCursor();
+		final RandomAccess< LabelingType< Integer >> ra = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			ra.setPosition( c );
+			assertEquals( c.get().getLabeling(), ra.get().getLabeling() );
+		}
+	}
+
+	@Test
+	public void testSameAsAllConnectedComponents()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		final long[] dimensions = new long[] { 41, 37, 23 };
+		final long[][] structuringElement = AllConnectedComponents.getStructuringElement( 3 );
+		for ( final double density : new double[] { 0.1, 0.3, 0.6 } )
+		{
+			final Img< BitType > img = randomImage( dimensions, density, 42 );
+			final NativeImgLabeling< Integer, IntType > expected = expected( img, structuringElement );
+
+			final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+			UnionFindConnectedComponents.labelAllConnectedComponents( labeling, img, AllConnectedComponents.getIntegerNames( 1 ), structuringElement, service );
+			assertSameLabeling( expected, labeling );
+
+			final NativeImgLabeling< Integer, IntType > cellLabeling = new NativeImgLabeling< Integer, IntType >( new CellImgFactory< IntType >( 8 ).create( dimensions, new IntType() ) );
+			UnionFindConnectedComponents.labelAllConnectedComponents( cellLabeling, img, AllConnectedComponents.getIntegerNames( 1 ), structuringElement, service );
+			assertSameLabeling( expected, cellLabeling );
+		}
+		service.shutdown();
+	}
+
+	@Test
+	public void testCustomStructuringElement()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		final long[] dimensions = new long[] { 64, 80 };
+		final Img< BitType > img = randomImage( dimensions, 0.4, 7 );
+
+		// 4-connected and a symmetric long range element skipping one pixel
+		final long[][][] structuringElements = new long[][][] { { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } }, { { -2, 0 }, { 2, 0 }, { 0, -2 }, { 0, 2 }, { -1, 3 }, { 1, -3 } } };
+		for ( final long[][] structuringElement : structuringElements )
+		{
+			final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+			UnionFindConnectedComponents.labelAllConnectedComponents( labeling, img, AllConnectedComponents.getIntegerNames( 1 ), structuringElement, service );
+			assertSameLabeling( expected( img, structuringElement ), labeling );
+		}
+		service.shutdown();
+	}
+
+	@Test
+	public void testSlabs()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		final long[] dimensions = new long[] { 33, 29, 31 };
+		final Img< BitType > img = randomImage( dimensions, 0.3, 3 );
+		final long[][][] structuringElements = new long[][][] { AllConnectedComponents.getStructuringElement( 3 ), { { 0, 0, -2 }, { 0, 0, 2 }, { 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 } } };
+		for ( final long[][] structuringElement : structuringElements )
+		{
+			final NativeImgLabeling< Integer, IntType > expected = expected( img, structuringElement );
+			for ( final long slabSize : new long[] { 1, 2, 5, 31, 100 } )
+			{
+				final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new CellImgFactory< IntType >( 10 ).create( dimensions, new IntType() ) );
+				UnionFindConnectedComponents.labelAllConnectedComponentsInSlabs( labeling, img, AllConnectedComponents.getIntegerNames( 1 ), structuringElement, slabSize, service );
+				assertSameLabeling( expected, labeling );
+			}
+		}
+		service.shutdown();
+	}
+
+	@Test
+	public void testBackgroundAndOneObject()
+	{
+		final long[] dimensions = new long[] { 5, 4 };
+		final Img< BitType > img = new ArrayImgFactory< BitType >().create( dimensions, new BitType() );
+		final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		UnionFindConnectedComponents.labelAllConnectedComponents( labeling, img, AllConnectedComponents.getIntegerNames( 1 ) );
+		for ( final LabelingType< Integer > t : labeling )
+			assertTrue( t.getLabeling().isEmpty() );
+
+		for ( final BitType t : img )
+			t.set( true );
+		UnionFindConnectedComponents.labelAllConnectedComponents( labeling, img, AllConnectedComponents.getIntegerNames( 7 ) );
+		for ( final LabelingType< Integer > t : labeling )
+		{
+			assertEquals( 1, t.getLabeling().size() );
+			assertEquals( 7, t.getLabeling().get( 0 ).intValue() );
+		}
+	}
+
+	@Test( expected = RuntimeException.class )
+	public void testInterrupted()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 2 );
+		final long[] dimensions = new long[] { 100, 100, 10 };
+		final Img< BitType > img = randomImage( dimensions, 0.3, 5 );
+		final NativeImgLabeling< Integer, IntType > labeling = new NativeImgLabeling< Integer, IntType >( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) );
+		Thread.currentThread().interrupt();
+		try
+		{
+			UnionFindConnectedComponents.labelAllConnectedComponents( labeling, img, AllConnectedComponents.getIntegerNames( 1 ), AllConnectedComponents.getStructuringElement( 3 ), service );
+		}
+		finally
+		{
+			Thread.interrupted();
+			service.shutdownNow();
+		}
+	}
+}
@@ -26,6 +26,8 @@
 
 package net.imglib2.algorithm.fft2;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.imglib2.Cursor;
 import net.imglib2.FinalDimensions;
 import net.imglib2.FinalInterval;
@@ -37,8 +39,11 @@ import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.multithreading.SimpleMultiThreading;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
@@ -58,6 +63,14 @@ import net.imglib2.view.Views;
  * NOTE: There is no checking if the sizes are compatible. If the new input has smaller or larger dimensions, it will simply fail. It is up to you to look for that.
  * NOTE: This is not influenced by whether the computation is performed in-place or not, just the FFT of the kernel is kept.
  * 
+ * Images that are too large to be transformed at once can be convolved block-wise (overlap-save) by calling
+ * setBlockSize(long... blockSize). The output is then computed in blocks of that size which are processed in parallel,
+ * each from a padded block of the input that is transformed separately. The FFT of the kernel is computed once for the
+ * padded block size. Memory is bounded by the block size times the number of threads instead of the image size, and the
+ * input is only accessed block by block, e.g. from a {@link net.imglib2.img.cell.CellImg}; block sizes that are multiples
+ * of the cell size avoid reading cells for several blocks at the same time.
+ * NOTE: Block-wise convolution cannot be performed in-place, and the FFT of the image is not kept.
+ * 
  * @author Stephan Preibisch
  */
 public class FFTConvolution < R extends RealType< R > > implements Runnable
@@ -68,6 +81,9 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 	RandomAccessible< R > img, kernel;
 	Interval imgInterval, kernelInterval;
 	RandomAccessibleInterval< R > output;
+
+	// whether the output is the input image
+	boolean inPlace = false;
 	
 	// by default we use the complex conjugate of the kernel
 	boolean complexConjugate = true;
@@ -75,6 +91,11 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 	// by default we do not keep the image
 	boolean keepImgFFT = false;
 
+	// by default the whole image is transformed at once
+	long[] blockSize = null;
+
+	int numThreads = Runtime.getRuntime().availableProcessors();
+
 	/**
 	 * Compute a Fourier space based convolution in-place (img will be replaced by the convolved result). 
 	 * The image will be extended by mirroring with single boundary, the kernel will be zero-padded.
@@ -87,6 +108,7 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 	public FFTConvolution( final Img< R > img, final Img< R > kernel )
 	{
 		this ( img, kernel, img );
+		this.inPlace = true;
 	}	
 
 	/**
@@ -115,6 +137,7 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 	public FFTConvolution( final RandomAccessibleInterval< R > img, final RandomAccessibleInterval< R > kernel, final ImgFactory< ComplexFloatType > factory )
 	{
 		this ( img, kernel, img, factory );
+		this.inPlace = true;
 	}
 
 	/**
@@ -147,6 +170,7 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 	public FFTConvolution( final RandomAccessible< R > img, final Interval imgInterval, final RandomAccessible< R > kernel, final Interval kernelInterval, final ImgFactory< ComplexFloatType > factory )
 	{
 		this( img, imgInterval, kernel, kernelInterval, Views.interval( img, imgInterval ), factory );
+		this.inPlace = true;
 	}
 
 	/**
@@ -170,6 +194,7 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 		this.kernel = kernel;
 		this.kernelInterval = kernelInterval;
 		this.output = output;
+		this.inPlace = output == imgInterval;
 		this.fftFactory = factory;
 	}
 
@@ -178,6 +203,7 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 		this.img = Views.extendMirrorSingle( img );
 		this.imgInterval = img;
 		this.fftImg = null;
+		this.inPlace = output == imgInterval;
 	}
 
 	public void setImg( final RandomAccessible< R > img, final Interval imgInterval )
@@ -185,6 +211,7 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 		this.img = img;
 		this.imgInterval = imgInterval;
 		this.fftImg = null;
+		this.inPlace = output == imgInterval;
 	}
 
 	public void setKernel( final RandomAccessibleInterval< R > kernel )
@@ -201,7 +228,14 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 		this.fftKernel = null;
 	}
 
-	public void setOutput( final RandomAccessibleInterval< R > output ) { this.output = output; }
+	/**
+	 * @param output - the result of the convolution, the image itself for in-place convolution.
+	 */
+	public void setOutput( final RandomAccessibleInterval< R > output )
+	{
+		this.output = output;
+		this.inPlace = output == imgInterval;
+	}
 	
 	/**
 	 * @param complexConjugate - If the complex conjugate of the FFT of the kernel should be used.
@@ -218,10 +252,33 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 	public ImgFactory< ComplexFloatType > fftImgFactory() { return fftFactory; }
 	public Img< ComplexFloatType > imgFFT() { return fftImg; }
 	public Img< ComplexFloatType > kernelFFT() { return fftKernel; }
+
+	/**
+	 * @param blockSize - the size of the output blocks for block-wise convolution, null to transform the whole image at once.
+	 */
+	public void setBlockSize( final long... blockSize )
+	{
+		this.blockSize = blockSize == null ? null : blockSize.clone();
+		this.fftKernel = null;
+		this.fftImg = null;
+	}
+	public long[] getBlockSize() { return blockSize == null ? null : blockSize.clone(); }
+
+	/**
+	 * @param numThreads - how many blocks are convolved in parallel for block-wise convolution.
+	 */
+	public void setNumThreads( final int numThreads ) { this.numThreads = numThreads; }
+	public int getNumThreads() { return numThreads; }
 	
 	@Override
 	public void run() 
 	{
+		if ( blockSize != null )
+		{
+			runBlocked();
+			return;
+		}
+
 		final int numDimensions = imgInterval.numDimensions();
 		
 		// the image has to be extended at least by kernelDimensions/2-1 in each dimension so that
@@ -287,6 +344,108 @@ public class FFTConvolution < R extends RealType< R > > implements Runnable
 		FFT.complexToRealUnpad( fftconvolved, output );
 	}
 	
+	/**
+	 * Convolve block by block (overlap-save). The output is split into blocks of blockSize. Every block
+	 * is computed from the input block padded by the kernel size, which is transformed, multiplied with
+	 * the kernel FFT, and transformed back, keeping only the central part that is not affected by the
+	 * wrap-around of the FFT.
+	 */
+	protected void runBlocked()
+	{
+		if ( inPlace )
+			throw new IllegalStateException( "Block-wise convolution cannot be performed in-place, please specify an output." );
+
+		final int numDimensions = imgInterval.numDimensions();
+
+		final long[] block = new long[ numDimensions ];
+		final long[] newDimensions = new long[ numDimensions ];
+		final long[] numBlocks = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			block[ d ] = Math.max( 1, Math.min( blockSize[ d ], imgInterval.dimension( d ) ) );
+			// one more pixel than necessary such that the padding is sufficient on both sides for even kernel sizes
+			newDimensions[ d ] = block[ d ] + kernelInterval.dimension( d );
+			numBlocks[ d ] = ( imgInterval.dimension( d ) + block[ d ] - 1 ) / block[ d ];
+		}
+
+		final long[] paddedDimensions = new long[ numDimensions ];
+		final long[] fftDimensions = new long[ numDimensions ];
+		FFTMethods.dimensionsRealToComplexFast( FinalDimensions.wrap( newDimensions ), paddedDimensions, fftDimensions );
+
+		final ImgFactory< ComplexFloatType > blockFactory = new ArrayImgFactory< ComplexFloatType >();
+
+		if ( fftKernel == null || !FFTMethods.dimensionsEqual( fftKernel, fftDimensions ) )
+			fftKernel = kernelFFT( kernel, kernelInterval, FinalDimensions.wrap( paddedDimensions ), complexConjugate, blockFactory );
+		fftImg = null;
+
+		final long totalBlocks = Intervals.numElements( FinalDimensions.wrap( numBlocks ) );
+		final AtomicInteger ai = new AtomicInteger( 0 );
+		final Thread[] threads = SimpleMultiThreading.newThreads( ( int ) Math.max( 1, Math.min( numThreads, totalBlocks ) ) );
+		for ( int ithread = 0; ithread < threads.length; ++ithread )
+			threads[ ithread ] = new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					// every thread reuses one block
+					final Img< ComplexFloatType > fftBlock = blockFactory.create( fftDimensions, new ComplexFloatType() );
+
+					final long[] blockPosition = new long[ numDimensions ];
+					final long[] min = new long[ numDimensions ];
+					final long[] max = new long[ numDimensions ];
+
+					for ( long i = ai.getAndIncrement(); i < totalBlocks; i = ai.getAndIncrement() )
+					{
+						IntervalIndexer.indexToPosition( i, numBlocks, blockPosition );
+						for ( int d = 0; d < numDimensions; ++d )
+						{
+							min[ d ] = imgInterval.min( d ) + blockPosition[ d ] * block[ d ];
+							max[ d ] = Math.min( min[ d ] + block[ d ] - 1, imgInterval.max( d ) );
+						}
+						final FinalInterval blockInterval = new FinalInterval( min, max );
+						final Interval blockConvolutionInterval = FFTMethods.paddingIntervalCentered( blockInterval, FinalDimensions.wrap( paddedDimensions ) );
+
+						// forward
+						FFTMethods.realToComplex( Views.interval( img, blockConvolutionInterval ), fftBlock, 0, false, 1 );
+						for ( int d = 1; d < numDimensions; ++d )
+							FFTMethods.complexToComplex( fftBlock, d, true, false, 1 );
+
+						multiplyComplex( fftBlock, fftKernel );
+
+						// inverse, unpadding the block
+						final RandomAccessibleInterval< R > outputBlock = Views.interval( output, blockInterval );
+						for ( int d = numDimensions - 1; d > 0; --d )
+							FFTMethods.complexToComplex( fftBlock, d, false, true, 1 );
+						FFTMethods.complexToReal( fftBlock, outputBlock, FFTMethods.unpaddingIntervalCentered( fftBlock, outputBlock ), 0, true, 1 );
+					}
+				}
+			} );
+		SimpleMultiThreading.startAndJoin( threads );
+	}
+
+	/**
+	 * Compute the FFT of the kernel padded to paddedDimensions such that the center of the kernel is at position (0,0).
+	 */
+	protected static < R extends RealType< R > > Img< ComplexFloatType > kernelFFT( final RandomAccessible< R > kernel, final Interval kernelInterval, final FinalDimensions paddedDimensions, final boolean complexConjugate, final ImgFactory< ComplexFloatType > factory )
+	{
+		final int numDimensions = kernelInterval.numDimensions();
+		final Interval kernelConvolutionInterval = FFTMethods.paddingIntervalCentered( kernelInterval, paddedDimensions );
+
+		final long[] min = new long[ numDimensions ];
+		final long[] max = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			min[ d ] = kernelInterval.min( d ) + kernelInterval.dimension( d ) / 2;
+			max[ d ] = min[ d ] + kernelConvolutionInterval.dimension( d ) - 1;
+		}
+
+		final RandomAccessibleInterval< R > kernelInput = Views.interval( Views.extendPeriodic( Views.interval( kernel, kernelConvolutionInterval ) ), new FinalInterval( min, max ) );
+		final Img< ComplexFloatType > fft = FFT.realToComplex( kernelInput, factory );
+		if ( complexConjugate )
+			FFTMethods.complexConjugate( fft );
+		return fft;
+	}
+
 	final public static < R extends RealType< R > > void convolve( final RandomAccessible< R > img, final Interval imgInterval, final RandomAccessible< R > kernel, final Interval kernelInterval, final RandomAccessibleInterval< R > output, final ImgFactory< ComplexFloatType > factory )
 	{
 		final int numDimensions = imgInterval.numDimensions();
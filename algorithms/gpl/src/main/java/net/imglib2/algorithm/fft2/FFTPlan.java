@@ -0,0 +1,746 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import net.imglib2.Dimensions;
+import net.imglib2.FinalDimensions;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.numeric.ComplexType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Util;
+import edu.mines.jtk.dsp.FftComplex;
+import edu.mines.jtk.dsp.FftReal;
+
+/**
+ * A plan for n-dimensional real-to-complex, complex-to-complex, and complex-to-real FFTs of a fixed size,
+ * which can be executed many times and on batches of same-sized images. The size is checked once when
+ * planning, the 1d transforms of all lines are computed by the tasks of a persistent {@link ExecutorService}.
+ * 
+ * Lines of {@link ArrayImg}s and {@link PlanarImg}s of {@link FloatType} or {@link ComplexFloatType} are
+ * copied directly from their float[] storage, several neighboring lines at once for transforms along
+ * dimensions other than 0. All other {@link RandomAccessibleInterval}s are accessed through {@link RandomAccess}.
+ * 
+ * The plan must not be executed from a task running on its {@link ExecutorService}.
+ * 
+ * @author agent
+ */
+public class FFTPlan
+{
+	/**
+	 * how many neighboring lines are copied at once
+	 */
+	final static protected int LINE_BLOCK = 16;
+
+	private static ExecutorService sharedService = null;
+
+	/**
+	 * @return an {@link ExecutorService} with as many daemon threads as there are processors, shared by all plans created without an explicit {@link ExecutorService}.
+	 */
+	public static synchronized ExecutorService sharedService()
+	{
+		if ( sharedService == null )
+			sharedService = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+			{
+				@Override
+				public Thread newThread( final Runnable r )
+				{
+					final Thread thread = new Thread( r, "FFTPlan worker" );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+		return sharedService;
+	}
+
+	final protected int numDimensions;
+
+	final protected long[] realDimensions;
+
+	final protected long[] complexDimensions;
+
+	final protected ExecutorService service;
+
+	final protected int numTasks;
+
+	/**
+	 * Plan FFTs for real-valued data of the given size.
+	 * 
+	 * @param realDimensions - the dimensions of the real-valued data, must be supported by the 1d FFT (see {@link #forInput(Dimensions, ExecutorService)})
+	 * @param service - executes the 1d transforms
+	 */
+	public FFTPlan( final Dimensions realDimensions, final ExecutorService service )
+	{
+		numDimensions = realDimensions.numDimensions();
+		this.realDimensions = new long[ numDimensions ];
+		realDimensions.dimensions( this.realDimensions );
+		complexDimensions = this.realDimensions.clone();
+		complexDimensions[ 0 ] = this.realDimensions[ 0 ] / 2 + 1;
+
+		if ( this.realDimensions[ 0 ] > Integer.MAX_VALUE || FftReal.nfftSmall( ( int ) this.realDimensions[ 0 ] ) != this.realDimensions[ 0 ] )
+			throw new IllegalArgumentException( "Size " + this.realDimensions[ 0 ] + " of dimension 0 is not supported by the real-to-complex FFT." );
+		for ( int d = 1; d < numDimensions; ++d )
+			if ( this.realDimensions[ d ] > Integer.MAX_VALUE || FftComplex.nfftSmall( ( int ) this.realDimensions[ d ] ) != this.realDimensions[ d ] )
+				throw new IllegalArgumentException( "Size " + this.realDimensions[ d ] + " of dimension " + d + " is not supported by the complex-to-complex FFT." );
+
+		this.service = service;
+		final int numThreads;
+		if ( service instanceof ThreadPoolExecutor )
+			numThreads = Math.max( 1, ( ( ThreadPoolExecutor ) service ).getMaximumPoolSize() );
+		else
+			numThreads = Runtime.getRuntime().availableProcessors();
+		numTasks = Math.min( numThreads, 1024 ) * 4;
+	}
+
+	/**
+	 * Plan FFTs for real-valued data of the given size executed by the {@link #sharedService()}.
+	 */
+	public FFTPlan( final Dimensions realDimensions )
+	{
+		this( realDimensions, sharedService() );
+	}
+
+	/**
+	 * Plan FFTs for real-valued input of at least the given size, padded to the fastest supported size
+	 * (see {@link FFTMethods#dimensionsRealToComplexFast(Dimensions, long[], long[])}).
+	 */
+	public static FFTPlan forInput( final Dimensions inputDimensions, final ExecutorService service )
+	{
+		final long[] paddedDimensions = new long[ inputDimensions.numDimensions() ];
+		final long[] fftDimensions = new long[ inputDimensions.numDimensions() ];
+		FFTMethods.dimensionsRealToComplexFast( inputDimensions, paddedDimensions, fftDimensions );
+		return new FFTPlan( FinalDimensions.wrap( paddedDimensions ), service );
+	}
+
+	public int numDimensions() { return numDimensions; }
+	public long[] realDimensions() { return realDimensions.clone(); }
+	public long[] complexDimensions() { return complexDimensions.clone(); }
+	public ExecutorService service() { return service; }
+
+	/**
+	 * @return a new complex-valued {@link Img} of {@link #complexDimensions()} that is transformed without {@link RandomAccess}.
+	 */
+	public Img< ComplexFloatType > createComplexImg()
+	{
+		return new ArrayImgFactory< ComplexFloatType >().create( complexDimensions, new ComplexFloatType() );
+	}
+
+	/**
+	 * Forward real-to-complex FFT, unscaled.
+	 * 
+	 * @param input - real-valued data of {@link #realDimensions()}, e.g. a padded interval of an extended image
+	 * @param output - complex-valued data of {@link #complexDimensions()}
+	 */
+	public < R extends RealType< R > > void realToComplex( final RandomAccessibleInterval< R > input, final RandomAccessibleInterval< ComplexFloatType > output )
+	{
+		realToComplex( Collections.singletonList( input ), Collections.singletonList( output ) );
+	}
+
+	/**
+	 * Forward real-to-complex FFTs of a batch of same-sized images, unscaled. The lines of all images are
+	 * transformed in parallel, which keeps all threads busy for small images.
+	 */
+	public < R extends RealType< R > > void realToComplex( final List< ? extends RandomAccessibleInterval< R > > inputs, final List< ? extends RandomAccessibleInterval< ComplexFloatType > > outputs )
+	{
+		checkBatch( inputs, realDimensions, outputs, complexDimensions );
+		final ArrayList< Lines > in = new ArrayList< Lines >();
+		final ArrayList< Lines > out = new ArrayList< Lines >();
+		for ( int i = 0; i < inputs.size(); ++i )
+		{
+			in.add( realLines( inputs.get( i ) ) );
+			out.add( complexLines( outputs.get( i ) ) );
+		}
+		final long[] zero = new long[ numDimensions ];
+		final long[] max = complexMax();
+		execute( in, out, 0, Pass.REAL_TO_COMPLEX, zero, max, zero, 1 );
+		for ( int d = 1; d < numDimensions; ++d )
+			execute( out, out, d, Pass.FORWARD, zero, max, zero, 1 );
+	}
+
+	/**
+	 * Complex-to-complex FFT in place. The inverse is scaled such that a forward and an inverse
+	 * transform reproduce the data.
+	 * 
+	 * @param data - complex-valued data of {@link #complexDimensions()}
+	 */
+	public void complexToComplex( final RandomAccessibleInterval< ComplexFloatType > data, final boolean forward )
+	{
+		complexToComplex( Collections.singletonList( data ), forward );
+	}
+
+	/**
+	 * Complex-to-complex FFTs of a batch of same-sized images in place.
+	 */
+	public void complexToComplex( final List< ? extends RandomAccessibleInterval< ComplexFloatType > > data, final boolean forward )
+	{
+		checkBatch( data, complexDimensions, data, complexDimensions );
+		final ArrayList< Lines > lines = new ArrayList< Lines >();
+		for ( final RandomAccessibleInterval< ComplexFloatType > img : data )
+			lines.add( complexLines( img ) );
+		final long[] zero = new long[ numDimensions ];
+		final long[] max = complexMax();
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final float scale = forward || d < numDimensions - 1 ? 1 : 1.0f / numElements( complexDimensions );
+			execute( lines, lines, d, forward ? Pass.FORWARD : Pass.INVERSE, zero, max, zero, scale );
+		}
+	}
+
+	/**
+	 * Inverse complex-to-real FFT, scaled such that a forward and an inverse transform reproduce the data.
+	 * The complex input is overwritten. If the output is smaller than {@link #realDimensions()}, the center
+	 * of the result is written (as with {@link FFTMethods#unpaddingIntervalCentered(net.imglib2.Interval, Dimensions)}),
+	 * and lines that do not contribute to it are not transformed.
+	 * 
+	 * @param input - complex-valued data of {@link #complexDimensions()}
+	 * @param output - real-valued output of at most {@link #realDimensions()}
+	 */
+	public < R extends RealType< R > > void complexToReal( final RandomAccessibleInterval< ComplexFloatType > input, final RandomAccessibleInterval< R > output )
+	{
+		complexToReal( Collections.singletonList( input ), Collections.singletonList( output ) );
+	}
+
+	/**
+	 * Inverse complex-to-real FFTs of a batch of same-sized images.
+	 */
+	public < R extends RealType< R > > void complexToReal( final List< ? extends RandomAccessibleInterval< ComplexFloatType > > inputs, final List< ? extends RandomAccessibleInterval< R > > outputs )
+	{
+		if ( inputs.size() != outputs.size() )
+			throw new IllegalArgumentException( "Number of inputs and outputs differ." );
+		checkBatch( inputs, complexDimensions, inputs, complexDimensions );
+		final long[] outputDimensions = new long[ numDimensions ];
+		if ( outputs.size() > 0 )
+			outputs.get( 0 ).dimensions( outputDimensions );
+		for ( final RandomAccessibleInterval< R > output : outputs )
+			for ( int d = 0; d < numDimensions; ++d )
+				if ( output.dimension( d ) != outputDimensions[ d ] || outputDimensions[ d ] > realDimensions[ d ] )
+					throw new IllegalArgumentException( "Outputs must have the same dimensions of at most " + Util.printCoordinates( realDimensions ) );
+
+		final ArrayList< Lines > in = new ArrayList< Lines >();
+		final ArrayList< Lines > out = new ArrayList< Lines >();
+		for ( int i = 0; i < inputs.size(); ++i )
+		{
+			in.add( complexLines( inputs.get( i ) ) );
+			out.add( realLines( outputs.get( i ) ) );
+		}
+
+		// the center of the real-valued result, only lines that are inside in all dimensions that are already transformed are needed
+		final long[] offset = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+			offset[ d ] = ( realDimensions[ d ] - outputDimensions[ d ] ) / 2;
+		final long[] min = new long[ numDimensions ];
+		final long[] max = complexMax();
+		final long[] zero = new long[ numDimensions ];
+		for ( int d = numDimensions - 1; d > 0; --d )
+		{
+			execute( in, in, d, Pass.INVERSE, min, max, zero, 1 );
+			min[ d ] = offset[ d ];
+			max[ d ] = offset[ d ] + outputDimensions[ d ] - 1;
+		}
+		execute( in, out, 0, Pass.COMPLEX_TO_REAL, min, max, offset, 1.0f / numElements( realDimensions ) );
+	}
+
+	protected long[] complexMax()
+	{
+		final long[] max = new long[ numDimensions ];
+		for ( int d = 0; d < numDimensions; ++d )
+			max[ d ] = complexDimensions[ d ] - 1;
+		return max;
+	}
+
+	protected static long numElements( final long[] dimensions )
+	{
+		long n = 1;
+		for ( final long s : dimensions )
+			n *= s;
+		return n;
+	}
+
+	protected void checkBatch( final List< ? extends Dimensions > a, final long[] aDimensions, final List< ? extends Dimensions > b, final long[] bDimensions )
+	{
+		if ( a.size() != b.size() )
+			throw new IllegalArgumentException( "Number of inputs and outputs differ." );
+		for ( int i = 0; i < a.size(); ++i )
+			for ( int d = 0; d < numDimensions; ++d )
+				if ( a.get( i ).dimension( d ) != aDimensions[ d ] || b.get( i ).dimension( d ) != bDimensions[ d ] )
+					throw new IllegalArgumentException( "Dimensions do not match the plan." );
+	}
+
+	protected static enum Pass
+	{
+		REAL_TO_COMPLEX, FORWARD, INVERSE, COMPLEX_TO_REAL
+	}
+
+	/**
+	 * Transform all lines along d inside [min, max] (ignoring dimension d) of all inputs into the outputs.
+	 * Output lines are positioned at (position - outputOffset), in dimension d the transformed line is
+	 * written starting at element outputOffset[ d ].
+	 */
+	protected void execute( final List< Lines > inputs, final List< Lines > outputs, final int d, final Pass pass, final long[] min, final long[] max, final long[] outputOffset, final float scale )
+	{
+		long numLines = 1;
+		for ( int i = 0; i < numDimensions; ++i )
+			if ( i != d )
+				numLines *= max[ i ] - min[ i ] + 1;
+		final long totalLines = numLines * inputs.size();
+		final long linesPerTask = Math.max( LINE_BLOCK, ( totalLines + numTasks - 1 ) / numTasks );
+
+		final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >();
+		for ( int i = 0; i < inputs.size(); ++i )
+			for ( long start = 0; start < numLines; start += linesPerTask )
+				futures.add( service.submit( new LineTask( inputs.get( i ), outputs.get( i ), d, pass, min, max, outputOffset, scale, start, Math.min( numLines, start + linesPerTask ) ) ) );
+
+		SimpleMultiThreading.waitFor( futures );
+	}
+
+	protected class LineTask implements Runnable
+	{
+		final Lines input, output;
+
+		final int d;
+
+		final Pass pass;
+
+		final long[] min, max, outputOffset;
+
+		final float scale;
+
+		final long start, end;
+
+		LineTask( final Lines input, final Lines output, final int d, final Pass pass, final long[] min, final long[] max, final long[] outputOffset, final float scale, final long start, final long end )
+		{
+			this.input = input;
+			this.output = output;
+			this.d = d;
+			this.pass = pass;
+			this.min = min;
+			this.max = max;
+			this.outputOffset = outputOffset;
+			this.scale = scale;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run()
+		{
+			final Lines in = input.access();
+			final Lines out = input == output ? in : output.access();
+
+			final int realSize = ( int ) realDimensions[ d ];
+			final int complexSize = ( int ) complexDimensions[ d ];
+			final FftReal fftReal;
+			final FftComplex fftComplex;
+			final float[][] inLines, outLines;
+			final int inLength, outLength;
+			switch ( pass )
+			{
+			case REAL_TO_COMPLEX:
+				fftReal = new FftReal( realSize );
+				fftComplex = null;
+				inLength = realSize;
+				outLength = complexSize;
+				inLines = new float[ LINE_BLOCK ][ realSize ];
+				outLines = new float[ LINE_BLOCK ][ 2 * complexSize ];
+				break;
+			case COMPLEX_TO_REAL:
+				fftReal = new FftReal( realSize );
+				fftComplex = null;
+				inLength = complexSize;
+				outLength = ( int ) output.dimensions[ d ];
+				inLines = new float[ LINE_BLOCK ][ 2 * complexSize ];
+				outLines = new float[ LINE_BLOCK ][ realSize ];
+				break;
+			default:
+				fftReal = null;
+				fftComplex = new FftComplex( complexSize );
+				inLength = outLength = complexSize;
+				inLines = new float[ LINE_BLOCK ][ 2 * complexSize ];
+				outLines = new float[ LINE_BLOCK ][ 2 * complexSize ];
+			}
+			final int outFrom = ( int ) outputOffset[ d ];
+
+			// the first line
+			final long[] position = new long[ numDimensions ];
+			final long[] outPosition = new long[ numDimensions ];
+			long index = start;
+			for ( int i = 0; i < numDimensions; ++i )
+			{
+				if ( i != d )
+				{
+					final long size = max[ i ] - min[ i ] + 1;
+					position[ i ] = min[ i ] + index % size;
+					index /= size;
+				}
+			}
+
+			for ( long line = start; line < end; )
+			{
+				final int numLines = d == 0 ? 1 : ( int ) Math.min( Math.min( LINE_BLOCK, max[ 0 ] - position[ 0 ] + 1 ), end - line );
+
+				in.get( position, d, numLines, inLength, inLines );
+				for ( int l = 0; l < numLines; ++l )
+				{
+					switch ( pass )
+					{
+					case REAL_TO_COMPLEX:
+						fftReal.realToComplex( -1, inLines[ l ], outLines[ l ] );
+						break;
+					case COMPLEX_TO_REAL:
+						fftReal.complexToReal( 1, inLines[ l ], outLines[ l ] );
+						break;
+					case FORWARD:
+						fftComplex.complexToComplex( -1, inLines[ l ], outLines[ l ] );
+						break;
+					default:
+						fftComplex.complexToComplex( 1, inLines[ l ], outLines[ l ] );
+					}
+				}
+				for ( int i = 0; i < numDimensions; ++i )
+					outPosition[ i ] = i == d ? 0 : position[ i ] - outputOffset[ i ];
+				out.set( outPosition, d, numLines, outFrom, outLength, outLines, scale );
+
+				// next line
+				line += numLines;
+				int i = d == 0 ? 1 : 0;
+				if ( i == numDimensions )
+					break;
+				position[ i ] += numLines;
+				while ( i < numDimensions && position[ i ] > max[ i ] )
+				{
+					position[ i ] = min[ i ];
+					++i;
+					if ( i == d )
+						++i;
+					if ( i < numDimensions )
+						++position[ i ];
+				}
+			}
+		}
+	}
+
+	protected < R extends RealType< R > > Lines realLines( final RandomAccessibleInterval< R > img )
+	{
+		final Lines lines = floatArrayLines( img, FloatType.class, 1 );
+		return lines != null ? lines : new RealRandomAccessLines< R >( img );
+	}
+
+	protected Lines complexLines( final RandomAccessibleInterval< ComplexFloatType > img )
+	{
+		final Lines lines = floatArrayLines( img, ComplexFloatType.class, 2 );
+		return lines != null ? lines : new ComplexRandomAccessLines< ComplexFloatType >( img );
+	}
+
+	/**
+	 * @return {@link FloatArrayLines} if img is an {@link ArrayImg} or {@link PlanarImg} of the given type with float[] storage, null otherwise.
+	 */
+	protected static Lines floatArrayLines( final RandomAccessibleInterval< ? > img, final Class< ? > typeClass, final int entities )
+	{
+		final long[] dimensions = new long[ img.numDimensions() ];
+		img.dimensions( dimensions );
+		if ( img instanceof ArrayImg )
+		{
+			final Object access = ( ( ArrayImg< ?, ? > ) img ).update( null );
+			if ( access instanceof FloatArray && typeClass.isInstance( ( ( ArrayImg< ?, ? > ) img ).firstElement() ) )
+				return new FloatArrayLines( new float[][] { ( ( FloatArray ) access ).getCurrentStorageArray() }, dimensions, numElements( dimensions ), entities );
+		}
+		else if ( img instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > planar = ( PlanarImg< ?, ? > ) img;
+			if ( planar.getPlane( 0 ) instanceof FloatArray && typeClass.isInstance( planar.firstElement() ) )
+			{
+				final float[][] planes = new float[ planar.numSlices() ][];
+				for ( int i = 0; i < planes.length; ++i )
+					planes[ i ] = ( ( FloatArray ) planar.getPlane( i ) ).getCurrentStorageArray();
+				final long planeSize = dimensions.length == 1 ? dimensions[ 0 ] : dimensions[ 0 ] * dimensions[ 1 ];
+				return new FloatArrayLines( planes, dimensions, planeSize, entities );
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Access to lines of n-dimensional data as interleaved float[] lines with
+	 * entities floats per element. Positions are relative to the min of the data.
+	 */
+	protected static abstract class Lines
+	{
+		final long[] dimensions;
+
+		final int entities;
+
+		Lines( final long[] dimensions, final int entities )
+		{
+			this.dimensions = dimensions;
+			this.entities = entities;
+		}
+
+		/**
+		 * @return an instance for use by one thread.
+		 */
+		abstract Lines access();
+
+		/**
+		 * Read numLines lines of length elements along d, starting at position and neighboring in dimension 0.
+		 */
+		abstract void get( long[] position, int d, int numLines, int length, float[][] lines );
+
+		/**
+		 * Write elements [from, from + length) of numLines lines along d multiplied by scale, starting at position and neighboring in dimension 0.
+		 */
+		abstract void set( long[] position, int d, int numLines, int from, int length, float[][] lines, float scale );
+	}
+
+	/**
+	 * Lines in float[] planes, the flat index of an element is the index in the plane plus the plane
+	 * number times the plane size. For {@link ArrayImg ArrayImgs} there is only one plane.
+	 */
+	protected static class FloatArrayLines extends Lines
+	{
+		final float[][] planes;
+
+		final long planeSize;
+
+		final long[] steps;
+
+		FloatArrayLines( final float[][] planes, final long[] dimensions, final long planeSize, final int entities )
+		{
+			super( dimensions, entities );
+			this.planes = planes;
+			this.planeSize = planeSize;
+			steps = new long[ dimensions.length ];
+			long step = 1;
+			for ( int d = 0; d < dimensions.length; ++d )
+			{
+				steps[ d ] = step;
+				step *= dimensions[ d ];
+			}
+		}
+
+		@Override
+		Lines access()
+		{
+			return this;
+		}
+
+		@Override
+		void get( final long[] position, final int d, final int numLines, final int length, final float[][] lines )
+		{
+			long index = 0;
+			for ( int i = 0; i < position.length; ++i )
+				index += position[ i ] * steps[ i ];
+			final int e = entities;
+			int plane = ( int ) ( index / planeSize );
+			int offset = ( int ) ( index % planeSize ) * e;
+			final long step = steps[ d ];
+			final boolean inPlane = step < planeSize;
+			final int planeStep = inPlane ? 0 : ( int ) ( step / planeSize );
+			final int offsetStep = inPlane ? ( int ) step * e : 0;
+			for ( int x = 0, j = 0; x < length; ++x, j += e )
+			{
+				final float[] data = planes[ plane ];
+				for ( int l = 0, o = offset; l < numLines; ++l )
+				{
+					final float[] line = lines[ l ];
+					for ( int k = 0; k < e; ++k, ++o )
+						line[ j + k ] = data[ o ];
+				}
+				plane += planeStep;
+				offset += offsetStep;
+			}
+		}
+
+		@Override
+		void set( final long[] position, final int d, final int numLines, final int from, final int length, final float[][] lines, final float scale )
+		{
+			long index = 0;
+			for ( int i = 0; i < position.length; ++i )
+				index += position[ i ] * steps[ i ];
+			final int e = entities;
+			int plane = ( int ) ( index / planeSize );
+			int offset = ( int ) ( index % planeSize ) * e;
+			final long step = steps[ d ];
+			final boolean inPlane = step < planeSize;
+			final int planeStep = inPlane ? 0 : ( int ) ( step / planeSize );
+			final int offsetStep = inPlane ? ( int ) step * e : 0;
+			for ( int x = from, j = from * e; x < from + length; ++x, j += e )
+			{
+				final float[] data = planes[ plane ];
+				for ( int l = 0, o = offset; l < numLines; ++l )
+				{
+					final float[] line = lines[ l ];
+					for ( int k = 0; k < e; ++k, ++o )
+						data[ o ] = line[ j + k ] * scale;
+				}
+				plane += planeStep;
+				offset += offsetStep;
+			}
+		}
+	}
+
+	protected static class RealRandomAccessLines< R extends RealType< R > > extends Lines
+	{
+		final RandomAccessibleInterval< R > img;
+
+		final RandomAccess< R > access;
+
+		final long[] min;
+
+		RealRandomAccessLines( final RandomAccessibleInterval< R > img )
+		{
+			super( dimensionsOf( img ), 1 );
+			this.img = img;
+			this.access = img.randomAccess();
+			min = new long[ img.numDimensions() ];
+			img.min( min );
+		}
+
+		@Override
+		Lines access()
+		{
+			return new RealRandomAccessLines< R >( img );
+		}
+
+		@Override
+		void get( final long[] position, final int d, final int numLines, final int length, final float[][] lines )
+		{
+			for ( int l = 0; l < numLines; ++l )
+			{
+				for ( int i = 0; i < min.length; ++i )
+					access.setPosition( min[ i ] + position[ i ], i );
+				access.move( l, 0 );
+				final float[] line = lines[ l ];
+				for ( int x = 0; x < length; ++x )
+				{
+					line[ x ] = access.get().getRealFloat();
+					access.fwd( d );
+				}
+			}
+		}
+
+		@Override
+		void set( final long[] position, final int d, final int numLines, final int from, final int length, final float[][] lines, final float scale )
+		{
+			for ( int l = 0; l < numLines; ++l )
+			{
+				for ( int i = 0; i < min.length; ++i )
+					access.setPosition( min[ i ] + position[ i ], i );
+				access.move( l, 0 );
+				final float[] line = lines[ l ];
+				for ( int x = from; x < from + length; ++x )
+				{
+					access.get().setReal( line[ x ] * scale );
+					access.fwd( d );
+				}
+			}
+		}
+	}
+
+	protected static class ComplexRandomAccessLines< C extends ComplexType< C > > extends Lines
+	{
+		final RandomAccessibleInterval< C > img;
+
+		final RandomAccess< C > access;
+
+		final long[] min;
+
+		ComplexRandomAccessLines( final RandomAccessibleInterval< C > img )
+		{
+			super( dimensionsOf( img ), 2 );
+			this.img = img;
+			this.access = img.randomAccess();
+			min = new long[ img.numDimensions() ];
+			img.min( min );
+		}
+
+		@Override
+		Lines access()
+		{
+			return new ComplexRandomAccessLines< C >( img );
+		}
+
+		@Override
+		void get( final long[] position, final int d, final int numLines, final int length, final float[][] lines )
+		{
+			for ( int l = 0; l < numLines; ++l )
+			{
+				for ( int i = 0; i < min.length; ++i )
+					access.setPosition( min[ i ] + position[ i ], i );
+				access.move( l, 0 );
+				final float[] line = lines[ l ];
+				for ( int x = 0, j = 0; x < length; ++x, j += 2 )
+				{
+					final C c = access.get();
+					line[ j ] = c.getRealFloat();
+					line[ j + 1 ] = c.getImaginaryFloat();
+					access.fwd( d );
+				}
+			}
+		}
+
+		@Override
+		void set( final long[] position, final int d, final int numLines, final int from, final int length, final float[][] lines, final float scale )
+		{
+			for ( int l = 0; l < numLines; ++l )
+			{
+				for ( int i = 0; i < min.length; ++i )
+					access.setPosition( min[ i ] + position[ i ], i );
+				access.move( l, 0 );
+				final float[] line = lines[ l ];
+				for ( int x = from, j = 2 * from; x < from + length; ++x, j += 2 )
+				{
+					access.get().setComplexNumber( line[ j ] * scale, line[ j + 1 ] * scale );
+					access.fwd( d );
+				}
+			}
+		}
+	}
+
+	protected static long[] dimensionsOf( final Dimensions dimensions )
+	{
+		final long[] d = new long[ dimensions.numDimensions() ];
+		dimensions.dimensions( d );
+		return d;
+	}
+}
@@ -0,0 +1,553 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.imglib2.Cursor;
+import net.imglib2.Dimensions;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Phase correlation of pairs of images up to a maximal size on top of an {@link FFTPlan}.
+ * 
+ * The normalized Fourier transforms of images are cached by identity, so an image that
+ * is correlated with several others (e.g. a tile in a grid) is transformed only once.
+ * The best local maxima of the phase correlation matrix are located with sub-pixel
+ * accuracy, and all shifts they may represent are verified by cross correlation in parallel.
+ * Pairs can be processed in batches, which transforms all images of a batch together.
+ * 
+ * Images are padded to the plan size with their mean value, their min is ignored.
+ * 
+ * @author agent
+ */
+public class PhaseCorrelation
+{
+	final protected FFTPlan plan;
+
+	final protected int numDimensions;
+
+	final protected long[] paddedDimensions;
+
+	protected int numPeaks = 5;
+
+	protected long[] minOverlap;
+
+	protected float normalizationThreshold = 1e-5f;
+
+	protected boolean verifyWithCrossCorrelation = true;
+
+	protected int batchSize = 16;
+
+	protected int cacheSize = 64;
+
+	final protected LinkedHashMap< Object, Img< ComplexFloatType > > cache = new LinkedHashMap< Object, Img< ComplexFloatType > >( 16, 0.75f, true )
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry< Object, Img< ComplexFloatType > > eldest )
+		{
+			return size() > cacheSize;
+		}
+	};
+
+	/**
+	 * @param maxDimensions - the largest images that will be correlated
+	 * @param service - executes the FFTs and cross correlations
+	 */
+	public PhaseCorrelation( final Dimensions maxDimensions, final ExecutorService service )
+	{
+		plan = FFTPlan.forInput( maxDimensions, service );
+		numDimensions = plan.numDimensions();
+		paddedDimensions = plan.realDimensions();
+		minOverlap = new long[ numDimensions ];
+		setMinimalPixelOverlap( 3 );
+	}
+
+	public PhaseCorrelation( final Dimensions maxDimensions )
+	{
+		this( maxDimensions, FFTPlan.sharedService() );
+	}
+
+	public void setNumPeaks( final int numPeaks ) { this.numPeaks = numPeaks; }
+	public void setNormalizationThreshold( final float normalizationThreshold ) { this.normalizationThreshold = normalizationThreshold; }
+	public void setVerifyWithCrossCorrelation( final boolean verifyWithCrossCorrelation ) { this.verifyWithCrossCorrelation = verifyWithCrossCorrelation; }
+	public void setMinimalPixelOverlap( final long... minOverlap ) { this.minOverlap = minOverlap.clone(); }
+	public void setMinimalPixelOverlap( final long minOverlap )
+	{
+		for ( int d = 0; d < numDimensions; ++d )
+			this.minOverlap[ d ] = minOverlap;
+	}
+
+	/**
+	 * Set how many pairs are transformed and verified together by {@link #compute(List, List)}.
+	 */
+	public void setBatchSize( final int batchSize ) { this.batchSize = Math.max( 1, batchSize ); }
+
+	/**
+	 * Set how many transforms are kept, each takes 8 bytes per pixel of the padded size.
+	 */
+	public void setCacheSize( final int cacheSize )
+	{
+		synchronized ( cache )
+		{
+			this.cacheSize = cacheSize;
+			final ArrayList< Object > keys = new ArrayList< Object >( cache.keySet() );
+			for ( int i = 0; i < keys.size() - cacheSize; ++i )
+				cache.remove( keys.get( i ) );
+		}
+	}
+
+	public void clearCache()
+	{
+		synchronized ( cache )
+		{
+			cache.clear();
+		}
+	}
+
+	public int getNumPeaks() { return numPeaks; }
+	public float getNormalizationThreshold() { return normalizationThreshold; }
+	public boolean getVerifyWithCrossCorrelation() { return verifyWithCrossCorrelation; }
+	public long[] getMinimalPixelOverlap() { return minOverlap.clone(); }
+	public int getBatchSize() { return batchSize; }
+	public int getCacheSize() { return cacheSize; }
+	public long[] getPaddedDimensions() { return paddedDimensions.clone(); }
+
+	/**
+	 * @return the normalized Fourier transform of img, cached
+	 */
+	public < R extends RealType< R > > Img< ComplexFloatType > transform( final RandomAccessibleInterval< R > img )
+	{
+		return transforms( Collections.singletonList( img ) ).get( 0 );
+	}
+
+	/**
+	 * @return the normalized Fourier transforms of imgs, all that are not cached are computed together.
+	 */
+	public < R extends RealType< R > > List< Img< ComplexFloatType > > transforms( final List< ? extends RandomAccessibleInterval< R > > imgs )
+	{
+		final IdentityHashMap< Object, Img< ComplexFloatType > > ffts = new IdentityHashMap< Object, Img< ComplexFloatType > >();
+		final ArrayList< RandomAccessibleInterval< R > > missing = new ArrayList< RandomAccessibleInterval< R > >();
+		synchronized ( cache )
+		{
+			for ( final RandomAccessibleInterval< R > img : imgs )
+			{
+				if ( !ffts.containsKey( img ) )
+				{
+					final Img< ComplexFloatType > fft = cache.get( img );
+					if ( fft == null )
+						missing.add( img );
+					ffts.put( img, fft );
+				}
+			}
+		}
+
+		if ( missing.size() > 0 )
+		{
+			final ArrayList< RandomAccessibleInterval< R > > padded = new ArrayList< RandomAccessibleInterval< R > >();
+			final ArrayList< Img< ComplexFloatType > > computed = new ArrayList< Img< ComplexFloatType > >();
+			for ( final RandomAccessibleInterval< R > img : missing )
+			{
+				padded.add( pad( img ) );
+				computed.add( plan.createComplexImg() );
+			}
+			plan.realToComplex( padded, computed );
+
+			synchronized ( cache )
+			{
+				for ( int i = 0; i < missing.size(); ++i )
+				{
+					normalize( computed.get( i ), normalizationThreshold );
+					ffts.put( missing.get( i ), computed.get( i ) );
+					cache.put( missing.get( i ), computed.get( i ) );
+				}
+			}
+		}
+
+		final ArrayList< Img< ComplexFloatType > > list = new ArrayList< Img< ComplexFloatType > >();
+		for ( final RandomAccessibleInterval< R > img : imgs )
+			list.add( ffts.get( img ) );
+		return list;
+	}
+
+	/**
+	 * Phase correlation of two images.
+	 * 
+	 * @return the best shifts of img2 relative to img1, best first (see {@link PhaseCorrelationPeak})
+	 */
+	public < R extends RealType< R >, S extends RealType< S > > List< PhaseCorrelationPeak > compute( final RandomAccessibleInterval< R > img1, final RandomAccessibleInterval< S > img2 )
+	{
+		return correlate(
+				Collections.singletonList( img1 ),
+				Collections.singletonList( img2 ),
+				Collections.singletonList( transform( img1 ) ),
+				Collections.singletonList( transform( img2 ) ) ).get( 0 );
+	}
+
+	/**
+	 * Phase correlation of the pairs (imgs1[i], imgs2[i]), processed in batches of {@link #getBatchSize()} pairs.
+	 * 
+	 * @return the best shifts of each pair, best first (see {@link PhaseCorrelationPeak})
+	 */
+	public < R extends RealType< R > > List< List< PhaseCorrelationPeak > > compute( final List< ? extends RandomAccessibleInterval< R > > imgs1, final List< ? extends RandomAccessibleInterval< R > > imgs2 )
+	{
+		if ( imgs1.size() != imgs2.size() )
+			throw new IllegalArgumentException( "Number of first and second images differ." );
+
+		final ArrayList< List< PhaseCorrelationPeak > > peaks = new ArrayList< List< PhaseCorrelationPeak > >();
+		for ( int start = 0; start < imgs1.size(); start += batchSize )
+		{
+			final int end = Math.min( imgs1.size(), start + batchSize );
+			final ArrayList< RandomAccessibleInterval< R > > batch = new ArrayList< RandomAccessibleInterval< R > >( imgs1.subList( start, end ) );
+			batch.addAll( imgs2.subList( start, end ) );
+			final List< Img< ComplexFloatType > > ffts = transforms( batch );
+			final int n = end - start;
+			peaks.addAll( correlate( imgs1.subList( start, end ), imgs2.subList( start, end ), ffts.subList( 0, n ), ffts.subList( n, 2 * n ) ) );
+		}
+		return peaks;
+	}
+
+	protected List< List< PhaseCorrelationPeak > > correlate(
+			final List< ? extends RandomAccessibleInterval< ? extends RealType< ? > > > imgs1,
+			final List< ? extends RandomAccessibleInterval< ? extends RealType< ? > > > imgs2,
+			final List< Img< ComplexFloatType > > ffts1,
+			final List< Img< ComplexFloatType > > ffts2 )
+	{
+		final ArrayList< Img< ComplexFloatType > > products = new ArrayList< Img< ComplexFloatType > >();
+		final ArrayList< ArrayImg< FloatType, FloatArray > > pcms = new ArrayList< ArrayImg< FloatType, FloatArray > >();
+		for ( int i = 0; i < imgs1.size(); ++i )
+		{
+			final Img< ComplexFloatType > product = plan.createComplexImg();
+			multiplyConjugate( ffts1.get( i ), ffts2.get( i ), product );
+			products.add( product );
+			pcms.add( ArrayImgs.floats( paddedDimensions ) );
+		}
+		plan.complexToReal( products, pcms );
+		products.clear();
+
+		final ArrayList< List< PhaseCorrelationPeak > > peaks = new ArrayList< List< PhaseCorrelationPeak > >();
+		final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >();
+		for ( int i = 0; i < imgs1.size(); ++i )
+		{
+			final RandomAccessibleInterval< ? extends RealType< ? > > img1 = imgs1.get( i );
+			final RandomAccessibleInterval< ? extends RealType< ? > > img2 = imgs2.get( i );
+			final ArrayList< PhaseCorrelationPeak > candidates = candidates( extractPeaks( pcms.get( i ).update( null ).getCurrentStorageArray() ), img1, img2 );
+			if ( verifyWithCrossCorrelation )
+			{
+				for ( final PhaseCorrelationPeak candidate : candidates )
+				{
+					futures.add( plan.service().submit( new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							final long[] numPixels = new long[ 1 ];
+							final double r = crossCorrelation( img1, img2, candidate.shift, numPixels );
+							candidate.setCrossCorrelation( r, numPixels[ 0 ] );
+						}
+					} ) );
+				}
+			}
+			peaks.add( candidates );
+		}
+		SimpleMultiThreading.waitFor( futures );
+
+		for ( final List< PhaseCorrelationPeak > list : peaks )
+			Collections.sort( list );
+		return peaks;
+	}
+
+	protected < R extends RealType< R > > RandomAccessibleInterval< R > pad( final RandomAccessibleInterval< R > img )
+	{
+		for ( int d = 0; d < numDimensions; ++d )
+			if ( img.dimension( d ) > paddedDimensions[ d ] )
+				throw new IllegalArgumentException( "Image is larger than the maximal dimensions." );
+
+		double sum = 0;
+		long n = 0;
+		for ( final R t : Views.iterable( img ) )
+		{
+			sum += t.getRealDouble();
+			++n;
+		}
+		final R mean = Views.iterable( img ).firstElement().createVariable();
+		mean.setReal( sum / n );
+		return Views.interval( Views.extendValue( Views.zeroMin( img ), mean ), new FinalInterval( paddedDimensions ) );
+	}
+
+	/**
+	 * Normalize all complex numbers to length 1, those shorter than threshold are set to 0.
+	 */
+	protected static void normalize( final Img< ComplexFloatType > fft, final float threshold )
+	{
+		for ( final ComplexFloatType t : fft )
+		{
+			final float re = t.getRealFloat();
+			final float im = t.getImaginaryFloat();
+			final float length = ( float ) Math.sqrt( re * re + im * im );
+			if ( length < threshold )
+				t.setComplexNumber( 0, 0 );
+			else
+				t.setComplexNumber( re / length, im / length );
+		}
+	}
+
+	/**
+	 * product = fft1 * conj( fft2 ), all with the same iteration order
+	 */
+	protected static void multiplyConjugate( final Img< ComplexFloatType > fft1, final Img< ComplexFloatType > fft2, final Img< ComplexFloatType > product )
+	{
+		final Cursor< ComplexFloatType > c1 = fft1.cursor();
+		final Cursor< ComplexFloatType > c2 = fft2.cursor();
+		final Cursor< ComplexFloatType > c = product.cursor();
+		while ( c.hasNext() )
+		{
+			final ComplexFloatType a = c1.next();
+			final ComplexFloatType b = c2.next();
+			final float ar = a.getRealFloat(), ai = a.getImaginaryFloat();
+			final float br = b.getRealFloat(), bi = b.getImaginaryFloat();
+			c.next().setComplexNumber( ar * br + ai * bi, ai * br - ar * bi );
+		}
+	}
+
+	/**
+	 * Find the {@link #getNumPeaks()} largest local maxima of the periodic phase correlation matrix.
+	 * 
+	 * @return for each peak the position in [0, paddedDimensions) followed by the sub-pixel offset, and the value
+	 */
+	protected ArrayList< double[] > extractPeaks( final float[] pcm )
+	{
+		final int n = numDimensions;
+		final long[] steps = new long[ n ];
+		for ( int d = 0, step = 1; d < n; step *= paddedDimensions[ d++ ] )
+			steps[ d ] = step;
+
+		// all 3^n - 1 neighbor offsets
+		int numNeighbors = 1;
+		for ( int d = 0; d < n; ++d )
+			numNeighbors *= 3;
+		final int[][] neighbors = new int[ numNeighbors - 1 ][ n ];
+		for ( int i = 0, j = 0; i < numNeighbors; ++i )
+		{
+			if ( i == numNeighbors / 2 )
+				continue;
+			for ( int d = 0, k = i; d < n; ++d, k /= 3 )
+				neighbors[ j ][ d ] = k % 3 - 1;
+			++j;
+		}
+
+		final int[] indices = new int[ numPeaks ];
+		final float[] values = new float[ numPeaks ];
+		int count = 0;
+		int minIndex = 0;
+		final long[] position = new long[ n ];
+		for ( int i = 0; i < pcm.length; ++i )
+		{
+			final float value = pcm[ i ];
+			if ( count < numPeaks || value > values[ minIndex ] )
+			{
+				boolean isMax = true;
+				for ( int j = 0; j < neighbors.length && isMax; ++j )
+					isMax = pcm[ index( position, neighbors[ j ], steps ) ] <= value;
+
+				if ( isMax )
+				{
+					if ( count < numPeaks )
+					{
+						indices[ count ] = i;
+						values[ count++ ] = value;
+					}
+					else
+					{
+						indices[ minIndex ] = i;
+						values[ minIndex ] = value;
+					}
+					for ( int j = 0; j < count; ++j )
+						if ( values[ j ] < values[ minIndex ] )
+							minIndex = j;
+				}
+			}
+
+			for ( int d = 0; d < n && ++position[ d ] == paddedDimensions[ d ]; ++d )
+				position[ d ] = 0;
+		}
+
+		final ArrayList< double[] > peaks = new ArrayList< double[] >();
+		final int[] offset = new int[ n ];
+		for ( int j = 0; j < count; ++j )
+		{
+			final double[] peak = new double[ 2 * n + 1 ];
+			for ( int d = 0, k = indices[ j ]; d < n; ++d )
+			{
+				position[ d ] = k % paddedDimensions[ d ];
+				k /= paddedDimensions[ d ];
+			}
+			for ( int d = 0; d < n; ++d )
+			{
+				peak[ d ] = position[ d ];
+
+				// parabola through the neighbors along d
+				offset[ d ] = -1;
+				final double vm = pcm[ index( position, offset, steps ) ];
+				offset[ d ] = 1;
+				final double vp = pcm[ index( position, offset, steps ) ];
+				offset[ d ] = 0;
+				final double curvature = vm - 2 * values[ j ] + vp;
+				if ( curvature < 0 )
+					peak[ n + d ] = Math.max( -0.5, Math.min( 0.5, 0.5 * ( vm - vp ) / curvature ) );
+			}
+			peak[ 2 * n ] = values[ j ];
+			peaks.add( peak );
+		}
+		return peaks;
+	}
+
+	protected int index( final long[] position, final int[] offset, final long[] steps )
+	{
+		long index = 0;
+		for ( int d = 0; d < numDimensions; ++d )
+			index += ( ( position[ d ] + offset[ d ] + paddedDimensions[ d ] ) % paddedDimensions[ d ] ) * steps[ d ];
+		return ( int ) index;
+	}
+
+	/**
+	 * A peak at p can mean a shift of p or p - paddedDimensions in each dimension. When verifying,
+	 * all combinations with sufficient overlap are candidates, otherwise only the shortest shift.
+	 */
+	protected ArrayList< PhaseCorrelationPeak > candidates( final List< double[] > peaks, final RandomAccessibleInterval< ? > img1, final RandomAccessibleInterval< ? > img2 )
+	{
+		final int n = numDimensions;
+		final ArrayList< PhaseCorrelationPeak > candidates = new ArrayList< PhaseCorrelationPeak >();
+		final long[] shift = new long[ n ];
+		final double[] subpixelShift = new double[ n ];
+		for ( final double[] peak : peaks )
+		{
+			if ( !verifyWithCrossCorrelation )
+			{
+				for ( int d = 0; d < n; ++d )
+				{
+					shift[ d ] = ( long ) peak[ d ];
+					if ( shift[ d ] > paddedDimensions[ d ] / 2 )
+						shift[ d ] -= paddedDimensions[ d ];
+					subpixelShift[ d ] = shift[ d ] + peak[ n + d ];
+				}
+				candidates.add( new PhaseCorrelationPeak( shift, subpixelShift, ( float ) peak[ 2 * n ] ) );
+				continue;
+			}
+
+			A: for ( int i = 0; i < 1 << n; ++i )
+			{
+				for ( int d = 0; d < n; ++d )
+				{
+					shift[ d ] = ( long ) peak[ d ];
+					if ( ( i & ( 1 << d ) ) != 0 )
+						shift[ d ] -= paddedDimensions[ d ];
+					final long overlap = Math.min( img1.dimension( d ), shift[ d ] + img2.dimension( d ) ) - Math.max( 0, shift[ d ] );
+					if ( overlap < minOverlap[ d ] )
+						continue A;
+					subpixelShift[ d ] = shift[ d ] + peak[ n + d ];
+				}
+				candidates.add( new PhaseCorrelationPeak( shift, subpixelShift, ( float ) peak[ 2 * n ] ) );
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Correlation coefficient of the overlapping pixels of img1 and img2 placed at shift relative to img1.
+	 * 
+	 * @param numPixels - receives the number of overlapping pixels in numPixels[ 0 ]
+	 */
+	public static double crossCorrelation( final RandomAccessibleInterval< ? extends RealType< ? > > img1, final RandomAccessibleInterval< ? extends RealType< ? > > img2, final long[] shift, final long[] numPixels )
+	{
+		final int n = img1.numDimensions();
+		final long[] min1 = new long[ n ];
+		final long[] max1 = new long[ n ];
+		final long[] min2 = new long[ n ];
+		final long[] max2 = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min1[ d ] = Math.max( 0, shift[ d ] );
+			max1[ d ] = Math.min( img1.dimension( d ), shift[ d ] + img2.dimension( d ) ) - 1;
+			if ( max1[ d ] < min1[ d ] )
+			{
+				numPixels[ 0 ] = 0;
+				return 0;
+			}
+			min2[ d ] = min1[ d ] - shift[ d ];
+			max2[ d ] = max1[ d ] - shift[ d ];
+		}
+
+		final Cursor< ? extends RealType< ? > > c1 = Views.flatIterable( Views.interval( Views.zeroMin( img1 ), min1, max1 ) ).cursor();
+		final Cursor< ? extends RealType< ? > > c2 = Views.flatIterable( Views.interval( Views.zeroMin( img2 ), min2, max2 ) ).cursor();
+		double sum1 = 0, sum2 = 0, sum11 = 0, sum22 = 0, sum12 = 0;
+		long count = 0;
+		while ( c1.hasNext() )
+		{
+			final double a = c1.next().getRealDouble();
+			final double b = c2.next().getRealDouble();
+			sum1 += a;
+			sum2 += b;
+			sum11 += a * a;
+			sum22 += b * b;
+			sum12 += a * b;
+			++count;
+		}
+		numPixels[ 0 ] = count;
+
+		final double avg1 = sum1 / count;
+		final double avg2 = sum2 / count;
+		final double var1 = sum11 / count - avg1 * avg1;
+		final double var2 = sum22 / count - avg2 * avg2;
+		final double coVar = sum12 / count - avg1 * avg2;
+
+		// all pixels had the same value
+		if ( var1 <= 0 || var2 <= 0 )
+			return var1 == var2 && avg1 == avg2 ? 1 : 0;
+
+		return coVar / Math.sqrt( var1 * var2 );
+	}
+}
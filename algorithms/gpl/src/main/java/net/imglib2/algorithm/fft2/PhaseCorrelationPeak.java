@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import net.imglib2.util.Util;
+
+/**
+ * A translation found by {@link PhaseCorrelation}. Image 2 is located at the
+ * shift in the coordinates of image 1, i.e. pixel x of image 2 corresponds to
+ * pixel x + shift of image 1 (both relative to their min).
+ *
+ * Peaks are ordered best first, by cross correlation if they were verified
+ * and by phase correlation otherwise.
+ *
+ * @author agent
+ */
+public class PhaseCorrelationPeak implements Comparable< PhaseCorrelationPeak >
+{
+	final protected long[] shift;
+
+	final protected double[] subpixelShift;
+
+	final protected float phaseCorrelation;
+
+	protected double crossCorrelation = Double.NaN;
+
+	protected long numPixels = 0;
+
+	public PhaseCorrelationPeak( final long[] shift, final double[] subpixelShift, final float phaseCorrelation )
+	{
+		this.shift = shift.clone();
+		this.subpixelShift = subpixelShift.clone();
+		this.phaseCorrelation = phaseCorrelation;
+	}
+
+	public void setCrossCorrelation( final double crossCorrelation, final long numPixels )
+	{
+		this.crossCorrelation = crossCorrelation;
+		this.numPixels = numPixels;
+	}
+
+	public long[] getShift() { return shift.clone(); }
+	public double[] getSubpixelShift() { return subpixelShift.clone(); }
+	public float getPhaseCorrelation() { return phaseCorrelation; }
+	public boolean isVerified() { return !Double.isNaN( crossCorrelation ); }
+
+	/**
+	 * @return the correlation coefficient of the overlapping pixels, NaN if not verified
+	 */
+	public double getCrossCorrelation() { return crossCorrelation; }
+
+	/**
+	 * @return the number of overlapping pixels, 0 if not verified
+	 */
+	public long getNumPixels() { return numPixels; }
+
+	@Override
+	public int compareTo( final PhaseCorrelationPeak o )
+	{
+		if ( isVerified() && o.isVerified() )
+		{
+			if ( crossCorrelation != o.crossCorrelation )
+				return crossCorrelation > o.crossCorrelation ? -1 : 1;
+			if ( numPixels != o.numPixels )
+				return numPixels > o.numPixels ? -1 : 1;
+		}
+		else if ( isVerified() != o.isVerified() )
+			return isVerified() ? -1 : 1;
+		return phaseCorrelation > o.phaseCorrelation ? -1 : phaseCorrelation == o.phaseCorrelation ? 0 : 1;
+	}
+
+	@Override
+	public String toString()
+	{
+		return Util.printCoordinates( subpixelShift ) + ", phaseCorrelation = " + phaseCorrelation + ", crossCorrelation = " + crossCorrelation + ", numPixels = " + numPixels;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Make sure that block-wise convolution is identical to convolving the whole image
+ *
+ * @author agent
+ */
+public class FFTConvolutionTest
+{
+	static void fillRandom( final Img< FloatType > img, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() );
+	}
+
+	static void assertImgEquals( final Img< FloatType > expected, final Img< FloatType > actual, final float eps )
+	{
+		final Cursor< FloatType > c = expected.localizingCursor();
+		final RandomAccess< FloatType > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().get(), a.get().get(), eps );
+		}
+	}
+
+	@Test
+	public void testBlocked2D()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 45, 38 );
+		final Img< FloatType > kernel = ArrayImgs.floats( 7, 5 );
+		fillRandom( img, 0 );
+		fillRandom( kernel, 1 );
+
+		final Img< FloatType > expected = ArrayImgs.floats( 45, 38 );
+		new FFTConvolution< FloatType >( img, kernel, expected, new ArrayImgFactory< ComplexFloatType >() ).run();
+
+		final Img< FloatType > blocked = ArrayImgs.floats( 45, 38 );
+		final FFTConvolution< FloatType > convolution = new FFTConvolution< FloatType >( img, kernel, blocked, new ArrayImgFactory< ComplexFloatType >() );
+		convolution.setBlockSize( 16, 10 );
+		convolution.setNumThreads( 3 );
+		convolution.run();
+
+		assertImgEquals( expected, blocked, 1e-3f );
+	}
+
+	@Test
+	public void testBlocked3DFromCellImg()
+	{
+		final Img< FloatType > img = new CellImgFactory< FloatType >( 8 ).create( new long[] { 20, 17, 13 }, new FloatType() );
+		final Img< FloatType > kernel = ArrayImgs.floats( 5, 3, 3 );
+		fillRandom( img, 2 );
+		fillRandom( kernel, 3 );
+
+		final Img< FloatType > expected = ArrayImgs.floats( 20, 17, 13 );
+		new FFTConvolution< FloatType >( img, kernel, expected, new ArrayImgFactory< ComplexFloatType >() ).run();
+
+		final Img< FloatType > blocked = ArrayImgs.floats( 20, 17, 13 );
+		final FFTConvolution< FloatType > convolution = new FFTConvolution< FloatType >( img, kernel, blocked, new ArrayImgFactory< ComplexFloatType >() );
+		convolution.setBlockSize( 8, 8, 8 );
+		convolution.run();
+		assertImgEquals( expected, blocked, 1e-3f );
+
+		/* kernel FFT is reused for the next image */
+		final Img< FloatType > img2 = ArrayImgs.floats( 20, 17, 13 );
+		fillRandom( img2, 4 );
+		final Img< FloatType > expected2 = ArrayImgs.floats( 20, 17, 13 );
+		new FFTConvolution< FloatType >( img2, kernel, expected2, new ArrayImgFactory< ComplexFloatType >() ).run();
+		final Img< ComplexFloatType > kernelFFT = convolution.kernelFFT();
+		convolution.setImg( img2 );
+		convolution.run();
+		assertSame( kernelFFT, convolution.kernelFFT() );
+		assertImgEquals( expected2, blocked, 1e-3f );
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testBlockedInPlace()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 20, 20 );
+		final FFTConvolution< FloatType > convolution = new FFTConvolution< FloatType >( img, ArrayImgs.floats( 3, 3 ) );
+		convolution.setBlockSize( 8, 8 );
+		convolution.run();
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testBlockedInPlaceInterval()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 20, 20 );
+		final Img< FloatType > kernel = ArrayImgs.floats( 3, 3 );
+		final FFTConvolution< FloatType > convolution = new FFTConvolution< FloatType >( Views.extendMirrorSingle( img ), img, Views.extendZero( kernel ), kernel, new ArrayImgFactory< ComplexFloatType >() );
+		convolution.setBlockSize( 8, 8 );
+		convolution.run();
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testBlockedSetImgToOutput()
+	{
+		final Img< FloatType > output = ArrayImgs.floats( 20, 20 );
+		final FFTConvolution< FloatType > convolution = new FFTConvolution< FloatType >( ArrayImgs.floats( 20, 20 ), ArrayImgs.floats( 3, 3 ), output, new ArrayImgFactory< ComplexFloatType >() );
+		convolution.setBlockSize( 8, 8 );
+		convolution.setImg( output );
+		convolution.run();
+	}
+
+	@Test
+	public void testBlockedSetImgAfterInPlace()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 20, 20 );
+		final Img< FloatType > kernel = ArrayImgs.floats( 3, 3 );
+		fillRandom( img, 5 );
+		fillRandom( kernel, 6 );
+
+		final Img< FloatType > expected = ArrayImgs.floats( 20, 20 );
+		new FFTConvolution< FloatType >( img, kernel, expected, new ArrayImgFactory< ComplexFloatType >() ).run();
+
+		/* the in-place output receives the convolution of the new image */
+		final Img< FloatType > output = ArrayImgs.floats( 20, 20 );
+		final FFTConvolution< FloatType > convolution = new FFTConvolution< FloatType >( output, kernel );
+		convolution.setBlockSize( 8, 8 );
+		convolution.setImg( img );
+		convolution.run();
+		assertImgEquals( expected, output, 1e-3f );
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalDimensions;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Make sure that planned and batched FFTs are identical to {@link FFT}
+ *
+ * @author agent
+ */
+public class FFTPlanTest
+{
+	final static long[] realDimensions = new long[] { 30, 12, 10 };
+
+	final static long[] complexDimensions = new long[] { 16, 12, 10 };
+
+	static void fillRandom( final Img< FloatType > img, final long seed )
+	{
+		final Random rnd = new Random( seed );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() );
+	}
+
+	static void assertComplexEquals( final RandomAccessibleInterval< ComplexFloatType > expected, final RandomAccessibleInterval< ComplexFloatType > actual, final float eps )
+	{
+		final Cursor< ComplexFloatType > c = Views.iterable( expected ).localizingCursor();
+		final RandomAccess< ComplexFloatType > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().getRealFloat(), a.get().getRealFloat(), eps );
+			assertEquals( c.get().getImaginaryFloat(), a.get().getImaginaryFloat(), eps );
+		}
+	}
+
+	static void assertRealEquals( final RandomAccessibleInterval< FloatType > expected, final RandomAccessibleInterval< FloatType > actual, final float eps )
+	{
+		final Cursor< FloatType > c = Views.iterable( expected ).localizingCursor();
+		final RandomAccess< FloatType > a = actual.randomAccess();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			a.setPosition( c );
+			assertEquals( c.get().get(), a.get().get(), eps );
+		}
+	}
+
+	static Img< ComplexFloatType > reference( final Img< FloatType > img )
+	{
+		final Img< ComplexFloatType > fft = new ArrayImgFactory< ComplexFloatType >().create( complexDimensions, new ComplexFloatType() );
+		FFT.realToComplex( img, fft );
+		return fft;
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( realDimensions );
+		fillRandom( img, 0 );
+
+		final FFTPlan plan = new FFTPlan( FinalDimensions.wrap( realDimensions ) );
+		final Img< ComplexFloatType > fft = plan.createComplexImg();
+		plan.realToComplex( img, fft );
+		assertComplexEquals( reference( img ), fft, 1e-3f );
+
+		final Img< FloatType > result = ArrayImgs.floats( realDimensions );
+		plan.complexToReal( fft, result );
+		assertRealEquals( img, result, 1e-5f );
+	}
+
+	@Test
+	public void testPlanarImgAndViews()
+	{
+		final ExecutorService service = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final Img< FloatType > img = new PlanarImgFactory< FloatType >().create( realDimensions, new FloatType() );
+			fillRandom( img, 1 );
+
+			final FFTPlan plan = new FFTPlan( FinalDimensions.wrap( realDimensions ), service );
+			final Img< ComplexFloatType > fft = new PlanarImgFactory< ComplexFloatType >().create( complexDimensions, new ComplexFloatType() );
+			plan.realToComplex( img, fft );
+			assertComplexEquals( reference( img ), fft, 1e-3f );
+
+			// generic access through a translated view of a larger image
+			final Img< FloatType > large = ArrayImgs.floats( 40, 20, 15 );
+			final RandomAccessibleInterval< FloatType > view = Views.interval( Views.translate( large, 3, -2, 1 ), new long[] { 5, 0, 2 }, new long[] { 34, 11, 11 } );
+			final Cursor< FloatType > c = Views.iterable( view ).cursor();
+			final Cursor< FloatType > i = img.cursor();
+			while ( c.hasNext() )
+				c.next().set( i.next() );
+			final Img< ComplexFloatType > fftView = new ArrayImgFactory< ComplexFloatType >().create( complexDimensions, new ComplexFloatType() );
+			plan.realToComplex( view, Views.translate( fftView, 7, 7, 7 ) );
+			assertComplexEquals( fft, fftView, 1e-3f );
+
+			plan.complexToComplex( fft, false );
+			plan.complexToComplex( fft, true );
+			assertComplexEquals( fftView, fft, 1e-3f );
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	@Test
+	public void testBatchAndUnpadding()
+	{
+		final FFTPlan plan = new FFTPlan( FinalDimensions.wrap( realDimensions ) );
+		final ArrayList< Img< FloatType > > imgs = new ArrayList< Img< FloatType > >();
+		final ArrayList< Img< ComplexFloatType > > ffts = new ArrayList< Img< ComplexFloatType > >();
+		final ArrayList< Img< FloatType > > results = new ArrayList< Img< FloatType > >();
+		for ( int i = 0; i < 5; ++i )
+		{
+			final Img< FloatType > img = ArrayImgs.floats( realDimensions );
+			fillRandom( img, 10 + i );
+			imgs.add( img );
+			ffts.add( plan.createComplexImg() );
+			results.add( ArrayImgs.floats( 21, 7, 5 ) );
+		}
+		plan.realToComplex( imgs, ffts );
+
+		for ( int i = 0; i < imgs.size(); ++i )
+		{
+			final Img< ComplexFloatType > expected = reference( imgs.get( i ) );
+			assertComplexEquals( expected, ffts.get( i ), 1e-3f );
+			final Img< FloatType > unpadded = ArrayImgs.floats( 21, 7, 5 );
+			FFT.complexToRealUnpad( expected, unpadded );
+			results.set( i, unpadded );
+		}
+
+		final ArrayList< Img< FloatType > > cropped = new ArrayList< Img< FloatType > >();
+		for ( int i = 0; i < imgs.size(); ++i )
+			cropped.add( ArrayImgs.floats( 21, 7, 5 ) );
+		plan.complexToReal( ffts, cropped );
+		for ( int i = 0; i < imgs.size(); ++i )
+			assertRealEquals( results.get( i ), cropped.get( i ), 1e-5f );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testUnsupportedSize()
+	{
+		new FFTPlan( new FinalDimensions( 31, 12 ) );
+	}
+}
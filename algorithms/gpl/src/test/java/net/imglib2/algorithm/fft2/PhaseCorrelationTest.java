@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package net.imglib2.algorithm.fft2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.FinalDimensions;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Find known shifts between tiles of a random image
+ *
+ * @author agent
+ */
+public class PhaseCorrelationTest
+{
+	static Img< FloatType > randomImg( final long seed, final long... dimensions )
+	{
+		final Img< FloatType > img = ArrayImgs.floats( dimensions );
+		final Random rnd = new Random( seed );
+		for ( final FloatType t : img )
+			t.set( rnd.nextFloat() );
+		return img;
+	}
+
+	static RandomAccessibleInterval< FloatType > tile( final Img< FloatType > img, final long x, final long y, final long w, final long h )
+	{
+		return Views.interval( img, new long[] { x, y }, new long[] { x + w - 1, y + h - 1 } );
+	}
+
+	@Test
+	public void testPair()
+	{
+		final Img< FloatType > img = randomImg( 0, 120, 90 );
+		final RandomAccessibleInterval< FloatType > tile1 = tile( img, 0, 5, 60, 50 );
+		final RandomAccessibleInterval< FloatType > tile2 = tile( img, 37, 0, 60, 50 );
+
+		final PhaseCorrelation pc = new PhaseCorrelation( new FinalDimensions( 60, 50 ) );
+		final List< PhaseCorrelationPeak > peaks = pc.compute( tile1, tile2 );
+		final PhaseCorrelationPeak best = peaks.get( 0 );
+		assertArrayEquals( new long[] { 37, -5 }, best.getShift() );
+		assertEquals( 1.0, best.getCrossCorrelation(), 1e-6 );
+		assertEquals( 23 * 45, best.getNumPixels() );
+		assertEquals( 37, best.getSubpixelShift()[ 0 ], 0.1 );
+		assertEquals( -5, best.getSubpixelShift()[ 1 ], 0.1 );
+
+		// the other direction
+		final PhaseCorrelationPeak back = pc.compute( tile2, tile1 ).get( 0 );
+		assertArrayEquals( new long[] { -37, 5 }, back.getShift() );
+	}
+
+	@Test
+	public void testGridWithCache()
+	{
+		final Img< FloatType > img = randomImg( 1, 200, 100 );
+		final ArrayList< RandomAccessibleInterval< FloatType > > tiles = new ArrayList< RandomAccessibleInterval< FloatType > >();
+		for ( int x = 0; x < 4; ++x )
+			tiles.add( tile( img, 45 * x + ( x % 2 ), x % 3, 60, 40 ) );
+
+		final PhaseCorrelation pc = new PhaseCorrelation( new FinalDimensions( 60, 40 ) );
+		pc.setBatchSize( 2 );
+		final ArrayList< RandomAccessibleInterval< FloatType > > imgs1 = new ArrayList< RandomAccessibleInterval< FloatType > >();
+		final ArrayList< RandomAccessibleInterval< FloatType > > imgs2 = new ArrayList< RandomAccessibleInterval< FloatType > >();
+		for ( int i = 0; i < tiles.size() - 1; ++i )
+		{
+			imgs1.add( tiles.get( i ) );
+			imgs2.add( tiles.get( i + 1 ) );
+		}
+		final List< List< PhaseCorrelationPeak > > peaks = pc.compute( imgs1, imgs2 );
+		for ( int i = 0; i < imgs1.size(); ++i )
+		{
+			final long[] expected = new long[] {
+					imgs2.get( i ).min( 0 ) - imgs1.get( i ).min( 0 ),
+					imgs2.get( i ).min( 1 ) - imgs1.get( i ).min( 1 ) };
+			assertArrayEquals( expected, peaks.get( i ).get( 0 ).getShift() );
+		}
+
+		// all tiles were transformed once
+		for ( final RandomAccessibleInterval< FloatType > tile : tiles )
+			assertSame( pc.transform( tile ), pc.transform( tile ) );
+		pc.setCacheSize( 1 );
+		assertTrue( pc.transform( tiles.get( 0 ) ) != pc.transform( tiles.get( 1 ) ) );
+	}
+
+	@Test
+	public void testWithoutVerification()
+	{
+		final Img< FloatType > img = randomImg( 2, 100, 100 );
+		final PhaseCorrelation pc = new PhaseCorrelation( new FinalDimensions( 64, 64 ) );
+		pc.setVerifyWithCrossCorrelation( false );
+		pc.setNumPeaks( 3 );
+		final List< PhaseCorrelationPeak > peaks = pc.compute( tile( img, 10, 20, 64, 64 ), tile( img, 4, 29, 64, 64 ) );
+		assertEquals( 3, peaks.size() );
+		assertArrayEquals( new long[] { -6, 9 }, peaks.get( 0 ).getShift() );
+		assertTrue( !peaks.get( 0 ).isVerified() );
+	}
+}
@@ -0,0 +1,510 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import net.imglib2.EuclideanSpace;
+import net.imglib2.RealInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.Sampler;
+import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.util.KthElement;
+
+/**
+ * KDTree to access values at RealLocalizable positions, stored in flat
+ * arrays instead of node objects.
+ * 
+ * <p>
+ * The tree is left-balanced and laid out like a binary heap: the children of
+ * node {@code i} are {@code 2i+1} and {@code 2i+2}, and nodes at depth
+ * {@code k} divide the space along dimension {@code k % n}. The coordinates of
+ * node {@code i} are {@code positions[i*n]} to {@code positions[i*n+n-1]}, its
+ * value is {@code values.get(valueIndex(i))}. The left subtree of a node holds
+ * coordinates smaller or equal, the right subtree coordinates larger or equal
+ * to the node's coordinate in its split dimension.
+ * </p>
+ * 
+ * <p>
+ * The tree is built by median partitioning with {@link KthElement}. If an
+ * {@link ExecutorService} is given, the nodes of the top levels are partitioned
+ * in parallel and the remaining subtrees are built as independent tasks.
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the tree.
+ * 
+ * @author agent
+ */
+public class FlatKDTree< T > implements EuclideanSpace, RealInterval
+{
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * coordinates of all nodes in heap order, n per node.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * index of the value of each node in {@link #values}.
+	 */
+	final protected int[] valueIndices;
+
+	final protected List< T > values;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param service
+	 *            executes the construction in parallel, may be null
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions, final ExecutorService service )
+	{
+		this( values, flatten( positions ), positions.get( 0 ).numDimensions(), service );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null );
+	}
+
+	/**
+	 * Construct a FlatKDTree from flat coordinates.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param coordinates
+	 *            the coordinates of value {@code i} are
+	 *            {@code coordinates[i*numDimensions]} to
+	 *            {@code coordinates[i*numDimensions+numDimensions-1]}. The
+	 *            array is not modified.
+	 * @param numDimensions
+	 *            the number of dimensions
+	 * @param service
+	 *            executes the construction in parallel, may be null
+	 */
+	public FlatKDTree( final List< T > values, final double[] coordinates, final int numDimensions, final ExecutorService service )
+	{
+		n = numDimensions;
+		size = coordinates.length / n;
+		assert values.size() == size;
+		if ( size == 0 )
+			throw new IllegalArgumentException( "Cannot build a KDTree without points." );
+		if ( ( long ) size * n > Integer.MAX_VALUE - 8 )
+			throw new IllegalArgumentException( "Cannot build a KDTree with more than 2^31 coordinates." );
+
+		this.values = values;
+		positions = new double[ size * n ];
+		valueIndices = new int[ size ];
+
+		min = new double[ n ];
+		max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int i = 0, k = 0; i < size; ++i )
+		{
+			for ( int d = 0; d < n; ++d, ++k )
+			{
+				final double x = coordinates[ k ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+
+		new Builder( coordinates ).build( service );
+	}
+
+	protected static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final double[] coordinates = new double[ positions.size() * n ];
+		final double[] position = new double[ n ];
+		int k = 0;
+		for ( final L p : positions )
+		{
+			assert p.numDimensions() == n;
+			p.localize( position );
+			System.arraycopy( position, 0, coordinates, k, n );
+			k += n;
+		}
+		return coordinates;
+	}
+
+	/**
+	 * @return the size of the left subtree of a left-balanced tree with m
+	 *         nodes
+	 */
+	protected static int leftSize( final int m )
+	{
+		if ( m <= 1 )
+			return 0;
+		final int h = 31 - Integer.numberOfLeadingZeros( m );
+		final int lastLevelHalf = 1 << ( h - 1 );
+		final int lastLevel = m - ( ( 1 << h ) - 1 );
+		return lastLevelHalf - 1 + Math.min( lastLevel, lastLevelHalf );
+	}
+
+	/**
+	 * Builds the tree by recursively partitioning a permutation of value
+	 * indices at the median coordinate. Subarrays of the permutation and keys
+	 * belonging to different subtrees are disjoint, so subtrees can be built
+	 * in parallel.
+	 */
+	protected class Builder
+	{
+		final double[] coordinates;
+
+		final int[] permutation;
+
+		final double[] keys;
+
+		Builder( final double[] coordinates )
+		{
+			this.coordinates = coordinates;
+			permutation = new int[ size ];
+			keys = new double[ size ];
+
+			// a random order keeps partitioning linear for sorted inputs
+			final Random rnd = new Random( 0 );
+			for ( int i = 0; i < size; ++i )
+			{
+				final int j = rnd.nextInt( i + 1 );
+				permutation[ i ] = permutation[ j ];
+				permutation[ j ] = i;
+			}
+		}
+
+		/**
+		 * Make node from the sub-permutation [i,j] split at the median along d.
+		 * 
+		 * @return the index of the median in the permutation
+		 */
+		int makeNode( final int node, final int i, final int j, final int d )
+		{
+			final int k = i + leftSize( j - i + 1 );
+			for ( int l = i; l <= j; ++l )
+				keys[ l ] = coordinates[ permutation[ l ] * n + d ];
+			KthElement.kthElement( i, j, k, keys, permutation );
+
+			final int index = permutation[ k ];
+			System.arraycopy( coordinates, index * n, positions, node * n, n );
+			valueIndices[ node ] = index;
+			return k;
+		}
+
+		/**
+		 * Make node and add its non-empty children (node, i, j) to children.
+		 */
+		void makeNode( final int node, final int i, final int j, final int d, final List< int[] > children )
+		{
+			final int k = makeNode( node, i, j, d );
+			if ( k > i )
+				children.add( new int[] { 2 * node + 1, i, k - 1 } );
+			if ( k < j )
+				children.add( new int[] { 2 * node + 2, k + 1, j } );
+		}
+
+		void makeSubtree( final int node, final int i, final int j, final int d )
+		{
+			final int k = makeNode( node, i, j, d );
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			if ( k > i )
+				makeSubtree( 2 * node + 1, i, k - 1, dChild );
+			if ( k < j )
+				makeSubtree( 2 * node + 2, k + 1, j, dChild );
+		}
+
+		void build( final ExecutorService service )
+		{
+			if ( service == null )
+			{
+				makeSubtree( 0, 0, size - 1, 0 );
+				return;
+			}
+
+			final int numTasks = 4 * ( service instanceof ThreadPoolExecutor ? Math.max( 1, ( ( ThreadPoolExecutor ) service ).getMaximumPoolSize() ) : Runtime.getRuntime().availableProcessors() );
+
+			// partition the top levels, all nodes of a level in parallel
+			List< int[] > level = new ArrayList< int[] >();
+			level.add( new int[] { 0, 0, size - 1 } );
+			int d = 0;
+			while ( level.size() > 0 && level.size() < numTasks )
+			{
+				final int depth = d;
+				final ArrayList< List< int[] > > children = new ArrayList< List< int[] > >();
+				final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >();
+				for ( final int[] range : level )
+				{
+					final ArrayList< int[] > c = new ArrayList< int[] >();
+					children.add( c );
+					futures.add( service.submit( new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							makeNode( range[ 0 ], range[ 1 ], range[ 2 ], depth, c );
+						}
+					} ) );
+				}
+				SimpleMultiThreading.waitFor( futures );
+				level = new ArrayList< int[] >();
+				for ( final List< int[] > c : children )
+					level.addAll( c );
+				d = ( d + 1 == n ) ? 0 : d + 1;
+			}
+
+			// build the remaining subtrees as independent tasks
+			final int depth = d;
+			final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >();
+			for ( final int[] range : level )
+			{
+				futures.add( service.submit( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						makeSubtree( range[ 0 ], range[ 1 ], range[ 2 ], depth );
+					}
+				} ) );
+			}
+			SimpleMultiThreading.waitFor( futures );
+		}
+	}
+
+	/**
+	 * @return the number of nodes in the tree.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the coordinates of all nodes in heap order, n per node. This is
+	 *         the internal array and must not be modified.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return the index of the value of node i in the list of values.
+	 */
+	public int valueIndex( final int i )
+	{
+		return valueIndices[ i ];
+	}
+
+	/**
+	 * @return the value of node i.
+	 */
+	public T get( final int i )
+	{
+		return values.get( valueIndices[ i ] );
+	}
+
+	/**
+	 * @return a new reference to the root node.
+	 */
+	public NodeRef createNodeRef()
+	{
+		return new NodeRef( 0 );
+	}
+
+	/**
+	 * A reference to a node, providing its position and value. Searches
+	 * re-point these instead of allocating results.
+	 */
+	public class NodeRef implements RealLocalizable, Sampler< T >
+	{
+		protected int node;
+
+		protected NodeRef( final int node )
+		{
+			this.node = node;
+		}
+
+		public int getNode()
+		{
+			return node;
+		}
+
+		public void setNode( final int node )
+		{
+			this.node = node;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, node * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ node * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return values.get( valueIndices[ node ] );
+		}
+
+		@Override
+		public NodeRef copy()
+		{
+			return new NodeRef( node );
+		}
+
+		@Override
+		public String toString()
+		{
+			final StringBuilder s = new StringBuilder( "node " + node + " (" );
+			for ( int d = 0; d < n; ++d )
+				s.append( d == 0 ? "" : ", " ).append( positions[ node * n + d ] );
+			return s.append( ")" ).toString();
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+}
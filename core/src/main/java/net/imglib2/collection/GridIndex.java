@@ -0,0 +1,444 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import net.imglib2.EuclideanSpace;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * A mutable spatial index of values at RealLocalizable positions, hashing
+ * positions into the cells of a uniform grid. Inserting, moving and removing
+ * an {@link Entry} takes constant time, so an index that changes a little
+ * between searches (e.g. detections in consecutive frames) does not have to be
+ * rebuilt.
+ * 
+ * <p>
+ * The cell size should be in the order of the typical nearest neighbor
+ * distance or search radius. The index is not thread-safe for modification;
+ * concurrent searches are fine while it is not modified.
+ * </p>
+ * 
+ * @param <T>
+ *            type of values stored in the index.
+ * 
+ * @author agent
+ */
+public class GridIndex< T > implements EuclideanSpace
+{
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	final protected double[] cellSize;
+
+	final protected HashMap< CellKey, Cell< T > > cells = new HashMap< CellKey, Cell< T > >();
+
+	/**
+	 * re-used for looking up cells on insertion.
+	 */
+	final protected CellKey lookup;
+
+	protected int size = 0;
+
+	/**
+	 * A value at a position in the index. Entries are returned by the searches,
+	 * they stay valid until they are removed.
+	 */
+	public static class Entry< T > implements RealLocalizable, Sampler< T >
+	{
+		protected final double[] position;
+
+		protected T value;
+
+		protected Cell< T > cell = null;
+
+		protected int index = -1;
+
+		protected Entry( final T value, final double[] position )
+		{
+			this.value = value;
+			this.position = position;
+		}
+
+		public void set( final T value )
+		{
+			this.value = value;
+		}
+
+		/**
+		 * @return whether this entry is in the index.
+		 */
+		public boolean isIndexed()
+		{
+			return cell != null;
+		}
+
+		@Override
+		public T get()
+		{
+			return value;
+		}
+
+		/**
+		 * @return this entry.
+		 */
+		@Override
+		public Entry< T > copy()
+		{
+			return this;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return position.length;
+		}
+
+		@Override
+		public void localize( final float[] p )
+		{
+			for ( int d = 0; d < position.length; ++d )
+				p[ d ] = ( float ) position[ d ];
+		}
+
+		@Override
+		public void localize( final double[] p )
+		{
+			System.arraycopy( position, 0, p, 0, position.length );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) position[ d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return position[ d ];
+		}
+
+		/**
+		 * @return the square distance to pos.
+		 */
+		public double squDistanceTo( final double[] pos )
+		{
+			double sum = 0;
+			for ( int d = 0; d < position.length; ++d )
+			{
+				final double diff = position[ d ] - pos[ d ];
+				sum += diff * diff;
+			}
+			return sum;
+		}
+
+		@Override
+		public String toString()
+		{
+			return Arrays.toString( position ) + " | " + value;
+		}
+	}
+
+	/**
+	 * Grid cell coordinates as a hash key. Searches re-use one instance for
+	 * look-ups.
+	 */
+	public static final class CellKey
+	{
+		protected final long[] cell;
+
+		protected int hash;
+
+		public CellKey( final int n )
+		{
+			cell = new long[ n ];
+		}
+
+		protected CellKey( final long[] cell )
+		{
+			this.cell = cell;
+			update();
+		}
+
+		public long get( final int d )
+		{
+			return cell[ d ];
+		}
+
+		public void set( final long c, final int d )
+		{
+			cell[ d ] = c;
+		}
+
+		/**
+		 * Recompute the hash code after changing the coordinates.
+		 */
+		public void update()
+		{
+			hash = Arrays.hashCode( cell );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			return o instanceof CellKey && ( ( CellKey ) o ).hash == hash && Arrays.equals( ( ( CellKey ) o ).cell, cell );
+		}
+	}
+
+	/**
+	 * The entries in one grid cell.
+	 */
+	public static final class Cell< T >
+	{
+		protected final CellKey key;
+
+		protected final ArrayList< Entry< T > > entries = new ArrayList< Entry< T > >();
+
+		protected Cell( final CellKey key )
+		{
+			this.key = key;
+		}
+
+		public CellKey getKey()
+		{
+			return key;
+		}
+
+		public int size()
+		{
+			return entries.size();
+		}
+
+		public Entry< T > get( final int i )
+		{
+			return entries.get( i );
+		}
+	}
+
+	/**
+	 * @param cellSize
+	 *            the size of grid cells in each dimension
+	 */
+	public GridIndex( final double... cellSize )
+	{
+		n = cellSize.length;
+		this.cellSize = cellSize.clone();
+		lookup = new CellKey( n );
+	}
+
+	/**
+	 * Create an index and bulk load values.
+	 * 
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param cellSize
+	 *            the size of grid cells in each dimension
+	 */
+	public < L extends RealLocalizable > GridIndex( final List< T > values, final List< L > positions, final double... cellSize )
+	{
+		this( cellSize );
+		insertAll( values, positions );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return the number of entries in the index.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public int numCells()
+	{
+		return cells.size();
+	}
+
+	public double cellSize( final int d )
+	{
+		return cellSize[ d ];
+	}
+
+	/**
+	 * @return the cell coordinate of position x in dimension d.
+	 */
+	public long cell( final double x, final int d )
+	{
+		return ( long ) Math.floor( x / cellSize[ d ] );
+	}
+
+	/**
+	 * @return the non-empty cell at key, or null.
+	 */
+	public Cell< T > getCell( final CellKey key )
+	{
+		return cells.get( key );
+	}
+
+	/**
+	 * @return all non-empty cells.
+	 */
+	public Collection< Cell< T > > getCells()
+	{
+		return cells.values();
+	}
+
+	/**
+	 * Insert a value at a position.
+	 * 
+	 * @return the entry, which is needed to move or remove the value.
+	 */
+	public Entry< T > insert( final T value, final RealLocalizable position )
+	{
+		final double[] p = new double[ n ];
+		position.localize( p );
+		final Entry< T > entry = new Entry< T >( value, p );
+		add( entry );
+		return entry;
+	}
+
+	/**
+	 * Bulk load values.
+	 * 
+	 * @return the entries in the order of the values.
+	 */
+	public < L extends RealLocalizable > ArrayList< Entry< T > > insertAll( final List< T > values, final List< L > positions )
+	{
+		assert values.size() == positions.size();
+		final ArrayList< Entry< T > > entries = new ArrayList< Entry< T > >( values.size() );
+		for ( int i = 0; i < values.size(); ++i )
+			entries.add( insert( values.get( i ), positions.get( i ) ) );
+		return entries;
+	}
+
+	/**
+	 * Remove an entry.
+	 * 
+	 * @return false if the entry was not in the index.
+	 */
+	public boolean remove( final Entry< T > entry )
+	{
+		final Cell< T > cell = entry.cell;
+		if ( cell == null )
+			return false;
+
+		// swap with the last entry of the cell
+		final ArrayList< Entry< T > > entries = cell.entries;
+		final Entry< T > last = entries.remove( entries.size() - 1 );
+		if ( last != entry )
+		{
+			entries.set( entry.index, last );
+			last.index = entry.index;
+		}
+		if ( entries.isEmpty() )
+			cells.remove( cell.key );
+
+		entry.cell = null;
+		entry.index = -1;
+		--size;
+		return true;
+	}
+
+	/**
+	 * Move an entry to a new position.
+	 */
+	public void move( final Entry< T > entry, final RealLocalizable position )
+	{
+		final boolean indexed = remove( entry );
+		position.localize( entry.position );
+		if ( indexed )
+			add( entry );
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear()
+	{
+		for ( final Cell< T > cell : cells.values() )
+		{
+			for ( final Entry< T > entry : cell.entries )
+			{
+				entry.cell = null;
+				entry.index = -1;
+			}
+		}
+		cells.clear();
+		size = 0;
+	}
+
+	protected void add( final Entry< T > entry )
+	{
+		for ( int d = 0; d < n; ++d )
+			lookup.set( cell( entry.position[ d ], d ), d );
+		lookup.update();
+		Cell< T > cell = cells.get( lookup );
+		if ( cell == null )
+		{
+			final CellKey key = new CellKey( lookup.cell.clone() );
+			cell = new Cell< T >( key );
+			cells.put( key, cell );
+		}
+		entry.cell = cell;
+		entry.index = cell.entries.size();
+		cell.entries.add( entry );
+		++size;
+	}
+}
@@ -37,6 +37,11 @@
 
 package net.imglib2.display;
 
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import net.imglib2.Point;
 import net.imglib2.RandomAccessible;
 import net.imglib2.converter.Converter;
@@ -54,6 +59,19 @@ abstract public class AbstractXYProjector< A, B > extends Point implements Proje
 	final protected long[] min;
 	final protected long[] max;
 
+	/**
+	 * renders bands of rows in parallel if not null.
+	 */
+	protected ExecutorService executorService = null;
+
+	protected int numTasks = 1;
+
+	/**
+	 * checked before each row, mapping stops early if set. Stays set until
+	 * {@link #setCanceled(boolean) cleared} by the caller.
+	 */
+	protected volatile boolean canceled = false;
+
 	public AbstractXYProjector( final RandomAccessible< A > source, final Converter< ? super A, B > converter )
 	{
 		super( Math.max( 2, source.numDimensions() ) );
@@ -66,4 +84,105 @@ abstract public class AbstractXYProjector< A, B > extends Point implements Proje
 		min = new long[ n ];
 		max = new long[ n ];
 	}
+
+	/**
+	 * Render the target in numTasks bands of rows that are mapped
+	 * concurrently by the given {@link ExecutorService}, or in the calling
+	 * thread if executorService is null.  The executor can be shared by
+	 * several projectors.  The {@link Converter} is then called concurrently
+	 * and must not have mutable state.
+	 */
+	public void setExecutorService( final ExecutorService executorService, final int numTasks )
+	{
+		this.executorService = executorService;
+		this.numTasks = Math.max( 1, numTasks );
+	}
+
+	public ExecutorService getExecutorService()
+	{
+		return executorService;
+	}
+
+	public int getNumTasks()
+	{
+		return numTasks;
+	}
+
+	/**
+	 * Cancel or re-enable mapping.  While canceled, {@link #map()} returns
+	 * early, leaving the remaining rows of the target untouched.  The flag is
+	 * not reset by {@link #map()}, such that a frame canceled from another
+	 * thread before mapping started is not rendered anyway.  Callers that
+	 * cancel a frame must call {@code setCanceled( false )} before mapping
+	 * the next one, otherwise nothing is rendered from then on.
+	 */
+	public void setCanceled( final boolean canceled )
+	{
+		this.canceled = canceled;
+	}
+
+	public boolean isCanceled()
+	{
+		return canceled;
+	}
+
+	/**
+	 * Map the target rows from minY to maxY, both inclusive.  Called
+	 * concurrently for disjoint bands of rows by {@link #mapBands(long, long)},
+	 * implementations must not modify shared state.
+	 */
+	abstract protected void mapRows( final long minY, final long maxY );
+
+	/**
+	 * Split the rows from minY to maxY, both inclusive, into bands and
+	 * {@link #mapRows(long, long) map} them on the {@link ExecutorService}.
+	 * Returns when all bands are done.
+	 */
+	protected void mapBands( final long minY, final long maxY )
+	{
+		final long height = maxY - minY + 1;
+		final int numBands = executorService == null ? 1 : ( int ) Math.min( numTasks, height );
+		if ( numBands <= 1 )
+		{
+			mapRows( minY, maxY );
+			return;
+		}
+
+		final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >( numBands );
+		for ( int i = 0; i < numBands; ++i )
+		{
+			final long bandMinY = minY + i * height / numBands;
+			final long bandMaxY = minY + ( i + 1 ) * height / numBands - 1;
+			futures.add( executorService.submit( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					mapRows( bandMinY, bandMaxY );
+				}
+			} ) );
+		}
+		try
+		{
+			for ( final Future< ? > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			for ( final Future< ? > future : futures )
+				future.cancel( true );
+			Thread.currentThread().interrupt();
+		}
+		catch ( final ExecutionException e )
+		{
+			for ( final Future< ? > future : futures )
+				future.cancel( true );
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
 }
@@ -79,6 +79,12 @@ public class CompositeXYProjector< A > extends XYProjector< A, ARGBType >
 
 	protected final Converter< A, ARGBType >[] currentConverters;
 
+	/**
+	 * number of active entries in {@link #currentPositions} and
+	 * {@link #currentConverters}, updated by {@link #map()}.
+	 */
+	protected int currentSize;
+
 	@SuppressWarnings( "unchecked" )
 	public CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final ArrayList< Converter< A, ARGBType >> converters, final int dimIndex )
 	{
@@ -149,69 +155,87 @@ public class CompositeXYProjector< A > extends XYProjector< A, ARGBType >
 		max[ 0 ] = target.max( 0 );
 		max[ 1 ] = target.max( 1 );
 
+		if ( dimIndex >= 0 )
+		{
+			currentSize = updateCurrentArrays();
+
+			min[ dimIndex ] = max[ dimIndex ] = currentPositions[ 0 ];
+			for ( int i = 1; i < currentSize; ++i )
+				if ( currentPositions[ i ] < min[ dimIndex ] )
+					min[ dimIndex ] = currentPositions[ i ];
+				else if ( currentPositions[ i ] > max[ dimIndex ] )
+					max[ dimIndex ] = currentPositions[ i ];
+		}
+
+		mapTarget();
+	}
+
+	@Override
+	protected void mapRows( final long minY, final long maxY )
+	{
+		final long[] bandMin = min.clone();
+		final long[] bandMax = max.clone();
+		bandMin[ 1 ] = minY;
+		bandMax[ 1 ] = maxY;
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( bandMin, bandMax ) );
+		sourceRandomAccess.setPosition( bandMin );
+
 		if ( dimIndex < 0 )
 		{
 			// there is only converter[0]
 			// use it to map the current position
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-			sourceRandomAccess.setPosition( min );
-			mapSingle( sourceRandomAccess, converters.get( 0 ) );
+			mapSingle( sourceRandomAccess, converters.get( 0 ), minY, maxY );
 			return;
 		}
 
-		final int size = updateCurrentArrays();
-
-		min[ dimIndex ] = max[ dimIndex ] = currentPositions[ 0 ];
-		for ( int i = 1; i < size; ++i )
-			if ( currentPositions[ i ] < min[ dimIndex ] )
-				min[ dimIndex ] = currentPositions[ i ];
-			else if ( currentPositions[ i ] > max[ dimIndex ] )
-				max[ dimIndex ] = currentPositions[ i ];
-		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-		sourceRandomAccess.setPosition( min );
+		final int size = currentSize;
 
 		if ( size == 1 )
 		{
 			// there is only one active converter: converter[0]
 			// use it to map the slice at currentPositions[0]
-			mapSingle( sourceRandomAccess, currentConverters[ 0 ] );
+			mapSingle( sourceRandomAccess, currentConverters[ 0 ], minY, maxY );
 			return;
 		}
 
-		final Cursor< ARGBType > targetCursor = target.localizingCursor();
+		final Cursor< ARGBType > targetCursor = targetCursor( minY );
 		final ARGBType bi = new ARGBType();
+		final long width = target.dimension( 0 );
 
-		while ( targetCursor.hasNext() )
+		for ( long y = minY; y <= maxY && !canceled; ++y )
 		{
-			targetCursor.fwd();
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-			int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
-			for ( int i = 0; i < size; i++ )
+			for ( long x = 0; x < width; ++x )
 			{
-				sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
-				currentConverters[ i ].convert( sourceRandomAccess.get(), bi );
-
-				// accumulate converted result
-				final int value = bi.get();
-				final int a = ARGBType.alpha( value );
-				final int r = ARGBType.red( value );
-				final int g = ARGBType.green( value );
-				final int b = ARGBType.blue( value );
-				aSum += a;
-				rSum += r;
-				gSum += g;
-				bSum += b;
+				targetCursor.fwd();
+				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
+				int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+				for ( int i = 0; i < size; i++ )
+				{
+					sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
+					currentConverters[ i ].convert( sourceRandomAccess.get(), bi );
+
+					// accumulate converted result
+					final int value = bi.get();
+					final int a = ARGBType.alpha( value );
+					final int r = ARGBType.red( value );
+					final int g = ARGBType.green( value );
+					final int b = ARGBType.blue( value );
+					aSum += a;
+					rSum += r;
+					gSum += g;
+					bSum += b;
+				}
+				if ( aSum > 255 )
+					aSum = 255;
+				if ( rSum > 255 )
+					rSum = 255;
+				if ( gSum > 255 )
+					gSum = 255;
+				if ( bSum > 255 )
+					bSum = 255;
+				targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
 			}
-			if ( aSum > 255 )
-				aSum = 255;
-			if ( rSum > 255 )
-				rSum = 255;
-			if ( gSum > 255 )
-				gSum = 255;
-			if ( bSum > 255 )
-				bSum = 255;
-			targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
 		}
 	}
 
@@ -259,15 +283,19 @@ public class CompositeXYProjector< A > extends XYProjector< A, ARGBType >
 		return currentSize;
 	}
 
-	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv )
+	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv, final long minY, final long maxY )
 	{
-		final Cursor< ARGBType > targetCursor = target.localizingCursor();
-		while ( targetCursor.hasNext() )
+		final Cursor< ARGBType > targetCursor = targetCursor( minY );
+		final long width = target.dimension( 0 );
+		for ( long y = minY; y <= maxY && !canceled; ++y )
 		{
-			targetCursor.fwd();
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-			conv.convert( sourceRandomAccess.get(), targetCursor.get() );
+			for ( long x = 0; x < width; ++x )
+			{
+				targetCursor.fwd();
+				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
+				conv.convert( sourceRandomAccess.get(), targetCursor.get() );
+			}
 		}
 	}
 }
@@ -80,6 +80,12 @@ public class CompositeXYRandomAccessibleProjector< A > extends AbstractXYProject
 
 	protected final Converter< A, ARGBType >[] currentConverters;
 
+	/**
+	 * number of active entries in {@link #currentPositions} and
+	 * {@link #currentConverters}, updated by {@link #map()}.
+	 */
+	protected int currentSize;
+
 	@SuppressWarnings( "unchecked" )
 	public CompositeXYRandomAccessibleProjector( final RandomAccessibleInterval< A > source, final RandomAccessibleInterval< ARGBType > target, final ArrayList< Converter< A, ARGBType >> converters, final int dimIndex )
 	{
@@ -146,33 +152,47 @@ public class CompositeXYRandomAccessibleProjector< A > extends AbstractXYProject
 		max[ 0 ] = target.max( 0 );
 		max[ 1 ] = target.max( 1 );
 
+		if ( dimIndex >= 0 )
+		{
+			currentSize = updateCurrentArrays();
+
+			min[ dimIndex ] = max[ dimIndex ] = currentPositions[ 0 ];
+			for ( int i = 1; i < currentSize; ++i )
+				if ( currentPositions[ i ] < min[ dimIndex ] )
+					min[ dimIndex ] = currentPositions[ i ];
+				else if ( currentPositions[ i ] > max[ dimIndex ] )
+					max[ dimIndex ] = currentPositions[ i ];
+		}
+
+		mapBands( min[ 1 ], max[ 1 ] );
+	}
+
+	@Override
+	protected void mapRows( final long minY, final long maxY )
+	{
+		final long[] bandMin = min.clone();
+		final long[] bandMax = max.clone();
+		bandMin[ 1 ] = minY;
+		bandMax[ 1 ] = maxY;
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( bandMin, bandMax ) );
+		sourceRandomAccess.setPosition( bandMin );
+
 		if ( dimIndex < 0 )
 		{
 			// there is only converter[0]
 			// use it to map the current position
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-			sourceRandomAccess.setPosition( min );
-			mapSingle( sourceRandomAccess, converters.get( 0 ) );
+			mapSingle( sourceRandomAccess, converters.get( 0 ), minY, maxY );
 			return;
 		}
 
-		final int size = updateCurrentArrays();
-
-		min[ dimIndex ] = max[ dimIndex ] = currentPositions[ 0 ];
-		for ( int i = 1; i < size; ++i )
-			if ( currentPositions[ i ] < min[ dimIndex ] )
-				min[ dimIndex ] = currentPositions[ i ];
-			else if ( currentPositions[ i ] > max[ dimIndex ] )
-				max[ dimIndex ] = currentPositions[ i ];
-		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-		sourceRandomAccess.setPosition( min );
+		final int size = currentSize;
 
 		if ( size == 1 )
 		{
 			// there is only one active converter: converter[0]
 			// use it to map the slice at currentPositions[0]
 			sourceRandomAccess.setPosition( currentPositions[ 0 ], dimIndex );
-			mapSingle( sourceRandomAccess, currentConverters[ 0 ] );
+			mapSingle( sourceRandomAccess, currentConverters[ 0 ], minY, maxY );
 			return;
 		}
 
@@ -180,8 +200,8 @@ public class CompositeXYRandomAccessibleProjector< A > extends AbstractXYProject
 
 		final RandomAccess< ARGBType > targetRandomAccess = target.randomAccess();
 
-		targetRandomAccess.setPosition( min[ 1 ], 1 );
-		while (	targetRandomAccess.getLongPosition( 1 ) <= max[ 1 ] )
+		targetRandomAccess.setPosition( minY, 1 );
+		while (	targetRandomAccess.getLongPosition( 1 ) <= maxY && !canceled )
 		{
 			sourceRandomAccess.setPosition( min[ 0 ], 0 );
 			targetRandomAccess.setPosition( min[ 0 ], 0 );
@@ -265,11 +285,11 @@ public class CompositeXYRandomAccessibleProjector< A > extends AbstractXYProject
 		return currentSize;
 	}
 
-	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv )
+	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv, final long minY, final long maxY )
 	{
 		final RandomAccess< ARGBType > targetRandomAccess = target.randomAccess();
-		targetRandomAccess.setPosition( min[ 1 ], 1 );
-		while (	targetRandomAccess.getLongPosition( 1 ) <= max[ 1 ] )
+		targetRandomAccess.setPosition( minY, 1 );
+		while (	targetRandomAccess.getLongPosition( 1 ) <= maxY && !canceled )
 		{
 			sourceRandomAccess.setPosition( min[ 0 ], 0 );
 			targetRandomAccess.setPosition( min[ 0 ], 0 );
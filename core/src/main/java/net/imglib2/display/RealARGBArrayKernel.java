@@ -0,0 +1,458 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.display;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Fast path for the XY projectors that maps rows of {@link ArrayImg}s or
+ * {@link PlanarImg}s of {@link UnsignedByteType}, {@link UnsignedShortType},
+ * or {@link FloatType} into an {@link ArrayImg} of {@link ARGBType} (e.g. an
+ * {@link ARGBScreenImage}) directly on the primitive arrays, for
+ * {@link RealARGBConverter} and {@link RealLUTConverter}.
+ *
+ * For 8 and 16 bit sources the converter is evaluated once per possible
+ * value into a lookup table, which is rebuilt only when the display range
+ * or the {@link ColorTable} of the converter changes.  Float sources are
+ * converted with the same arithmetic as the converter, without going
+ * through the {@link net.imglib2.type.numeric.RealType} and
+ * {@link ARGBType} instances.
+ *
+ * Use {@link #create(RandomAccessible, Object, Converter)} to get a kernel
+ * if the combination is supported, then {@link #setPlane(long[], long[])}
+ * for each frame and {@link #mapRow(long)} for each target row.
+ *
+ * @author agent
+ */
+public abstract class RealARGBArrayKernel
+{
+	final protected PlaneSource planeSource;
+
+	final protected Converter< ?, ARGBType > converter;
+
+	final protected LinearRange range;
+
+	/**
+	 * Source dimensions.
+	 */
+	final protected long[] dimensions;
+
+	final protected int[] target;
+
+	final protected int targetWidth;
+
+	final protected int targetHeight;
+
+	/**
+	 * Source array and offset of the current plane.
+	 */
+	protected Object planeData;
+
+	protected long planeOffset;
+
+	protected RealARGBArrayKernel( final PlaneSource planeSource, final long[] dimensions, final int[] target, final int targetWidth, final int targetHeight, final Converter< ?, ARGBType > converter )
+	{
+		this.planeSource = planeSource;
+		this.dimensions = dimensions;
+		this.target = target;
+		this.targetWidth = targetWidth;
+		this.targetHeight = targetHeight;
+		this.converter = converter;
+		this.range = ( LinearRange ) converter;
+	}
+
+	/**
+	 * Select the source plane at min[ d ] for d &gt; 1 and update lookup tables
+	 * for the current display range.  The target covers min[ 0 ] to
+	 * max[ 0 ] and min[ 1 ] to max[ 1 ].
+	 *
+	 * @return false if the fast path cannot map this interval, the projector
+	 *         has to fall back to the generic implementation.
+	 */
+	public boolean setPlane( final long[] min, final long[] max )
+	{
+		if ( min[ 0 ] != 0 || min[ 1 ] != 0 || max[ 0 ] != targetWidth - 1 || max[ 1 ] != targetHeight - 1 )
+			return false;
+		if ( targetWidth > dimensions[ 0 ] || targetHeight > dimensions[ 1 ] )
+			return false;
+		for ( int d = 2; d < dimensions.length; ++d )
+			if ( min[ d ] < 0 || min[ d ] >= dimensions[ d ] )
+				return false;
+		selectPlane( min );
+		updateTables();
+		return true;
+	}
+
+	/**
+	 * Convert target row y of the current plane.  Can be called concurrently
+	 * for different rows.
+	 */
+	public void mapRow( final long y )
+	{
+		final int o = ( int ) ( y * targetWidth );
+		mapRow( planeData, ( int ) ( planeOffset + y * dimensions[ 0 ] ), o, o + targetWidth );
+	}
+
+	protected void selectPlane( final long[] position )
+	{
+		planeData = planeSource.data( position );
+		planeOffset = planeSource.offset( position );
+	}
+
+	abstract protected void updateTables();
+
+	abstract protected void mapRow( final Object data, final int sourceOffset, final int targetStart, final int targetEnd );
+
+	/**
+	 * @return a kernel for the combination of source, target and converter,
+	 *         or null if there is no fast path for it.
+	 */
+	public static RealARGBArrayKernel create( final RandomAccessible< ? > source, final Object target, final Converter< ?, ? > converter )
+	{
+		if ( converter == null || converter.getClass() != RealARGBConverter.class && converter.getClass() != RealLUTConverter.class )
+			return null;
+		if ( !ArrayImg.class.isInstance( target ) || source.numDimensions() < 2 )
+			return null;
+		final ArrayImg< ?, ? > targetImg = ( ArrayImg< ?, ? > ) target;
+		if ( targetImg.numDimensions() != 2 || !IntArray.class.isInstance( targetImg.update( null ) ) || !ARGBType.class.isInstance( targetImg.createLinkedType() ) )
+			return null;
+
+		final int[] targetData = ( ( IntArray ) targetImg.update( null ) ).getCurrentStorageArray();
+		final int w = ( int ) targetImg.dimension( 0 );
+		final int h = ( int ) targetImg.dimension( 1 );
+		@SuppressWarnings( "unchecked" )
+		final Converter< ?, ARGBType > c = ( Converter< ?, ARGBType > ) converter;
+
+		final Object access;
+		final Object type;
+		final boolean planar;
+		if ( ArrayImg.class.isInstance( source ) )
+		{
+			final ArrayImg< ?, ? > img = ( ArrayImg< ?, ? > ) source;
+			access = img.update( null );
+			type = img.createLinkedType();
+			planar = false;
+		}
+		else if ( PlanarImg.class.isInstance( source ) )
+		{
+			final PlanarImg< ?, ? > img = ( PlanarImg< ?, ? > ) source;
+			access = img.getPlane( 0 );
+			type = img.createLinkedType();
+			planar = true;
+		}
+		else
+			return null;
+
+		final NativeImg< ?, ? > img = ( NativeImg< ?, ? > ) source;
+		final long[] dimensions = new long[ img.numDimensions() ];
+		img.dimensions( dimensions );
+		if ( dimensions[ 0 ] * dimensions[ 1 ] > Integer.MAX_VALUE )
+			return null;
+
+		final boolean isByte = type.getClass() == UnsignedByteType.class && ByteArray.class.isInstance( access );
+		final boolean isShort = type.getClass() == UnsignedShortType.class && ShortArray.class.isInstance( access );
+		final boolean isFloat = type.getClass() == FloatType.class && FloatArray.class.isInstance( access );
+		if ( !( isByte || isShort || isFloat ) )
+			return null;
+
+		final PlaneSource planeSource = planar ? new PlanarSource( ( PlanarImg< ?, ? > ) source, dimensions ) : new ArraySource( access, dimensions );
+		if ( isByte )
+			return new UnsignedByteKernel( planeSource, dimensions, targetData, w, h, c );
+		else if ( isShort )
+			return new UnsignedShortKernel( planeSource, dimensions, targetData, w, h, c );
+		else
+			return new FloatKernel( planeSource, dimensions, targetData, w, h, c );
+	}
+
+	/**
+	 * Locates planes in the source.
+	 */
+	protected interface PlaneSource
+	{
+		/**
+		 * @return the primitive array containing the plane.
+		 */
+		public Object data( final long[] position );
+
+		/**
+		 * @return the offset of the plane in {@link #data(long[])}.
+		 */
+		public long offset( final long[] position );
+	}
+
+	protected static class ArraySource implements PlaneSource
+	{
+		final protected Object data;
+
+		final protected long[] dimensions;
+
+		public ArraySource( final Object access, final long[] dimensions )
+		{
+			if ( ByteArray.class.isInstance( access ) )
+				data = ( ( ByteArray ) access ).getCurrentStorageArray();
+			else if ( ShortArray.class.isInstance( access ) )
+				data = ( ( ShortArray ) access ).getCurrentStorageArray();
+			else
+				data = ( ( FloatArray ) access ).getCurrentStorageArray();
+			this.dimensions = dimensions;
+		}
+
+		@Override
+		public Object data( final long[] position )
+		{
+			return data;
+		}
+
+		@Override
+		public long offset( final long[] position )
+		{
+			long offset = 0;
+			long step = dimensions[ 0 ] * dimensions[ 1 ];
+			for ( int d = 2; d < dimensions.length; ++d )
+			{
+				offset += position[ d ] * step;
+				step *= dimensions[ d ];
+			}
+			return offset;
+		}
+	}
+
+	protected static class PlanarSource implements PlaneSource
+	{
+		final protected PlanarImg< ?, ? > img;
+
+		final protected long[] dimensions;
+
+		public PlanarSource( final PlanarImg< ?, ? > img, final long[] dimensions )
+		{
+			this.img = img;
+			this.dimensions = dimensions;
+		}
+
+		@Override
+		public Object data( final long[] position )
+		{
+			int slice = 0;
+			int step = 1;
+			for ( int d = 2; d < dimensions.length; ++d )
+			{
+				slice += ( int ) position[ d ] * step;
+				step *= ( int ) dimensions[ d ];
+			}
+			return img.getPlane( slice ).getCurrentStorageArray();
+		}
+
+		@Override
+		public long offset( final long[] position )
+		{
+			return 0;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + " " + converter.getClass().getSimpleName();
+	}
+
+	/**
+	 * Evaluates the converter for all values of an integer type.
+	 */
+	abstract protected static class Table extends RealARGBArrayKernel
+	{
+		final protected int[] table;
+
+		protected double tableMin = Double.NaN;
+
+		protected double tableMax = Double.NaN;
+
+		protected ColorTable tableLut = null;
+
+		protected Table( final int size, final PlaneSource planeSource, final long[] dimensions, final int[] target, final int targetWidth, final int targetHeight, final Converter< ?, ARGBType > converter )
+		{
+			super( planeSource, dimensions, target, targetWidth, targetHeight, converter );
+			table = new int[ size ];
+		}
+
+		@Override
+		protected void updateTables()
+		{
+			final ColorTable lut = RealLUTConverter.class.isInstance( converter ) ? ( ( RealLUTConverter< ? > ) converter ).getLUT() : null;
+			if ( range.getMin() == tableMin && range.getMax() == tableMax && lut == tableLut )
+				return;
+			tableMin = range.getMin();
+			tableMax = range.getMax();
+			tableLut = lut;
+			fillTable();
+		}
+
+		abstract protected void fillTable();
+	}
+
+	protected static class UnsignedByteKernel extends Table
+	{
+		public UnsignedByteKernel( final PlaneSource planeSource, final long[] dimensions, final int[] target, final int targetWidth, final int targetHeight, final Converter< ?, ARGBType > converter )
+		{
+			super( 256, planeSource, dimensions, target, targetWidth, targetHeight, converter );
+		}
+
+		@SuppressWarnings( { "unchecked", "rawtypes" } )
+		@Override
+		protected void fillTable()
+		{
+			final UnsignedByteType t = new UnsignedByteType();
+			final ARGBType argb = new ARGBType();
+			final Converter c = converter;
+			for ( int i = 0; i < table.length; ++i )
+			{
+				t.set( i );
+				c.convert( t, argb );
+				table[ i ] = argb.get();
+			}
+		}
+
+		@Override
+		protected void mapRow( final Object data, final int sourceOffset, final int targetStart, final int targetEnd )
+		{
+			final byte[] in = ( byte[] ) data;
+			final int[] lut = table;
+			final int[] out = target;
+			for ( int i = sourceOffset, o = targetStart; o < targetEnd; ++i, ++o )
+				out[ o ] = lut[ in[ i ] & 0xff ];
+		}
+	}
+
+	protected static class UnsignedShortKernel extends Table
+	{
+		public UnsignedShortKernel( final PlaneSource planeSource, final long[] dimensions, final int[] target, final int targetWidth, final int targetHeight, final Converter< ?, ARGBType > converter )
+		{
+			super( 65536, planeSource, dimensions, target, targetWidth, targetHeight, converter );
+		}
+
+		@SuppressWarnings( { "unchecked", "rawtypes" } )
+		@Override
+		protected void fillTable()
+		{
+			final UnsignedShortType t = new UnsignedShortType();
+			final ARGBType argb = new ARGBType();
+			final Converter c = converter;
+			for ( int i = 0; i < table.length; ++i )
+			{
+				t.set( i );
+				c.convert( t, argb );
+				table[ i ] = argb.get();
+			}
+		}
+
+		@Override
+		protected void mapRow( final Object data, final int sourceOffset, final int targetStart, final int targetEnd )
+		{
+			final short[] in = ( short[] ) data;
+			final int[] lut = table;
+			final int[] out = target;
+			for ( int i = sourceOffset, o = targetStart; o < targetEnd; ++i, ++o )
+				out[ o ] = lut[ in[ i ] & 0xffff ];
+		}
+	}
+
+	/**
+	 * Applies the arithmetic of {@link RealARGBConverter} or the
+	 * {@link ColorTable} of {@link RealLUTConverter} to float values.
+	 */
+	protected static class FloatKernel extends RealARGBArrayKernel
+	{
+		protected double min;
+
+		protected double max;
+
+		protected double scale;
+
+		protected ColorTable lut;
+
+		public FloatKernel( final PlaneSource planeSource, final long[] dimensions, final int[] target, final int targetWidth, final int targetHeight, final Converter< ?, ARGBType > converter )
+		{
+			super( planeSource, dimensions, target, targetWidth, targetHeight, converter );
+		}
+
+		@Override
+		protected void updateTables()
+		{
+			min = range.getMin();
+			max = range.getMax();
+			scale = max - min;
+			lut = RealLUTConverter.class.isInstance( converter ) ? ( ( RealLUTConverter< ? > ) converter ).getLUT() : null;
+		}
+
+		@Override
+		protected void mapRow( final Object data, final int sourceOffset, final int targetStart, final int targetEnd )
+		{
+			final float[] in = ( float[] ) data;
+			final int[] out = target;
+			if ( lut == null )
+			{
+				for ( int i = sourceOffset, o = targetStart; o < targetEnd; ++i, ++o )
+				{
+					final int b = Math.min( 255, roundPositive( Math.max( 0, ( in[ i ] - min ) / scale * 255.0 ) ) );
+					out[ o ] = 0xff000000 | ( ( ( b << 8 ) | b ) << 8 ) | b;
+				}
+			}
+			else
+			{
+				for ( int i = sourceOffset, o = targetStart; o < targetEnd; ++i, ++o )
+					out[ o ] = lut.lookupARGB( min, max, in[ i ] );
+			}
+		}
+	}
+
+	final static protected int roundPositive( final double a )
+	{
+		return ( int )( a + 0.5 );
+	}
+}
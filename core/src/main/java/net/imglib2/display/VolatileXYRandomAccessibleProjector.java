@@ -49,14 +49,18 @@ public class VolatileXYRandomAccessibleProjector< T, A extends Volatile< T >, B
 	@Override
 	public void map()
 	{
-		for ( int d = 2; d < position.length; ++d )
-			min[ d ] = max[ d ] = position[ d ];
+		valid = true;
+		super.map();
+	}
 
-		min[ 0 ] = target.min( 0 );
-		min[ 1 ] = target.min( 1 );
-		max[ 0 ] = target.max( 0 );
-		max[ 1 ] = target.max( 1 );
-		final FinalInterval sourceInterval = new FinalInterval( min, max );
+	@Override
+	protected void mapRows( final long minY, final long maxY )
+	{
+		final long[] bandMin = min.clone();
+		final long[] bandMax = max.clone();
+		bandMin[ 1 ] = minY;
+		bandMax[ 1 ] = maxY;
+		final FinalInterval sourceInterval = new FinalInterval( bandMin, bandMax );
 
 		final long cr = -target.dimension( 0 );
 
@@ -64,19 +68,24 @@ public class VolatileXYRandomAccessibleProjector< T, A extends Volatile< T >, B
 		final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
 
 		final long width = target.dimension( 0 );
-		final long height = target.dimension( 1 );
+		final long height = maxY - minY + 1;
 
-		sourceRandomAccess.setPosition( min );
-		targetRandomAccess.setPosition( min[ 0 ], 0 );
-		targetRandomAccess.setPosition( min[ 1 ], 1 );
-		valid = true;
+		sourceRandomAccess.setPosition( bandMin );
+		targetRandomAccess.setPosition( bandMin[ 0 ], 0 );
+		targetRandomAccess.setPosition( minY, 1 );
+		boolean bandValid = true;
 		for ( long y = 0; y < height; ++y )
 		{
+			if ( canceled )
+			{
+				bandValid = false;
+				break;
+			}
 			for ( long x = 0; x < width; ++x )
 			{
 				final A a = sourceRandomAccess.get();
 				converter.convert( a, targetRandomAccess.get() );
-				valid &= a.isValid();
+				bandValid &= a.isValid();
 				sourceRandomAccess.fwd( 0 );
 				targetRandomAccess.fwd( 0 );
 			}
@@ -85,5 +94,8 @@ public class VolatileXYRandomAccessibleProjector< T, A extends Volatile< T >, B
 			sourceRandomAccess.fwd( 1 );
 			targetRandomAccess.fwd( 1 );
 		}
+		// bands only ever clear the flag, map() waits for all of them
+		if ( !bandValid )
+			valid = false;
 	}
 }
@@ -39,6 +39,7 @@ package net.imglib2.display;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
+import net.imglib2.FlatIterationOrder;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -54,12 +55,24 @@ public class XYProjector< A, B > extends AbstractXYProjector< A, B >
 {
 	final protected IterableInterval< B > target;
 	final protected int numDimensions;
+
+	/**
+	 * Maps primitive arrays directly if source, target and converter are
+	 * supported, null otherwise.
+	 */
+	final protected RealARGBArrayKernel kernel;
+
+	/**
+	 * Whether the {@link #kernel} maps the current frame.
+	 */
+	protected boolean useKernel = false;
 	
 	public XYProjector( final RandomAccessible< A > source, final IterableInterval< B > target, final Converter< A, B > converter )
 	{
 		super( source, converter );
 		this.target = target;
 		this.numDimensions = source.numDimensions();
+		kernel = RealARGBArrayKernel.create( source, target, converter );
 	}
 
 	@Override
@@ -72,25 +85,73 @@ public class XYProjector< A, B > extends AbstractXYProjector< A, B >
 		min[ 1 ] = target.min( 1 );
 		max[ 0 ] = target.max( 0 );
 		max[ 1 ] = target.max( 1 );
-		final FinalInterval sourceInterval = new FinalInterval( min, max );
 
+		useKernel = kernel != null && kernel.setPlane( min, max );
+		mapTarget();
+	}
+
+	/**
+	 * Map the target in bands of rows if it is iterated in flat order, such
+	 * that the cursor can jump to the first pixel of a band, otherwise map
+	 * all rows in the calling thread.
+	 */
+	protected void mapTarget()
+	{
+		if ( target.iterationOrder() instanceof FlatIterationOrder )
+			mapBands( min[ 1 ], max[ 1 ] );
+		else
+			mapRows( min[ 1 ], max[ 1 ] );
+	}
+
+	/**
+	 * @return a localizing cursor on the target that is placed before the
+	 *         first pixel of row minY.
+	 */
+	protected Cursor< B > targetCursor( final long minY )
+	{
 		final Cursor< B > targetCursor = target.localizingCursor();
+		if ( minY > min[ 1 ] )
+			targetCursor.jumpFwd( ( minY - min[ 1 ] ) * target.dimension( 0 ) );
+		return targetCursor;
+	}
+
+	@Override
+	protected void mapRows( final long minY, final long maxY )
+	{
+		if ( useKernel )
+		{
+			for ( long y = minY; y <= maxY && !canceled; ++y )
+				kernel.mapRow( y );
+			return;
+		}
+
+		final long[] bandMin = min.clone();
+		final long[] bandMax = max.clone();
+		bandMin[ 1 ] = minY;
+		bandMax[ 1 ] = maxY;
+		final FinalInterval sourceInterval = new FinalInterval( bandMin, bandMax );
+
+		final Cursor< B > targetCursor = targetCursor( minY );
 		final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
 		sourceRandomAccess.setPosition( position );
-		if ( numDimensions > 1 )
-			while ( targetCursor.hasNext() )
-			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-				converter.convert( sourceRandomAccess.get(), b );
-			}
-		else
-			while ( targetCursor.hasNext() )
-			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-				converter.convert( sourceRandomAccess.get(), b );
-			}
+		final long width = target.dimension( 0 );
+		for ( long y = minY; y <= maxY && !canceled; ++y )
+		{
+			if ( numDimensions > 1 )
+				for ( long x = 0; x < width; ++x )
+				{
+					final B b = targetCursor.next();
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
+					converter.convert( sourceRandomAccess.get(), b );
+				}
+			else
+				for ( long x = 0; x < width; ++x )
+				{
+					final B b = targetCursor.next();
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+					converter.convert( sourceRandomAccess.get(), b );
+				}
+		}
 	}
 }
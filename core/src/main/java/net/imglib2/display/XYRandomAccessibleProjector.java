@@ -54,10 +54,22 @@ public class XYRandomAccessibleProjector< A, B > extends AbstractXYProjector< A,
 {
 	final protected RandomAccessibleInterval< B > target;
 
+	/**
+	 * Maps primitive arrays directly if source, target and converter are
+	 * supported, null otherwise.
+	 */
+	final protected RealARGBArrayKernel kernel;
+
+	/**
+	 * Whether the {@link #kernel} maps the current frame.
+	 */
+	protected boolean useKernel = false;
+
 	public XYRandomAccessibleProjector( final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter )
 	{
 		super( source, converter );
 		this.target = target;
+		kernel = RealARGBArrayKernel.create( source, target, converter );
 	}
 
 	@Override
@@ -70,7 +82,26 @@ public class XYRandomAccessibleProjector< A, B > extends AbstractXYProjector< A,
 		min[ 1 ] = target.min( 1 );
 		max[ 0 ] = target.max( 0 );
 		max[ 1 ] = target.max( 1 );
-		final FinalInterval sourceInterval = new FinalInterval( min, max );
+
+		useKernel = kernel != null && kernel.setPlane( min, max );
+		mapBands( min[ 1 ], max[ 1 ] );
+	}
+
+	@Override
+	protected void mapRows( final long minY, final long maxY )
+	{
+		if ( useKernel )
+		{
+			for ( long y = minY; y <= maxY && !canceled; ++y )
+				kernel.mapRow( y );
+			return;
+		}
+
+		final long[] bandMin = min.clone();
+		final long[] bandMax = max.clone();
+		bandMin[ 1 ] = minY;
+		bandMax[ 1 ] = maxY;
+		final FinalInterval sourceInterval = new FinalInterval( bandMin, bandMax );
 
 		final long cr = -target.dimension( 0 );
 
@@ -78,13 +109,15 @@ public class XYRandomAccessibleProjector< A, B > extends AbstractXYProjector< A,
 		final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
 
 		final long width = target.dimension( 0 );
-		final long height = target.dimension( 1 );
+		final long height = maxY - minY + 1;
 
-		sourceRandomAccess.setPosition( min );
-		targetRandomAccess.setPosition( min[ 0 ], 0 );
-		targetRandomAccess.setPosition( min[ 1 ], 1 );
+		sourceRandomAccess.setPosition( bandMin );
+		targetRandomAccess.setPosition( bandMin[ 0 ], 0 );
+		targetRandomAccess.setPosition( minY, 1 );
 		for ( long y = 0; y < height; ++y )
 		{
+			if ( canceled )
+				return;
 			for ( long x = 0; x < width; ++x )
 			{
 				converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.BitAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferAccesses;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory that creates {@link ArrayImg}s on a memory mapped region of a raw
+ * file. The pixel data is not copied, the operating system pages it in on
+ * access and can share the pages between processes. For example
+ *
+ * <pre>
+ * img = new MappedArrayImgFactory&lt; UnsignedShortType &gt;( file, 0, MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN ).create( new long[] { 512, 512, 100 }, new UnsignedShortType() );
+ * </pre>
+ *
+ * The mapped region of a single {@link ArrayImg} is limited to
+ * {@link Integer#MAX_VALUE} bytes, use {@link net.imglib2.img.planar.MappedPlanarImgFactory}
+ * for larger files. {@link #imgFactory(Object)} and {@link ArrayImg#copy()}
+ * create images on the heap.
+ *
+ * @author agent
+ */
+public class MappedArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	final protected File file;
+
+	final protected long offset;
+
+	final protected MapMode mode;
+
+	final protected ByteOrder order;
+
+	/**
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            offset of the pixel data in the file in bytes.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE}, or
+	 *            {@link MapMode#PRIVATE} (copy-on-write).
+	 * @param order
+	 *            byte order of the pixel data in the file.
+	 */
+	public MappedArrayImgFactory( final File file, final long offset, final MapMode mode, final ByteOrder order )
+	{
+		this.file = file;
+		this.offset = offset;
+		this.mode = mode;
+		this.order = order;
+	}
+
+	@Override
+	public ArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	protected ByteBuffer map( final long[] dimensions, final int entitiesPerPixel, final int bytesPerEntity )
+	{
+		final long numBytes = BufferAccesses.checkMappable( ( long ) ArrayImgFactory.numEntitiesRangeCheck( dimensions, entitiesPerPixel ) * bytesPerEntity );
+		try
+		{
+			return BufferAccesses.map( file, offset, numBytes, mode, order );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Could not map " + file + ": " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * There is no buffer for bits.
+	 *
+	 * @throws UnsupportedOperationException
+	 */
+	@Override
+	public NativeImg< T, ? extends BitAccess > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		throw new UnsupportedOperationException( "bit types cannot be mapped" );
+	}
+
+	@Override
+	public ArrayImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new ArrayImg< T, ByteBufferAccess >( BufferAccesses.bytes( map( dimensions, entitiesPerPixel, 1 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new ArrayImg< T, CharBufferAccess >( BufferAccesses.chars( map( dimensions, entitiesPerPixel, 2 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new ArrayImg< T, ShortBufferAccess >( BufferAccesses.shorts( map( dimensions, entitiesPerPixel, 2 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new ArrayImg< T, IntBufferAccess >( BufferAccesses.ints( map( dimensions, entitiesPerPixel, 4 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new ArrayImg< T, LongBufferAccess >( BufferAccesses.longs( map( dimensions, entitiesPerPixel, 8 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new ArrayImg< T, FloatBufferAccess >( BufferAccesses.floats( map( dimensions, entitiesPerPixel, 4 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new ArrayImg< T, DoubleBufferAccess >( BufferAccesses.doubles( map( dimensions, entitiesPerPixel, 8 ) ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new ArrayImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Static helpers to create buffer backed basic type accesses on memory mapped
+ * files or other {@link ByteBuffer}s.
+ *
+ * @author agent
+ */
+final public class BufferAccesses
+{
+	private BufferAccesses()
+	{}
+
+	/**
+	 * Map a region of a file into memory. The file is closed after mapping,
+	 * the mapping remains valid until the returned buffer is garbage
+	 * collected. Mapping with {@link MapMode#READ_WRITE} grows the file if
+	 * necessary.
+	 *
+	 * @param file
+	 *            the file.
+	 * @param offset
+	 *            offset of the region in bytes.
+	 * @param size
+	 *            size of the region in bytes, at most
+	 *            {@link Integer#MAX_VALUE}.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE}, or
+	 *            {@link MapMode#PRIVATE} (copy-on-write).
+	 * @param order
+	 *            byte order of the data in the file.
+	 */
+	public static ByteBuffer map( final File file, final long offset, final long size, final MapMode mode, final ByteOrder order ) throws IOException
+	{
+		final RandomAccessFile raf = new RandomAccessFile( file, mode == MapMode.READ_ONLY ? "r" : "rw" );
+		try
+		{
+			final MappedByteBuffer buffer = raf.getChannel().map( mode, offset, size );
+			buffer.order( order );
+			return buffer;
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * Map consecutive regions of equal size of a file into memory, e.g., the
+	 * planes of a raw image stack. Each region must be mappable on its own
+	 * (see {@link #checkMappable(long)}), the total size is not limited.
+	 *
+	 * @param file
+	 *            the file.
+	 * @param offset
+	 *            offset of the first region in bytes.
+	 * @param size
+	 *            size of each region in bytes.
+	 * @param numRegions
+	 *            number of regions.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE}, or
+	 *            {@link MapMode#PRIVATE} (copy-on-write).
+	 * @param order
+	 *            byte order of the data in the file.
+	 */
+	public static ByteBuffer[] map( final File file, final long offset, final long size, final int numRegions, final MapMode mode, final ByteOrder order ) throws IOException
+	{
+		final ByteBuffer[] buffers = new ByteBuffer[ numRegions ];
+		final RandomAccessFile raf = new RandomAccessFile( file, mode == MapMode.READ_ONLY ? "r" : "rw" );
+		try
+		{
+			final FileChannel channel = raf.getChannel();
+			for ( int i = 0; i < numRegions; ++i )
+			{
+				buffers[ i ] = channel.map( mode, offset + i * size, size );
+				buffers[ i ].order( order );
+			}
+		}
+		finally
+		{
+			raf.close();
+		}
+		return buffers;
+	}
+
+	/**
+	 * Allocate a direct buffer in native byte order that holds the given
+	 * number of entities.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the size in bytes exceeds {@link Integer#MAX_VALUE}.
+	 */
+	public static ByteBuffer allocateDirect( final int numEntities, final int bytesPerEntity )
+	{
+		final long size = ( long ) numEntities * bytesPerEntity;
+		if ( size > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Too many entities for a single buffer: " + numEntities + " * " + bytesPerEntity + " bytes > " + Integer.MAX_VALUE );
+		return ByteBuffer.allocateDirect( ( int ) size ).order( ByteOrder.nativeOrder() );
+	}
+
+	public static ByteBufferAccess bytes( final ByteBuffer buffer )
+	{
+		return new ByteBufferAccess( buffer );
+	}
+
+	public static CharBufferAccess chars( final ByteBuffer buffer )
+	{
+		return new CharBufferAccess( buffer.asCharBuffer() );
+	}
+
+	public static ShortBufferAccess shorts( final ByteBuffer buffer )
+	{
+		return new ShortBufferAccess( buffer.asShortBuffer() );
+	}
+
+	public static IntBufferAccess ints( final ByteBuffer buffer )
+	{
+		return new IntBufferAccess( buffer.asIntBuffer() );
+	}
+
+	public static LongBufferAccess longs( final ByteBuffer buffer )
+	{
+		return new LongBufferAccess( buffer.asLongBuffer() );
+	}
+
+	public static FloatBufferAccess floats( final ByteBuffer buffer )
+	{
+		return new FloatBufferAccess( buffer.asFloatBuffer() );
+	}
+
+	public static DoubleBufferAccess doubles( final ByteBuffer buffer )
+	{
+		return new DoubleBufferAccess( buffer.asDoubleBuffer() );
+	}
+
+	/**
+	 * Check that a region of the given size in bytes can be mapped into a
+	 * single buffer. {@link FileChannel#map} is limited to
+	 * {@link Integer#MAX_VALUE} bytes.
+	 */
+	public static long checkMappable( final long size )
+	{
+		if ( size > Integer.MAX_VALUE )
+			throw new RuntimeException( "Region too big to be mapped into a single buffer, use a PlanarImg instead: " + size + " > " + Integer.MAX_VALUE );
+		return size;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.list.AbstractListImg;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link Cells} that are loaded on demand. A cell is requested from a
+ * {@link CellLoader} the first time it is accessed and is then kept in a
+ * {@link CellCache}, which decides when to evict it again. This allows to
+ * work on images that do not fit into memory as a whole.
+ *
+ * A {@link CellImg} backed by {@link CachedCells} is created like this
+ *
+ * <pre>
+ * final CachedCells&lt; FloatArray &gt; cells = new CachedCells&lt; FloatArray &gt;( loader, new LRUCellCache&lt; FloatArray &gt;( 1l &lt;&lt; 30 ), 1, dimensions, cellDimensions );
+ * final CellImg&lt; FloatType, FloatArray, DefaultCell&lt; FloatArray &gt; &gt; img = new CellImg&lt; FloatType, FloatArray, DefaultCell&lt; FloatArray &gt; &gt;( new CellImgFactory&lt; FloatType &gt;( cellDimensions ), cells );
+ * img.setLinkedType( new FloatType( img ) );
+ * </pre>
+ *
+ * @param <A>
+ *            the basic type array that stores the cell data.
+ *
+ * @author agent
+ */
+public class CachedCells< A extends ArrayDataAccess< A > > extends AbstractCells< A, DefaultCell< A >, CachedCells.CellGrid< A > >
+{
+	/**
+	 * The grid of cells. {@link #get(int)} fetches cells through
+	 * {@link CachedCells#getCell(long)}.
+	 */
+	public static class CellGrid< A extends ArrayDataAccess< A > > extends AbstractListImg< DefaultCell< A > >
+	{
+		protected final CachedCells< A > cells;
+
+		protected CellGrid( final CachedCells< A > cells, final long[] numCells )
+		{
+			super( numCells );
+			this.cells = cells;
+		}
+
+		@Override
+		protected DefaultCell< A > get( final int index )
+		{
+			return cells.getCell( index );
+		}
+
+		@Override
+		protected void set( final int index, final DefaultCell< A > value )
+		{
+			throw new UnsupportedOperationException( "cells of a " + CachedCells.class.getSimpleName() + " cannot be replaced" );
+		}
+
+		@Override
+		public CellGrid< A > copy()
+		{
+			return new CellGrid< A >( cells, dimension );
+		}
+	}
+
+	protected final CellLoader< A > loader;
+
+	protected final CellCache< A > cache;
+
+	private final CellGrid< A > cells;
+
+	/**
+	 * @param loader
+	 *            provides the data of cells that are not in the cache.
+	 * @param cache
+	 *            holds loaded cells.
+	 * @param entitiesPerPixel
+	 *            number of basic type entities per pixel.
+	 * @param dimensions
+	 *            dimensions of the image.
+	 * @param cellDimensions
+	 *            dimensions of a standard cell.
+	 */
+	public CachedCells( final CellLoader< A > loader, final CellCache< A > cache, final int entitiesPerPixel, final long[] dimensions, final int[] cellDimensions )
+	{
+		super( entitiesPerPixel, dimensions, cellDimensions );
+		this.loader = loader;
+		this.cache = cache;
+		cells = new CellGrid< A >( this, numCells );
+	}
+
+	/**
+	 * Get the cell with the given flat index in the cell grid. If the cell is
+	 * not in the cache, it is loaded.
+	 *
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 * @return the cell.
+	 */
+	public DefaultCell< A > getCell( final long index )
+	{
+		final DefaultCell< A > cell = cache.get( index );
+		if ( cell != null )
+			return cell;
+		return cache.put( index, loadCell( index ) );
+	}
+
+	/**
+	 * Load the cell with the given flat index in the cell grid through the
+	 * {@link CellLoader}. This happens outside of the cache lock such that
+	 * different cells can be loaded concurrently.
+	 */
+	protected DefaultCell< A > loadCell( final long index )
+	{
+		final long[] cellGridPosition = new long[ n ];
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		IntervalIndexer.indexToPosition( index, numCells, cellGridPosition );
+		getCellDimensions( cellGridPosition, cellMin, cellDims );
+		return new DefaultCell< A >( cellDims, cellMin, loader.loadCell( cellDims, cellMin, entitiesPerPixel ) );
+	}
+
+	public CellLoader< A > getLoader()
+	{
+		return loader;
+	}
+
+	public CellCache< A > getCache()
+	{
+		return cache;
+	}
+
+	@Override
+	protected CellGrid< A > cells()
+	{
+		return cells;
+	}
+}
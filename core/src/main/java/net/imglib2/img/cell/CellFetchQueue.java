@@ -0,0 +1,276 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Loads cells of {@link CachedCells} in background threads. Cells are
+ * requested by non-blocking accessors such as
+ * {@link VolatileCellRandomAccessible} that cannot wait for slow
+ * {@link CellLoader}s, e.g. while rendering an interactive display.
+ *
+ * Requests are kept in two queues. Cells requested since the last
+ * {@link #newFrame()} are typically visible on screen and are loaded first,
+ * in the order they were requested. Requests of earlier frames that were not
+ * repeated are deferred and only loaded when there is nothing else to do.
+ * {@link Listener}s are notified whenever a cell has been loaded, e.g. to
+ * request a repaint of the display.
+ *
+ * @author agent
+ */
+public class CellFetchQueue
+{
+	/**
+	 * Notified by fetcher threads after a cell has been loaded.
+	 */
+	public interface Listener
+	{
+		public void cellLoaded();
+	}
+
+	/**
+	 * A cell to be loaded. Identified by the {@link CachedCells} instance and
+	 * the flat index of the cell in its grid.
+	 */
+	protected static class Request
+	{
+		final CachedCells< ? > cells;
+
+		final long index;
+
+		public Request( final CachedCells< ? > cells, final long index )
+		{
+			this.cells = cells;
+			this.index = index;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof Request ) )
+				return false;
+			final Request r = ( Request ) o;
+			return r.cells == cells && r.index == index;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * System.identityHashCode( cells ) + ( int ) ( index ^ ( index >>> 32 ) );
+		}
+	}
+
+	protected class Fetcher extends Thread
+	{
+		public Fetcher( final int i )
+		{
+			super( "CellFetcher-" + i );
+			setDaemon( true );
+		}
+
+		@Override
+		public void run()
+		{
+			while ( !isInterrupted() )
+			{
+				final Request request;
+				try
+				{
+					request = take();
+				}
+				catch ( final InterruptedException e )
+				{
+					break;
+				}
+				try
+				{
+					request.cells.getCell( request.index );
+				}
+				catch ( final RuntimeException e )
+				{
+					e.printStackTrace();
+				}
+				finally
+				{
+					synchronized ( CellFetchQueue.this )
+					{
+						loading.remove( request );
+					}
+				}
+				notifyListeners();
+			}
+		}
+	}
+
+	/**
+	 * Requests since the last {@link #newFrame()}.
+	 */
+	protected final LinkedHashSet< Request > current = new LinkedHashSet< Request >();
+
+	/**
+	 * Requests of earlier frames.
+	 */
+	protected final LinkedHashSet< Request > deferred = new LinkedHashSet< Request >();
+
+	/**
+	 * Requests taken by a fetcher thread that are not loaded yet.
+	 */
+	protected final HashSet< Request > loading = new HashSet< Request >();
+
+	protected final ArrayList< Listener > listeners = new ArrayList< Listener >();
+
+	protected final Fetcher[] fetchers;
+
+	/**
+	 * Start numFetcherThreads daemon threads that load cells.
+	 */
+	public CellFetchQueue( final int numFetcherThreads )
+	{
+		fetchers = new Fetcher[ Math.max( 1, numFetcherThreads ) ];
+		for ( int i = 0; i < fetchers.length; ++i )
+		{
+			fetchers[ i ] = new Fetcher( i );
+			fetchers[ i ].start();
+		}
+	}
+
+	/**
+	 * Request a cell to be loaded. Does nothing if the cell is already being
+	 * loaded or was already requested in this frame. A deferred request of an
+	 * earlier frame is moved to the end of the current queue.
+	 *
+	 * @param cells
+	 *            the cells to load the cell into.
+	 * @param index
+	 *            flat index of the cell in the cell grid.
+	 */
+	public synchronized void enqueue( final CachedCells< ? > cells, final long index )
+	{
+		final Request request = new Request( cells, index );
+		if ( loading.contains( request ) || current.contains( request ) )
+			return;
+		deferred.remove( request );
+		current.add( request );
+		notify();
+	}
+
+	/**
+	 * Start a new frame. All pending requests are deferred until they are
+	 * requested again.
+	 */
+	public synchronized void newFrame()
+	{
+		deferred.addAll( current );
+		current.clear();
+	}
+
+	/**
+	 * Drop all deferred requests.
+	 */
+	public synchronized void clearDeferred()
+	{
+		deferred.clear();
+	}
+
+	/**
+	 * @return number of requests that are not yet taken by a fetcher thread.
+	 */
+	public synchronized int size()
+	{
+		return current.size() + deferred.size();
+	}
+
+	public void addListener( final Listener listener )
+	{
+		synchronized ( listeners )
+		{
+			listeners.add( listener );
+		}
+	}
+
+	public void removeListener( final Listener listener )
+	{
+		synchronized ( listeners )
+		{
+			listeners.remove( listener );
+		}
+	}
+
+	/**
+	 * Stop the fetcher threads. Pending requests are dropped.
+	 */
+	public void shutdown()
+	{
+		synchronized ( this )
+		{
+			current.clear();
+			deferred.clear();
+		}
+		for ( final Fetcher fetcher : fetchers )
+			fetcher.interrupt();
+	}
+
+	/**
+	 * Wait for the next request, current requests first.
+	 */
+	protected synchronized Request take() throws InterruptedException
+	{
+		while ( current.isEmpty() && deferred.isEmpty() )
+			wait();
+		final Iterator< Request > it = current.isEmpty() ? deferred.iterator() : current.iterator();
+		final Request request = it.next();
+		it.remove();
+		loading.add( request );
+		return request;
+	}
+
+	protected void notifyListeners()
+	{
+		final Listener[] ls;
+		synchronized ( listeners )
+		{
+			ls = listeners.toArray( new Listener[ listeners.size() ] );
+		}
+		for ( final Listener listener : ls )
+			listener.cellLoaded();
+	}
+}
@@ -56,6 +56,17 @@ public final class DefaultCell< A extends ArrayDataAccess< A > > extends Abstrac
 		this.data = creator.createArray( numPixels * entitiesPerPixel );
 	}
 
+	/**
+	 * Create a cell that wraps existing data, e.g., data that was loaded by a
+	 * {@link CellLoader}. The data must hold <em>numPixels *
+	 * entitiesPerPixel</em> entities.
+	 */
+	public DefaultCell( final int[] dimensions, final long[] min, final A data )
+	{
+		super( dimensions, min );
+		this.data = data;
+	}
+
 	@Override
 	public A getData()
 	{
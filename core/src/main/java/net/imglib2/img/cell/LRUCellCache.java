@@ -0,0 +1,267 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * A {@link CellCache} that keeps the least recently used cells up to a given
+ * total size in bytes.
+ *
+ * Samplers on a {@link CellImg} hold on to the data of the cell they are
+ * currently in, not to the cell itself. Therefore cells evicted from the LRU
+ * list are still weakly referenced by their data. If an evicted cell is
+ * requested again while its data is still in use, it is revived instead of
+ * being loaded a second time.
+ *
+ * @param <A>
+ *            the basic type array that stores the cell data.
+ *
+ * @author agent
+ */
+public class LRUCellCache< A extends ArrayDataAccess< A > > implements CellCache< A >
+{
+	/**
+	 * Weak reference to the data of a cell evicted from the LRU list. Keeps
+	 * the cell geometry such that the cell can be revived.
+	 */
+	protected static class EvictedCell< A > extends WeakReference< A >
+	{
+		final long index;
+
+		final int[] dimensions;
+
+		final long[] min;
+
+		public EvictedCell( final long index, final AbstractCell< A > cell, final ReferenceQueue< A > queue )
+		{
+			super( cell.getData(), queue );
+			this.index = index;
+			this.dimensions = cell.dimensions;
+			this.min = cell.min;
+		}
+	}
+
+	protected final long maxBytes;
+
+	protected long currentBytes;
+
+	/**
+	 * Cells in access order, least recently used first.
+	 */
+	protected final LinkedHashMap< Long, DefaultCell< A > > cells;
+
+	protected final HashMap< Long, EvictedCell< A > > evicted;
+
+	protected final ReferenceQueue< A > queue;
+
+	/**
+	 * @param maxBytes
+	 *            maximum total size of the cells held by the cache in bytes.
+	 */
+	public LRUCellCache( final long maxBytes )
+	{
+		this.maxBytes = maxBytes;
+		currentBytes = 0;
+		cells = new LinkedHashMap< Long, DefaultCell< A > >( 16, 0.75f, true );
+		evicted = new HashMap< Long, EvictedCell< A > >();
+		queue = new ReferenceQueue< A >();
+	}
+
+	@Override
+	public synchronized DefaultCell< A > get( final long index )
+	{
+		return lookup( index );
+	}
+
+	@Override
+	public synchronized DefaultCell< A > put( final long index, final DefaultCell< A > cell )
+	{
+		final DefaultCell< A > existing = lookup( index );
+		if ( existing != null )
+			return existing;
+		insert( index, cell );
+		return cell;
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		cells.clear();
+		evicted.clear();
+		currentBytes = 0;
+		cleanUp();
+	}
+
+	/**
+	 * @return total size of the cells in the LRU list in bytes.
+	 */
+	public synchronized long getCurrentBytes()
+	{
+		return currentBytes;
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Get the cell with the given index from the LRU list, or revive it if it
+	 * was evicted but its data is still in use. Must be called while holding
+	 * the cache lock.
+	 */
+	protected DefaultCell< A > lookup( final long index )
+	{
+		final Long key = index;
+		final DefaultCell< A > cell = cells.get( key );
+		if ( cell != null )
+			return cell;
+
+		cleanUp();
+		final EvictedCell< A > ref = evicted.remove( key );
+		if ( ref != null )
+		{
+			final A data = ref.get();
+			if ( data != null )
+			{
+				final DefaultCell< A > revived = new DefaultCell< A >( ref.dimensions, ref.min, data );
+				insert( key, revived );
+				return revived;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Insert a cell at the most recently used end of the list and evict least
+	 * recently used cells until the cache is within its size limit. The new
+	 * cell itself is never evicted.
+	 */
+	protected void insert( final Long key, final DefaultCell< A > cell )
+	{
+		cells.put( key, cell );
+		currentBytes += sizeInBytes( cell );
+
+		final Iterator< Map.Entry< Long, DefaultCell< A > > > it = cells.entrySet().iterator();
+		while ( currentBytes > maxBytes && cells.size() > 1 )
+		{
+			final Map.Entry< Long, DefaultCell< A > > eldest = it.next();
+			it.remove();
+			evict( eldest.getKey(), eldest.getValue() );
+		}
+	}
+
+	/**
+	 * Called when a cell is removed from the LRU list.
+	 */
+	protected void evict( final Long key, final DefaultCell< A > cell )
+	{
+		currentBytes -= sizeInBytes( cell );
+		evicted.put( key, new EvictedCell< A >( key, cell, queue ) );
+	}
+
+	/**
+	 * Remove entries whose data has been garbage collected.
+	 */
+	protected void cleanUp()
+	{
+		while ( true )
+		{
+			@SuppressWarnings( "unchecked" )
+			final EvictedCell< A > ref = ( EvictedCell< A > ) queue.poll();
+			if ( ref == null )
+				break;
+			final Long key = ref.index;
+			if ( evicted.get( key ) == ref )
+				evicted.remove( key );
+		}
+	}
+
+	/**
+	 * Get the size of the data of a cell in bytes.
+	 */
+	public static long sizeInBytes( final AbstractCell< ? extends ArrayDataAccess< ? > > cell )
+	{
+		final Object array = cell.getData().getCurrentStorageArray();
+		if ( array instanceof byte[] )
+			return ( ( byte[] ) array ).length;
+		else if ( array instanceof short[] )
+			return 2l * ( ( short[] ) array ).length;
+		else if ( array instanceof char[] )
+			return 2l * ( ( char[] ) array ).length;
+		else if ( array instanceof int[] )
+			return 4l * ( ( int[] ) array ).length;
+		else if ( array instanceof float[] )
+			return 4l * ( ( float[] ) array ).length;
+		else if ( array instanceof long[] )
+			return 8l * ( ( long[] ) array ).length;
+		else if ( array instanceof double[] )
+			return 8l * ( ( double[] ) array ).length;
+		else if ( array instanceof ByteBuffer )
+			return ( ( ByteBuffer ) array ).capacity();
+		else if ( array instanceof ShortBuffer )
+			return 2l * ( ( ShortBuffer ) array ).capacity();
+		else if ( array instanceof CharBuffer )
+			return 2l * ( ( CharBuffer ) array ).capacity();
+		else if ( array instanceof IntBuffer )
+			return 4l * ( ( IntBuffer ) array ).capacity();
+		else if ( array instanceof FloatBuffer )
+			return 4l * ( ( FloatBuffer ) array ).capacity();
+		else if ( array instanceof LongBuffer )
+			return 8l * ( ( LongBuffer ) array ).capacity();
+		else if ( array instanceof DoubleBuffer )
+			return 8l * ( ( DoubleBuffer ) array ).capacity();
+		else
+			return cell.size();
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * A {@link CellCache} that holds the data of cells through
+ * {@link SoftReference}s. Cells are evicted by the garbage collector when
+ * memory runs low. The data is referenced rather than the {@link DefaultCell},
+ * such that data that is still used by a sampler is never evicted.
+ *
+ * @param <A>
+ *            the basic type array that stores the cell data.
+ *
+ * @author agent
+ */
+public class SoftRefCellCache< A extends ArrayDataAccess< A > > implements CellCache< A >
+{
+	protected static class CellReference< A > extends SoftReference< A >
+	{
+		final long index;
+
+		final int[] dimensions;
+
+		final long[] min;
+
+		public CellReference( final long index, final AbstractCell< A > cell, final ReferenceQueue< A > queue )
+		{
+			super( cell.getData(), queue );
+			this.index = index;
+			this.dimensions = cell.dimensions;
+			this.min = cell.min;
+		}
+	}
+
+	protected final HashMap< Long, CellReference< A > > cells;
+
+	protected final ReferenceQueue< A > queue;
+
+	public SoftRefCellCache()
+	{
+		cells = new HashMap< Long, CellReference< A > >();
+		queue = new ReferenceQueue< A >();
+	}
+
+	@Override
+	public synchronized DefaultCell< A > get( final long index )
+	{
+		final CellReference< A > ref = cells.get( index );
+		if ( ref == null )
+			return null;
+		final A data = ref.get();
+		return data == null ? null : new DefaultCell< A >( ref.dimensions, ref.min, data );
+	}
+
+	@Override
+	public synchronized DefaultCell< A > put( final long index, final DefaultCell< A > cell )
+	{
+		cleanUp();
+		final DefaultCell< A > existing = get( index );
+		if ( existing != null )
+			return existing;
+		cells.put( index, new CellReference< A >( index, cell, queue ) );
+		return cell;
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		cells.clear();
+		cleanUp();
+	}
+
+	/**
+	 * Remove entries whose data has been garbage collected.
+	 */
+	protected void cleanUp()
+	{
+		while ( true )
+		{
+			@SuppressWarnings( "unchecked" )
+			final CellReference< A > ref = ( CellReference< A > ) queue.poll();
+			if ( ref == null )
+				break;
+			final Long key = ref.index;
+			if ( cells.get( key ) == ref )
+				cells.remove( key );
+		}
+	}
+}
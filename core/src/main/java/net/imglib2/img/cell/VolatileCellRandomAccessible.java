@@ -0,0 +1,245 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.display.VolatileRealType;
+import net.imglib2.display.VolatileXYRandomAccessibleProjector;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * A non-blocking view of a {@link CellImg} backed by {@link CachedCells}.
+ * Pixels of cells that are in the {@link CellCache} are returned as valid
+ * {@link VolatileRealType}s. Pixels of cells that are not loaded are returned
+ * as invalid zeros right away, and the cell is {@link CellFetchQueue#enqueue
+ * requested} from a {@link CellFetchQueue} that loads it in the background.
+ *
+ * Together with a {@link VolatileXYRandomAccessibleProjector}, this allows an
+ * interactive display to render whatever data is available without waiting
+ * for the {@link CellLoader}, and to repaint when the
+ * {@link CellFetchQueue.Listener fetch queue} reports newly loaded cells.
+ * Pixels outside of the image are valid zeros.
+ *
+ * @param <T>
+ *            pixel type of the {@link CellImg}.
+ * @param <A>
+ *            the basic type array that stores the cell data.
+ *
+ * @author agent
+ */
+public class VolatileCellRandomAccessible< T extends RealType< T > & NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractInterval implements RandomAccessibleInterval< VolatileRealType< T > >
+{
+	public class VolatileCellRandomAccess extends Point implements RandomAccess< VolatileRealType< T > >, AbstractCellImg.CellContainerSampler< T, A, DefaultCell< A > >
+	{
+		/**
+		 * linked to the data of the current cell. Not using a
+		 * {@link CellRandomAccess} here because that would load cells.
+		 */
+		protected final T type;
+
+		protected final long[] localPosition;
+
+		protected final VolatileRealType< T > v;
+
+		protected final long[] cellGridPosition;
+
+		/**
+		 * flat index of the current cell, -1 if outside the image.
+		 */
+		protected long cellIndex;
+
+		/**
+		 * the current cell if it is loaded. Keeps the cell data reachable such
+		 * that it cannot be dropped from the cache while it is accessed.
+		 */
+		protected DefaultCell< A > cell;
+
+		public VolatileCellRandomAccess()
+		{
+			super( VolatileCellRandomAccessible.this.n );
+			type = img.createLinkedType();
+			localPosition = new long[ n ];
+			v = new VolatileRealType< T >( type.createVariable() );
+			cellGridPosition = new long[ n ];
+			cellIndex = -2;
+			cell = null;
+		}
+
+		protected VolatileCellRandomAccess( final VolatileCellRandomAccess a )
+		{
+			super( a );
+			type = img.createLinkedType();
+			localPosition = new long[ n ];
+			v = new VolatileRealType< T >( a.v.get().copy(), a.v.isValid() );
+			cellGridPosition = a.cellGridPosition.clone();
+			cellIndex = a.cellIndex;
+			cell = a.cell;
+			if ( cell != null )
+				type.updateContainer( this );
+		}
+
+		@Override
+		public VolatileRealType< T > get()
+		{
+			final long index = currentCellIndex();
+			if ( index != cellIndex )
+			{
+				cellIndex = index;
+				if ( index < 0 )
+					cell = null;
+				else
+				{
+					cell = cells.getCache().get( index );
+					if ( cell == null )
+						queue.enqueue( cells, index );
+					else
+						type.updateContainer( this );
+				}
+			}
+			if ( cell == null )
+			{
+				// outside the image there is nothing to wait for
+				v.get().setZero();
+				v.setValid( cellIndex < 0 );
+			}
+			else
+			{
+				for ( int d = 0; d < n; ++d )
+					localPosition[ d ] = position[ d ] - cell.min( d );
+				type.updateIndex( cell.localPositionToIndex( localPosition ) );
+				v.get().set( type );
+				v.setValid( true );
+			}
+			return v;
+		}
+
+		/**
+		 * @return flat index of the cell containing the current position, or
+		 *         -1 if the position is outside the image.
+		 */
+		protected long currentCellIndex()
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final long p = position[ d ];
+				if ( p < 0 || p >= dimensions[ d ] )
+					return -1;
+				cellGridPosition[ d ] = p / cellDimensions[ d ];
+			}
+			return IntervalIndexer.positionToIndex( cellGridPosition, numCells );
+		}
+
+		@Override
+		public DefaultCell< A > getCell()
+		{
+			return cell;
+		}
+
+		@Override
+		public VolatileCellRandomAccess copy()
+		{
+			return new VolatileCellRandomAccess( this );
+		}
+
+		@Override
+		public VolatileCellRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+
+	protected final CellImg< T, A, DefaultCell< A > > img;
+
+	protected final CachedCells< A > cells;
+
+	protected final CellFetchQueue queue;
+
+	protected final long[] dimensions;
+
+	protected final int[] cellDimensions;
+
+	protected final long[] numCells;
+
+	/**
+	 * @param img
+	 *            a {@link CellImg} backed by {@link CachedCells}.
+	 * @param queue
+	 *            loads missing cells in the background.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public VolatileCellRandomAccessible( final CellImg< T, A, DefaultCell< A > > img, final CellFetchQueue queue )
+	{
+		super( img );
+		if ( !( img.getCells() instanceof CachedCells ) )
+			throw new IllegalArgumentException( "the cells of the image must be " + CachedCells.class.getSimpleName() );
+		this.img = img;
+		this.cells = ( CachedCells< A > ) img.getCells();
+		this.queue = queue;
+		dimensions = new long[ n ];
+		cellDimensions = new int[ n ];
+		numCells = new long[ n ];
+		cells.dimensions( dimensions );
+		cells.cellDimensions( cellDimensions );
+		for ( int d = 0; d < n; ++d )
+			numCells[ d ] = ( dimensions[ d ] - 1 ) / cellDimensions[ d ] + 1;
+	}
+
+	public CellFetchQueue getFetchQueue()
+	{
+		return queue;
+	}
+
+	@Override
+	public VolatileCellRandomAccess randomAccess()
+	{
+		return new VolatileCellRandomAccess();
+	}
+
+	@Override
+	public VolatileCellRandomAccess randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+}
@@ -0,0 +1,267 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.imglib2.img.basictypeaccess.Dirty;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * A {@link LRUCellCache} that writes modified cells to a {@link CellWriter}
+ * before they are evicted. Together with a {@link CellLoader} that reads what
+ * the {@link CellWriter} wrote, this allows to modify {@link CellImg}s in
+ * place that do not fit into memory.
+ *
+ * Whether a cell was modified is determined by its data, which should
+ * implement {@link Dirty} (e.g., {@link net.imglib2.img.basictypeaccess.array.DirtyFloatArray}).
+ * Cells whose data does not implement {@link Dirty} are written whenever they
+ * are evicted or flushed, and are considered clean once written.
+ *
+ * Cells are written outside of the cache lock, such that other threads can
+ * continue to access cells while data is written. Writes of the same cell are
+ * serialized, so the last write always stores the newest data. Evicted cells
+ * are strongly referenced until they have been written and are clean.
+ *
+ * Dirtiness is checked when a cell is evicted, so a cache miss costs no more
+ * than in {@link LRUCellCache}. A sampler may continue to write to the data of
+ * a cell after it was evicted and written. Such data is written again if the
+ * cell is revived and evicted once more, or by {@link #flush()}, which checks
+ * all evicted data that is still in use. Call {@link #flush()} after the last
+ * modification, before the samplers are released.
+ *
+ * @param <A>
+ *            the basic type array that stores the cell data.
+ *
+ * @author agent
+ */
+public class WriteBackCellCache< A extends ArrayDataAccess< A > > extends LRUCellCache< A >
+{
+	protected final CellWriter< A > writer;
+
+	/**
+	 * Evicted cells that have not been written yet, by index.
+	 */
+	protected final LinkedHashMap< Long, DefaultCell< A > > pending;
+
+	/**
+	 * Indices of the cells that are currently being written.
+	 */
+	protected final HashSet< Long > writing;
+
+	protected volatile boolean hasPending;
+
+	/**
+	 * @param maxBytes
+	 *            maximum total size of the cells held by the cache in bytes.
+	 * @param writer
+	 *            persists modified cells.
+	 */
+	public WriteBackCellCache( final long maxBytes, final CellWriter< A > writer )
+	{
+		super( maxBytes );
+		this.writer = writer;
+		pending = new LinkedHashMap< Long, DefaultCell< A > >();
+		writing = new HashSet< Long >();
+		hasPending = false;
+	}
+
+	@Override
+	public DefaultCell< A > get( final long index )
+	{
+		final DefaultCell< A > cell = super.get( index );
+		if ( hasPending )
+			writePending();
+		return cell;
+	}
+
+	@Override
+	public DefaultCell< A > put( final long index, final DefaultCell< A > cell )
+	{
+		final DefaultCell< A > existing = super.put( index, cell );
+		if ( hasPending )
+			writePending();
+		return existing;
+	}
+
+	/**
+	 * Write all modified cells that are in the cache or are still used by a
+	 * sampler.
+	 */
+	public void flush()
+	{
+		final LinkedHashMap< Long, DefaultCell< A > > dirty = new LinkedHashMap< Long, DefaultCell< A > >();
+		synchronized ( this )
+		{
+			collectModifiedEvicted();
+			dirty.putAll( pending );
+			pending.clear();
+			hasPending = false;
+			for ( final Map.Entry< Long, DefaultCell< A > > entry : cells.entrySet() )
+				if ( isDirty( entry.getValue() ) )
+					dirty.put( entry.getKey(), entry.getValue() );
+		}
+		for ( final Map.Entry< Long, DefaultCell< A > > entry : dirty.entrySet() )
+			write( entry.getKey(), entry.getValue() );
+	}
+
+	/**
+	 * Write all modified cells, then remove all cells from the cache.
+	 */
+	@Override
+	public void clear()
+	{
+		flush();
+		synchronized ( this )
+		{
+			super.clear();
+			/*
+			 * cells modified after the flush are written before they are
+			 * forgotten
+			 */
+			if ( !pending.isEmpty() )
+				hasPending = true;
+		}
+		if ( hasPending )
+			writePending();
+	}
+
+	@Override
+	protected void evict( final Long key, final DefaultCell< A > cell )
+	{
+		super.evict( key, cell );
+		if ( isDirty( cell ) )
+		{
+			pending.put( key, cell );
+			hasPending = true;
+		}
+	}
+
+	/**
+	 * Move evicted cells whose data is still in use and was modified after it
+	 * was written to the pending cells. Data that does not implement
+	 * {@link Dirty} was written when it was evicted and is not written again.
+	 * Must be called while holding the cache lock.
+	 */
+	protected void collectModifiedEvicted()
+	{
+		cleanUp();
+		for ( final EvictedCell< A > ref : evicted.values() )
+		{
+			final A data = ref.get();
+			if ( data instanceof Dirty && ( ( Dirty ) data ).isDirty() && !pending.containsKey( ref.index ) )
+			{
+				pending.put( ref.index, new DefaultCell< A >( ref.dimensions, ref.min, data ) );
+				hasPending = true;
+			}
+		}
+	}
+
+	/**
+	 * Write evicted cells. The pending cells are strongly referenced until
+	 * they are written, so they are revived instead of loaded if they are
+	 * requested in the meantime.
+	 */
+	protected void writePending()
+	{
+		final ArrayList< Map.Entry< Long, DefaultCell< A > > > cellsToWrite;
+		synchronized ( this )
+		{
+			cellsToWrite = new ArrayList< Map.Entry< Long, DefaultCell< A > > >( pending.entrySet() );
+			pending.clear();
+			hasPending = false;
+		}
+		for ( final Map.Entry< Long, DefaultCell< A > > entry : cellsToWrite )
+			write( entry.getKey(), entry.getValue() );
+	}
+
+	/**
+	 * Mark the cell clean and write it. The cell is marked clean first, such
+	 * that concurrent modifications mark it dirty again. Only one thread
+	 * writes a given cell at a time. If an evicted cell was modified while it
+	 * was written, it stays pending.
+	 */
+	protected void write( final Long key, final DefaultCell< A > cell )
+	{
+		synchronized ( this )
+		{
+			while ( writing.contains( key ) )
+			{
+				try
+				{
+					wait();
+				}
+				catch ( final InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+					throw new RuntimeException( e );
+				}
+			}
+			writing.add( key );
+		}
+		try
+		{
+			final A data = cell.getData();
+			if ( data instanceof Dirty )
+				( ( Dirty ) data ).setDirty( false );
+			writer.writeCell( cell.dimensions, cell.min, data );
+		}
+		finally
+		{
+			synchronized ( this )
+			{
+				writing.remove( key );
+				if ( cell.getData() instanceof Dirty && isDirty( cell ) && !cells.containsKey( key ) && !pending.containsKey( key ) )
+				{
+					pending.put( key, cell );
+					hasPending = true;
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	protected static boolean isDirty( final AbstractCell< ? > cell )
+	{
+		final Object data = cell.getData();
+		return !( data instanceof Dirty ) || ( ( Dirty ) data ).isDirty();
+	}
+}
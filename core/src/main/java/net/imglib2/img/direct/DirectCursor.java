@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.direct;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link net.imglib2.Cursor} on a {@link DirectImg}.
+ *
+ * @param <T>
+ *            the pixel type
+ *
+ * @author agent
+ */
+public class DirectCursor< T extends NativeType< T > > extends AbstractCursor< T > implements DirectImg.DirectContainerSampler
+{
+	protected final T type;
+
+	protected final DirectImg< T, ? > img;
+
+	protected final long lastIndex;
+
+	protected final int pixelsPerPage;
+
+	protected int page;
+
+	protected DirectCursor( final DirectCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		this.img = cursor.img;
+		this.type = img.createLinkedType();
+		this.lastIndex = cursor.lastIndex;
+		this.pixelsPerPage = cursor.pixelsPerPage;
+		this.page = cursor.page;
+
+		type.updateIndex( cursor.type.getIndex() );
+		type.updateContainer( this );
+	}
+
+	public DirectCursor( final DirectImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.type = img.createLinkedType();
+		this.img = img;
+		this.lastIndex = img.size() - 1;
+		this.pixelsPerPage = img.pixelsPerPage;
+
+		reset();
+	}
+
+	@Override
+	public int getCurrentPageIndex()
+	{
+		return page;
+	}
+
+	/**
+	 * @return the flat index of the current pixel in the image.
+	 */
+	protected long index()
+	{
+		return ( ( long ) page << img.pageShift ) + type.getIndex();
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return index() < lastIndex;
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		final long index = index() + steps;
+		page = ( int ) ( index >>> img.pageShift );
+		type.updateContainer( this );
+		type.updateIndex( ( int ) ( index & img.pageMask ) );
+	}
+
+	@Override
+	public void fwd()
+	{
+		type.incIndex();
+		if ( type.getIndex() == pixelsPerPage )
+		{
+			++page;
+			type.updateIndex( 0 );
+			type.updateContainer( this );
+		}
+	}
+
+	@Override
+	public void reset()
+	{
+		page = 0;
+		type.updateIndex( -1 );
+		type.updateContainer( this );
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return IntervalIndexer.indexToPosition( index(), img.dim, d );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		IntervalIndexer.indexToPosition( index(), img.dim, position );
+	}
+
+	@Override
+	public DirectCursor< T > copy()
+	{
+		return new DirectCursor< T >( this );
+	}
+
+	@Override
+	public DirectCursor< T > copyCursor()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.direct;
+
+import java.util.ArrayList;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * This {@link Img} stores an image in a single linear block of memory that is
+ * indexed by long. Unlike {@link ArrayImg} it is not limited to
+ * {@link Integer#MAX_VALUE} entities. The {@link DirectImgFactory} allocates
+ * the memory off the Java heap, in direct buffers, such that large images put
+ * no pressure on the garbage collector.
+ *
+ * Internally, the block is divided into pages of <em>2<sup>pageShift</sup></em>
+ * pixels because basic type accesses are indexed by int. Pages are purely an
+ * implementation detail: pixels are iterated in flat order like in an
+ * {@link ArrayImg} and samplers switch pages transparently.
+ *
+ * @author agent
+ */
+public class DirectImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractNativeImg< T, A >
+{
+	final long[] dim;
+
+	final long[] steps;
+
+	final int pageShift;
+
+	final int pixelsPerPage;
+
+	final long pageMask;
+
+	final int numPages;
+
+	final protected ArrayList< A > pages;
+
+	/**
+	 * @param creator
+	 *            used to create the pages.
+	 * @param dim
+	 *            dimensions of the image.
+	 * @param entitiesPerPixel
+	 *            number of basic type entities per pixel.
+	 * @param pageShift
+	 *            each page holds <em>2<sup>pageShift</sup></em> pixels.
+	 */
+	public DirectImg( final A creator, final long[] dim, final int entitiesPerPixel, final int pageShift )
+	{
+		super( dim, entitiesPerPixel );
+
+		this.dim = dim.clone();
+		steps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( this.dim, steps );
+
+		this.pageShift = pageShift;
+		pixelsPerPage = 1 << pageShift;
+		pageMask = pixelsPerPage - 1;
+
+		final long np = ( numPixels + pageMask ) >>> pageShift;
+		if ( np > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of pages too big, use a larger page size: " + np + " > " + Integer.MAX_VALUE );
+		numPages = ( int ) np;
+
+		pages = new ArrayList< A >( numPages );
+		for ( int p = 0; p < numPages; ++p )
+		{
+			final long pixelsInPage = Math.min( pixelsPerPage, numPixels - ( ( long ) p << pageShift ) );
+			pages.add( creator.createArray( ( int ) pixelsInPage * entitiesPerPixel ) );
+		}
+	}
+
+	/**
+	 * This interface is implemented by all samplers on the {@link DirectImg}.
+	 * It allows the container to ask for the page the sampler is currently
+	 * in.
+	 */
+	public interface DirectContainerSampler
+	{
+		/**
+		 * @return the index of the page the sampler is currently in.
+		 */
+		public int getCurrentPageIndex();
+	}
+
+	@Override
+	public A update( final Object o )
+	{
+		final int p = ( ( DirectContainerSampler ) o ).getCurrentPageIndex();
+		return pages.get( p < 0 ? 0 : ( p >= numPages ? numPages - 1 : p ) );
+	}
+
+	/**
+	 * @return the basic type array storing page <em>p</em>.
+	 */
+	public A getPage( final int p )
+	{
+		return pages.get( p );
+	}
+
+	public int numPages()
+	{
+		return numPages;
+	}
+
+	/**
+	 * @return number of pixels per page (except for the last page, which may
+	 *         be smaller).
+	 */
+	public int pixelsPerPage()
+	{
+		return pixelsPerPage;
+	}
+
+	@Override
+	public DirectCursor< T > cursor()
+	{
+		return new DirectCursor< T >( this );
+	}
+
+	@Override
+	public DirectLocalizingCursor< T > localizingCursor()
+	{
+		return new DirectLocalizingCursor< T >( this );
+	}
+
+	@Override
+	public DirectRandomAccess< T > randomAccess()
+	{
+		return new DirectRandomAccess< T >( this );
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public DirectImgFactory< T > factory()
+	{
+		return new DirectImgFactory< T >( pageShift );
+	}
+
+	@Override
+	public DirectImg< T, ? > copy()
+	{
+		final DirectImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+
+		final DirectCursor< T > source = this.cursor();
+		final DirectCursor< T > target = copy.cursor();
+
+		while ( source.hasNext() )
+			target.next().set( source.next() );
+
+		return copy;
+	}
+}
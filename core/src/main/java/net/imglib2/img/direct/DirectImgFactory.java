@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.direct;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory for creating {@link DirectImg}s. Pixel data is stored in direct
+ * buffers outside of the Java heap, except for bit types which are stored in
+ * {@link BitArray}s. The page size can be given in the constructor, it
+ * defaults to <em>2<sup>24</sup></em> pixels.
+ *
+ * Note that direct memory is limited by the <em>-XX:MaxDirectMemorySize</em>
+ * JVM option (by default the maximum heap size).
+ *
+ * @author agent
+ */
+public class DirectImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	final protected int pageShift;
+
+	public DirectImgFactory()
+	{
+		this( 24 );
+	}
+
+	/**
+	 * @param pageShift
+	 *            each page holds <em>2<sup>pageShift</sup></em> pixels. Pages
+	 *            of the largest types must fit into {@link Integer#MAX_VALUE}
+	 *            bytes.
+	 */
+	public DirectImgFactory( final int pageShift )
+	{
+		if ( pageShift < 1 || pageShift > 26 )
+			throw new IllegalArgumentException( "pageShift must be in [1, 26]: " + pageShift );
+		this.pageShift = pageShift;
+	}
+
+	@Override
+	public DirectImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( DirectImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public DirectImg< T, BitArray > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new DirectImg< T, BitArray >( new BitArray( 1 ), dimensions, entitiesPerPixel, pageShift );
+	}
+
+	@Override
+	public DirectImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new DirectImg< T, ByteBufferAccess >( new ByteBufferAccess( 1 ), dimensions, entitiesPerPixel, pageShift );
+	}
+
+	@Override
+	public DirectImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new DirectImg< T, CharBufferAccess >( new CharBufferAccess( 1 ), dimensions, entitiesPerPixel, pageShift );
+	}
+
+	@Override
+	public DirectImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new DirectImg< T, ShortBufferAccess >( new ShortBufferAccess( 1 ), dimensions, entitiesPerPixel, pageShift );
+	}
+
+	@Override
+	public DirectImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new DirectImg< T, IntBufferAccess >( new IntBufferAccess( 1 ), dimensions, entitiesPerPixel, pageShift );
+	}
+
+	@Override
+	public DirectImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new DirectImg< T, LongBufferAccess >( new LongBufferAccess( 1 ), dimensions, entitiesPerPixel, pageShift );
+	}
+
+	@Override
+	public DirectImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new DirectImg< T, FloatBufferAccess >( new FloatBufferAccess( 1 ), dimensions, entitiesPerPixel, pageShift );
+	}
+
+	@Override
+	public DirectImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		return new DirectImg< T, DoubleBufferAccess >( new DoubleBufferAccess( 1 ), dimensions, entitiesPerPixel, pageShift );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new DirectImgFactory( pageShift );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
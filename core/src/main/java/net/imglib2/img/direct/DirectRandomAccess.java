@@ -0,0 +1,250 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.direct;
+
+import net.imglib2.AbstractLocalizable;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link RandomAccess} on a {@link DirectImg}.
+ *
+ * @param <T>
+ *            the pixel type
+ *
+ * @author agent
+ */
+public class DirectRandomAccess< T extends NativeType< T > > extends AbstractLocalizable implements RandomAccess< T >, DirectImg.DirectContainerSampler
+{
+	protected final T type;
+
+	protected final DirectImg< T, ? > img;
+
+	protected final long[] steps;
+
+	/**
+	 * The flat index of the current position in the image.
+	 */
+	protected long index;
+
+	protected int page;
+
+	protected DirectRandomAccess( final DirectRandomAccess< T > randomAccess )
+	{
+		super( randomAccess.numDimensions() );
+
+		this.img = randomAccess.img;
+		this.type = img.createLinkedType();
+		this.steps = img.steps;
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = randomAccess.position[ d ];
+		index = randomAccess.index;
+		page = randomAccess.page;
+
+		type.updateContainer( this );
+		type.updateIndex( randomAccess.type.getIndex() );
+	}
+
+	public DirectRandomAccess( final DirectImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		this.type = img.createLinkedType();
+		this.steps = img.steps;
+
+		index = 0;
+		page = 0;
+
+		type.updateContainer( this );
+		type.updateIndex( 0 );
+	}
+
+	@Override
+	public int getCurrentPageIndex()
+	{
+		return page;
+	}
+
+	/**
+	 * Switch to the page containing {@link #index} if necessary and update
+	 * the index of the type.
+	 */
+	protected void updateType()
+	{
+		final int p = ( int ) ( index >> img.pageShift );
+		if ( p != page )
+		{
+			page = p;
+			type.updateContainer( this );
+		}
+		type.updateIndex( ( int ) ( index & img.pageMask ) );
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		index += steps[ d ];
+		++position[ d ];
+		updateType();
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		index -= steps[ d ];
+		--position[ d ];
+		updateType();
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		move( ( long ) distance, d );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		index += steps[ d ] * distance;
+		position[ d ] += distance;
+		updateType();
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final long distance = localizable.getLongPosition( d );
+			position[ d ] += distance;
+			index += distance * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] += distance[ d ];
+			index += distance[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] += distance[ d ];
+			index += distance[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		localizable.localize( position );
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+			index += position[ d ] * steps[ d ];
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = pos[ d ];
+			index += pos[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = pos[ d ];
+			index += pos[ d ] * steps[ d ];
+		}
+		updateType();
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		setPosition( ( long ) pos, d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		index += ( pos - position[ d ] ) * steps[ d ];
+		position[ d ] = pos;
+		updateType();
+	}
+
+	@Override
+	public DirectRandomAccess< T > copy()
+	{
+		return new DirectRandomAccess< T >( this );
+	}
+
+	@Override
+	public DirectRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.planar;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.BitAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferAccesses;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+
+/**
+ * Factory that creates {@link PlanarImg}s on a memory mapped raw file. Each
+ * plane is mapped separately, planes are expected to be stored consecutively
+ * in the file. Only a single plane must fit into {@link Integer#MAX_VALUE}
+ * bytes, so files of any size can be mapped. {@link #imgFactory(Object)} and
+ * {@link PlanarImg#copy()} create images on the heap.
+ *
+ * @author agent
+ */
+public class MappedPlanarImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	final protected File file;
+
+	final protected long offset;
+
+	final protected MapMode mode;
+
+	final protected ByteOrder order;
+
+	/**
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            offset of the first plane in the file in bytes.
+	 * @param mode
+	 *            {@link MapMode#READ_ONLY}, {@link MapMode#READ_WRITE}, or
+	 *            {@link MapMode#PRIVATE} (copy-on-write).
+	 * @param order
+	 *            byte order of the pixel data in the file.
+	 */
+	public MappedPlanarImgFactory( final File file, final long offset, final MapMode mode, final ByteOrder order )
+	{
+		this.file = file;
+		this.offset = offset;
+		this.mode = mode;
+		this.order = order;
+	}
+
+	@Override
+	public PlanarImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( PlanarImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	/**
+	 * Map all planes of an image with the given dimensions.
+	 */
+	protected ByteBuffer[] map( final long[] dimensions, final int entitiesPerPixel, final int bytesPerEntity )
+	{
+		long numPlanes = 1;
+		for ( int d = 2; d < dimensions.length; ++d )
+			numPlanes *= dimensions[ d ];
+		if ( numPlanes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Too many planes to be mapped: " + numPlanes + " > " + Integer.MAX_VALUE );
+		final long planeBytes = BufferAccesses.checkMappable( ( dimensions.length > 1 ? dimensions[ 1 ] : 1 ) * dimensions[ 0 ] * entitiesPerPixel * bytesPerEntity );
+		try
+		{
+			return BufferAccesses.map( file, offset, planeBytes, ( int ) numPlanes, mode, order );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Could not map " + file + ": " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * There is no buffer for bits.
+	 *
+	 * @throws UnsupportedOperationException
+	 */
+	@Override
+	public NativeImg< T, ? extends BitAccess > createBitInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		throw new UnsupportedOperationException( "bit types cannot be mapped" );
+	}
+
+	@Override
+	public PlanarImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, ByteBufferAccess > img = new PlanarImg< T, ByteBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = map( dimensions, entitiesPerPixel, 1 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, BufferAccesses.bytes( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, CharBufferAccess > img = new PlanarImg< T, CharBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = map( dimensions, entitiesPerPixel, 2 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, BufferAccesses.chars( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, ShortBufferAccess > img = new PlanarImg< T, ShortBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = map( dimensions, entitiesPerPixel, 2 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, BufferAccesses.shorts( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, IntBufferAccess > img = new PlanarImg< T, IntBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = map( dimensions, entitiesPerPixel, 4 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, BufferAccesses.ints( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, LongBufferAccess > img = new PlanarImg< T, LongBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = map( dimensions, entitiesPerPixel, 8 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, BufferAccesses.longs( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, FloatBufferAccess > img = new PlanarImg< T, FloatBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = map( dimensions, entitiesPerPixel, 4 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, BufferAccesses.floats( planes[ i ] ) );
+		return img;
+	}
+
+	@Override
+	public PlanarImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final int entitiesPerPixel )
+	{
+		final PlanarImg< T, DoubleBufferAccess > img = new PlanarImg< T, DoubleBufferAccess >( dimensions, entitiesPerPixel );
+		final ByteBuffer[] planes = map( dimensions, entitiesPerPixel, 8 );
+		for ( int i = 0; i < planes.length; ++i )
+			img.setPlane( i, BufferAccesses.doubles( planes[ i ] ) );
+		return img;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new PlanarImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
@@ -37,7 +37,10 @@
 
 package net.imglib2.multithreading;
 
+import java.util.Collection;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * TODO
@@ -156,6 +159,45 @@ public class SimpleMultiThreading
 		}
 	}
 
+	/**
+	 * Wait for all futures to complete. If one of them fails or the calling
+	 * thread is interrupted, the remaining ones are canceled and an exception
+	 * is thrown, so that callers never continue with partial results.
+	 * 
+	 * @throws RuntimeException
+	 *             wrapping the {@link InterruptedException} if the calling
+	 *             thread was interrupted (the interrupt flag is restored), or
+	 *             wrapping the cause of a failed task that is neither a
+	 *             {@link RuntimeException} nor an {@link Error}, which are
+	 *             rethrown as they are.
+	 */
+	public static void waitFor( final Collection< ? extends Future< ? > > futures )
+	{
+		try
+		{
+			for ( final Future< ? > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			for ( final Future< ? > future : futures )
+				future.cancel( true );
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			for ( final Future< ? > future : futures )
+				future.cancel( true );
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
+
 	public static void start(Thread[] threads)
 	{
 		for (int ithread = 0; ithread < threads.length; ++ithread)
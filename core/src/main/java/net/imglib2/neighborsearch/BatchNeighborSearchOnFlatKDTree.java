@@ -0,0 +1,422 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import net.imglib2.IterableRealInterval;
+import net.imglib2.RealCursor;
+import net.imglib2.RealPoint;
+import net.imglib2.collection.FlatKDTree;
+import net.imglib2.multithreading.SimpleMultiThreading;
+
+/**
+ * Nearest, k-nearest and radius neighbor searches for many query positions
+ * at once on a {@link FlatKDTree}. Results are written to primitive arrays of
+ * value indices (see {@link FlatKDTree#valueIndex(int)}) and square
+ * distances.
+ * 
+ * <p>
+ * Queries are processed in Z-order of their positions so that consecutive
+ * searches visit similar parts of the tree, and split into chunks that are
+ * searched in parallel if an {@link ExecutorService} is given. Each chunk uses
+ * its own search, queries do not allocate.
+ * </p>
+ * 
+ * @author agent
+ */
+public class BatchNeighborSearchOnFlatKDTree< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final ExecutorService service;
+
+	protected final int numTasks;
+
+	/**
+	 * @param tree
+	 *            the tree to search
+	 * @param service
+	 *            executes the searches in parallel, may be null
+	 */
+	public BatchNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final ExecutorService service )
+	{
+		this.tree = tree;
+		this.service = service;
+		n = tree.numDimensions();
+		if ( service == null )
+			numTasks = 1;
+		else if ( service instanceof ThreadPoolExecutor )
+			numTasks = 4 * Math.max( 1, ( ( ThreadPoolExecutor ) service ).getMaximumPoolSize() );
+		else
+			numTasks = 4 * Runtime.getRuntime().availableProcessors();
+	}
+
+	public BatchNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this( tree, null );
+	}
+
+	/**
+	 * Copy the positions of all elements of an {@link IterableRealInterval}
+	 * into a flat array, n coordinates per position in iteration order.
+	 */
+	public static double[] flatPositions( final IterableRealInterval< ? > queries )
+	{
+		final int n = queries.numDimensions();
+		final double[] positions = new double[ ( int ) queries.size() * n ];
+		final double[] position = new double[ n ];
+		final RealCursor< ? > cursor = queries.localizingCursor();
+		for ( int k = 0; cursor.hasNext(); k += n )
+		{
+			cursor.fwd();
+			cursor.localize( position );
+			System.arraycopy( position, 0, positions, k, n );
+		}
+		return positions;
+	}
+
+	/**
+	 * Find the nearest neighbor of each query.
+	 * 
+	 * @param queries
+	 *            query positions, n coordinates per query
+	 * @param indices
+	 *            receives the value index of the nearest neighbor of each
+	 *            query
+	 * @param squDistances
+	 *            receives the square distance to the nearest neighbor of each
+	 *            query
+	 */
+	public void nearestNeighbors( final double[] queries, final int[] indices, final double[] squDistances )
+	{
+		run( queries, new Chunk()
+		{
+			@Override
+			public void search( final double[] queries, final int[] order, final int from, final int to )
+			{
+				final NearestNeighborSearchOnFlatKDTree< T > search = new NearestNeighborSearchOnFlatKDTree< T >( tree );
+				final RealPoint reference = new RealPoint( n );
+				for ( int i = from; i < to; ++i )
+				{
+					final int q = order[ i ];
+					setPosition( reference, queries, q );
+					search.search( reference );
+					indices[ q ] = tree.valueIndex( search.getNode() );
+					squDistances[ q ] = search.getSquareDistance();
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Find the k nearest neighbors of each query, ordered by distance.
+	 * 
+	 * @param queries
+	 *            query positions, n coordinates per query
+	 * @param k
+	 *            number of neighbors
+	 * @param indices
+	 *            receives the value indices of the k nearest neighbors of
+	 *            query q at {@code [q*k, q*k+k)}, -1 if the tree has less than
+	 *            k nodes
+	 * @param squDistances
+	 *            receives the square distances of the k nearest neighbors of
+	 *            query q at {@code [q*k, q*k+k)}
+	 */
+	public void kNearestNeighbors( final double[] queries, final int k, final int[] indices, final double[] squDistances )
+	{
+		run( queries, new Chunk()
+		{
+			@Override
+			public void search( final double[] queries, final int[] order, final int from, final int to )
+			{
+				final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+				final RealPoint reference = new RealPoint( n );
+				for ( int i = from; i < to; ++i )
+				{
+					final int q = order[ i ];
+					setPosition( reference, queries, q );
+					search.search( reference );
+					for ( int j = 0, l = q * k; j < k; ++j, ++l )
+					{
+						final int node = search.getNode( j );
+						indices[ l ] = node < 0 ? -1 : tree.valueIndex( node );
+						squDistances[ l ] = search.getSquareDistance( j );
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Find all neighbors within radius of each query.
+	 * 
+	 * @param queries
+	 *            query positions, n coordinates per query
+	 * @param radius
+	 *            the radius about each query
+	 * @param sortResults
+	 *            whether the neighbors of each query should be ordered by
+	 *            ascending distance
+	 */
+	public RadiusResults radiusNeighbors( final double[] queries, final double radius, final boolean sortResults )
+	{
+		final int numQueries = queries.length / n;
+		final int[] counts = new int[ numQueries ];
+		final ArrayList< RadiusChunk > chunks = new ArrayList< RadiusChunk >();
+		run( queries, new Chunk()
+		{
+			@Override
+			public void search( final double[] queries, final int[] order, final int from, final int to )
+			{
+				final RadiusChunk chunk = new RadiusChunk( order, from, to );
+				synchronized ( chunks )
+				{
+					chunks.add( chunk );
+				}
+				final RadiusNeighborSearchOnFlatKDTree< T > search = new RadiusNeighborSearchOnFlatKDTree< T >( tree );
+				final RealPoint reference = new RealPoint( n );
+				for ( int i = from; i < to; ++i )
+				{
+					final int q = order[ i ];
+					setPosition( reference, queries, q );
+					search.search( reference, radius, sortResults );
+					final int numNeighbors = search.numNeighbors();
+					counts[ q ] = numNeighbors;
+					for ( int j = 0; j < numNeighbors; ++j )
+						chunk.add( tree.valueIndex( search.getNode( j ) ), search.getSquareDistance( j ) );
+				}
+			}
+		} );
+
+		final int[] offsets = new int[ numQueries + 1 ];
+		for ( int q = 0; q < numQueries; ++q )
+			offsets[ q + 1 ] = offsets[ q ] + counts[ q ];
+		final int[] indices = new int[ offsets[ numQueries ] ];
+		final double[] squDistances = new double[ offsets[ numQueries ] ];
+		for ( final RadiusChunk chunk : chunks )
+		{
+			for ( int i = chunk.from, j = 0; i < chunk.to; ++i )
+			{
+				final int q = chunk.order[ i ];
+				System.arraycopy( chunk.indices, j, indices, offsets[ q ], counts[ q ] );
+				System.arraycopy( chunk.squDistances, j, squDistances, offsets[ q ], counts[ q ] );
+				j += counts[ q ];
+			}
+		}
+		return new RadiusResults( offsets, indices, squDistances );
+	}
+
+	/**
+	 * Results of {@link BatchNeighborSearchOnFlatKDTree#radiusNeighbors(double[], double, boolean)}.
+	 * The neighbors of query q are at {@code [offsets[q], offsets[q+1])} in
+	 * the indices and square distances arrays.
+	 */
+	public static class RadiusResults
+	{
+		protected final int[] offsets;
+
+		protected final int[] indices;
+
+		protected final double[] squDistances;
+
+		public RadiusResults( final int[] offsets, final int[] indices, final double[] squDistances )
+		{
+			this.offsets = offsets;
+			this.indices = indices;
+			this.squDistances = squDistances;
+		}
+
+		public int numQueries() { return offsets.length - 1; }
+		public int numNeighbors( final int q ) { return offsets[ q + 1 ] - offsets[ q ]; }
+		public int getIndex( final int q, final int i ) { return indices[ offsets[ q ] + i ]; }
+		public double getSquareDistance( final int q, final int i ) { return squDistances[ offsets[ q ] + i ]; }
+		public double getDistance( final int q, final int i ) { return Math.sqrt( squDistances[ offsets[ q ] + i ] ); }
+		public int[] getOffsets() { return offsets; }
+		public int[] getIndices() { return indices; }
+		public double[] getSquareDistances() { return squDistances; }
+	}
+
+	protected static class RadiusChunk
+	{
+		final int[] order;
+
+		final int from, to;
+
+		int size = 0;
+
+		int[] indices = new int[ 64 ];
+
+		double[] squDistances = new double[ 64 ];
+
+		RadiusChunk( final int[] order, final int from, final int to )
+		{
+			this.order = order;
+			this.from = from;
+			this.to = to;
+		}
+
+		void add( final int index, final double squDistance )
+		{
+			if ( size == indices.length )
+			{
+				final int[] i = new int[ 2 * size ];
+				final double[] s = new double[ 2 * size ];
+				System.arraycopy( indices, 0, i, 0, size );
+				System.arraycopy( squDistances, 0, s, 0, size );
+				indices = i;
+				squDistances = s;
+			}
+			indices[ size ] = index;
+			squDistances[ size++ ] = squDistance;
+		}
+	}
+
+	protected static abstract class Chunk
+	{
+		/**
+		 * Search queries order[from] to order[to-1].
+		 */
+		public abstract void search( double[] queries, int[] order, int from, int to );
+	}
+
+	protected void setPosition( final RealPoint reference, final double[] queries, final int q )
+	{
+		for ( int d = 0, k = q * n; d < n; ++d, ++k )
+			reference.setPosition( queries[ k ], d );
+	}
+
+	/**
+	 * Order the queries and search them in chunks.
+	 */
+	protected void run( final double[] queries, final Chunk chunk )
+	{
+		final int numQueries = queries.length / n;
+		final int[] order = order( queries, numQueries );
+		if ( numTasks == 1 || numQueries < 2 * numTasks )
+		{
+			chunk.search( queries, order, 0, numQueries );
+			return;
+		}
+
+		final int chunkSize = ( numQueries + numTasks - 1 ) / numTasks;
+		final ArrayList< Future< ? > > futures = new ArrayList< Future< ? > >();
+		for ( int from = 0; from < numQueries; from += chunkSize )
+		{
+			final int f = from;
+			final int t = Math.min( numQueries, from + chunkSize );
+			futures.add( service.submit( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					chunk.search( queries, order, f, t );
+				}
+			} ) );
+		}
+		SimpleMultiThreading.waitFor( futures );
+	}
+
+	/**
+	 * @return the indices of the queries sorted by the Z-order of their
+	 *         positions quantized within the bounds of the tree.
+	 */
+	protected int[] order( final double[] queries, final int numQueries )
+	{
+		final int bits = Math.min( 21, 63 / n );
+		final long maxCell = ( 1L << bits ) - 1;
+		final double[] scale = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			final double size = tree.realMax( d ) - tree.realMin( d );
+			scale[ d ] = size > 0 ? maxCell / size : 0;
+		}
+
+		final long[] keys = new long[ numQueries ];
+		for ( int q = 0, k = 0; q < numQueries; ++q )
+		{
+			long key = 0;
+			for ( int d = 0; d < n; ++d, ++k )
+			{
+				final long cell = Math.max( 0, Math.min( maxCell, ( long ) ( ( queries[ k ] - tree.realMin( d ) ) * scale[ d ] ) ) );
+				for ( int b = 0; b < bits; ++b )
+					key |= ( ( cell >> b ) & 1L ) << ( b * n + d );
+			}
+			keys[ q ] = key;
+		}
+
+		// LSD radix sort of the keys, 8 bits per pass
+		int[] order = new int[ numQueries ];
+		for ( int q = 0; q < numQueries; ++q )
+			order[ q ] = q;
+		int[] tmpOrder = new int[ numQueries ];
+		long[] tmpKeys = new long[ numQueries ];
+		long[] sortKeys = keys;
+		final int[] counts = new int[ 257 ];
+		for ( int shift = 0; shift < bits * n; shift += 8 )
+		{
+			Arrays.fill( counts, 0 );
+			for ( int q = 0; q < numQueries; ++q )
+				++counts[ ( int ) ( ( sortKeys[ q ] >>> shift ) & 0xff ) + 1 ];
+			for ( int i = 0; i < 256; ++i )
+				counts[ i + 1 ] += counts[ i ];
+			for ( int q = 0; q < numQueries; ++q )
+			{
+				final int i = counts[ ( int ) ( ( sortKeys[ q ] >>> shift ) & 0xff ) ]++;
+				tmpKeys[ i ] = sortKeys[ q ];
+				tmpOrder[ i ] = order[ q ];
+			}
+			final long[] k = sortKeys;
+			sortKeys = tmpKeys;
+			tmpKeys = k;
+			final int[] o = order;
+			order = tmpOrder;
+			tmpOrder = o;
+		}
+		return order;
+	}
+
+}
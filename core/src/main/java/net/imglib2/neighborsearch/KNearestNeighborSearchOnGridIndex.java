@@ -0,0 +1,289 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.collection.GridIndex;
+import net.imglib2.collection.GridIndex.Cell;
+import net.imglib2.collection.GridIndex.CellKey;
+import net.imglib2.collection.GridIndex.Entry;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link GridIndex}. Cells are visited in rings of growing distance around the
+ * cell of the reference until no unvisited cell can contain a closer
+ * neighbor, or, if the ring becomes larger than the number of non-empty
+ * cells, by checking all cells. Searches do not allocate.
+ * 
+ * @author agent
+ */
+public class KNearestNeighborSearchOnGridIndex< T > implements KNearestNeighborSearch< T >
+{
+	protected final GridIndex< T > index;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final long[] center;
+
+	protected final int[] offset;
+
+	protected final CellKey key;
+
+	protected final double minCellSize;
+
+	protected final int k;
+
+	protected final Entry< T >[] bestPoints;
+
+	protected final double[] bestSquDistances;
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public KNearestNeighborSearchOnGridIndex( final GridIndex< T > index, final int k )
+	{
+		this.index = index;
+		n = index.numDimensions();
+		pos = new double[ n ];
+		center = new long[ n ];
+		offset = new int[ n ];
+		key = new CellKey( n );
+		double m = Double.MAX_VALUE;
+		for ( int d = 0; d < n; ++d )
+			m = Math.min( m, index.cellSize( d ) );
+		minCellSize = m;
+		this.k = k;
+		bestPoints = new Entry[ k ];
+		bestSquDistances = new double[ k ];
+		for ( int i = 0; i < k; ++i )
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK() { return k; }
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = null;
+		}
+		for ( int d = 0; d < n; ++d )
+			center[ d ] = index.cell( pos[ d ], d );
+
+		final int numCells = index.numCells();
+		for ( int r = 0; numCells > 0; ++r )
+		{
+			// check all cells if the ring would be larger
+			double ringSize = 1;
+			for ( int d = 0; d < n; ++d )
+				ringSize *= 2 * r + 1;
+			if ( ringSize >= numCells )
+			{
+				for ( final Cell< T > cell : index.getCells() )
+					if ( chebyshevDistance( cell.getKey() ) >= r )
+						searchCell( cell );
+				return;
+			}
+
+			searchRing( r );
+
+			// unvisited cells are at least r cells away
+			final double bound = r * minCellSize;
+			if ( bestSquDistances[ k - 1 ] <= bound * bound )
+				return;
+		}
+	}
+
+	protected long chebyshevDistance( final CellKey cell )
+	{
+		long max = 0;
+		for ( int d = 0; d < n; ++d )
+			max = Math.max( max, Math.abs( cell.get( d ) - center[ d ] ) );
+		return max;
+	}
+
+	/**
+	 * Search all cells at Chebyshev distance r from the center cell.
+	 */
+	protected void searchRing( final int r )
+	{
+		for ( int d = 0; d < n; ++d )
+			offset[ d ] = -r;
+		while ( true )
+		{
+			boolean onRing = false;
+			for ( int d = 0; d < n; ++d )
+			{
+				onRing |= offset[ d ] == -r || offset[ d ] == r;
+				key.set( center[ d ] + offset[ d ], d );
+			}
+			if ( onRing || r == 0 )
+			{
+				key.update();
+				final Cell< T > cell = index.getCell( key );
+				if ( cell != null )
+					searchCell( cell );
+			}
+
+			// next offset, skipping the interior of the ring
+			int d = 0;
+			if ( r > 0 )
+			{
+				boolean outside = false;
+				for ( int e = 1; e < n; ++e )
+					outside |= offset[ e ] == -r || offset[ e ] == r;
+				offset[ 0 ] += outside || offset[ 0 ] == r ? 1 : 2 * r;
+			}
+			else
+				++offset[ 0 ];
+			while ( offset[ d ] > r )
+			{
+				offset[ d ] = -r;
+				if ( ++d == n )
+					return;
+				++offset[ d ];
+			}
+		}
+	}
+
+	protected void searchCell( final Cell< T > cell )
+	{
+		for ( int j = 0; j < cell.size(); ++j )
+		{
+			final Entry< T > entry = cell.get( j );
+			final double squDistance = entry.squDistanceTo( pos );
+			if ( squDistance < bestSquDistances[ k - 1 ] )
+			{
+				int i = k - 1;
+				for ( int l = i - 1; i > 0 && squDistance < bestSquDistances[ l ]; --i, --l )
+				{
+					bestSquDistances[ i ] = bestSquDistances[ l ];
+					bestPoints[ i ] = bestPoints[ l ];
+				}
+				bestSquDistances[ i ] = squDistance;
+				bestPoints[ i ] = entry;
+			}
+		}
+	}
+
+	/**
+	 * @return the i-th nearest entry, null if the index has less than i+1
+	 *         entries.
+	 */
+	public Entry< T > getEntry( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnGridIndex< T > copy()
+	{
+		final KNearestNeighborSearchOnGridIndex< T > copy = new KNearestNeighborSearchOnGridIndex< T >( index, k );
+		copyState( copy );
+		return copy;
+	}
+
+	protected void copyState( final KNearestNeighborSearchOnGridIndex< T > copy )
+	{
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		System.arraycopy( bestPoints, 0, copy.bestPoints, 0, k );
+		System.arraycopy( bestSquDistances, 0, copy.bestSquDistances, 0, k );
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.collection.FlatKDTree;
+import net.imglib2.util.Partition;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link FlatKDTree}s. The result arrays grow as needed and are reused, so
+ * searches do not allocate once they are large enough.
+ * 
+ * @author agent
+ */
+public class RadiusNeighborSearchOnFlatKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final double[] positions;
+
+	protected final int size;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected int[] resultNodes;
+
+	protected double[] resultSquDistances;
+
+	protected FlatKDTree< T >.NodeRef[] resultPoints;
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public RadiusNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		positions = tree.getPositions();
+		size = tree.size();
+		n = tree.numDimensions();
+		pos = new double[ n ];
+		resultNodes = new int[ 16 ];
+		resultSquDistances = new double[ 16 ];
+		resultPoints = new FlatKDTree.NodeRef[ 16 ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		searchNode( 0, 0, radius * radius );
+		if ( sortResults )
+			sort( 0, numNeighbors - 1 );
+	}
+
+	@Override
+	public int numDimensions() { return n; }
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	protected void searchNode( final int current, final int d, final double squRadius )
+	{
+		// consider the current node
+		final int offset = current * n;
+		double squDistance = 0;
+		for ( int i = 0; i < n; ++i )
+		{
+			final double diff = pos[ i ] - positions[ offset + i ];
+			squDistance += diff * diff;
+		}
+		if ( squDistance <= squRadius )
+		{
+			if ( numNeighbors == resultNodes.length )
+			{
+				final int capacity = 2 * numNeighbors;
+				final int[] nodes = new int[ capacity ];
+				final double[] squDistances = new double[ capacity ];
+				final FlatKDTree< T >.NodeRef[] points = new FlatKDTree.NodeRef[ capacity ];
+				System.arraycopy( resultNodes, 0, nodes, 0, numNeighbors );
+				System.arraycopy( resultSquDistances, 0, squDistances, 0, numNeighbors );
+				System.arraycopy( resultPoints, 0, points, 0, numNeighbors );
+				resultNodes = nodes;
+				resultSquDistances = squDistances;
+				resultPoints = points;
+			}
+			resultNodes[ numNeighbors ] = current;
+			resultSquDistances[ numNeighbors++ ] = squDistance;
+		}
+
+		final double axisDiff = pos[ d ] - positions[ offset + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = 2 * current + 1;
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		if ( nearChild < size )
+			searchNode( nearChild, dChild, squRadius );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= squRadius ) && ( awayChild < size ) )
+			searchNode( awayChild, dChild, squRadius );
+	}
+
+	/**
+	 * Quicksort results [i,j] by square distance. Recurses into the smaller
+	 * part only, so the stack depth stays logarithmic.
+	 */
+	protected void sort( int i, int j )
+	{
+		while ( i < j )
+		{
+			final int p = Partition.partitionSubList( i, j, resultSquDistances, resultNodes );
+			if ( p - i < j - p )
+			{
+				sort( i, p - 1 );
+				i = p + 1;
+			}
+			else
+			{
+				sort( p + 1, j );
+				j = p - 1;
+			}
+		}
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	protected FlatKDTree< T >.NodeRef point( final int i )
+	{
+		if ( resultPoints[ i ] == null )
+			resultPoints[ i ] = tree.createNodeRef();
+		resultPoints[ i ].setNode( resultNodes[ i ] );
+		return resultPoints[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return point( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return point( i );
+	}
+
+	/**
+	 * @return the node index of the i-th neighbor in the tree.
+	 */
+	public int getNode( final int i )
+	{
+		return resultNodes[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.collection.GridIndex;
+import net.imglib2.collection.GridIndex.Cell;
+import net.imglib2.collection.GridIndex.CellKey;
+import net.imglib2.collection.GridIndex.Entry;
+import net.imglib2.util.Partition;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for {@link GridIndex}.
+ * Visits the cells overlapping the bounding box of the search sphere, or all
+ * non-empty cells if there are fewer. The result arrays grow as needed and are
+ * reused.
+ * 
+ * @author agent
+ */
+public class RadiusNeighborSearchOnGridIndex< T > implements RadiusNeighborSearch< T >
+{
+	protected final GridIndex< T > index;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final long[] min;
+
+	protected final long[] max;
+
+	protected final CellKey key;
+
+	protected int numNeighbors;
+
+	protected Entry< T >[] resultPoints;
+
+	protected double[] resultSquDistances;
+
+	/**
+	 * result i is resultPoints[ order[ i ] ]
+	 */
+	protected int[] order;
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	public RadiusNeighborSearchOnGridIndex( final GridIndex< T > index )
+	{
+		this.index = index;
+		n = index.numDimensions();
+		pos = new double[ n ];
+		min = new long[ n ];
+		max = new long[ n ];
+		key = new CellKey( n );
+		resultPoints = new Entry[ 16 ];
+		resultSquDistances = new double[ 16 ];
+		order = new int[ 16 ];
+	}
+
+	@Override
+	public int numDimensions() { return n; }
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		final double squRadius = radius * radius;
+
+		double numBoxCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = index.cell( pos[ d ] - radius, d );
+			max[ d ] = index.cell( pos[ d ] + radius, d );
+			numBoxCells *= max[ d ] - min[ d ] + 1;
+		}
+
+		if ( numBoxCells > index.numCells() )
+		{
+			for ( final Cell< T > cell : index.getCells() )
+				searchCell( cell, squRadius );
+		}
+		else
+		{
+			for ( int d = 0; d < n; ++d )
+				key.set( min[ d ], d );
+			while ( true )
+			{
+				key.update();
+				final Cell< T > cell = index.getCell( key );
+				if ( cell != null )
+					searchCell( cell, squRadius );
+
+				int d = 0;
+				key.set( key.get( 0 ) + 1, 0 );
+				while ( key.get( d ) > max[ d ] )
+				{
+					key.set( min[ d ], d );
+					if ( ++d == n )
+						break;
+					key.set( key.get( d ) + 1, d );
+				}
+				if ( d == n )
+					break;
+			}
+		}
+
+		for ( int i = 0; i < numNeighbors; ++i )
+			order[ i ] = i;
+		if ( sortResults )
+			sort( 0, numNeighbors - 1 );
+	}
+
+	@SuppressWarnings( { "rawtypes", "unchecked" } )
+	protected void searchCell( final Cell< T > cell, final double squRadius )
+	{
+		for ( int j = 0; j < cell.size(); ++j )
+		{
+			final Entry< T > entry = cell.get( j );
+			final double squDistance = entry.squDistanceTo( pos );
+			if ( squDistance <= squRadius )
+			{
+				if ( numNeighbors == resultPoints.length )
+				{
+					final int capacity = 2 * numNeighbors;
+					final Entry< T >[] points = new Entry[ capacity ];
+					final double[] squDistances = new double[ capacity ];
+					System.arraycopy( resultPoints, 0, points, 0, numNeighbors );
+					System.arraycopy( resultSquDistances, 0, squDistances, 0, numNeighbors );
+					resultPoints = points;
+					resultSquDistances = squDistances;
+					order = new int[ capacity ];
+				}
+				resultPoints[ numNeighbors ] = entry;
+				resultSquDistances[ numNeighbors++ ] = squDistance;
+			}
+		}
+	}
+
+	/**
+	 * Quicksort results [i,j] by square distance. Recurses into the smaller
+	 * part only, so the stack depth stays logarithmic.
+	 */
+	protected void sort( int i, int j )
+	{
+		while ( i < j )
+		{
+			final int p = Partition.partitionSubList( i, j, resultSquDistances, order );
+			if ( p - i < j - p )
+			{
+				sort( i, p - 1 );
+				i = p + 1;
+			}
+			else
+			{
+				sort( p + 1, j );
+				j = p - 1;
+			}
+		}
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	public Entry< T > getEntry( final int i )
+	{
+		return resultPoints[ order[ i ] ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return getEntry( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return getEntry( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
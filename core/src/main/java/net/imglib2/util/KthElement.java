@@ -343,6 +343,70 @@ public class KthElement
 		kthElement( 0, values.length - 1, k, values );
 	}
 
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 * 
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the array.
+	 * Usually, this will be an array of indices, so that the partition operation
+	 * can be mirrored in another list (see
+	 * {@link #kthElement(int, int, int, List, int[])}).
+	 * </p>
+	 * 
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. i <= k <= j.
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the elements in the values array
+	 */
+	public static void kthElement( int i, int j, int k, double[] values, final int[] permutation )
+	{
+		while ( true )
+		{
+			int pivotpos = partitionSubList( i, j, values, permutation );
+			if ( pivotpos > k )
+			{
+				// partition lower half
+				j = pivotpos - 1;
+			}
+			else if ( pivotpos < k )
+			{
+				// partition upper half
+				i = pivotpos + 1;
+			}
+			else
+				return;
+		}
+	}
+
+	/**
+	 * Partition an array of {@code values} such that the k-th smallest value is
+	 * at position {@code k}, elements before the k-th are smaller or equal and
+	 * elements after the k-th are larger or equal.
+	 * 
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the array.
+	 * </p>
+	 * 
+	 * @param k
+	 *            index for k-th smallest value. 0 <= k < values.length.
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the elements in the values array
+	 */
+	public static void kthElement( int k, double[] values, final int[] permutation )
+	{
+		kthElement( 0, values.length - 1, k, values, permutation );
+	}
+
 	/**
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
@@ -455,6 +455,87 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Partition a subarray of {@code values}.
+	 * 
+	 * The median of the elements at indices {@code i}, {@code (i+j)/2} and
+	 * {@code j} is taken as the pivot value. The elements {@code [i,j]} are
+	 * reordered, such that all elements before the pivot are smaller or equal
+	 * and all elements after the pivot are equal or larger than the pivot. The
+	 * index of the pivot element is returned.
+	 * 
+	 * <p>
+	 * Elements equal to the pivot stop the scans from both ends, so a run of
+	 * equal values is split in half rather than shrinking the range by one
+	 * element. Selection and sorting stay O(n) and O(n log n) for repeated
+	 * values.
+	 * </p>
+	 * 
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the array.
+	 * Usually, this will be an array of indices, so that the partition operation
+	 * can be mirrored in another list (see
+	 * {@link #partitionSubList(int, int, List, int[])}).
+	 * </p>
+	 * 
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the elements in the values array
+	 * @return index of pivot element
+	 */
+	public static int partitionSubList( final int i, final int j, final double[] values, final int[] permutation )
+	{
+		if ( i >= j )
+			return i;
+
+		// move the median of three to i
+		final int m = ( i + j ) >>> 1;
+		if ( values[ i ] < values[ m ] )
+			swap( i, m, values, permutation );
+		if ( values[ j ] < values[ i ] )
+		{
+			swap( i, j, values, permutation );
+			if ( values[ i ] < values[ m ] )
+				swap( i, m, values, permutation );
+		}
+		final double pivot = values[ i ];
+
+		int lo = i;
+		int hi = j + 1;
+		while ( true )
+		{
+			// move lo forward while < pivot, hi backward while > pivot
+			while ( values[ ++lo ] < pivot )
+				if ( lo == j )
+					break;
+			while ( pivot < values[ --hi ] )
+				if ( hi == i )
+					break;
+			if ( lo >= hi )
+				break;
+			swap( lo, hi, values, permutation );
+		}
+
+		// we are done. put the pivot element here.
+		swap( i, hi, values, permutation );
+		return hi;
+	}
+
+	private static void swap( final int i, final int j, final double[] values, final int[] permutation )
+	{
+		final double tmp = values[ i ];
+		values[ i ] = values[ j ];
+		values[ j ] = tmp;
+		final int indicesTmp = permutation[ i ];
+		permutation[ i ] = permutation[ j ];
+		permutation[ j ] = indicesTmp;
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 * 
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.display;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Checks that the {@link RealARGBArrayKernel} fast path of the XY projectors
+ * gives the same result as the generic path.
+ *
+ * @author agent
+ */
+public class RealARGBArrayKernelTest
+{
+	final static long[] dimensions = new long[] { 37, 23, 4, 3 };
+
+	static < T extends RealType< T > & NativeType< T > > Img< T > fill( final Img< T > img, final double range )
+	{
+		final Random random = new Random( 1 );
+		final Cursor< T > c = img.cursor();
+		while ( c.hasNext() )
+			c.next().setReal( random.nextDouble() * range );
+		return img;
+	}
+
+	static < T extends RealType< T > > void check( final Img< T > img, final Converter< T, ARGBType > converter )
+	{
+		final ArrayImg< ARGBType, IntArray > fast = ArrayImgs.argbs( 37, 23 );
+		final ArrayImg< ARGBType, IntArray > generic = ArrayImgs.argbs( 37, 23 );
+
+		final XYRandomAccessibleProjector< T, ARGBType > p1 = new XYRandomAccessibleProjector< T, ARGBType >( img, fast, converter );
+		final XYRandomAccessibleProjector< T, ARGBType > p2 = new XYRandomAccessibleProjector< T, ARGBType >( Views.interval( img, img ), generic, converter );
+		assertTrue( p1.kernel != null );
+		assertTrue( p2.kernel == null );
+		p1.setPosition( 2, 2 );
+		p2.setPosition( 2, 2 );
+		p1.setPosition( 1, 3 );
+		p2.setPosition( 1, 3 );
+		p1.map();
+		p2.map();
+		assertArrayEquals( generic.update( null ).getCurrentStorageArray(), fast.update( null ).getCurrentStorageArray() );
+
+		// the lookup tables follow changes of the display range
+		( ( LinearRange ) converter ).setMax( ( ( LinearRange ) converter ).getMax() / 2 );
+		p1.map();
+		p2.map();
+		assertArrayEquals( generic.update( null ).getCurrentStorageArray(), fast.update( null ).getCurrentStorageArray() );
+
+		final ArrayImg< ARGBType, IntArray > fast2 = ArrayImgs.argbs( 37, 23 );
+		final XYProjector< T, ARGBType > p3 = new XYProjector< T, ARGBType >( img, fast2, converter );
+		p3.setPosition( 2, 2 );
+		p3.setPosition( 1, 3 );
+		p3.map();
+		assertArrayEquals( generic.update( null ).getCurrentStorageArray(), fast2.update( null ).getCurrentStorageArray() );
+	}
+
+	static < T extends RealType< T > & NativeType< T > > void checkAll( final T type, final double range )
+	{
+		check( fill( new ArrayImgFactory< T >().create( dimensions, type ), range ), new RealARGBConverter< T >( 10, range * 0.8 ) );
+		check( fill( new PlanarImgFactory< T >().create( dimensions, type ), range ), new RealARGBConverter< T >( 10, range * 0.8 ) );
+		check( fill( new ArrayImgFactory< T >().create( dimensions, type ), range ), new RealLUTConverter< T >( 10, range * 0.8, new ColorTable8() ) );
+		check( fill( new PlanarImgFactory< T >().create( dimensions, type ), range ), new RealLUTConverter< T >( 10, range * 0.8, new ColorTable8() ) );
+	}
+
+	@Test
+	public void testUnsignedByte()
+	{
+		checkAll( new UnsignedByteType(), 255 );
+	}
+
+	@Test
+	public void testUnsignedShort()
+	{
+		checkAll( new UnsignedShortType(), 65535 );
+	}
+
+	@Test
+	public void testFloat()
+	{
+		checkAll( new FloatType(), 1000 );
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.display;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that mapping in parallel bands of rows gives the same result as
+ * mapping in a single thread.
+ *
+ * @author agent
+ */
+public class XYRandomAccessibleProjectorTest
+{
+	static ExecutorService executor;
+
+	static ArrayImg< UnsignedByteType, ByteArray > img;
+
+	@BeforeClass
+	public static void setUp()
+	{
+		executor = Executors.newFixedThreadPool( 4 );
+		img = ArrayImgs.unsignedBytes( new byte[ 37 * 23 * 4 * 3 ], 37, 23, 4, 3 );
+		final Random random = new Random( 1 );
+		final Cursor< UnsignedByteType > c = img.cursor();
+		while ( c.hasNext() )
+			c.next().set( random.nextInt( 256 ) );
+	}
+
+	@AfterClass
+	public static void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Test
+	public void testXYRandomAccessibleProjector()
+	{
+		final ArrayImg< ARGBType, IntArray > serial = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+		final ArrayImg< ARGBType, IntArray > parallel = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+		final RealARGBConverter< UnsignedByteType > converter = new RealARGBConverter< UnsignedByteType >( 0, 255 );
+
+		final XYRandomAccessibleProjector< UnsignedByteType, ARGBType > p1 = new XYRandomAccessibleProjector< UnsignedByteType, ARGBType >( img, serial, converter );
+		final XYRandomAccessibleProjector< UnsignedByteType, ARGBType > p2 = new XYRandomAccessibleProjector< UnsignedByteType, ARGBType >( img, parallel, converter );
+		p2.setExecutorService( executor, 5 );
+		p1.setPosition( 2, 2 );
+		p2.setPosition( 2, 2 );
+		p1.setPosition( 1, 3 );
+		p2.setPosition( 1, 3 );
+		p1.map();
+		p2.map();
+
+		assertArrayEquals( serial.update( null ).getCurrentStorageArray(), parallel.update( null ).getCurrentStorageArray() );
+	}
+
+	@Test
+	public void testCompositeXYRandomAccessibleProjector()
+	{
+		final ArrayImg< ARGBType, IntArray > serial = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+		final ArrayImg< ARGBType, IntArray > parallel = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+
+		final CompositeXYRandomAccessibleProjector< UnsignedByteType > p1 = new CompositeXYRandomAccessibleProjector< UnsignedByteType >( img, serial, ChannelARGBConverter.converterListRGBA, 2 );
+		final CompositeXYRandomAccessibleProjector< UnsignedByteType > p2 = new CompositeXYRandomAccessibleProjector< UnsignedByteType >( img, parallel, ChannelARGBConverter.converterListRGBA, 2 );
+		p2.setExecutorService( executor, 3 );
+		p1.setComposite( true );
+		p2.setComposite( true );
+		p1.setPosition( 1, 3 );
+		p2.setPosition( 1, 3 );
+		p1.map();
+		p2.map();
+
+		assertArrayEquals( serial.update( null ).getCurrentStorageArray(), parallel.update( null ).getCurrentStorageArray() );
+
+		p1.setComposite( false );
+		p2.setComposite( false );
+		p1.setPosition( 2, 2 );
+		p2.setPosition( 2, 2 );
+		p1.map();
+		p2.map();
+
+		assertArrayEquals( serial.update( null ).getCurrentStorageArray(), parallel.update( null ).getCurrentStorageArray() );
+	}
+
+	@Test
+	public void testXYProjector()
+	{
+		final ArrayImg< ARGBType, IntArray > serial = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+		final ArrayImg< ARGBType, IntArray > parallel = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+		final ChannelARGBConverter converter = new ChannelARGBConverter( ChannelARGBConverter.Channel.G );
+
+		final XYProjector< UnsignedByteType, ARGBType > p1 = new XYProjector< UnsignedByteType, ARGBType >( img, serial, converter );
+		final XYProjector< UnsignedByteType, ARGBType > p2 = new XYProjector< UnsignedByteType, ARGBType >( img, parallel, converter );
+		p2.setExecutorService( executor, 5 );
+		p1.setPosition( 2, 2 );
+		p2.setPosition( 2, 2 );
+		p1.setPosition( 1, 3 );
+		p2.setPosition( 1, 3 );
+		p1.map();
+		p2.map();
+
+		assertArrayEquals( serial.update( null ).getCurrentStorageArray(), parallel.update( null ).getCurrentStorageArray() );
+	}
+
+	@Test
+	public void testCompositeXYProjector()
+	{
+		final ArrayImg< ARGBType, IntArray > serial = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+		final ArrayImg< ARGBType, IntArray > parallel = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+
+		final CompositeXYProjector< UnsignedByteType > p1 = new CompositeXYProjector< UnsignedByteType >( img, serial, ChannelARGBConverter.converterListRGBA, 2 );
+		final CompositeXYProjector< UnsignedByteType > p2 = new CompositeXYProjector< UnsignedByteType >( img, parallel, ChannelARGBConverter.converterListRGBA, 2 );
+		p2.setExecutorService( executor, 3 );
+		p1.setComposite( true );
+		p2.setComposite( true );
+		p1.setPosition( 1, 3 );
+		p2.setPosition( 1, 3 );
+		p1.map();
+		p2.map();
+
+		assertArrayEquals( serial.update( null ).getCurrentStorageArray(), parallel.update( null ).getCurrentStorageArray() );
+	}
+
+	@Test
+	public void testCanceled()
+	{
+		final ArrayImg< ARGBType, IntArray > target = ArrayImgs.argbs( new int[ 37 * 23 ], 37, 23 );
+		final int[] data = target.update( null ).getCurrentStorageArray();
+		final XYRandomAccessibleProjector< UnsignedByteType, ARGBType > p = new XYRandomAccessibleProjector< UnsignedByteType, ARGBType >( img, target, new ChannelARGBConverter( ChannelARGBConverter.Channel.R ) );
+		p.setExecutorService( executor, 5 );
+
+		// a canceled projector renders nothing until it is re-enabled
+		p.setCanceled( true );
+		p.map();
+		assertArrayEquals( new int[ data.length ], data );
+
+		p.setCanceled( false );
+		p.map();
+		boolean rendered = false;
+		for ( final int value : data )
+			rendered |= value != 0;
+		assertTrue( rendered );
+	}
+}
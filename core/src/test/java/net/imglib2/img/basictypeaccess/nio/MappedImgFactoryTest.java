@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.MappedArrayImgFactory;
+import net.imglib2.img.planar.MappedPlanarImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link MappedArrayImgFactory} and {@link MappedPlanarImgFactory} on a
+ * raw big-endian file.
+ *
+ * @author agent
+ */
+public class MappedImgFactoryTest
+{
+	final long[] dimensions = new long[] { 17, 9, 5 };
+
+	final int headerBytes = 12;
+
+	File file;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		file = File.createTempFile( "mapped", ".raw" );
+		final DataOutputStream out = new DataOutputStream( new FileOutputStream( file ) );
+		for ( int i = 0; i < headerBytes; ++i )
+			out.writeByte( 0 );
+		for ( int i = 0; i < 17 * 9 * 5; ++i )
+			out.writeShort( 60000 + i );
+		out.close();
+	}
+
+	@After
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	private void checkContents( final Img< UnsignedShortType > img )
+	{
+		int i = 0;
+		for ( final UnsignedShortType t : img )
+			assertEquals( 60000 + i++, t.get() );
+		assertEquals( 17 * 9 * 5, i );
+	}
+
+	@Test
+	public void testMappedArrayImg()
+	{
+		checkContents( new MappedArrayImgFactory< UnsignedShortType >( file, headerBytes, MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN ).create( dimensions, new UnsignedShortType() ) );
+	}
+
+	@Test
+	public void testMappedPlanarImg()
+	{
+		final Img< UnsignedShortType > img = new MappedPlanarImgFactory< UnsignedShortType >( file, headerBytes, MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN ).create( dimensions, new UnsignedShortType() );
+		checkContents( img );
+
+		final RandomAccess< UnsignedShortType > access = img.randomAccess();
+		access.setPosition( new long[] { 3, 2, 4 } );
+		assertEquals( 60000 + 3 + 17 * ( 2 + 9 * 4 ), access.get().get() );
+	}
+
+	@Test
+	public void testWriteThrough()
+	{
+		final MappedArrayImgFactory< FloatType > factory = new MappedArrayImgFactory< FloatType >( file, 0, MapMode.READ_WRITE, ByteOrder.LITTLE_ENDIAN );
+		final Img< FloatType > img = factory.create( dimensions, new FloatType() );
+		final Cursor< FloatType > cursor = img.cursor();
+		float i = 0;
+		while ( cursor.hasNext() )
+			cursor.next().set( i++ );
+
+		i = 0;
+		for ( final FloatType t : factory.create( dimensions, new FloatType() ) )
+			assertEquals( i++, t.get(), 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTooManyPlanes()
+	{
+		new MappedPlanarImgFactory< UnsignedShortType >( file, 0, MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN ).create( new long[] { 1, 1, 65536, 65536 }, new UnsignedShortType() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testBufferSizeOverflow()
+	{
+		// ( 2^30 + 1 ) * 4 bytes wraps to 4 bytes in int arithmetic
+		new IntBufferAccess( ( 1 << 30 ) + 1 );
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.DirtyFloatArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CachedCells} with {@link LRUCellCache},
+ * {@link SoftRefCellCache}, and {@link WriteBackCellCache}.
+ *
+ * @author agent
+ */
+public class CachedCellsTest
+{
+	final long[] dimensions = new long[] { 43, 27, 13 };
+
+	final int[] cellDimensions = new int[] { 8, 8, 4 };
+
+	/**
+	 * Fills each pixel with its flat index in the image and counts how many
+	 * cells are loaded.
+	 */
+	static class IndexLoader implements CellLoader< FloatArray >
+	{
+		final long[] imgDimensions;
+
+		final AtomicInteger numLoaded = new AtomicInteger();
+
+		IndexLoader( final long[] imgDimensions )
+		{
+			this.imgDimensions = imgDimensions;
+		}
+
+		@Override
+		public FloatArray loadCell( final int[] dimensions, final long[] min, final int entitiesPerPixel )
+		{
+			numLoaded.incrementAndGet();
+			int numPixels = 1;
+			for ( int d = 0; d < dimensions.length; ++d )
+				numPixels *= dimensions[ d ];
+			final float[] data = new float[ numPixels * entitiesPerPixel ];
+			final long[] pos = new long[ dimensions.length ];
+			for ( int i = 0; i < numPixels; ++i )
+			{
+				long index = 0;
+				long step = 1;
+				int remainder = i;
+				for ( int d = 0; d < dimensions.length; ++d )
+				{
+					pos[ d ] = min[ d ] + remainder % dimensions[ d ];
+					remainder /= dimensions[ d ];
+					index += pos[ d ] * step;
+					step *= imgDimensions[ d ];
+				}
+				data[ i ] = index;
+			}
+			return new FloatArray( data );
+		}
+	}
+
+	/**
+	 * Keeps written cells in a map, loads empty cells otherwise.
+	 */
+	static class MapStore implements CellLoader< FloatArray >, CellWriter< FloatArray >
+	{
+		final HashMap< Long, float[] > store = new HashMap< Long, float[] >();
+
+		int numWritten = 0;
+
+		@Override
+		public FloatArray loadCell( final int[] dimensions, final long[] min, final int entitiesPerPixel )
+		{
+			final float[] data = store.get( key( min ) );
+			if ( data != null )
+				return new DirtyFloatArray( data.clone() );
+			int numPixels = 1;
+			for ( int d = 0; d < dimensions.length; ++d )
+				numPixels *= dimensions[ d ];
+			return new DirtyFloatArray( numPixels * entitiesPerPixel );
+		}
+
+		@Override
+		public void writeCell( final int[] dimensions, final long[] min, final FloatArray data )
+		{
+			++numWritten;
+			store.put( key( min ), data.getCurrentStorageArray().clone() );
+		}
+
+		private static long key( final long[] min )
+		{
+			return min[ 0 ] + 1000 * ( min[ 1 ] + 1000 * min[ 2 ] );
+		}
+	}
+
+	private CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > createImg( final CachedCells< FloatArray > cells )
+	{
+		final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img = new CellImg< FloatType, FloatArray, DefaultCell< FloatArray > >( new CellImgFactory< FloatType >( cellDimensions ), cells );
+		img.setLinkedType( new FloatType( img ) );
+		return img;
+	}
+
+	private void checkContents( final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img )
+	{
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		final RandomAccess< FloatType > access = img.randomAccess();
+		final long[] pos = new long[ dimensions.length ];
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursor.localize( pos );
+			final long index = pos[ 0 ] + dimensions[ 0 ] * ( pos[ 1 ] + dimensions[ 1 ] * pos[ 2 ] );
+			assertEquals( index, cursor.get().get(), 0 );
+			access.setPosition( pos );
+			assertEquals( index, access.get().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testLRUCellCache()
+	{
+		final IndexLoader loader = new IndexLoader( dimensions );
+		final long maxBytes = 4 * 4 * 8 * 8 * 4;
+		final LRUCellCache< FloatArray > cache = new LRUCellCache< FloatArray >( maxBytes );
+		final CachedCells< FloatArray > cells = new CachedCells< FloatArray >( loader, cache, 1, dimensions, cellDimensions );
+		final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img = createImg( cells );
+
+		assertEquals( 0, loader.numLoaded.get() );
+		checkContents( img );
+		assertTrue( cache.getCurrentBytes() <= maxBytes );
+		assertTrue( loader.numLoaded.get() > 0 );
+	}
+
+	@Test
+	public void testLRUCellCacheKeepsCells()
+	{
+		final IndexLoader loader = new IndexLoader( dimensions );
+		final LRUCellCache< FloatArray > cache = new LRUCellCache< FloatArray >( Long.MAX_VALUE );
+		final CachedCells< FloatArray > cells = new CachedCells< FloatArray >( loader, cache, 1, dimensions, cellDimensions );
+		final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img = createImg( cells );
+
+		checkContents( img );
+		final int numCells = 6 * 4 * 4;
+		assertEquals( numCells, loader.numLoaded.get() );
+		checkContents( img );
+		assertEquals( numCells, loader.numLoaded.get() );
+	}
+
+	@Test
+	public void testSoftRefCellCache()
+	{
+		final IndexLoader loader = new IndexLoader( dimensions );
+		final CachedCells< FloatArray > cells = new CachedCells< FloatArray >( loader, new SoftRefCellCache< FloatArray >(), 1, dimensions, cellDimensions );
+		checkContents( createImg( cells ) );
+	}
+
+	@Test
+	public void testWriteBackCellCache()
+	{
+		final MapStore store = new MapStore();
+		final long maxBytes = 4 * 4 * 8 * 8 * 4;
+		final WriteBackCellCache< FloatArray > cache = new WriteBackCellCache< FloatArray >( maxBytes, store );
+		final CachedCells< FloatArray > cells = new CachedCells< FloatArray >( store, cache, 1, dimensions, cellDimensions );
+		final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img = createImg( cells );
+
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		final long[] pos = new long[ dimensions.length ];
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursor.localize( pos );
+			cursor.get().set( pos[ 0 ] + dimensions[ 0 ] * ( pos[ 1 ] + dimensions[ 1 ] * pos[ 2 ] ) );
+		}
+		cache.clear();
+		assertEquals( 6 * 4 * 4, store.store.size() );
+		checkContents( img );
+
+		// reading does not make cells dirty
+		final int numWritten = store.numWritten;
+		cache.flush();
+		assertEquals( numWritten, store.numWritten );
+	}
+
+	@Test
+	public void testWriteBackAfterEviction()
+	{
+		final MapStore store = new MapStore();
+		final long maxBytes = 2 * 4 * 8 * 8 * 4;
+		final WriteBackCellCache< FloatArray > cache = new WriteBackCellCache< FloatArray >( maxBytes, store );
+		final CachedCells< FloatArray > cells = new CachedCells< FloatArray >( store, cache, 1, dimensions, cellDimensions );
+		final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img = createImg( cells );
+
+		// keep a sampler in the first cell and write to it after it was evicted
+		final RandomAccess< FloatType > access = img.randomAccess();
+		access.setPosition( new long[] { 1, 1, 1 } );
+		access.get().set( 1 );
+		for ( final FloatType t : img )
+			t.get();
+		final long key = MapStore.key( new long[] { 0, 0, 0 } );
+		assertEquals( 1, store.store.get( key )[ 1 + 8 * ( 1 + 8 ) ], 0 );
+
+		// modifications after eviction are written by flush, not by cache misses
+		access.get().set( 2 );
+		final int numWritten = store.numWritten;
+		img.randomAccess().setPosition( new long[] { 9, 1, 1 } );
+		assertEquals( numWritten, store.numWritten );
+		cache.flush();
+		assertEquals( 2, store.store.get( key )[ 1 + 8 * ( 1 + 8 ) ], 0 );
+
+		access.get().set( 3 );
+		cache.flush();
+		assertEquals( 3, store.store.get( key )[ 1 + 8 * ( 1 + 8 ) ], 0 );
+	}
+}
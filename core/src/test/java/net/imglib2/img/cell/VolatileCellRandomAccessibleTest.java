@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.display.VolatileRealType;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.CachedCellsTest.IndexLoader;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link VolatileCellRandomAccessible} and {@link CellFetchQueue}.
+ *
+ * @author agent
+ */
+public class VolatileCellRandomAccessibleTest
+{
+	final long[] dimensions = new long[] { 43, 27, 13 };
+
+	final int[] cellDimensions = new int[] { 8, 8, 4 };
+
+	@Test
+	public void testLoadInBackground() throws InterruptedException
+	{
+		final IndexLoader loader = new IndexLoader( dimensions );
+		final CachedCells< FloatArray > cells = new CachedCells< FloatArray >( loader, new LRUCellCache< FloatArray >( Long.MAX_VALUE ), 1, dimensions, cellDimensions );
+		final CellImg< FloatType, FloatArray, DefaultCell< FloatArray > > img = new CellImg< FloatType, FloatArray, DefaultCell< FloatArray > >( new CellImgFactory< FloatType >( cellDimensions ), cells );
+		img.setLinkedType( new FloatType( img ) );
+
+		final CellFetchQueue queue = new CellFetchQueue( 2 );
+		final Semaphore loaded = new Semaphore( 0 );
+		queue.addListener( new CellFetchQueue.Listener()
+		{
+			@Override
+			public void cellLoaded()
+			{
+				loaded.release();
+			}
+		} );
+
+		final VolatileCellRandomAccessible< FloatType, FloatArray > volatileImg = new VolatileCellRandomAccessible< FloatType, FloatArray >( img, queue );
+		final VolatileCellRandomAccessible< FloatType, FloatArray >.VolatileCellRandomAccess access = volatileImg.randomAccess();
+
+		// requesting two pixels of the same cell enqueues one request
+		access.setPosition( new long[] { 10, 20, 5 } );
+		assertFalse( access.get().isValid() );
+		access.setPosition( new long[] { 11, 20, 5 } );
+		assertFalse( access.get().isValid() );
+
+		assertTrue( loaded.tryAcquire( 10, TimeUnit.SECONDS ) );
+		assertEquals( 1, loader.numLoaded.get() );
+
+		final VolatileCellRandomAccessible< FloatType, FloatArray >.VolatileCellRandomAccess access2 = volatileImg.randomAccess();
+		access2.setPosition( new long[] { 11, 20, 5 } );
+		final VolatileRealType< FloatType > v = access2.get();
+		assertTrue( v.isValid() );
+		assertEquals( 11 + 43 * ( 20 + 27 * 5 ), v.getRealDouble(), 0 );
+
+		// outside of the image is valid and nothing is loaded
+		access2.setPosition( new long[] { -1, 20, 5 } );
+		assertTrue( access2.get().isValid() );
+		assertEquals( 0, access2.get().getRealDouble(), 0 );
+		assertEquals( 0, queue.size() );
+
+		queue.shutdown();
+	}
+
+	@Test
+	public void testNewFrameDefersRequests() throws InterruptedException
+	{
+		// stop the fetcher to check the order in which requests are taken
+		final CellFetchQueue queue = new CellFetchQueue( 1 );
+		queue.shutdown();
+		queue.fetchers[ 0 ].join();
+
+		final CachedCells< FloatArray > cells = new CachedCells< FloatArray >( new IndexLoader( dimensions ), new LRUCellCache< FloatArray >( Long.MAX_VALUE ), 1, dimensions, cellDimensions );
+		queue.enqueue( cells, 1 );
+		queue.enqueue( cells, 2 );
+		queue.newFrame();
+		queue.enqueue( cells, 3 );
+		queue.enqueue( cells, 2 );
+		queue.enqueue( cells, 3 );
+		assertEquals( 3, queue.size() );
+		assertEquals( 3, queue.take().index );
+		assertEquals( 2, queue.take().index );
+		assertEquals( 1, queue.take().index );
+		assertEquals( 0, queue.size() );
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.img.direct;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link DirectImg} with a small page size, such that samplers cross
+ * many page boundaries.
+ *
+ * @author agent
+ */
+public class DirectImgTest
+{
+	final long[] dimensions = new long[] { 23, 17, 11 };
+
+	@Test
+	public void testIterationOrder()
+	{
+		final Img< FloatType > direct = new DirectImgFactory< FloatType >( 5 ).create( dimensions, new FloatType() );
+		final Img< FloatType > array = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		assertTrue( direct.equalIterationOrder( array ) );
+		assertTrue( array.equalIterationOrder( direct ) );
+	}
+
+	@Test
+	public void testCursors()
+	{
+		final Img< FloatType > img = new DirectImgFactory< FloatType >( 5 ).create( dimensions, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		assertEquals( img.size(), i );
+
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		final Cursor< FloatType > plain = img.cursor();
+		final long[] pos = new long[ 3 ];
+		final long[] plainPos = new long[ 3 ];
+		i = 0;
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			plain.fwd();
+			cursor.localize( pos );
+			plain.localize( plainPos );
+			assertEquals( i, pos[ 0 ] + dimensions[ 0 ] * ( pos[ 1 ] + dimensions[ 1 ] * pos[ 2 ] ) );
+			assertEquals( i, plainPos[ 0 ] + dimensions[ 0 ] * ( plainPos[ 1 ] + dimensions[ 1 ] * plainPos[ 2 ] ) );
+			assertEquals( i, cursor.get().get(), 0 );
+			++i;
+		}
+
+		final Cursor< FloatType > jumping = img.localizingCursor();
+		jumping.jumpFwd( 1000 );
+		assertEquals( 999, jumping.get().get(), 0 );
+		jumping.localize( pos );
+		assertEquals( 999, pos[ 0 ] + dimensions[ 0 ] * ( pos[ 1 ] + dimensions[ 1 ] * pos[ 2 ] ) );
+	}
+
+	@Test
+	public void testRandomAccess()
+	{
+		final Img< ComplexFloatType > img = new DirectImgFactory< ComplexFloatType >( 4 ).create( dimensions, new ComplexFloatType() );
+		int i = 0;
+		for ( final ComplexFloatType t : img )
+		{
+			t.set( i, -i );
+			++i;
+		}
+
+		final Random random = new Random( 1 );
+		final RandomAccess< ComplexFloatType > access = img.randomAccess();
+		final long[] pos = new long[ 3 ];
+		for ( int k = 0; k < 1000; ++k )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+			if ( k % 2 == 0 )
+				access.setPosition( pos );
+			else
+			{
+				for ( int d = 0; d < 3; ++d )
+					access.move( pos[ d ] - access.getLongPosition( d ), d );
+			}
+			final long index = pos[ 0 ] + dimensions[ 0 ] * ( pos[ 1 ] + dimensions[ 1 ] * pos[ 2 ] );
+			assertEquals( index, access.get().getRealFloat(), 0 );
+			assertEquals( -index, access.get().getImaginaryFloat(), 0 );
+		}
+
+		access.setPosition( new long[] { 22, 3, 2 } );
+		final float before = access.get().getRealFloat();
+		access.fwd( 0 );
+		access.bck( 0 );
+		assertEquals( before, access.get().getRealFloat(), 0 );
+	}
+
+	@Test
+	public void testBits()
+	{
+		final Img< BitType > img = new DirectImgFactory< BitType >( 6 ).create( dimensions, new BitType() );
+		int i = 0;
+		for ( final BitType t : img )
+			t.set( i++ % 3 == 0 );
+		i = 0;
+		for ( final BitType t : img )
+			assertEquals( i++ % 3 == 0, t.get() );
+	}
+
+	@Test
+	public void testCopy()
+	{
+		final Img< FloatType > img = new DirectImgFactory< FloatType >( 7 ).create( dimensions, new FloatType() );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		final Img< FloatType > copy = img.copy();
+		assertTrue( copy instanceof DirectImg );
+		i = 0;
+		for ( final FloatType t : copy )
+			assertEquals( i++, t.get(), 0 );
+	}
+}
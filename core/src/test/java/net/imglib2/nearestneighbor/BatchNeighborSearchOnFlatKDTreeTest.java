@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.RealPoint;
+import net.imglib2.collection.FlatKDTree;
+import net.imglib2.collection.RealPointSampleList;
+import net.imglib2.neighborsearch.BatchNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+
+/**
+ * Compare batch searches on {@link FlatKDTree} with single searches.
+ *
+ * @author agent
+ */
+public class BatchNeighborSearchOnFlatKDTreeTest
+{
+	@Test
+	public void testBatchSearches()
+	{
+		final ArrayList< RealPoint > points = FlatKDTreeTest.randomPoints( 5000, 3 );
+		final ArrayList< RealPoint > queries = FlatKDTreeTest.randomPoints( 1000, 4 );
+		final RealPointSampleList< DoubleType > queryList = new RealPointSampleList< DoubleType >( 3 );
+		for ( final RealPoint q : queries )
+			queryList.add( q, new DoubleType() );
+		final double[] positions = BatchNeighborSearchOnFlatKDTree.flatPositions( queryList );
+
+		final ExecutorService service = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points, service );
+			final BatchNeighborSearchOnFlatKDTree< RealPoint > batch = new BatchNeighborSearchOnFlatKDTree< RealPoint >( tree, service );
+
+			final int k = 4;
+			final int[] nnIndices = new int[ queries.size() ];
+			final double[] nnDistances = new double[ queries.size() ];
+			batch.nearestNeighbors( positions, nnIndices, nnDistances );
+			final int[] knnIndices = new int[ queries.size() * k ];
+			final double[] knnDistances = new double[ queries.size() * k ];
+			batch.kNearestNeighbors( positions, k, knnIndices, knnDistances );
+			final BatchNeighborSearchOnFlatKDTree.RadiusResults radius = batch.radiusNeighbors( positions, 12, true );
+			assertEquals( queries.size(), radius.numQueries() );
+
+			final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, k );
+			final RadiusNeighborSearchOnFlatKDTree< RealPoint > rn = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+			for ( int q = 0; q < queries.size(); ++q )
+			{
+				final RealPoint query = queries.get( q );
+				knn.search( query );
+				assertEquals( knn.getSquareDistance(), nnDistances[ q ], 0 );
+				assertEquals( knn.getSquareDistance(), FlatKDTreeTest.squDistance( points.get( nnIndices[ q ] ), query ), 0 );
+				for ( int i = 0; i < k; ++i )
+				{
+					assertEquals( knn.getSquareDistance( i ), knnDistances[ q * k + i ], 0 );
+					assertEquals( tree.valueIndex( knn.getNode( i ) ), knnIndices[ q * k + i ] );
+				}
+
+				rn.search( query, 12, true );
+				assertEquals( rn.numNeighbors(), radius.numNeighbors( q ) );
+				for ( int i = 0; i < rn.numNeighbors(); ++i )
+				{
+					assertEquals( rn.getSquareDistance( i ), radius.getSquareDistance( q, i ), 0 );
+					assertEquals( rn.getSquareDistance( i ), FlatKDTreeTest.squDistance( points.get( radius.getIndex( q, i ) ), query ), 0 );
+				}
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.RealPoint;
+import net.imglib2.collection.FlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+
+import org.junit.Test;
+
+/**
+ * Compare searches on {@link FlatKDTree} with exhaustive search.
+ *
+ * @author agent
+ */
+public class FlatKDTreeTest
+{
+	final static int numDimensions = 3;
+
+	static ArrayList< RealPoint > randomPoints( final int numPoints, final long seed )
+	{
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final Random rnd = new Random( seed );
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextDouble() * 100;
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < numDimensions; ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	static double[] sortedSquDistances( final ArrayList< RealPoint > points, final RealPoint reference )
+	{
+		final double[] distances = new double[ points.size() ];
+		for ( int i = 0; i < distances.length; ++i )
+			distances[ i ] = squDistance( points.get( i ), reference );
+		java.util.Arrays.sort( distances );
+		return distances;
+	}
+
+	@Test
+	public void testParallelConstruction()
+	{
+		final ArrayList< RealPoint > points = randomPoints( 10000, 0 );
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final FlatKDTree< RealPoint > sequential = new FlatKDTree< RealPoint >( points, points );
+			final FlatKDTree< RealPoint > parallel = new FlatKDTree< RealPoint >( points, points, service );
+			assertEquals( points.size(), parallel.size() );
+			assertArrayEquals( sequential.getPositions(), parallel.getPositions(), 0 );
+
+			// every node splits its subtrees
+			for ( int i = 0; i < parallel.size(); ++i )
+			{
+				assertSame( points.get( parallel.valueIndex( i ) ), parallel.get( i ) );
+				final int depth = 31 - Integer.numberOfLeadingZeros( i + 1 );
+				final int d = depth % numDimensions;
+				final double split = parallel.getPositions()[ i * numDimensions + d ];
+				checkSubtree( parallel, 2 * i + 1, d, split, true );
+				checkSubtree( parallel, 2 * i + 2, d, split, false );
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+
+	static void checkSubtree( final FlatKDTree< ? > tree, final int node, final int d, final double split, final boolean left )
+	{
+		if ( node >= tree.size() )
+			return;
+		final double x = tree.getPositions()[ node * tree.numDimensions() + d ];
+		assertTrue( left ? x <= split : x >= split );
+		checkSubtree( tree, 2 * node + 1, d, split, left );
+		checkSubtree( tree, 2 * node + 2, d, split, left );
+	}
+
+	@Test
+	public void testSearches()
+	{
+		final ArrayList< RealPoint > points = randomPoints( 2000, 1 );
+		final ArrayList< RealPoint > references = randomPoints( 200, 2 );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, 7 );
+		final RadiusNeighborSearchOnFlatKDTree< RealPoint > radius = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		for ( final RealPoint reference : references )
+		{
+			final double[] expected = sortedSquDistances( points, reference );
+
+			nn.search( reference );
+			assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+			assertEquals( expected[ 0 ], squDistance( nn.getSampler().get(), reference ), 0 );
+
+			knn.search( reference );
+			for ( int i = 0; i < knn.getK(); ++i )
+			{
+				assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], squDistance( knn.getSampler( i ).get(), reference ), 0 );
+			}
+
+			radius.search( reference, 15, true );
+			int count = 0;
+			while ( count < expected.length && expected[ count ] <= 15 * 15 )
+				++count;
+			assertEquals( count, radius.numNeighbors() );
+			for ( int i = 0; i < count; ++i )
+			{
+				assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], squDistance( radius.getSampler( i ).get(), reference ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testSortedGrid()
+	{
+		// sorted input must not degrade median partitioning
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int z = 0; z < 40; ++z )
+			for ( int y = 0; y < 40; ++y )
+				for ( int x = 0; x < 40; ++x )
+					points.add( new RealPoint( new double[] { x, y, z } ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree< RealPoint >( tree );
+		nn.search( new RealPoint( new double[] { 12.2, 30.9, 7.4 } ) );
+		assertArrayEquals( new double[] { 12, 31, 7 }, new double[] {
+				nn.getPosition().getDoublePosition( 0 ),
+				nn.getPosition().getDoublePosition( 1 ),
+				nn.getPosition().getDoublePosition( 2 ) }, 0 );
+	}
+
+	@Test
+	public void testDuplicateCoordinates()
+	{
+		// constant z and integer x, y: equal keys must not degrade partitioning
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final Random rnd = new Random( 3 );
+		for ( int i = 0; i < 200000; ++i )
+			points.add( new RealPoint( new double[] { rnd.nextInt( 20 ), rnd.nextInt( 20 ), 0 } ) );
+		final ExecutorService service = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final FlatKDTree< RealPoint > sequential = new FlatKDTree< RealPoint >( points, points );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree< RealPoint >( points, points, service );
+			assertArrayEquals( sequential.getPositions(), tree.getPositions(), 0 );
+			for ( int i = 0; i < tree.size(); ++i )
+			{
+				final int depth = 31 - Integer.numberOfLeadingZeros( i + 1 );
+				final int d = depth % numDimensions;
+				final double split = tree.getPositions()[ i * numDimensions + d ];
+				checkSubtree( tree, 2 * i + 1, d, split, true );
+				checkSubtree( tree, 2 * i + 2, d, split, false );
+			}
+
+			final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree< RealPoint >( tree, 7 );
+			final RadiusNeighborSearchOnFlatKDTree< RealPoint > radius = new RadiusNeighborSearchOnFlatKDTree< RealPoint >( tree );
+			for ( int r = 0; r < 10; ++r )
+			{
+				final RealPoint reference = new RealPoint( new double[] { rnd.nextInt( 20 ), rnd.nextInt( 20 ), 0 } );
+				final double[] expected = sortedSquDistances( points, reference );
+
+				knn.search( reference );
+				for ( int i = 0; i < knn.getK(); ++i )
+					assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+
+				// thousands of results at few distinct distances
+				radius.search( reference, 3, true );
+				int count = 0;
+				while ( count < expected.length && expected[ count ] <= 3 * 3 )
+					++count;
+				assertEquals( count, radius.numNeighbors() );
+				for ( int i = 0; i < count; ++i )
+					assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+			}
+		}
+		finally
+		{
+			service.shutdown();
+		}
+	}
+}
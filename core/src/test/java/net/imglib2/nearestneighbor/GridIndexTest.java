@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.RealPoint;
+import net.imglib2.collection.GridIndex;
+import net.imglib2.collection.GridIndex.Entry;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnGridIndex;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnGridIndex;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnGridIndex;
+
+import org.junit.Test;
+
+/**
+ * Compare searches on a changing {@link GridIndex} with exhaustive search.
+ *
+ * @author agent
+ */
+public class GridIndexTest
+{
+	static void compare( final GridIndex< RealPoint > index, final ArrayList< RealPoint > points, final ArrayList< RealPoint > references )
+	{
+		final NearestNeighborSearchOnGridIndex< RealPoint > nn = new NearestNeighborSearchOnGridIndex< RealPoint >( index );
+		final KNearestNeighborSearchOnGridIndex< RealPoint > knn = new KNearestNeighborSearchOnGridIndex< RealPoint >( index, 5 );
+		final RadiusNeighborSearchOnGridIndex< RealPoint > radius = new RadiusNeighborSearchOnGridIndex< RealPoint >( index );
+		for ( final RealPoint reference : references )
+		{
+			final double[] expected = FlatKDTreeTest.sortedSquDistances( points, reference );
+
+			nn.search( reference );
+			assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+
+			knn.search( reference );
+			for ( int i = 0; i < knn.getK(); ++i )
+			{
+				assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], FlatKDTreeTest.squDistance( knn.getSampler( i ).get(), reference ), 0 );
+			}
+
+			radius.search( reference, 9, true );
+			int count = 0;
+			while ( count < expected.length && expected[ count ] <= 9 * 9 )
+				++count;
+			assertEquals( count, radius.numNeighbors() );
+			for ( int i = 0; i < count; ++i )
+			{
+				assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+				assertEquals( expected[ i ], FlatKDTreeTest.squDistance( radius.getSampler( i ).get(), reference ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testInsertRemoveMove()
+	{
+		final ArrayList< RealPoint > points = FlatKDTreeTest.randomPoints( 3000, 5 );
+		final ArrayList< RealPoint > references = FlatKDTreeTest.randomPoints( 100, 6 );
+
+		// also query outside of the points
+		references.add( new RealPoint( new double[] { -200, 50, 300 } ) );
+
+		final GridIndex< RealPoint > index = new GridIndex< RealPoint >( 5, 5, 10 );
+		final ArrayList< Entry< RealPoint > > entries = index.insertAll( points, points );
+		assertEquals( points.size(), index.size() );
+		compare( index, points, references );
+
+		// remove every other point
+		final ArrayList< RealPoint > remaining = new ArrayList< RealPoint >();
+		for ( int i = 0; i < entries.size(); ++i )
+		{
+			if ( i % 2 == 0 )
+				assertTrue( index.remove( entries.get( i ) ) );
+			else
+				remaining.add( points.get( i ) );
+		}
+		assertFalse( index.remove( entries.get( 0 ) ) );
+		assertEquals( remaining.size(), index.size() );
+		compare( index, remaining, references );
+
+		// move the remaining points
+		final Random rnd = new Random( 7 );
+		for ( int i = 1; i < entries.size(); i += 2 )
+		{
+			final RealPoint p = points.get( i );
+			for ( int d = 0; d < 3; ++d )
+				p.move( rnd.nextDouble() * 4 - 2, d );
+			index.move( entries.get( i ), p );
+		}
+		compare( index, remaining, references );
+	}
+
+	@Test
+	public void testEmptyAndSparse()
+	{
+		final GridIndex< RealPoint > index = new GridIndex< RealPoint >( 1, 1 );
+		final NearestNeighborSearchOnGridIndex< RealPoint > nn = new NearestNeighborSearchOnGridIndex< RealPoint >( index );
+		nn.search( new RealPoint( 2 ) );
+		assertNull( nn.getSampler() );
+
+		final RealPoint far = new RealPoint( new double[] { 1000.5, -3000.5 } );
+		index.insert( far, far );
+		index.insert( far, new RealPoint( new double[] { 1001.5, -3000.5 } ) );
+		nn.search( new RealPoint( 2 ) );
+		assertEquals( 1000.5 * 1000.5 + 3000.5 * 3000.5, nn.getSquareDistance(), 1e-6 );
+		assertEquals( 2, index.numCells() );
+		index.clear();
+		assertEquals( 0, index.numCells() );
+	}
+}
@@ -46,6 +46,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.ListIterator;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -307,6 +308,66 @@ public class KthElementTest
 		assertArrayEquals( sortedValues, values, 0 );
 	}
 	
+	@Test
+	public void testKthDoublePermutationRepeatedValues()
+	{
+		final Random rnd = new Random( 0 );
+		final double[] origvalues = new double[ 1000 ];
+		for ( int p = 0; p < origvalues.length; ++p )
+			origvalues[ p ] = rnd.nextInt( 3 );
+		final double[] sortedValues = origvalues.clone();
+		Arrays.sort( sortedValues );
+
+		for ( int k = 0; k < origvalues.length; k += 37 )
+		{
+			final double[] values = origvalues.clone();
+			final int[] permutation = new int[ values.length ];
+			for ( int p = 0; p < permutation.length; ++p )
+				permutation[ p ] = p;
+			KthElement.kthElement( k, values, permutation );
+
+			assertEquals( sortedValues[ k ], values[ k ], 0 );
+			for ( int p = 0; p < k; ++p )
+				assertTrue( values[ p ] <= values[ k ] );
+			for ( int p = k + 1; p < values.length; ++p )
+				assertTrue( values[ p ] >= values[ k ] );
+			for ( int p = 0; p < values.length; ++p )
+				assertEquals( origvalues[ permutation[ p ] ], values[ p ], 0 );
+		}
+	}
+
+	@Test
+	public void testMedianDoubleFullPermutation()
+	{
+		final double[] values = new double[] {2, 453, 233, 1, 1, 1, 1, 1, 0.7, -12, 5};
+		final double[] origvalues = values.clone();
+		final double[] sortedValues = values.clone();
+		final int[] permutation = new int[ values.length ];
+		for( int k = 0; k < permutation.length; ++k )
+			permutation[ k ] = k;
+
+		final int i = 0;
+		final int j = values.length - 1;
+		int k = i + ( j - i ) / 2;
+		KthElement.kthElement( k, values, permutation );
+		Arrays.sort( sortedValues );
+
+		// the elements at the k-th positions should be equal 
+		assertEquals( values[ k ], sortedValues[ k ], 0 );
+
+		// the elements before the k-th should be equal or smaller than the k-th
+		for ( int p = i; p < k; ++p )
+			assertTrue( values[ p ] <= values[ k ] );
+
+		// the elements after the k-th should be equal or greater than the k-th
+		for ( int p = k + 1; p <= j; ++p )
+			assertTrue( values[ p ] >= values[ k ] );
+
+		// permutation should have been permuted in the same way as values
+		for( int p = 0; p < permutation.length; ++p )
+			assertEquals( values[ p ], origvalues[ permutation[ p ] ], 0 );
+	}
+	
 	@Test
 	public void testMedianFloatObject()
 	{
@@ -2,6 +2,7 @@ package interactive;
 
 import interactive.remote.openconnectome.VolatileOpenConnectomeRandomAccessibleInterval;
 import net.imglib2.RandomAccessible;
+import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.display.VolatileRealType;
 import net.imglib2.display.VolatileRealTypeARGBConverter;
 import net.imglib2.display.VolatileXYRandomAccessibleProjector;
@@ -51,7 +52,7 @@ public class InteractiveOpenConnectomeRotationExample
 			}
 			
 			@Override
-			protected VolatileXYRandomAccessibleProjector< UnsignedByteType, VolatileRealType< UnsignedByteType >, ARGBType > createProjector()
+			protected VolatileXYRandomAccessibleProjector< UnsignedByteType, VolatileRealType< UnsignedByteType >, ARGBType > createProjector( final AffineTransform3D sourceToScreen, final ARGBScreenImage screenImage )
 			{
 				final InterpolatorFactory< VolatileRealType< UnsignedByteType >, RandomAccessible< VolatileRealType< UnsignedByteType > > > interpolatorFactory;
 				switch ( interpolation )
@@ -72,7 +73,7 @@ public class InteractiveOpenConnectomeRotationExample
 			}
 			
 //			@Override
-//			protected XYRandomAccessibleProjector< UnsignedByteType, ARGBType > createProjector()
+//			protected XYRandomAccessibleProjector< UnsignedByteType, ARGBType > createProjector( final AffineTransform3D sourceToScreen, final ARGBScreenImage screenImage )
 //			{
 //				final InterpolatorFactory< UnsignedByteType, RandomAccessible< UnsignedByteType > > interpolatorFactory;
 //				switch ( interpolation )
@@ -0,0 +1,124 @@
+package interactive;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.VolatileRealType;
+import net.imglib2.display.VolatileRealTypeARGBConverter;
+import net.imglib2.display.VolatileXYRandomAccessibleProjector;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.cell.CachedCells;
+import net.imglib2.img.cell.CellFetchQueue;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.CellLoader;
+import net.imglib2.img.cell.DefaultCell;
+import net.imglib2.img.cell.LRUCellCache;
+import net.imglib2.img.cell.VolatileCellRandomAccessible;
+import net.imglib2.interpolation.Interpolant;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.AffineRandomAccessible;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.ui.InteractiveViewer3D;
+import net.imglib2.view.Views;
+
+/**
+ * Browse a {@link CellImg} whose cells take a while to load.  Cells are
+ * loaded in the background by a {@link CellFetchQueue}, the viewer shows
+ * whatever is loaded and repaints when new cells arrive.
+ *
+ * @author agent
+ */
+public class InteractiveVolatileCellImgExample
+{
+	/**
+	 * Concentric shells, delivered slowly.
+	 */
+	static class SlowShellLoader implements CellLoader< ByteArray >
+	{
+		final long[] center;
+
+		SlowShellLoader( final long[] dimensions )
+		{
+			center = new long[ dimensions.length ];
+			for ( int d = 0; d < dimensions.length; ++d )
+				center[ d ] = dimensions[ d ] / 2;
+		}
+
+		@Override
+		public ByteArray loadCell( final int[] dimensions, final long[] min, final int entitiesPerPixel )
+		{
+			try
+			{
+				Thread.sleep( 20 );
+			}
+			catch ( final InterruptedException e )
+			{}
+			final byte[] data = new byte[ dimensions[ 0 ] * dimensions[ 1 ] * dimensions[ 2 ] ];
+			int i = 0;
+			for ( int z = 0; z < dimensions[ 2 ]; ++z )
+				for ( int y = 0; y < dimensions[ 1 ]; ++y )
+					for ( int x = 0; x < dimensions[ 0 ]; ++x, ++i )
+					{
+						final double dx = min[ 0 ] + x - center[ 0 ];
+						final double dy = min[ 1 ] + y - center[ 1 ];
+						final double dz = min[ 2 ] + z - center[ 2 ];
+						data[ i ] = ( byte ) ( 0.5 * Math.sqrt( dx * dx + dy * dy + dz * dz ) % 2 < 1 ? 200 : 50 );
+					}
+			return new ByteArray( data );
+		}
+	}
+
+	final static public void main( final String[] args )
+	{
+		final long[] dimensions = new long[] { 1024, 1024, 512 };
+		final int[] cellDimensions = new int[] { 32, 32, 32 };
+		final CachedCells< ByteArray > cells = new CachedCells< ByteArray >( new SlowShellLoader( dimensions ), new LRUCellCache< ByteArray >( 256l << 20 ), 1, dimensions, cellDimensions );
+		final CellImg< UnsignedByteType, ByteArray, DefaultCell< ByteArray > > img = new CellImg< UnsignedByteType, ByteArray, DefaultCell< ByteArray > >( new CellImgFactory< UnsignedByteType >( cellDimensions ), cells );
+		img.setLinkedType( new UnsignedByteType( img ) );
+
+		final CellFetchQueue queue = new CellFetchQueue( 4 );
+		final VolatileCellRandomAccessible< UnsignedByteType, ByteArray > map = new VolatileCellRandomAccessible< UnsignedByteType, ByteArray >( img, queue );
+		final RandomAccessible< VolatileRealType< UnsignedByteType > > extended = Views.extendValue( map, new VolatileRealType< UnsignedByteType >( new UnsignedByteType( 0 ), true ) );
+
+		final int w = 720, h = 405;
+		final AffineTransform3D initial = new AffineTransform3D();
+		initial.set(
+			1.0, 0.0, 0.0, ( w - dimensions[ 0 ] ) / 2.0,
+			0.0, 1.0, 0.0, ( h - dimensions[ 1 ] ) / 2.0,
+			0.0, 0.0, 1.0, -( dimensions[ 2 ] / 2.0 - 0.5 ) );
+
+		final InteractiveViewer3D< VolatileRealType< UnsignedByteType > > viewer = new InteractiveViewer3D< VolatileRealType< UnsignedByteType > >( w, h, extended, map, initial, new VolatileRealTypeARGBConverter( 0, 255 ) )
+		{
+			@Override
+			public boolean drawScreenImage()
+			{
+				// cells requested for earlier views are loaded last
+				queue.newFrame();
+				return super.drawScreenImage();
+			}
+
+			@Override
+			protected VolatileXYRandomAccessibleProjector< UnsignedByteType, VolatileRealType< UnsignedByteType >, ARGBType > createProjector( final AffineTransform3D sourceToScreen, final ARGBScreenImage screenImage )
+			{
+				final Interpolant< VolatileRealType< UnsignedByteType >, RandomAccessible< VolatileRealType< UnsignedByteType > > > interpolant =
+						new Interpolant< VolatileRealType< UnsignedByteType >, RandomAccessible< VolatileRealType< UnsignedByteType > > >( source, new NearestNeighborInterpolatorFactory< VolatileRealType< UnsignedByteType > >() );
+				final AffineRandomAccessible< VolatileRealType< UnsignedByteType >, AffineGet > mapping =
+						new AffineRandomAccessible< VolatileRealType< UnsignedByteType >, AffineGet >( interpolant, sourceToScreen.inverse() );
+				return new VolatileXYRandomAccessibleProjector< UnsignedByteType, VolatileRealType< UnsignedByteType >, ARGBType >( mapping, screenImage, converter );
+			}
+		};
+
+		// repaint as cells arrive
+		queue.addListener( new CellFetchQueue.Listener()
+		{
+			@Override
+			public void cellLoaded()
+			{
+				viewer.getDisplay().requestRepaint();
+			}
+		} );
+	}
+}
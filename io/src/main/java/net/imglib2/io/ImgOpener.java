@@ -41,6 +41,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import loci.common.DataTools;
 import loci.common.StatusEvent;
@@ -57,6 +63,7 @@ import loci.formats.IFormatReader;
 import loci.formats.ImageReader;
 import loci.formats.MinMaxCalculator;
 import loci.formats.ReaderWrapper;
+import loci.formats.meta.DummyMetadata;
 import loci.formats.meta.IMetadata;
 import loci.formats.services.OMEXMLService;
 import net.imglib2.RandomAccess;
@@ -96,6 +103,8 @@ public class ImgOpener implements StatusReporter {
 	private final List<StatusListener> listeners =
 		new ArrayList<StatusListener>();
 
+	private int numThreads = 1;
+
 	// -- static methods --
 	
 	/**
@@ -236,6 +245,26 @@ public class ImgOpener implements StatusReporter {
 
 	// -- ImgOpener methods --
 
+	/**
+	 * Sets the number of threads used to read planes. With more than one thread,
+	 * planes that go to a {@link PlanarImg} are read in parallel, each thread
+	 * using a reader of its own on the same source. Progress is reported to the
+	 * {@link StatusListener}s from all threads as planes complete.
+	 * 
+	 * @param numThreads The number of threads, e.g.
+	 *          {@link Runtime#availableProcessors()}; 1 reads planes serially.
+	 */
+	public void setNumThreads(final int numThreads) {
+		if (numThreads < 1) throw new IllegalArgumentException(
+			"Number of threads must be positive: " + numThreads);
+		this.numThreads = numThreads;
+	}
+
+	/** Gets the number of threads used to read planes. */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
 	/**
 	 * Reads in an {@link ImgPlus} from the given source. It will read it into a
 	 * {@link PlanarImg}, where the {@link Type} T is defined by the file format
@@ -749,6 +778,11 @@ public class ImgOpener implements StatusReporter {
 		final boolean isPlanar = planarAccess != null && compatibleTypes;
 		imgPlus.initializeColorTables(planeCount);
 
+		if (isPlanar && numThreads > 1 && planeCount > 1) {
+			readPlanesParallel(r, imgPlus, planarAccess, computeMinMax);
+			return;
+		}
+
 		byte[] plane = null;
 		for (int no = 0; no < planeCount; no++) {
 			notifyListeners(new StatusEvent(no, planeCount, "Reading plane " +
@@ -757,15 +791,143 @@ public class ImgOpener implements StatusReporter {
 			else r.openBytes(no, plane);
 			if (isPlanar) populatePlane(r, no, plane, planarAccess);
 			else populatePlane(r, no, plane, imgPlus);
+			populateColorTables(r, no, imgPlus);
+		}
+		if (computeMinMax) populateMinMax(new IFormatReader[] { r }, imgPlus);
+		r.close();
+	}
 
-			// store color table
-			final byte[][] lut8 = r.get8BitLookupTable();
+	/**
+	 * Reads planes from the given initialized {@link IFormatReader} into the
+	 * specified {@link PlanarAccess} using several threads. Every thread opens a
+	 * copy of the given reader, with the same reader stack and configuration, on
+	 * its source and decodes the next plane not yet taken by another thread
+	 * directly into plane storage.
+	 */
+	private <T extends RealType<T>> void readPlanesParallel(
+		final IFormatReader r, final ImgPlus<T> imgPlus,
+		final PlanarAccess<?> planarAccess, final boolean computeMinMax)
+		throws FormatException, IOException
+	{
+		final String id = r.getCurrentFile();
+		final int series = r.getSeries();
+		final int planeCount = r.getImageCount();
+		final int nThreads = Math.min(numThreads, planeCount);
+
+		// copy the reader stack up front, the given reader is in use once the
+		// threads are started
+		final IFormatReader[] readers = new IFormatReader[nThreads];
+		readers[0] = r;
+		for (int t = 1; t < nThreads; t++)
+			readers[t] = duplicateReader(r);
+		final AtomicInteger nextPlane = new AtomicInteger();
+		final AtomicInteger planesRead = new AtomicInteger();
+
+		final ExecutorService service = Executors.newFixedThreadPool(nThreads);
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int t = 0; t < nThreads; t++) {
+				final int thread = t;
+				futures.add(service.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws FormatException, IOException {
+						final IFormatReader reader = readers[thread];
+						if (thread > 0) {
+							reader.setId(id);
+							reader.setSeries(series);
+						}
+						byte[] plane = null;
+						for (int no = nextPlane.getAndIncrement(); no < planeCount; no =
+							nextPlane.getAndIncrement())
+						{
+							if (plane == null) plane = reader.openBytes(no);
+							else reader.openBytes(no, plane);
+							populatePlane(reader, no, plane, planarAccess);
+							populateColorTables(reader, no, imgPlus);
+							final int done = planesRead.incrementAndGet();
+							notifyListeners(new StatusEvent(done, planeCount, "Read plane " +
+								done + "/" + planeCount));
+						}
+						return null;
+					}
+				}));
+			}
+			for (final Future<Void> future : futures)
+				waitFor(future);
+			if (computeMinMax) populateMinMax(readers, imgPlus);
+		}
+		finally {
+			// let the remaining threads stop early if one of them failed
+			nextPlane.set(planeCount);
+			service.shutdown();
+			for (int t = 1; t < readers.length; t++)
+				if (readers[t] != null) readers[t].close();
+		}
+		r.close();
+	}
+
+	/**
+	 * Creates an uninitialized copy of the given reader, including any wrapping
+	 * readers and their configuration. The copy does not populate a metadata
+	 * store, since the metadata has already been read by the given reader.
+	 */
+	private static IFormatReader duplicateReader(final IFormatReader r)
+		throws FormatException
+	{
+		final IFormatReader reader;
+		if (r instanceof ReaderWrapper) {
+			reader = ((ReaderWrapper) r).duplicate();
+		}
+		else {
+			try {
+				reader = r.getClass().newInstance();
+			}
+			catch (final InstantiationException e) {
+				throw new FormatException(e);
+			}
+			catch (final IllegalAccessException e) {
+				throw new FormatException(e);
+			}
+			reader.setNormalized(r.isNormalized());
+			reader.setMetadataFiltered(r.isMetadataFiltered());
+			reader.setOriginalMetadataPopulated(r.isOriginalMetadataPopulated());
+			reader.setGroupFiles(r.isGroupFiles());
+		}
+		reader.setMetadataStore(new DummyMetadata());
+		return reader;
+	}
+
+	/** Waits for a plane reading task, rethrowing its exception if it failed. */
+	private void waitFor(final Future<Void> future) throws FormatException,
+		IOException
+	{
+		try {
+			future.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading planes");
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof FormatException) throw (FormatException) cause;
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new FormatException(cause);
+		}
+	}
+
+	/** Stores the color tables of the given plane, if any. */
+	private void populateColorTables(final IFormatReader r, final int no,
+		final ImgPlus<?> imgPlus) throws FormatException, IOException
+	{
+		final byte[][] lut8 = r.get8BitLookupTable();
+		final short[][] lut16 = r.get16BitLookupTable();
+		synchronized (imgPlus) {
 			if (lut8 != null) imgPlus.setColorTable(new ColorTable8(lut8), no);
-			final short[][] lut16 = r.get16BitLookupTable();
 			if (lut16 != null) imgPlus.setColorTable(new ColorTable16(lut16), no);
 		}
-		if (computeMinMax) populateMinMax(r, imgPlus);
-		r.close();
 	}
 
 	/** Populates plane by reference using {@link PlanarAccess} interface. */
@@ -830,18 +992,28 @@ public class ImgOpener implements StatusReporter {
 		}
 	}
 
-	private void populateMinMax(final IFormatReader r, final ImgPlus<?> imgPlus)
-		throws FormatException, IOException
+	/**
+	 * Populates the channel minimum and maximum from the given readers, each of
+	 * which has seen a part of the planes.
+	 */
+	private void populateMinMax(final IFormatReader[] readers,
+		final ImgPlus<?> imgPlus) throws FormatException, IOException
 	{
-		final int sizeC = r.getSizeC();
-		final ReaderWrapper rw = (ReaderWrapper) r;
-		final MinMaxCalculator minMaxCalc =
-			(MinMaxCalculator) rw.unwrap(MinMaxCalculator.class, null);
+		final int sizeC = readers[0].getSizeC();
 		for (int c = 0; c < sizeC; c++) {
-			final Double min = minMaxCalc.getChannelKnownMinimum(c);
-			final Double max = minMaxCalc.getChannelKnownMaximum(c);
-			imgPlus.setChannelMinimum(c, min == null ? Double.NaN : min);
-			imgPlus.setChannelMaximum(c, max == null ? Double.NaN : max);
+			double min = Double.NaN, max = Double.NaN;
+			for (final IFormatReader r : readers) {
+				if (r == null) continue;
+				final ReaderWrapper rw = (ReaderWrapper) r;
+				final MinMaxCalculator minMaxCalc =
+					(MinMaxCalculator) rw.unwrap(MinMaxCalculator.class, null);
+				final Double rMin = minMaxCalc.getChannelKnownMinimum(c);
+				final Double rMax = minMaxCalc.getChannelKnownMaximum(c);
+				if (rMin != null && !(rMin >= min)) min = rMin;
+				if (rMax != null && !(rMax <= max)) max = rMax;
+			}
+			imgPlus.setChannelMinimum(c, min);
+			imgPlus.setChannelMaximum(c, max);
 		}
 	}
 
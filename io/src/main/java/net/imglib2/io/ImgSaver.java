@@ -39,10 +39,18 @@ package net.imglib2.io;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import loci.common.DataTools;
 import loci.common.StatusEvent;
 import loci.common.StatusListener;
 import loci.common.StatusReporter;
@@ -60,7 +68,9 @@ import loci.formats.services.OMEXMLService;
 import net.imglib2.exception.ImgLibException;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
@@ -84,6 +94,8 @@ public class ImgSaver implements StatusReporter {
 
 	private final OMEXMLService omexmlService;
 
+	private int numThreads = 1;
+
 	// -- Constructor --
 
 	public ImgSaver() {
@@ -92,6 +104,24 @@ public class ImgSaver implements StatusReporter {
 
 	// -- ImgSaver methods --
 
+	/**
+	 * Sets the number of threads used to encode planes. Planes are encoded in
+	 * parallel, but always passed to the writer one at a time and in order.
+	 * 
+	 * @param numThreads The number of threads, e.g.
+	 *          {@link Runtime#availableProcessors()}; 1 encodes planes serially.
+	 */
+	public void setNumThreads(final int numThreads) {
+		if (numThreads < 1) throw new IllegalArgumentException(
+			"Number of threads must be positive: " + numThreads);
+		this.numThreads = numThreads;
+	}
+
+	/** Gets the number of threads used to encode planes. */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
 	/**
 	 * see isCompressible(ImgPlus)
 	 */
@@ -488,7 +518,10 @@ public class ImgSaver implements StatusReporter {
 	/**
 	 * Iterates through the planes of the provided {@link ImgPlus}, converting
 	 * each to a byte[] if necessary (the SCIFIO writer requires a byte[]) and
-	 * saving the plane. Currently only {@link PlanarImg} is supported.
+	 * saving the plane. Planes are taken directly from the backing primitive
+	 * arrays, so currently only {@link PlanarImg} and {@link ArrayImg} are
+	 * supported. With more than one thread, planes are converted in parallel
+	 * ahead of the writer.
 	 * 
 	 * @throws IncompatibleTypeException
 	 */
@@ -498,89 +531,165 @@ public class ImgSaver implements StatusReporter {
 		IncompatibleTypeException
 	{
 		final PlanarAccess<?> planarAccess = ImgIOUtils.getPlanarAccess(img);
-		if (planarAccess == null) {
+		final Img<T> backingImg = img.getImg();
+		if (planarAccess == null && !(backingImg instanceof ArrayImg)) {
 			throw new IncompatibleTypeException(new ImgLibException(), "Only " +
-				PlanarAccess.class + " images supported at this time.");
+				PlanarAccess.class + " and " + ArrayImg.class +
+				" images supported at this time.");
 		}
 
-		final PlanarImg<T, ?> planarImg = (PlanarImg<T, ?>) planarAccess;
-		final int planeCount = planarImg.numSlices();
-
 		if (img.numDimensions() > 0) {
-			final Class<?> arrayType =
-				planarImg.getPlane(0).getCurrentStorageArray().getClass();
-
-			byte[] plane = null;
+			final PlaneSource planes;
+			if (planarAccess != null) {
+				planes = new PlanarPlaneSource((PlanarImg<T, ?>) planarAccess);
+			}
+			else {
+				planes =
+					new ArrayPlaneSource(
+						(ArrayImg<T, ? extends ArrayDataAccess<?>>) backingImg);
+			}
+			final int planeCount = planes.getPlaneCount();
+			final Class<?> arrayType = planes.getArray(0).getClass();
 
-			// if we know this image will pass to SCIFIO to be saved,
-			// then delete the old file if it exists
-			if (arrayType == int[].class || arrayType == byte[].class ||
-				arrayType == short[].class || arrayType == long[].class ||
-				arrayType == double[].class || arrayType == float[].class)
+			if (arrayType != int[].class && arrayType != byte[].class &&
+				arrayType != short[].class && arrayType != long[].class &&
+				arrayType != double[].class && arrayType != float[].class)
 			{
-				final File f = new File(img.getSource());
-				if (f.exists()) {
-					f.delete();
-					w = initializeWriter(img.getSource(), img);
-					populateMeta(w, img);
+				throw new IncompatibleTypeException(new ImgLibException(), "Images of " +
+					"type " + arrayType + " not supported.");
+			}
+
+			// we know this image will pass to SCIFIO to be saved,
+			// so delete the old file if it exists
+			final File f = new File(img.getSource());
+			if (f.exists()) {
+				f.delete();
+				w = initializeWriter(img.getSource(), img);
+				populateMeta(w, img);
+			}
+
+			if (numThreads > 1 && planeCount > 1) {
+				writePlanesParallel(w, planes);
+			}
+			else {
+				// iterate over each plane
+				for (int planeIndex = 0; planeIndex < planeCount; planeIndex++) {
+					notifyListeners(new StatusEvent(planeIndex, planeCount,
+						"Saving plane " + (planeIndex + 1) + "/" + planeCount));
+					saveBytes(w, planeIndex, planes.getBytes(planeIndex));
 				}
 			}
+		}
 
-			// iterate over each plane
-			for (int planeIndex = 0; planeIndex < planeCount; planeIndex++) {
-				notifyListeners(new StatusEvent(planeIndex, planeCount,
-					"Saving plane " + (planeIndex + 1) + "/" + planeCount));
+		try {
+			w.close();
+		}
+		catch (final IOException e) {
+			throw new ImgIOException(e);
+		}
+	}
 
-				final Object curPlane =
-					planarImg.getPlane(planeIndex).getCurrentStorageArray();
+	/**
+	 * Converts planes to byte[]'s on several threads while passing them to the
+	 * writer in order on the calling thread. At most two planes per thread are
+	 * converted ahead of the writer to bound memory use.
+	 */
+	private void writePlanesParallel(final IFormatWriter w,
+		final PlaneSource planes) throws ImgIOException
+	{
+		final int planeCount = planes.getPlaneCount();
+		final int window = 2 * numThreads;
+		final ExecutorService service = Executors.newFixedThreadPool(numThreads);
+		try {
+			final LinkedList<Future<byte[]>> queue = new LinkedList<Future<byte[]>>();
+			int submitted = 0;
+			for (int planeIndex = 0; planeIndex < planeCount; planeIndex++) {
+				while (submitted < planeCount && submitted < planeIndex + window) {
+					final int no = submitted++;
+					queue.add(service.submit(new Callable<byte[]>() {
 
-				// Convert current plane if necessary
-				if (arrayType == int[].class) {
-					plane = DataTools.intsToBytes((int[]) curPlane, false);
-				}
-				else if (arrayType == byte[].class) {
-					plane = (byte[]) curPlane;
-				}
-				else if (arrayType == short[].class) {
-					plane = DataTools.shortsToBytes((short[]) curPlane, false);
-				}
-				else if (arrayType == long[].class) {
-					plane = DataTools.longsToBytes((long[]) curPlane, false);
-				}
-				else if (arrayType == double[].class) {
-					plane = DataTools.doublesToBytes((double[]) curPlane, false);
-				}
-				else if (arrayType == float[].class) {
-					plane = DataTools.floatsToBytes((float[]) curPlane, false);
-				}
-				else {
-					throw new IncompatibleTypeException(new ImgLibException(),
-						"PlanarImgs of type " + planarImg.getPlane(0).getClass() +
-							" not supported.");
+						@Override
+						public byte[] call() {
+							return planes.getBytes(no);
+						}
+					}));
 				}
-
-				// save bytes
+				final byte[] plane;
 				try {
-					w.saveBytes(planeIndex, plane);
+					plane = queue.removeFirst().get();
 				}
-				catch (final FormatException e) {
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
 					throw new ImgIOException(e);
 				}
-				catch (final IOException e) {
-					throw new ImgIOException(e);
+				catch (final ExecutionException e) {
+					throw new ImgIOException(e.getCause());
 				}
+				notifyListeners(new StatusEvent(planeIndex, planeCount,
+					"Saving plane " + (planeIndex + 1) + "/" + planeCount));
+				saveBytes(w, planeIndex, plane);
 			}
-
 		}
+		finally {
+			service.shutdownNow();
+		}
+	}
 
+	private void saveBytes(final IFormatWriter w, final int planeIndex,
+		final byte[] plane) throws ImgIOException
+	{
 		try {
-			w.close();
+			w.saveBytes(planeIndex, plane);
+		}
+		catch (final FormatException e) {
+			throw new ImgIOException(e);
 		}
 		catch (final IOException e) {
 			throw new ImgIOException(e);
 		}
 	}
 
+	/**
+	 * Converts a range of a primitive array to big endian bytes. A byte[] that
+	 * is passed as a whole is returned as is.
+	 */
+	private static byte[] toBytes(final Object array, final int offset,
+		final int length)
+	{
+		if (array instanceof byte[]) {
+			final byte[] bytes = (byte[]) array;
+			if (offset == 0 && length == bytes.length) return bytes;
+			return Arrays.copyOfRange(bytes, offset, offset + length);
+		}
+		if (array instanceof short[]) {
+			final ByteBuffer buffer = ByteBuffer.allocate(2 * length);
+			buffer.asShortBuffer().put((short[]) array, offset, length);
+			return buffer.array();
+		}
+		if (array instanceof int[]) {
+			final ByteBuffer buffer = ByteBuffer.allocate(4 * length);
+			buffer.asIntBuffer().put((int[]) array, offset, length);
+			return buffer.array();
+		}
+		if (array instanceof long[]) {
+			final ByteBuffer buffer = ByteBuffer.allocate(8 * length);
+			buffer.asLongBuffer().put((long[]) array, offset, length);
+			return buffer.array();
+		}
+		if (array instanceof float[]) {
+			final ByteBuffer buffer = ByteBuffer.allocate(4 * length);
+			buffer.asFloatBuffer().put((float[]) array, offset, length);
+			return buffer.array();
+		}
+		if (array instanceof double[]) {
+			final ByteBuffer buffer = ByteBuffer.allocate(8 * length);
+			buffer.asDoubleBuffer().put((double[]) array, offset, length);
+			return buffer.array();
+		}
+		throw new IllegalArgumentException("Unsupported array type: " +
+			array.getClass());
+	}
+
 	/**
 	 * Creates a new {@link IFormatWriter} with an unpopulated MetadataStore and
 	 * sets its id to the provided String.
@@ -730,4 +839,85 @@ public class ImgSaver implements StatusReporter {
 		}
 	}
 
+	// -- Helper classes --
+
+	/** Gives access to the primitive array data of each plane of an image. */
+	private static abstract class PlaneSource {
+
+		/** Returns the number of planes. */
+		public abstract int getPlaneCount();
+
+		/** Returns the primitive array holding the given plane. */
+		public abstract Object getArray(int planeIndex);
+
+		/** Returns the given plane as bytes, ready to be saved. */
+		public abstract byte[] getBytes(int planeIndex);
+	}
+
+	/** Each plane of a {@link PlanarImg} is an array of its own. */
+	private static class PlanarPlaneSource extends PlaneSource {
+
+		private final PlanarImg<?, ?> planarImg;
+
+		public PlanarPlaneSource(final PlanarImg<?, ?> planarImg) {
+			this.planarImg = planarImg;
+		}
+
+		@Override
+		public int getPlaneCount() {
+			return planarImg.numSlices();
+		}
+
+		@Override
+		public Object getArray(final int planeIndex) {
+			return planarImg.getPlane(planeIndex).getCurrentStorageArray();
+		}
+
+		@Override
+		public byte[] getBytes(final int planeIndex) {
+			final Object array = getArray(planeIndex);
+			return toBytes(array, 0, Array.getLength(array));
+		}
+	}
+
+	/**
+	 * The planes of an {@link ArrayImg} are consecutive ranges of a single
+	 * array. Types storing more than one entity per pixel occupy that many
+	 * array elements per pixel.
+	 */
+	private static class ArrayPlaneSource extends PlaneSource {
+
+		private final Object array;
+		private final int planeSize;
+		private final int planeCount;
+
+		public ArrayPlaneSource(
+			final ArrayImg<?, ? extends ArrayDataAccess<?>> arrayImg)
+		{
+			array = arrayImg.update(null).getCurrentStorageArray();
+			final long sizeX = arrayImg.dimension(0);
+			final long sizeY =
+				arrayImg.numDimensions() > 1 ? arrayImg.dimension(1) : 1;
+			final long planePixels = sizeX * sizeY;
+			planeSize =
+				(int) (planePixels * arrayImg.firstElement().getEntitiesPerPixel());
+			planeCount = (int) (arrayImg.size() / planePixels);
+		}
+
+		@Override
+		public int getPlaneCount() {
+			return planeCount;
+		}
+
+		@Override
+		public Object getArray(final int planeIndex) {
+			return array;
+		}
+
+		@Override
+		public byte[] getBytes(final int planeIndex) {
+			return toBytes(array, planeIndex * planeSize, planeSize);
+		}
+	}
+
 }
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.cell;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the {@link CellCodec}s known by name. The codecs {@value
+ * RawCellCodec#NAME}, {@value DeflateCellCodec#NAME} and {@value
+ * Lz4CellCodec#NAME} are always available, additional codecs can be
+ * registered with {@link #register(CellCodec)}.
+ * 
+ * @author agent
+ */
+public final class CellCodecs {
+
+	private CellCodecs() {
+		// NB: prevent instantiation of utility class.
+	}
+
+	private static final Map<String, CellCodec> codecs =
+		new HashMap<String, CellCodec>();
+
+	static {
+		register(new RawCellCodec());
+		register(new DeflateCellCodec());
+		register(new Lz4CellCodec());
+	}
+
+	/**
+	 * Registers a codec under its name, replacing any codec previously
+	 * registered under the same name.
+	 */
+	public static synchronized void register(final CellCodec codec) {
+		codecs.put(codec.getName(), codec);
+	}
+
+	/**
+	 * Gets the codec registered under the given name.
+	 * 
+	 * @throws IllegalArgumentException if no such codec is registered.
+	 */
+	public static synchronized CellCodec get(final String name) {
+		final CellCodec codec = codecs.get(name);
+		if (codec == null) throw new IllegalArgumentException(
+			"Unknown cell codec: " + name);
+		return codec;
+	}
+
+}
@@ -0,0 +1,291 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.cell;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DirtyByteArray;
+import net.imglib2.img.basictypeaccess.array.DirtyCharArray;
+import net.imglib2.img.basictypeaccess.array.DirtyDoubleArray;
+import net.imglib2.img.basictypeaccess.array.DirtyFloatArray;
+import net.imglib2.img.basictypeaccess.array.DirtyIntArray;
+import net.imglib2.img.basictypeaccess.array.DirtyLongArray;
+import net.imglib2.img.basictypeaccess.array.DirtyShortArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+
+/**
+ * The primitive type of the entities stored in the cells of a chunked cell
+ * image. Converts between cell data and the big endian bytes stored on disk.
+ * Cell data is created as dirty-tracking arrays (e.g. {@link DirtyFloatArray})
+ * so that only modified cells are written back.
+ * 
+ * @author agent
+ */
+public abstract class CellDataType<A extends ArrayDataAccess<A>> {
+
+	// -- constants --
+
+	public static final CellDataType<ByteArray> BYTE =
+		new CellDataType<ByteArray>("byte", 1)
+		{
+
+			@Override
+			public ByteArray createArray(final int numEntities) {
+				return new DirtyByteArray(numEntities);
+			}
+
+			@Override
+			public ByteArray fromBytes(final ByteBuffer bytes,
+				final int numEntities)
+			{
+				final byte[] data = new byte[numEntities];
+				bytes.get(data);
+				return new DirtyByteArray(data);
+			}
+
+			@Override
+			public void toBytes(final ByteArray data, final ByteBuffer bytes) {
+				bytes.put(data.getCurrentStorageArray());
+			}
+		};
+
+	public static final CellDataType<CharArray> CHAR =
+		new CellDataType<CharArray>("char", 2)
+		{
+
+			@Override
+			public CharArray createArray(final int numEntities) {
+				return new DirtyCharArray(numEntities);
+			}
+
+			@Override
+			public CharArray fromBytes(final ByteBuffer bytes,
+				final int numEntities)
+			{
+				final char[] data = new char[numEntities];
+				bytes.asCharBuffer().get(data);
+				return new DirtyCharArray(data);
+			}
+
+			@Override
+			public void toBytes(final CharArray data, final ByteBuffer bytes) {
+				bytes.asCharBuffer().put(data.getCurrentStorageArray());
+			}
+		};
+
+	public static final CellDataType<ShortArray> SHORT =
+		new CellDataType<ShortArray>("short", 2)
+		{
+
+			@Override
+			public ShortArray createArray(final int numEntities) {
+				return new DirtyShortArray(numEntities);
+			}
+
+			@Override
+			public ShortArray fromBytes(final ByteBuffer bytes,
+				final int numEntities)
+			{
+				final short[] data = new short[numEntities];
+				bytes.asShortBuffer().get(data);
+				return new DirtyShortArray(data);
+			}
+
+			@Override
+			public void toBytes(final ShortArray data, final ByteBuffer bytes) {
+				bytes.asShortBuffer().put(data.getCurrentStorageArray());
+			}
+		};
+
+	public static final CellDataType<IntArray> INT =
+		new CellDataType<IntArray>("int", 4)
+		{
+
+			@Override
+			public IntArray createArray(final int numEntities) {
+				return new DirtyIntArray(numEntities);
+			}
+
+			@Override
+			public IntArray fromBytes(final ByteBuffer bytes,
+				final int numEntities)
+			{
+				final int[] data = new int[numEntities];
+				bytes.asIntBuffer().get(data);
+				return new DirtyIntArray(data);
+			}
+
+			@Override
+			public void toBytes(final IntArray data, final ByteBuffer bytes) {
+				bytes.asIntBuffer().put(data.getCurrentStorageArray());
+			}
+		};
+
+	public static final CellDataType<LongArray> LONG =
+		new CellDataType<LongArray>("long", 8)
+		{
+
+			@Override
+			public LongArray createArray(final int numEntities) {
+				return new DirtyLongArray(numEntities);
+			}
+
+			@Override
+			public LongArray fromBytes(final ByteBuffer bytes,
+				final int numEntities)
+			{
+				final long[] data = new long[numEntities];
+				bytes.asLongBuffer().get(data);
+				return new DirtyLongArray(data);
+			}
+
+			@Override
+			public void toBytes(final LongArray data, final ByteBuffer bytes) {
+				bytes.asLongBuffer().put(data.getCurrentStorageArray());
+			}
+		};
+
+	public static final CellDataType<FloatArray> FLOAT =
+		new CellDataType<FloatArray>("float", 4)
+		{
+
+			@Override
+			public FloatArray createArray(final int numEntities) {
+				return new DirtyFloatArray(numEntities);
+			}
+
+			@Override
+			public FloatArray fromBytes(final ByteBuffer bytes,
+				final int numEntities)
+			{
+				final float[] data = new float[numEntities];
+				bytes.asFloatBuffer().get(data);
+				return new DirtyFloatArray(data);
+			}
+
+			@Override
+			public void toBytes(final FloatArray data, final ByteBuffer bytes) {
+				bytes.asFloatBuffer().put(data.getCurrentStorageArray());
+			}
+		};
+
+	public static final CellDataType<DoubleArray> DOUBLE =
+		new CellDataType<DoubleArray>("double", 8)
+		{
+
+			@Override
+			public DoubleArray createArray(final int numEntities) {
+				return new DirtyDoubleArray(numEntities);
+			}
+
+			@Override
+			public DoubleArray fromBytes(final ByteBuffer bytes,
+				final int numEntities)
+			{
+				final double[] data = new double[numEntities];
+				bytes.asDoubleBuffer().get(data);
+				return new DirtyDoubleArray(data);
+			}
+
+			@Override
+			public void toBytes(final DoubleArray data, final ByteBuffer bytes)
+			{
+				bytes.asDoubleBuffer().put(data.getCurrentStorageArray());
+			}
+		};
+
+	private static final CellDataType<?>[] TYPES = { BYTE, CHAR, SHORT, INT,
+		LONG, FLOAT, DOUBLE };
+
+	// -- fields --
+
+	private final String name;
+	private final int bytesPerEntity;
+
+	// -- constructor --
+
+	protected CellDataType(final String name, final int bytesPerEntity) {
+		this.name = name;
+		this.bytesPerEntity = bytesPerEntity;
+	}
+
+	// -- CellDataType methods --
+
+	/** Gets the name under which the data type is stored in the header. */
+	public String getName() {
+		return name;
+	}
+
+	/** Gets the number of bytes of one entity. */
+	public int getBytesPerEntity() {
+		return bytesPerEntity;
+	}
+
+	/** Creates zero-initialized cell data. */
+	public abstract A createArray(int numEntities);
+
+	/** Reads numEntities entities from the given buffer. */
+	public abstract A fromBytes(ByteBuffer bytes, int numEntities);
+
+	/** Writes all entities of data into the given buffer. */
+	public abstract void toBytes(A data, ByteBuffer bytes);
+
+	/**
+	 * Gets the data type with the given name.
+	 * 
+	 * @throws IllegalArgumentException if there is no such data type.
+	 */
+	public static CellDataType<?> get(final String name) {
+		for (final CellDataType<?> type : TYPES)
+			if (type.getName().equals(name)) return type;
+		throw new IllegalArgumentException("Unknown cell data type: " + name);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.cell;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * The header of a chunked cell image. It is stored as a properties file named
+ * {@value #HEADER_FILE} in the directory of the image and records the
+ * dimensions of the image and of its cells, the data type of the cell entities
+ * and the codec used to compress the cell files.
+ * 
+ * @author agent
+ */
+public class ChunkedCellHeader {
+
+	// -- constants --
+
+	/** Name of the header file in the directory of a chunked cell image. */
+	public static final String HEADER_FILE = "attributes.properties";
+
+	/** Version of the chunked cell format written by this class. */
+	public static final int VERSION = 1;
+
+	private static final String KEY_VERSION = "version";
+	private static final String KEY_DIMENSIONS = "dimensions";
+	private static final String KEY_CELL_DIMENSIONS = "cellDimensions";
+	private static final String KEY_DATA_TYPE = "dataType";
+	private static final String KEY_ENTITIES_PER_PIXEL = "entitiesPerPixel";
+	private static final String KEY_COMPRESSION = "compression";
+
+	// -- fields --
+
+	private final long[] dimensions;
+	private final int[] cellDimensions;
+	private final CellDataType<?> dataType;
+	private final int entitiesPerPixel;
+	private final CellCodec codec;
+
+	// -- constructor --
+
+	public ChunkedCellHeader(final long[] dimensions, final int[] cellDimensions,
+		final CellDataType<?> dataType, final int entitiesPerPixel,
+		final CellCodec codec)
+	{
+		if (dimensions.length != cellDimensions.length) {
+			throw new IllegalArgumentException(
+				"dimensions and cell dimensions must have the same length");
+		}
+		this.dimensions = dimensions.clone();
+		this.cellDimensions = cellDimensions.clone();
+		this.dataType = dataType;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.codec = codec;
+	}
+
+	// -- ChunkedCellHeader methods --
+
+	public long[] getDimensions() {
+		return dimensions.clone();
+	}
+
+	public int[] getCellDimensions() {
+		return cellDimensions.clone();
+	}
+
+	public CellDataType<?> getDataType() {
+		return dataType;
+	}
+
+	public int getEntitiesPerPixel() {
+		return entitiesPerPixel;
+	}
+
+	public CellCodec getCodec() {
+		return codec;
+	}
+
+	/** Writes this header into the given directory, creating it if needed. */
+	public void write(final File directory) throws IOException {
+		if (!directory.mkdirs() && !directory.isDirectory()) throw new IOException(
+			"Cannot create directory " + directory);
+		final Properties properties = new Properties();
+		properties.setProperty(KEY_VERSION, Integer.toString(VERSION));
+		properties.setProperty(KEY_DIMENSIONS, join(dimensions));
+		properties.setProperty(KEY_CELL_DIMENSIONS, join(cellDimensions));
+		properties.setProperty(KEY_DATA_TYPE, dataType.getName());
+		properties.setProperty(KEY_ENTITIES_PER_PIXEL, Integer
+			.toString(entitiesPerPixel));
+		properties.setProperty(KEY_COMPRESSION, codec.getName());
+		final OutputStream out =
+			new FileOutputStream(new File(directory, HEADER_FILE));
+		try {
+			properties.store(out, "ImgLib2 chunked cell image");
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the header of the chunked cell image in the given directory.
+	 * 
+	 * @throws IOException if the header does not exist or is invalid.
+	 */
+	public static ChunkedCellHeader read(final File directory)
+		throws IOException
+	{
+		final Properties properties = new Properties();
+		final InputStream in = new FileInputStream(new File(directory, HEADER_FILE));
+		try {
+			properties.load(in);
+		}
+		finally {
+			in.close();
+		}
+		try {
+			final int version = Integer.parseInt(get(properties, KEY_VERSION));
+			if (version > VERSION) throw new IOException(
+				"Unsupported chunked cell format version " + version);
+			final long[] dimensions = splitLongs(get(properties, KEY_DIMENSIONS));
+			final int[] cellDimensions =
+				splitInts(get(properties, KEY_CELL_DIMENSIONS));
+			final CellDataType<?> dataType =
+				CellDataType.get(get(properties, KEY_DATA_TYPE));
+			final int entitiesPerPixel =
+				Integer.parseInt(get(properties, KEY_ENTITIES_PER_PIXEL));
+			final CellCodec codec = CellCodecs.get(get(properties, KEY_COMPRESSION));
+			return new ChunkedCellHeader(dimensions, cellDimensions, dataType,
+				entitiesPerPixel, codec);
+		}
+		catch (final NumberFormatException e) {
+			throw new IOException("Invalid header in " + directory + ": " +
+				e.getMessage());
+		}
+		catch (final IllegalArgumentException e) {
+			throw new IOException("Invalid header in " + directory + ": " +
+				e.getMessage());
+		}
+	}
+
+	// -- private helpers --
+
+	private static String get(final Properties properties, final String key)
+		throws IOException
+	{
+		final String value = properties.getProperty(key);
+		if (value == null) throw new IOException("Missing header entry " + key);
+		return value.trim();
+	}
+
+	private static String join(final long[] values) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) sb.append(',');
+			sb.append(values[i]);
+		}
+		return sb.toString();
+	}
+
+	private static String join(final int[] values) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) sb.append(',');
+			sb.append(values[i]);
+		}
+		return sb.toString();
+	}
+
+	private static long[] splitLongs(final String value) {
+		final String[] tokens = value.split(",");
+		final long[] values = new long[tokens.length];
+		for (int i = 0; i < tokens.length; i++)
+			values[i] = Long.parseLong(tokens[i].trim());
+		return values;
+	}
+
+	private static int[] splitInts(final String value) {
+		final String[] tokens = value.split(",");
+		final int[] values = new int[tokens.length];
+		for (int i = 0; i < tokens.length; i++)
+			values[i] = Integer.parseInt(tokens[i].trim());
+		return values;
+	}
+
+}
@@ -0,0 +1,317 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.cell;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.BitAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.CachedCells;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.DefaultCell;
+import net.imglib2.img.cell.WriteBackCellCache;
+import net.imglib2.type.NativeType;
+
+/**
+ * Creates {@link CellImg}s that are backed by a chunked cell image on disk:
+ * a directory holding a {@link ChunkedCellHeader} and one compressed file per
+ * cell (see {@link ChunkedCellStore}). Cells are loaded lazily when they are
+ * first accessed and are kept in a {@link WriteBackCellCache}, so any
+ * sub-volume can be read without decoding more than the cells it intersects,
+ * and modified cells are written back when they are evicted or on
+ * {@link #flush()}.
+ * <p>
+ * To create a new image:
+ * 
+ * <pre>
+ * factory = new ChunkedCellImgFactory&lt;FloatType&gt;(dir, new int[] { 64, 64, 64 }, new Lz4CellCodec(), 1l &lt;&lt; 30);
+ * img = factory.create(new long[] { 2048, 2048, 1024 }, new FloatType());
+ * ...
+ * factory.flush();
+ * </pre>
+ * 
+ * To open an existing image:
+ * 
+ * <pre>
+ * factory = new ChunkedCellImgFactory&lt;FloatType&gt;(dir, 1l &lt;&lt; 30);
+ * img = factory.open(new FloatType());
+ * </pre>
+ * 
+ * {@link #imgFactory(Object)} and {@link CellImg#copy()} create images in
+ * memory.
+ * 
+ * @author agent
+ */
+public class ChunkedCellImgFactory<T extends NativeType<T>> extends
+	NativeImgFactory<T>
+{
+
+	// -- fields --
+
+	private final File directory;
+	private final int[] cellDimensions;
+	private final CellCodec codec;
+	private final long cacheBytes;
+
+	private ChunkedCellHeader header;
+	private final List<WriteBackCellCache<?>> caches =
+		new ArrayList<WriteBackCellCache<?>>();
+
+	// -- constructors --
+
+	/**
+	 * Create a factory that creates a new chunked cell image in the given
+	 * directory on the first call to {@link #create(long[], NativeType)}.
+	 * 
+	 * @param directory the directory of the image, must not contain a chunked
+	 *          cell image yet
+	 * @param cellDimensions the dimensions of a cell
+	 * @param codec the codec used to compress cell files
+	 * @param cacheBytes maximum size of the loaded cells in bytes
+	 */
+	public ChunkedCellImgFactory(final File directory,
+		final int[] cellDimensions, final CellCodec codec, final long cacheBytes)
+	{
+		this.directory = directory;
+		this.cellDimensions = cellDimensions.clone();
+		this.codec = codec;
+		this.cacheBytes = cacheBytes;
+	}
+
+	/**
+	 * Create a factory that opens the existing chunked cell image in the given
+	 * directory.
+	 * 
+	 * @param directory the directory of the image
+	 * @param cacheBytes maximum size of the loaded cells in bytes
+	 */
+	public ChunkedCellImgFactory(final File directory, final long cacheBytes) {
+		this.directory = directory;
+		this.cellDimensions = null;
+		this.codec = null;
+		this.cacheBytes = cacheBytes;
+	}
+
+	// -- ChunkedCellImgFactory methods --
+
+	/**
+	 * Opens the chunked cell image with the dimensions stored in its header.
+	 * 
+	 * @throws IOException if there is no valid header in the directory.
+	 */
+	public CellImg<T, ?, ?> open(final T type) throws IOException {
+		return create(getHeader().getDimensions(), type);
+	}
+
+	/**
+	 * Gets the header of the image, reading it from disk if this factory has not
+	 * created or opened an image yet.
+	 */
+	public synchronized ChunkedCellHeader getHeader() throws IOException {
+		if (header == null) header = ChunkedCellHeader.read(directory);
+		return header;
+	}
+
+	/**
+	 * Writes all modified cells of the images created by this factory to disk.
+	 */
+	public synchronized void flush() {
+		for (final WriteBackCellCache<?> cache : caches)
+			cache.flush();
+	}
+
+	// -- ImgFactory methods --
+
+	@Override
+	public CellImg<T, ?, ?> create(final long[] dim, final T type) {
+		return (CellImg<T, ?, ?>) type.createSuitableNativeImg(this, dim);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public <S> ImgFactory<S> imgFactory(final S type)
+		throws IncompatibleTypeException
+	{
+		if (NativeType.class.isInstance(type)) {
+			final int[] cellDims =
+				header == null ? cellDimensions : header.getCellDimensions();
+			return new CellImgFactory(cellDims);
+		}
+		throw new IncompatibleTypeException(this, type.getClass()
+			.getCanonicalName() + " does not implement NativeType.");
+	}
+
+	// -- NativeImgFactory methods --
+
+	@Override
+	public NativeImg<T, ? extends BitAccess> createBitInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		throw new UnsupportedOperationException(
+			"Chunked cell images do not support bit types.");
+	}
+
+	@Override
+	public CellImg<T, ByteArray, DefaultCell<ByteArray>> createByteInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return createInstance(CellDataType.BYTE, dimensions, entitiesPerPixel);
+	}
+
+	@Override
+	public CellImg<T, CharArray, DefaultCell<CharArray>> createCharInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return createInstance(CellDataType.CHAR, dimensions, entitiesPerPixel);
+	}
+
+	@Override
+	public CellImg<T, ShortArray, DefaultCell<ShortArray>> createShortInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return createInstance(CellDataType.SHORT, dimensions, entitiesPerPixel);
+	}
+
+	@Override
+	public CellImg<T, IntArray, DefaultCell<IntArray>> createIntInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return createInstance(CellDataType.INT, dimensions, entitiesPerPixel);
+	}
+
+	@Override
+	public CellImg<T, LongArray, DefaultCell<LongArray>> createLongInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return createInstance(CellDataType.LONG, dimensions, entitiesPerPixel);
+	}
+
+	@Override
+	public CellImg<T, FloatArray, DefaultCell<FloatArray>> createFloatInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return createInstance(CellDataType.FLOAT, dimensions, entitiesPerPixel);
+	}
+
+	@Override
+	public CellImg<T, DoubleArray, DefaultCell<DoubleArray>>
+		createDoubleInstance(final long[] dimensions, final int entitiesPerPixel)
+	{
+		return createInstance(CellDataType.DOUBLE, dimensions, entitiesPerPixel);
+	}
+
+	// -- private helpers --
+
+	private synchronized <A extends ArrayDataAccess<A>>
+		CellImg<T, A, DefaultCell<A>> createInstance(
+			final CellDataType<A> dataType, final long[] dimensions,
+			final int entitiesPerPixel)
+	{
+		final ChunkedCellHeader h =
+			checkHeader(dataType, dimensions, entitiesPerPixel);
+		final ChunkedCellStore<A> store =
+			new ChunkedCellStore<A>(directory, h, dataType);
+		final WriteBackCellCache<A> cache =
+			new WriteBackCellCache<A>(cacheBytes, store);
+		caches.add(cache);
+		final int[] cellDims = h.getCellDimensions();
+		final CachedCells<A> cells =
+			new CachedCells<A>(store, cache, entitiesPerPixel, dimensions, cellDims);
+		return new CellImg<T, A, DefaultCell<A>>(new CellImgFactory<T>(cellDims),
+			cells);
+	}
+
+	/**
+	 * Writes the header of a new image, or checks that the image in the
+	 * directory matches the requested one.
+	 */
+	private ChunkedCellHeader checkHeader(final CellDataType<?> dataType,
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		try {
+			if (header == null && cellDimensions != null) {
+				if (new File(directory, ChunkedCellHeader.HEADER_FILE).exists()) {
+					throw new IllegalArgumentException(directory +
+						" already contains a chunked cell image");
+				}
+				if (cellDimensions.length != dimensions.length) {
+					throw new IllegalArgumentException("Cell dimensions " +
+						Arrays.toString(cellDimensions) + " do not match dimensions " +
+						Arrays.toString(dimensions));
+				}
+				header =
+					new ChunkedCellHeader(dimensions, cellDimensions, dataType,
+						entitiesPerPixel, codec);
+				header.write(directory);
+				return header;
+			}
+			final ChunkedCellHeader h = getHeader();
+			if (!Arrays.equals(h.getDimensions(), dimensions) ||
+				h.getDataType() != dataType ||
+				h.getEntitiesPerPixel() != entitiesPerPixel)
+			{
+				throw new IllegalArgumentException("Requested image (" +
+					Arrays.toString(dimensions) + ", " + dataType + " x " +
+					entitiesPerPixel + ") does not match chunked cell image (" +
+					Arrays.toString(h.getDimensions()) + ", " + h.getDataType() +
+					" x " + h.getEntitiesPerPixel() + ") in " + directory);
+			}
+			return h;
+		}
+		catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.cell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.CellLoader;
+import net.imglib2.img.cell.CellWriter;
+
+/**
+ * Reads and writes the cells of a chunked cell image. Every cell of the
+ * {@link net.imglib2.img.cell.CellImg} grid is stored in a file of its own,
+ * whose path below the directory of the image is the position of the cell in
+ * the grid, e.g. <code>3/0/12</code>. Cell files contain the entities of the
+ * cell as big endian bytes in flat iteration order, compressed with the codec
+ * named in the {@link ChunkedCellHeader}. Cells without a file are read as
+ * zeros, so an image only takes disk space for cells that have been written.
+ * <p>
+ * This is a {@link CellLoader} and {@link CellWriter} for use with
+ * {@link net.imglib2.img.cell.CachedCells}; see {@link ChunkedCellImgFactory}.
+ * 
+ * @author agent
+ */
+public class ChunkedCellStore<A extends ArrayDataAccess<A>> implements
+	CellLoader<A>, CellWriter<A>
+{
+
+	// -- fields --
+
+	private final File directory;
+	private final ChunkedCellHeader header;
+	private final CellDataType<A> dataType;
+	private final int[] cellDimensions;
+
+	// -- constructor --
+
+	/**
+	 * Create a store for the chunked cell image in the given directory.
+	 * 
+	 * @param directory the directory of the image
+	 * @param header the header of the image
+	 * @param dataType the data type of the image, must be the one named by the
+	 *          header
+	 */
+	public ChunkedCellStore(final File directory,
+		final ChunkedCellHeader header, final CellDataType<A> dataType)
+	{
+		if (header.getDataType() != dataType) throw new IllegalArgumentException(
+			"Data type " + dataType + " does not match header data type " +
+				header.getDataType());
+		this.directory = directory;
+		this.header = header;
+		this.dataType = dataType;
+		this.cellDimensions = header.getCellDimensions();
+	}
+
+	// -- ChunkedCellStore methods --
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public ChunkedCellHeader getHeader() {
+		return header;
+	}
+
+	/** Gets the file that stores the cell with the given min coordinate. */
+	public File getCellFile(final long[] min) {
+		File file = directory;
+		for (int d = 0; d < min.length; d++)
+			file = new File(file, Long.toString(min[d] / cellDimensions[d]));
+		return file;
+	}
+
+	// -- CellLoader methods --
+
+	@Override
+	public A loadCell(final int[] dimensions, final long[] min,
+		final int entitiesPerPixel)
+	{
+		final int numEntities = numEntities(dimensions, entitiesPerPixel);
+		final File file = getCellFile(min);
+		if (!file.exists()) return dataType.createArray(numEntities);
+		try {
+			final byte[] decoded =
+				header.getCodec().decode(readFile(file),
+					numEntities * dataType.getBytesPerEntity());
+			return dataType.fromBytes(ByteBuffer.wrap(decoded), numEntities);
+		}
+		catch (final IOException e) {
+			throw new RuntimeException("Cannot read cell " + file, e);
+		}
+	}
+
+	// -- CellWriter methods --
+
+	@Override
+	public void writeCell(final int[] dimensions, final long[] min,
+		final A data)
+	{
+		final int numEntities =
+			numEntities(dimensions, header.getEntitiesPerPixel());
+		final ByteBuffer bytes =
+			ByteBuffer.allocate(numEntities * dataType.getBytesPerEntity());
+		dataType.toBytes(data, bytes);
+		final File file = getCellFile(min);
+		try {
+			writeFile(file, header.getCodec().encode(bytes.array()));
+		}
+		catch (final IOException e) {
+			throw new RuntimeException("Cannot write cell " + file, e);
+		}
+	}
+
+	// -- private helpers --
+
+	private static int numEntities(final int[] dimensions,
+		final int entitiesPerPixel)
+	{
+		int n = entitiesPerPixel;
+		for (final int d : dimensions)
+			n *= d;
+		return n;
+	}
+
+	private static byte[] readFile(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final ByteArrayOutputStream out =
+				new ByteArrayOutputStream((int) file.length());
+			final byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) >= 0)
+				out.write(buffer, 0, n);
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the file through a temporary file that is renamed when complete,
+	 * so that readers never see a partially written cell.
+	 */
+	private static void writeFile(final File file, final byte[] data)
+		throws IOException
+	{
+		final File parent = file.getParentFile();
+		// NB: another thread may create the directory concurrently
+		if (!parent.mkdirs() && !parent.isDirectory()) throw new IOException(
+			"Cannot create directory " + parent);
+		// NB: a unique temporary file per write, the same cell may be written
+		// by several threads at once
+		final File tmp =
+			File.createTempFile(file.getName() + ".write", ".tmp", parent);
+		boolean renamed = false;
+		try {
+			final OutputStream out = new FileOutputStream(tmp);
+			try {
+				out.write(data);
+			}
+			finally {
+				out.close();
+			}
+			renamed = tmp.renameTo(file);
+			if (!renamed) {
+				// renameTo does not replace existing files on all platforms
+				file.delete();
+				renamed = tmp.renameTo(file);
+				if (!renamed) throw new IOException("Cannot rename " + tmp + " to " +
+					file);
+			}
+		}
+		finally {
+			if (!renamed) tmp.delete();
+		}
+	}
+
+}
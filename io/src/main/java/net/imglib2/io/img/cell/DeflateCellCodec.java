@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.cell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link CellCodec} that compresses cell data with the zlib deflate
+ * algorithm. Good compression ratios, but comparatively slow.
+ * 
+ * @author agent
+ */
+public class DeflateCellCodec implements CellCodec {
+
+	public static final String NAME = "deflate";
+
+	private final int level;
+
+	/** Create a deflate codec with the default compression level. */
+	public DeflateCellCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Create a deflate codec.
+	 * 
+	 * @param level compression level from 0 to 9, see {@link Deflater}.
+	 */
+	public DeflateCellCodec(final int level) {
+		this.level = level;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public byte[] encode(final byte[] data) {
+		final Deflater deflater = new Deflater(level);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			final ByteArrayOutputStream out =
+				new ByteArrayOutputStream(data.length / 2 + 64);
+			final byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				final int n = deflater.deflate(buffer);
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	@Override
+	public byte[] decode(final byte[] data, final int decodedLength)
+		throws IOException
+	{
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			final byte[] decoded = new byte[decodedLength];
+			int offset = 0;
+			while (offset < decodedLength) {
+				final int n = inflater.inflate(decoded, offset, decodedLength - offset);
+				if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+				offset += n;
+			}
+			if (offset != decodedLength) throw new IOException("Expected " +
+				decodedLength + " bytes but decoded " + offset);
+			return decoded;
+		}
+		catch (final DataFormatException e) {
+			throw new IOException(e.getMessage());
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+}
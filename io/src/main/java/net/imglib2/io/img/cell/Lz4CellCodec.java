@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.cell;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A {@link CellCodec} that compresses cell data with a fast LZ77 compressor
+ * producing the LZ4 block format (without frame header). Compression ratios
+ * are lower than with {@link DeflateCellCodec}, but encoding and in particular
+ * decoding are much faster, which makes it a good choice for data that is read
+ * often.
+ * 
+ * @author agent
+ */
+public class Lz4CellCodec implements CellCodec {
+
+	public static final String NAME = "lz4";
+
+	// -- constants of the LZ4 block format --
+
+	private static final int MIN_MATCH = 4;
+	private static final int LAST_LITERALS = 5;
+	private static final int MF_LIMIT = 12;
+	private static final int MAX_OFFSET = 65535;
+	private static final int HASH_LOG = 14;
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public byte[] encode(final byte[] src) {
+		final int length = src.length;
+		final byte[] dst = new byte[length + length / 255 + 16];
+		final int[] hashTable = new int[1 << HASH_LOG];
+		Arrays.fill(hashTable, -1);
+
+		int o = 0;
+		int anchor = 0;
+		int i = 0;
+		final int matchLimit = length - LAST_LITERALS;
+		final int limit = length - MF_LIMIT;
+		while (i < limit) {
+			final int sequence = readInt(src, i);
+			final int h = hash(sequence);
+			final int ref = hashTable[h];
+			hashTable[h] = i;
+			if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+				++i;
+				continue;
+			}
+			int matchLength = MIN_MATCH;
+			while (i + matchLength < matchLimit &&
+				src[ref + matchLength] == src[i + matchLength])
+				++matchLength;
+			o = writeSequence(src, anchor, i - anchor, dst, o, i - ref, matchLength);
+			i += matchLength;
+			anchor = i;
+		}
+		o = writeLastLiterals(src, anchor, length - anchor, dst, o);
+		return Arrays.copyOf(dst, o);
+	}
+
+	@Override
+	public byte[] decode(final byte[] src, final int decodedLength)
+		throws IOException
+	{
+		final byte[] dst = new byte[decodedLength];
+		int i = 0;
+		int o = 0;
+		try {
+			while (i < src.length) {
+				final int token = src[i++] & 0xff;
+
+				// literals
+				int literalLength = token >>> 4;
+				if (literalLength == 15) {
+					int b;
+					do {
+						b = src[i++] & 0xff;
+						literalLength += b;
+					}
+					while (b == 255);
+				}
+				System.arraycopy(src, i, dst, o, literalLength);
+				i += literalLength;
+				o += literalLength;
+				if (i == src.length) break; // last sequence has no match
+
+				// match
+				final int offset = (src[i] & 0xff) | ((src[i + 1] & 0xff) << 8);
+				i += 2;
+				if (offset == 0 || offset > o) throw new IOException(
+					"Invalid match offset " + offset + " at " + o);
+				int matchLength = token & 0x0f;
+				if (matchLength == 15) {
+					int b;
+					do {
+						b = src[i++] & 0xff;
+						matchLength += b;
+					}
+					while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+				// matches may overlap with the bytes they produce
+				int ref = o - offset;
+				final int end = o + matchLength;
+				if (end > decodedLength) throw new IOException(
+					"Decoded data exceeds " + decodedLength + " bytes");
+				while (o < end)
+					dst[o++] = dst[ref++];
+			}
+		}
+		catch (final ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupt LZ4 block");
+		}
+		if (o != decodedLength) throw new IOException("Expected " +
+			decodedLength + " bytes but decoded " + o);
+		return dst;
+	}
+
+	// -- private helpers --
+
+	private static int hash(final int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+	private static int readInt(final byte[] src, final int i) {
+		return (src[i] & 0xff) | ((src[i + 1] & 0xff) << 8) |
+			((src[i + 2] & 0xff) << 16) | ((src[i + 3] & 0xff) << 24);
+	}
+
+	private static int writeSequence(final byte[] src, final int literalStart,
+		final int literalLength, final byte[] dst, int o, final int offset,
+		final int matchLength)
+	{
+		final int ml = matchLength - MIN_MATCH;
+		dst[o++] =
+			(byte) ((Math.min(literalLength, 15) << 4) | Math.min(ml, 15));
+		o = writeLength(literalLength, dst, o);
+		System.arraycopy(src, literalStart, dst, o, literalLength);
+		o += literalLength;
+		dst[o++] = (byte) offset;
+		dst[o++] = (byte) (offset >>> 8);
+		return writeLength(ml, dst, o);
+	}
+
+	private static int writeLastLiterals(final byte[] src,
+		final int literalStart, final int literalLength, final byte[] dst, int o)
+	{
+		dst[o++] = (byte) (Math.min(literalLength, 15) << 4);
+		o = writeLength(literalLength, dst, o);
+		System.arraycopy(src, literalStart, dst, o, literalLength);
+		return o + literalLength;
+	}
+
+	/** Writes the extra bytes of a length whose 4 bit token field is full. */
+	private static int writeLength(final int length, final byte[] dst, int o) {
+		if (length < 15) return o;
+		int remaining = length - 15;
+		while (remaining >= 255) {
+			dst[o++] = (byte) 255;
+			remaining -= 255;
+		}
+		dst[o++] = (byte) remaining;
+		return o;
+	}
+
+}
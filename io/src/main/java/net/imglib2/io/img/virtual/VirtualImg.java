@@ -61,7 +61,14 @@ import net.imglib2.type.numeric.real.FloatType;
 /**
  * This class supports the ability to open an image and only load data into
  * memory one plane at a time. Data is read only in the sense that though in
- * memory values can be changed the data is never written to disk.
+ * memory values can be changed the data is never written to disk. Decoded
+ * planes are kept in a {@link VirtualPlaneCache} that holds the most recently
+ * used planes and reads ahead along the direction of iteration.
+ * <p>
+ * Random accesses and cursors of a VirtualImg may be used from different
+ * threads concurrently. Planes are decoded by a {@link VirtualReaderPool}; use
+ * {@link #create(String, boolean, int, int, int)} with more than one reader to
+ * decode planes in parallel.
  * 
  * @author Barry DeZonia
  */
@@ -70,28 +77,36 @@ public class VirtualImg<T extends NativeType<T> & RealType<T>> extends
 {
 
 	private final long[] dims;
-	private final IFormatReader reader;
+	private final VirtualReaderPool readers;
 	private final T type;
 	private final boolean bytesOnly;
+	private final int numCachedPlanes;
+	private final int readAhead;
+	private final VirtualPlaneCache planeCache;
 
-	// TODO
-	// The reader gets shared among all copy()'s and randomAccess()'s and
-	// cursor()'s, etc. so there might be threading issues. Unless we enforce
-	// that only one user of the reader can be defined. Maybe reader is
-	// already thread safe. Investigate.
+	// NOTE - the reader pool gets shared among all copy()'s. Every
+	// randomAccess() and cursor() has a plane buffer of its own and planes are
+	// decoded through the thread safe VirtualPlaneCache, so accessors can be
+	// used concurrently from different threads.
 
 	// Note - this constructor is clumsy and error prone. so we're making it
 	// private and only invoking (always correctly) through the create() method.
 
-	private VirtualImg(final long[] dims, final IFormatReader reader,
-		final T type, final boolean bytesOnly)
+	private VirtualImg(final long[] dims, final VirtualReaderPool readers,
+		final T type, final boolean bytesOnly, final int numCachedPlanes,
+		final int readAhead)
 	{
 		super(dims);
 		this.dims = dims.clone();
-		this.reader = reader;
+		this.readers = readers;
 		this.type = type.copy();
 		this.bytesOnly = bytesOnly;
+		this.numCachedPlanes = numCachedPlanes;
+		this.readAhead = readAhead;
 		checkDimensions();
+		this.planeCache =
+			new VirtualPlaneCache(readers, bytesOnly, planeCount(), numCachedPlanes,
+				readAhead);
 	}
 
 	// TODO: Eliminate use of <?> generics in the methods below.
@@ -108,6 +123,53 @@ public class VirtualImg<T extends NativeType<T> & RealType<T>> extends
 	 */
 	public static VirtualImg<? extends RealType<?>> create(final String fileName,
 		final boolean bytesOnly) throws ImgIOException
+	{
+		return create(fileName, bytesOnly, VirtualPlaneCache.DEFAULT_CACHED_PLANES,
+			VirtualPlaneCache.DEFAULT_READ_AHEAD);
+	}
+
+	/**
+	 * Factory method for creating VirtualImgs from file names
+	 * 
+	 * @param fileName - name of the file that contains data of interest
+	 * @param bytesOnly - a boolean that delineates whether data is to be accessed
+	 *          a byte at a time or in the actual backing primitive type one at a
+	 *          time.
+	 * @param numCachedPlanes - the maximum number of decoded planes kept in
+	 *          memory
+	 * @param readAhead - the number of planes decoded in the background ahead of
+	 *          sequential access (0 to disable)
+	 * @return a VirtualImg that gives read only access to data a plane at a time
+	 * @throws ImgIOException
+	 */
+	public static VirtualImg<? extends RealType<?>> create(final String fileName,
+		final boolean bytesOnly, final int numCachedPlanes, final int readAhead)
+		throws ImgIOException
+	{
+		return create(fileName, bytesOnly, numCachedPlanes, readAhead, 1);
+	}
+
+	/**
+	 * Factory method for creating VirtualImgs from file names that are accessed
+	 * by several threads concurrently. Planes are decoded in parallel by a pool
+	 * of up to numReaders readers on the file.
+	 * 
+	 * @param fileName - name of the file that contains data of interest
+	 * @param bytesOnly - a boolean that delineates whether data is to be accessed
+	 *          a byte at a time or in the actual backing primitive type one at a
+	 *          time.
+	 * @param numCachedPlanes - the maximum number of decoded planes kept in
+	 *          memory
+	 * @param readAhead - the number of planes decoded in the background ahead of
+	 *          sequential access (0 to disable)
+	 * @param numReaders - the maximum number of readers opened on the file,
+	 *          typically the number of threads using the image
+	 * @return a VirtualImg that gives read only access to data a plane at a time
+	 * @throws ImgIOException
+	 */
+	public static VirtualImg<? extends RealType<?>> create(final String fileName,
+		final boolean bytesOnly, final int numCachedPlanes, final int readAhead,
+		final int numReaders) throws ImgIOException
 	{
 		IFormatReader rdr = null;
 		try {
@@ -121,13 +183,17 @@ public class VirtualImg<T extends NativeType<T> & RealType<T>> extends
 		}
 
 		final long[] dimensions = ImgOpener.getDimLengths(rdr);
+		final VirtualReaderPool readers =
+			new VirtualReaderPool(rdr, fileName, numReaders);
 
 		if (bytesOnly) {
 			dimensions[0] *= FormatTools.getBytesPerPixel(rdr.getPixelType());
-			return byteTypedVirtualImg(dimensions, rdr);
+			return byteTypedVirtualImg(dimensions, readers, numCachedPlanes,
+				readAhead);
 		}
 
-		return correctlyTypedVirtualImg(dimensions, rdr);
+		return correctlyTypedVirtualImg(dimensions, readers, numCachedPlanes,
+			readAhead);
 	}
 
 	@Override
@@ -159,21 +225,40 @@ public class VirtualImg<T extends NativeType<T> & RealType<T>> extends
 
 	@Override
 	public Img<T> copy() {
-		return new VirtualImg<T>(dims, reader, type, bytesOnly);
+		return new VirtualImg<T>(dims, readers, type, bytesOnly, numCachedPlanes,
+			readAhead);
 	}
 
 	public T getType() {
 		return type;
 	}
 
+	/**
+	 * Returns the primary reader of the image. It is shared with the plane
+	 * cache, so callers must synchronize on it while using it.
+	 */
 	public IFormatReader getReader() {
-		return reader;
+		return readers.getPrimaryReader();
+	}
+
+	/** Returns the pool of readers planes of this image are decoded with. */
+	public VirtualReaderPool getReaderPool() {
+		return readers;
 	}
 
 	public boolean isByteOnly() {
 		return bytesOnly;
 	}
 
+	/**
+	 * Returns the cache of decoded planes shared by all accessors of this
+	 * VirtualImg. Its hit and miss counters can be used to tune the number of
+	 * cached planes.
+	 */
+	public VirtualPlaneCache getPlaneCache() {
+		return planeCache;
+	}
+
 	// -- private helpers --
 
 	private void checkDimensions() {
@@ -184,55 +269,66 @@ public class VirtualImg<T extends NativeType<T> & RealType<T>> extends
 		// mess with dim0. And we setup dims ourself so we know they are correct.
 	}
 
+	private int planeCount() {
+		long count = 1;
+		for (int i = 2; i < dims.length; i++)
+			count *= dims[i];
+		return (int) count;
+	}
+
 	private static VirtualImg<? extends RealType<?>> byteTypedVirtualImg(
-		final long[] dimensions, final IFormatReader rdr)
+		final long[] dimensions, final VirtualReaderPool readers,
+		final int numPlanes, final int readAhead)
 	{
-		return new VirtualImg<UnsignedByteType>(dimensions, rdr,
-			new UnsignedByteType(), true);
+		return new VirtualImg<UnsignedByteType>(dimensions, readers,
+			new UnsignedByteType(), true, numPlanes, readAhead);
 	}
 
 	private static VirtualImg<? extends RealType<?>> correctlyTypedVirtualImg(
-		final long[] dimensions, final IFormatReader rdr)
+		final long[] dimensions, final VirtualReaderPool readers,
+		final int numPlanes, final int readAhead)
 	{
-		switch (rdr.getPixelType()) {
+		switch (readers.getPrimaryReader().getPixelType()) {
 
 			case FormatTools.UINT8:
 
-				return new VirtualImg<UnsignedByteType>(dimensions, rdr,
-					new UnsignedByteType(), false);
+				return new VirtualImg<UnsignedByteType>(dimensions, readers,
+					new UnsignedByteType(), false, numPlanes, readAhead);
 
 			case FormatTools.INT8:
 
-				return new VirtualImg<ByteType>(dimensions, rdr, new ByteType(), false);
+				return new VirtualImg<ByteType>(dimensions, readers,
+					new ByteType(), false, numPlanes, readAhead);
 
 			case FormatTools.UINT16:
 
-				return new VirtualImg<UnsignedShortType>(dimensions, rdr,
-					new UnsignedShortType(), false);
+				return new VirtualImg<UnsignedShortType>(dimensions, readers,
+					new UnsignedShortType(), false, numPlanes, readAhead);
 
 			case FormatTools.INT16:
 
-				return new VirtualImg<ShortType>(dimensions, rdr, new ShortType(),
-					false);
+				return new VirtualImg<ShortType>(dimensions, readers,
+					new ShortType(), false, numPlanes, readAhead);
 
 			case FormatTools.UINT32:
 
-				return new VirtualImg<UnsignedIntType>(dimensions, rdr,
-					new UnsignedIntType(), false);
+				return new VirtualImg<UnsignedIntType>(dimensions, readers,
+					new UnsignedIntType(), false, numPlanes, readAhead);
 
 			case FormatTools.INT32:
 
-				return new VirtualImg<IntType>(dimensions, rdr, new IntType(), false);
+				return new VirtualImg<IntType>(dimensions, readers,
+					new IntType(), false, numPlanes, readAhead);
 
 			case FormatTools.FLOAT:
 
-				return new VirtualImg<FloatType>(dimensions, rdr, new FloatType(),
-					false);
+				return new VirtualImg<FloatType>(dimensions, readers,
+					new FloatType(), false, numPlanes, readAhead);
 
 			case FormatTools.DOUBLE:
 
-				return new VirtualImg<DoubleType>(dimensions, rdr, new DoubleType(),
-					false);
+				return new VirtualImg<DoubleType>(dimensions, readers,
+					new DoubleType(), false, numPlanes, readAhead);
 
 				// TODO - add LONG case here when supported by Bio-Formats
 
@@ -0,0 +1,402 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.virtual;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import loci.common.DataTools;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.io.ImgIOUtils;
+
+/**
+ * A least recently used cache of decoded planes for a {@link VirtualImg}.
+ * Planes are decoded from an IFormatReader on demand and kept until more than
+ * the configured number of planes are cached. When consecutive requests of a
+ * thread step through the planes in one direction, the next planes along that
+ * direction are read ahead on a background executor so that a sequential pass
+ * over a VirtualImg does not wait on the reader for every plane.
+ * <p>
+ * The cache is safe for concurrent use. All planes share a single LRU whose
+ * lock is only held to look up and store planes, never while decoding, and
+ * every plane is decoded at most once even if several threads request it at
+ * the same time. Decoding borrows a reader from a {@link VirtualReaderPool},
+ * so with a pool of more than one reader, planes are decoded in parallel.
+ * <p>
+ * Cached planes are shared by all accessors of the image. Values changed in
+ * memory are therefore visible to every accessor while the plane is cached,
+ * but are never written to disk.
+ * 
+ * @author agent
+ */
+public class VirtualPlaneCache {
+
+	// -- constants --
+
+	/** Number of planes kept in memory by default. */
+	public static final int DEFAULT_CACHED_PLANES = 8;
+
+	/** Number of planes read ahead by default. */
+	public static final int DEFAULT_READ_AHEAD = 2;
+
+	// -- static variables --
+
+	private static ExecutorService readAheadService;
+
+	// -- instance variables --
+
+	private final VirtualReaderPool readers;
+	private final boolean bytesOnly;
+	private final int planeCount;
+	private final int maxPlanes;
+	private final int readAhead;
+	private final ExecutorService executor;
+
+	private final LinkedHashMap<Integer, ArrayDataAccess<?>> planes;
+	private final Map<Integer, Future<ArrayDataAccess<?>>> pending =
+		new HashMap<Integer, Future<ArrayDataAccess<?>>>();
+
+	/** last requested plane and step, per thread */
+	private final ThreadLocal<int[]> lastRequest = new ThreadLocal<int[]>() {
+
+		@Override
+		protected int[] initialValue() {
+			return new int[] { -1, 0 };
+		}
+	};
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong readAheads = new AtomicLong();
+
+	// -- constructors --
+
+	/**
+	 * Create a VirtualPlaneCache on a single reader that reads ahead on a shared
+	 * background thread.
+	 * 
+	 * @param reader - the IFormatReader to decode planes from
+	 * @param bytesOnly - whether planes are kept as byte[]'s or as the actual
+	 *          backing primitive type
+	 * @param planeCount - the number of planes of the image
+	 * @param maxPlanes - the maximum number of decoded planes kept in memory
+	 * @param readAhead - the number of planes to read ahead (0 to disable)
+	 */
+	public VirtualPlaneCache(final IFormatReader reader,
+		final boolean bytesOnly, final int planeCount, final int maxPlanes,
+		final int readAhead)
+	{
+		this(new VirtualReaderPool(reader), bytesOnly, planeCount, maxPlanes,
+			readAhead);
+	}
+
+	/**
+	 * Create a VirtualPlaneCache on a pool of readers that reads ahead on a
+	 * shared background thread.
+	 * 
+	 * @param readers - the pool of readers to decode planes with
+	 * @param bytesOnly - whether planes are kept as byte[]'s or as the actual
+	 *          backing primitive type
+	 * @param planeCount - the number of planes of the image
+	 * @param maxPlanes - the maximum number of decoded planes kept in memory
+	 * @param readAhead - the number of planes to read ahead (0 to disable)
+	 */
+	public VirtualPlaneCache(final VirtualReaderPool readers,
+		final boolean bytesOnly, final int planeCount, final int maxPlanes,
+		final int readAhead)
+	{
+		this(readers, bytesOnly, planeCount, maxPlanes, readAhead,
+			readAhead > 0 ? readAheadService() : null);
+	}
+
+	/**
+	 * Create a VirtualPlaneCache on a pool of readers that reads ahead on the
+	 * given executor.
+	 * 
+	 * @param readers - the pool of readers to decode planes with
+	 * @param bytesOnly - whether planes are kept as byte[]'s or as the actual
+	 *          backing primitive type
+	 * @param planeCount - the number of planes of the image
+	 * @param maxPlanes - the maximum number of decoded planes kept in memory
+	 * @param readAhead - the number of planes to read ahead (0 to disable)
+	 * @param executor - the executor that runs read-ahead tasks (null to
+	 *          disable read-ahead)
+	 */
+	public VirtualPlaneCache(final VirtualReaderPool readers,
+		final boolean bytesOnly, final int planeCount, final int maxPlanes,
+		final int readAhead, final ExecutorService executor)
+	{
+		if (maxPlanes < 1) throw new IllegalArgumentException(
+			"VirtualPlaneCache must hold at least one plane");
+		this.readers = readers;
+		this.bytesOnly = bytesOnly;
+		this.planeCount = planeCount;
+		this.maxPlanes = maxPlanes;
+		// never read ahead more planes than we can keep
+		this.readAhead =
+			executor == null ? 0 : Math.max(0, Math.min(readAhead, maxPlanes - 1));
+		this.executor = executor;
+
+		planes = new LinkedHashMap<Integer, ArrayDataAccess<?>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<Integer, ArrayDataAccess<?>> eldest)
+			{
+				return size() > maxPlanes;
+			}
+		};
+	}
+
+	// -- public interface --
+
+	/**
+	 * Returns the decoded plane with the given index. The plane is taken from
+	 * the cache if present, otherwise it is decoded (or, if another thread is
+	 * currently decoding it, waited for).
+	 */
+	public ArrayDataAccess<?> getPlane(final int planeNum) {
+		readAhead(planeNum);
+		final Future<ArrayDataAccess<?>> future;
+		FutureTask<ArrayDataAccess<?>> task = null;
+		synchronized (planes) {
+			final ArrayDataAccess<?> plane = planes.get(planeNum);
+			if (plane != null) {
+				hits.incrementAndGet();
+				return plane;
+			}
+			final Future<ArrayDataAccess<?>> loading = pending.get(planeNum);
+			if (loading != null) {
+				hits.incrementAndGet();
+				future = loading;
+			}
+			else {
+				misses.incrementAndGet();
+				task = loadTask(planeNum, false);
+				pending.put(planeNum, task);
+				future = task;
+			}
+		}
+		if (task != null) task.run();
+		return waitFor(planeNum, future);
+	}
+
+	/** Removes all planes from the cache. */
+	public void clear() {
+		synchronized (planes) {
+			planes.clear();
+		}
+	}
+
+	/** Returns the pool of readers planes are decoded with. */
+	public VirtualReaderPool getReaderPool() {
+		return readers;
+	}
+
+	/** Returns the maximum number of planes kept in memory. */
+	public int getMaxPlanes() {
+		return maxPlanes;
+	}
+
+	/** Returns the number of planes read ahead along the iteration direction. */
+	public int getReadAhead() {
+		return readAhead;
+	}
+
+	/** Returns the number of requests served without decoding a plane. */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/** Returns the number of requests that had to decode a plane. */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/** Returns the number of planes decoded by read-ahead. */
+	public long getReadAheads() {
+		return readAheads.get();
+	}
+
+	/** Resets the hit, miss and read-ahead counters. */
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+		readAheads.set(0);
+	}
+
+	// -- private helpers --
+
+	/**
+	 * Schedules read-ahead of the planes following planeNum if the last two
+	 * requests of the calling thread stepped in the same direction. Alternating
+	 * between two planes does not trigger read-ahead.
+	 */
+	private void readAhead(final int planeNum) {
+		final int[] last = lastRequest.get();
+		final int step = planeNum - last[0];
+		final boolean sequential = (step == 1 || step == -1) && step == last[1];
+		last[0] = planeNum;
+		last[1] = step;
+		if (!sequential || readAhead == 0) return;
+		for (int i = 1; i <= readAhead; i++) {
+			final int next = planeNum + i * step;
+			if (next < 0 || next >= planeCount) break;
+			synchronized (planes) {
+				if (planes.containsKey(next) || pending.containsKey(next)) continue;
+				final FutureTask<ArrayDataAccess<?>> task = loadTask(next, true);
+				pending.put(next, task);
+				executor.execute(task);
+			}
+		}
+	}
+
+	/**
+	 * Creates a task that decodes a plane and moves it from the pending planes
+	 * to the cached ones.
+	 */
+	private FutureTask<ArrayDataAccess<?>> loadTask(final int planeNum,
+		final boolean isReadAhead)
+	{
+		return new FutureTask<ArrayDataAccess<?>>(
+			new Callable<ArrayDataAccess<?>>() {
+
+				@Override
+				public ArrayDataAccess<?> call() {
+					ArrayDataAccess<?> plane = null;
+					try {
+						plane = decode(planeNum);
+						if (isReadAhead) readAheads.incrementAndGet();
+						return plane;
+					}
+					finally {
+						synchronized (planes) {
+							pending.remove(planeNum);
+							if (plane != null) planes.put(planeNum, plane);
+						}
+					}
+				}
+			});
+	}
+
+	private ArrayDataAccess<?> waitFor(final int planeNum,
+		final Future<ArrayDataAccess<?>> future)
+	{
+		try {
+			return future.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalArgumentException("cannot load plane " + planeNum, e);
+		}
+		catch (final ExecutionException e) {
+			throw new IllegalArgumentException("cannot load plane " + planeNum,
+				e.getCause());
+		}
+	}
+
+	private ArrayDataAccess<?> decode(final int planeNum) {
+		byte[] planeBytes = null;
+		final int pixelType;
+		final boolean little;
+		final IFormatReader reader = readers.acquire();
+		try {
+			// the primary reader is also handed out by VirtualImg.getReader()
+			synchronized (reader) {
+				try {
+					planeBytes = reader.openBytes(planeNum);
+				}
+				catch (final Exception e) {
+					throw new IllegalArgumentException("cannot load plane " + planeNum,
+						e);
+				}
+				pixelType = reader.getPixelType();
+				little = reader.isLittleEndian();
+			}
+		}
+		finally {
+			readers.release(reader);
+		}
+		Object primitivePlane;
+		if (bytesOnly) {
+			primitivePlane = planeBytes;
+		}
+		else { // want type from encoded bytes
+			primitivePlane = typeConvert(planeBytes, pixelType, little);
+		}
+		return ImgIOUtils.makeArray(primitivePlane);
+	}
+
+	private static Object typeConvert(final byte[] bytes, final int pixelType,
+		final boolean little)
+	{
+		final int bytesPerPix = FormatTools.getBytesPerPixel(pixelType);
+		final boolean floating = FormatTools.isFloatingPoint(pixelType);
+
+		return DataTools.makeDataArray(bytes, bytesPerPix, floating, little);
+	}
+
+	private static synchronized ExecutorService readAheadService() {
+		if (readAheadService == null) {
+			readAheadService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "VirtualPlaneCache-read-ahead");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return readAheadService;
+	}
+
+}
@@ -37,17 +37,16 @@
 
 package net.imglib2.io.img.virtual;
 
-import loci.common.DataTools;
-import loci.formats.FormatTools;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.img.planar.PlanarImg;
-import net.imglib2.io.ImgIOUtils;
 
 /**
  * This class is responsible for loading one plane of data from an image using
  * an IFormatReader. The loading is done in a virtual fashion with planes loaded
  * when a desired position has not been loaded. The data is loaded into a
- * PlanarImg provided at construction time.
+ * PlanarImg provided at construction time. Decoded planes are taken from the
+ * {@link VirtualPlaneCache} of the image, so switching back and forth between
+ * a few planes does not go to the reader every time.
  * 
  * @author Barry DeZonia
  */
@@ -59,7 +58,6 @@ public class VirtualPlaneLoader {
 	private final PlanarImg<?, ? extends ArrayDataAccess<?>> planeImg;
 	private final long[] planeDims;
 	private final long[] planePosLoaded;
-	private final boolean bytesOnly;
 
 	// -- constructor --
 
@@ -71,6 +69,8 @@ public class VirtualPlaneLoader {
 	 * @param planeImg - the PlanarImg to load planes into
 	 * @param bytesOnly - a flag which defines whether planes passed around as
 	 *          byte[]'s only or as other primitive array types (int[]'s, etc.).
+	 *          Must agree with {@link VirtualImg#isByteOnly()}, which the plane
+	 *          cache of the image uses to decode planes.
 	 */
 	public VirtualPlaneLoader(final VirtualImg<?> image,
 		final PlanarImg<?, ? extends ArrayDataAccess<?>> planeImg,
@@ -82,7 +82,8 @@ public class VirtualPlaneLoader {
 		for (int i = 0; i < planeDims.length; i++)
 			this.planeDims[i] = image.dimension(i + 2);
 		this.planePosLoaded = new long[planeDims.length];
-		this.bytesOnly = bytesOnly;
+		if (bytesOnly != image.isByteOnly()) throw new IllegalArgumentException(
+			"bytesOnly does not match the VirtualImg");
 		loadPlane(new long[image.numDimensions()]);
 	}
 
@@ -108,22 +109,8 @@ public class VirtualPlaneLoader {
 		for (int i = 0; i < planePosLoaded.length; i++)
 			planePosLoaded[i] = pos[i + 2];
 		final int planeNum = planeIndex(planeDims, planePosLoaded);
-		byte[] planeBytes = null;
-		try {
-			planeBytes = virtImage.getReader().openBytes(planeNum);
-		}
-		catch (final Exception e) {
-			throw new IllegalArgumentException("cannot load plane " + planeNum);
-		}
-		Object primitivePlane;
-		if (bytesOnly) {
-			primitivePlane = planeBytes;
-		}
-		else { // want type from encoded bytes
-			primitivePlane = typeConvert(planeBytes);
-		}
 		final ArrayDataAccess<?> wrappedPlane =
-			ImgIOUtils.makeArray(primitivePlane);
+			virtImage.getPlaneCache().getPlane(planeNum);
 		((PlanarImg) planeImg).setPlane(0, wrappedPlane);
 	}
 
@@ -149,13 +136,4 @@ public class VirtualPlaneLoader {
 		return index;
 	}
 
-	private Object typeConvert(final byte[] bytes) {
-		final int pixelType = virtImage.getReader().getPixelType();
-		final int bytesPerPix = FormatTools.getBytesPerPixel(pixelType);
-		final boolean floating = FormatTools.isFloatingPoint(pixelType);
-
-		return DataTools.makeDataArray(bytes, bytesPerPix, floating, virtImage
-			.getReader().isLittleEndian());
-	}
-
 }
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.virtual;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import net.imglib2.io.ImgOpener;
+
+/**
+ * A pool of IFormatReaders on the same file. IFormatReaders are not thread
+ * safe, so every thread that decodes planes of a {@link VirtualImg} borrows a
+ * reader from the pool for the duration of one decode. Readers beyond the
+ * first one are opened lazily, up to a maximum number; when all of them are in
+ * use, further threads wait for one to be released.
+ * 
+ * @author agent
+ */
+public class VirtualReaderPool {
+
+	// -- instance variables --
+
+	private final String fileName;
+	private final int maxReaders;
+	private final List<IFormatReader> readers = new ArrayList<IFormatReader>();
+	private final LinkedList<IFormatReader> idle = new LinkedList<IFormatReader>();
+	private int numReaders;
+
+	// -- constructors --
+
+	/**
+	 * Create a pool that consists of a single reader only. Threads decoding
+	 * planes take turns using it.
+	 * 
+	 * @param reader - the reader to share
+	 */
+	public VirtualReaderPool(final IFormatReader reader) {
+		this(reader, null, 1);
+	}
+
+	/**
+	 * Create a pool that opens up to maxReaders readers on a file.
+	 * 
+	 * @param reader - an already opened reader on the file, used as the first
+	 *          reader of the pool
+	 * @param fileName - the file to open additional readers on
+	 * @param maxReaders - the maximum number of readers, typically the number of
+	 *          threads accessing the image concurrently
+	 */
+	public VirtualReaderPool(final IFormatReader reader, final String fileName,
+		final int maxReaders)
+	{
+		if (maxReaders < 1) throw new IllegalArgumentException(
+			"VirtualReaderPool needs at least one reader");
+		if (maxReaders > 1 && fileName == null) throw new IllegalArgumentException(
+			"VirtualReaderPool needs a file name to open more than one reader");
+		this.fileName = fileName;
+		this.maxReaders = maxReaders;
+		readers.add(reader);
+		idle.add(reader);
+		numReaders = 1;
+	}
+
+	// -- public interface --
+
+	/**
+	 * Returns the reader the pool was created with. It is shared by all users of
+	 * the pool, callers that use it directly must synchronize on it.
+	 */
+	public IFormatReader getPrimaryReader() {
+		return readers.get(0);
+	}
+
+	/** Returns the maximum number of readers of this pool. */
+	public int getMaxReaders() {
+		return maxReaders;
+	}
+
+	/** Returns the number of readers opened so far. */
+	public synchronized int getNumReaders() {
+		return numReaders;
+	}
+
+	/**
+	 * Borrows a reader from the pool, opening a new one if all readers are in
+	 * use and the maximum is not reached yet. Otherwise waits until a reader is
+	 * released. Every reader acquired must be given back with
+	 * {@link #release(IFormatReader)}.
+	 */
+	public IFormatReader acquire() {
+		synchronized (this) {
+			while (idle.isEmpty()) {
+				if (numReaders < maxReaders) {
+					// reserve a slot and open the reader outside the lock
+					++numReaders;
+					break;
+				}
+				try {
+					wait();
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException(
+						"interrupted while waiting for a reader");
+				}
+			}
+			if (!idle.isEmpty()) return idle.removeFirst();
+		}
+		try {
+			final IFormatReader reader = ImgOpener.createReader(fileName, false);
+			synchronized (this) {
+				readers.add(reader);
+			}
+			return reader;
+		}
+		catch (final FormatException e) {
+			releaseSlot();
+			throw new IllegalArgumentException("cannot open reader on " + fileName);
+		}
+		catch (final IOException e) {
+			releaseSlot();
+			throw new IllegalArgumentException("cannot open reader on " + fileName);
+		}
+	}
+
+	/** Gives a reader obtained by {@link #acquire()} back to the pool. */
+	public synchronized void release(final IFormatReader reader) {
+		idle.addFirst(reader);
+		notify();
+	}
+
+	/**
+	 * Closes all readers but the primary one. Must only be called while none of
+	 * them is acquired.
+	 */
+	public synchronized void closeAdditionalReaders() throws IOException {
+		for (int i = readers.size() - 1; i > 0; i--) {
+			final IFormatReader reader = readers.remove(i);
+			idle.remove(reader);
+			reader.close();
+			--numReaders;
+		}
+	}
+
+	// -- private helpers --
+
+	private synchronized void releaseSlot() {
+		--numReaders;
+		notify();
+	}
+
+}
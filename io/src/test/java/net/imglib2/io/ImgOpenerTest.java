@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io;
+
+import static org.junit.Assert.assertEquals;
+
+import loci.formats.IFormatReader;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link ImgOpener} reads the same image with one and with several
+ * threads.
+ * 
+ * @author agent
+ */
+public class ImgOpenerTest {
+
+	/** 20 x 30 x 10 image with pixel values x + 2 y + 3 z. */
+	private String getId() {
+		return getClass().getResource("img/virtual/TestImage.tif").getFile();
+	}
+
+	@Test
+	public void testParallelMatchesSerial() throws Exception {
+		final String id = getId();
+		final ImgPlus<?> serial = new ImgOpener().openImg(id, true);
+		final ImgOpener opener = new ImgOpener();
+		opener.setNumThreads(4);
+		final ImgPlus<?> parallel = opener.openImg(id, true);
+
+		checkContents(serial);
+		assertSameImg(serial, parallel);
+		assertEquals(serial.getChannelMinimum(0), parallel.getChannelMinimum(0), 0);
+		assertEquals(serial.getChannelMaximum(0), parallel.getChannelMaximum(0), 0);
+	}
+
+	@Test
+	public void testParallelWithCallersReader() throws Exception {
+		final String id = getId();
+		final ImgPlus<?> serial = new ImgOpener().openImg(id, true);
+
+		// threads other than the first one read from copies of this reader
+		final IFormatReader r = ImgOpener.createReader(id, true);
+		final ImgOpener opener = new ImgOpener();
+		opener.setNumThreads(3);
+		final ImgPlus<?> parallel = open(opener, r);
+
+		assertSameImg(serial, parallel);
+		assertEquals(serial.getChannelMinimum(0), parallel.getChannelMinimum(0), 0);
+		assertEquals(serial.getChannelMaximum(0), parallel.getChannelMaximum(0), 0);
+	}
+
+	private static <T extends RealType<T> & NativeType<T>> ImgPlus<T> open(
+		final ImgOpener opener, final IFormatReader r) throws Exception
+	{
+		final T type = ImgIOUtils.makeType(r.getPixelType());
+		return opener.openImg(r, new PlanarImgFactory<T>(), type, true);
+	}
+
+	private static void checkContents(final Img<?> img) {
+		final Cursor<?> c = img.localizingCursor();
+		while (c.hasNext()) {
+			final RealType<?> t = (RealType<?>) c.next();
+			assertEquals(c.getLongPosition(0) + 2 * c.getLongPosition(1) + 3 *
+				c.getLongPosition(2), t.getRealDouble(), 0);
+		}
+	}
+
+	private static void assertSameImg(final Img<?> expected, final Img<?> actual)
+	{
+		assertEquals(expected.numDimensions(), actual.numDimensions());
+		for (int d = 0; d < expected.numDimensions(); d++)
+			assertEquals(expected.dimension(d), actual.dimension(d));
+		final Cursor<?> c = expected.localizingCursor();
+		final RandomAccess<?> a = actual.randomAccess();
+		while (c.hasNext()) {
+			final RealType<?> t = (RealType<?>) c.next();
+			a.setPosition(c);
+			assertEquals(t.getRealDouble(), ((RealType<?>) a.get()).getRealDouble(),
+				0);
+		}
+	}
+}
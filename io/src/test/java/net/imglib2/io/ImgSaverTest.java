@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link ImgSaver} writes the same image with one and with several
+ * threads, from {@link net.imglib2.img.planar.PlanarImg}s and
+ * {@link net.imglib2.img.array.ArrayImg}s.
+ * 
+ * @author agent
+ */
+public class ImgSaverTest {
+
+	private File serialFile;
+	private File parallelFile;
+
+	@Before
+	public void createFiles() throws IOException {
+		serialFile = File.createTempFile("serial", ".tif");
+		parallelFile = File.createTempFile("parallel", ".tif");
+	}
+
+	@After
+	public void deleteFiles() {
+		serialFile.delete();
+		parallelFile.delete();
+	}
+
+	@Test
+	public void testPlanarImg() throws Exception {
+		testParallelMatchesSerial(new PlanarImgFactory<UnsignedShortType>());
+	}
+
+	@Test
+	public void testArrayImg() throws Exception {
+		testParallelMatchesSerial(new ArrayImgFactory<UnsignedShortType>());
+	}
+
+	private void testParallelMatchesSerial(
+		final ImgFactory<UnsignedShortType> factory) throws Exception
+	{
+		final Img<UnsignedShortType> img =
+			factory.create(new long[] { 23, 17, 9 }, new UnsignedShortType());
+		final Cursor<UnsignedShortType> c = img.localizingCursor();
+		while (c.hasNext()) {
+			c.fwd();
+			c.get().set(c.getIntPosition(0) + 100 * c.getIntPosition(1) + 5000 *
+				c.getIntPosition(2));
+		}
+		final AxisType[] axes = new AxisType[] { Axes.X, Axes.Y, Axes.Z };
+
+		new ImgSaver().saveImg(serialFile.getAbsolutePath(),
+			new ImgPlus<UnsignedShortType>(img, "serial", axes));
+		final ImgSaver saver = new ImgSaver();
+		saver.setNumThreads(4);
+		saver.saveImg(parallelFile.getAbsolutePath(),
+			new ImgPlus<UnsignedShortType>(img, "parallel", axes));
+
+		final ImgOpener opener = new ImgOpener();
+		assertSameImg(img, opener.openImg(serialFile.getAbsolutePath()));
+		assertSameImg(img, opener.openImg(parallelFile.getAbsolutePath()));
+	}
+
+	private static void assertSameImg(final Img<?> expected, final Img<?> actual)
+	{
+		assertEquals(expected.numDimensions(), actual.numDimensions());
+		for (int d = 0; d < expected.numDimensions(); d++)
+			assertEquals(expected.dimension(d), actual.dimension(d));
+		final Cursor<?> c = expected.localizingCursor();
+		final RandomAccess<?> a = actual.randomAccess();
+		while (c.hasNext()) {
+			final RealType<?> t = (RealType<?>) c.next();
+			a.setPosition(c);
+			assertEquals(t.getRealDouble(), ((RealType<?>) a.get()).getRealDouble(),
+				0);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.io.img.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ChunkedCellImgFactory} and the {@link CellCodec}s.
+ * 
+ * @author agent
+ */
+public class ChunkedCellImgFactoryTest {
+
+	private File directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = File.createTempFile("chunked", "");
+		directory.delete();
+	}
+
+	@After
+	public void deleteDirectory() {
+		delete(directory);
+	}
+
+	@Test
+	public void testCodecs() throws IOException {
+		final Random random = new Random(42);
+		final byte[] noise = new byte[10000];
+		random.nextBytes(noise);
+		final byte[] runs = new byte[10000];
+		for (int i = 0; i < runs.length; i++)
+			runs[i] = (byte) (i / 300);
+		final byte[] empty = new byte[0];
+
+		for (final CellCodec codec : new CellCodec[] { new RawCellCodec(),
+			new DeflateCellCodec(), new Lz4CellCodec() })
+		{
+			for (final byte[] data : new byte[][] { noise, runs, empty }) {
+				final byte[] encoded = codec.encode(data.clone());
+				assertArrayEquals(codec.getName(), data, codec.decode(encoded,
+					data.length));
+			}
+			assertTrue(codec.getName(), codec.encode(runs).length <= runs.length);
+		}
+		assertTrue(new Lz4CellCodec().encode(runs).length < runs.length / 10);
+	}
+
+	@Test(expected = IOException.class)
+	public void testCorruptLz4() throws IOException {
+		new Lz4CellCodec().decode(new byte[] { (byte) 0xf0, 1, 2, 3 }, 100);
+	}
+
+	@Test
+	public void testWriteAndReopen() throws IOException {
+		final long[] dimensions = new long[] { 37, 21, 9 };
+		final int[] cellDimensions = new int[] { 8, 8, 4 };
+
+		for (final CellCodec codec : new CellCodec[] { new RawCellCodec(),
+			new DeflateCellCodec(), new Lz4CellCodec() })
+		{
+			delete(directory);
+
+			final ChunkedCellImgFactory<FloatType> factory =
+				new ChunkedCellImgFactory<FloatType>(directory, cellDimensions, codec,
+					1 << 12);
+			final CellImg<FloatType, ?, ?> img =
+				factory.create(dimensions, new FloatType());
+			final Cursor<FloatType> c = img.localizingCursor();
+			while (c.hasNext()) {
+				c.fwd();
+				c.get().set(value(c.getLongPosition(0), c.getLongPosition(1), c
+					.getLongPosition(2)));
+			}
+			factory.flush();
+
+			final ChunkedCellImgFactory<FloatType> reopened =
+				new ChunkedCellImgFactory<FloatType>(directory, 1 << 12);
+			assertEquals(codec.getName(), reopened.getHeader().getCodec().getName());
+			assertArrayEquals(cellDimensions, reopened.getHeader()
+				.getCellDimensions());
+			final CellImg<FloatType, ?, ?> copy = reopened.open(new FloatType());
+			assertArrayEquals(dimensions, reopened.getHeader().getDimensions());
+			final Cursor<FloatType> cc = copy.localizingCursor();
+			while (cc.hasNext()) {
+				cc.fwd();
+				assertEquals(value(cc.getLongPosition(0), cc.getLongPosition(1), cc
+					.getLongPosition(2)), cc.get().get(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testSparse() throws IOException {
+		final ChunkedCellImgFactory<UnsignedShortType> factory =
+			new ChunkedCellImgFactory<UnsignedShortType>(directory, new int[] { 10,
+				10 }, new Lz4CellCodec(), 1 << 20);
+		final CellImg<UnsignedShortType, ?, ?> img =
+			factory.create(new long[] { 100, 100 }, new UnsignedShortType());
+		final RandomAccess<UnsignedShortType> a = img.randomAccess();
+		a.setPosition(new long[] { 55, 66 });
+		a.get().set(1234);
+		factory.flush();
+
+		// only the modified cell has been written
+		assertTrue(new File(directory, "5" + File.separator + "6").exists());
+		assertFalse(new File(directory, "0" + File.separator + "0").exists());
+
+		final CellImg<UnsignedShortType, ?, ?> copy =
+			new ChunkedCellImgFactory<UnsignedShortType>(directory, 1 << 20)
+				.open(new UnsignedShortType());
+		final RandomAccess<UnsignedShortType> b = copy.randomAccess();
+		b.setPosition(new long[] { 55, 66 });
+		assertEquals(1234, b.get().get());
+		b.setPosition(new long[] { 5, 6 });
+		assertEquals(0, b.get().get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTypeMismatch() throws IOException {
+		new ChunkedCellImgFactory<FloatType>(directory, new int[] { 4, 4 },
+			new RawCellCodec(), 1 << 20).create(new long[] { 8, 8 },
+			new FloatType());
+		new ChunkedCellImgFactory<UnsignedShortType>(directory, 1 << 20)
+			.open(new UnsignedShortType());
+	}
+
+	private static float value(final long x, final long y, final long z) {
+		return x + 100 * y + 10000 * z;
+	}
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) for (final File child : children)
+			delete(child);
+		file.delete();
+	}
+
+}
@@ -42,6 +42,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.imglib2.img.ImgFactory;
 import net.imglib2.type.numeric.RealType;
@@ -145,4 +146,81 @@ public class VirtualImgTest {
 		assertNotNull(accessor.getCurrentPlane());
 	}
 
+	@Test
+	public void testPlaneCache() {
+		VirtualImg<?> image = null;
+		try {
+			final URL fileURL = getClass().getResource("TestImage.tif");
+			image = VirtualImg.create(fileURL.getFile(), false, 4, 0);
+		}
+		catch (final Exception e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+		assertNotNull(image);
+
+		final VirtualPlaneCache cache = image.getPlaneCache();
+		assertEquals(4, cache.getMaxPlanes());
+		assertEquals(0, cache.getReadAhead());
+
+		// alternating between two planes decodes each plane only once
+
+		final VirtualRandomAccess<? extends RealType<?>> accessor =
+			image.randomAccess();
+		final long[] pos = new long[] { 3, 5, 0 };
+		for (int i = 0; i < 100; i++) {
+			pos[2] = i % 2;
+			accessor.setPosition(pos);
+			assertEquals(3 + 2 * 5 + 3 * pos[2], accessor.get().getRealDouble(), 0);
+		}
+		assertEquals(2, cache.getMisses());
+		assertTrue(cache.getHits() > 0);
+
+		cache.resetStatistics();
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		VirtualImg<?> image = null;
+		try {
+			final URL fileURL = getClass().getResource("TestImage.tif");
+			image = VirtualImg.create(fileURL.getFile(), false, 4, 1, 2);
+		}
+		catch (final Exception e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+		assertNotNull(image);
+
+		final VirtualImg<?> img = image;
+		final AtomicInteger errors = new AtomicInteger();
+		final Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+
+				@Override
+				public void run() {
+					final VirtualRandomAccess<? extends RealType<?>> accessor =
+						img.randomAccess();
+					final long[] pos = new long[3];
+					for (int i = 0; i < 200; i++) {
+						pos[0] = i % 20;
+						pos[1] = (i + offset) % 30;
+						pos[2] = (i + offset) % 10;
+						accessor.setPosition(pos);
+						if (accessor.get().getRealDouble() != pos[0] + 2 * pos[1] + 3 *
+							pos[2]) errors.incrementAndGet();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread thread : threads)
+			thread.join();
+
+		assertEquals(0, errors.get());
+		assertTrue(image.getReaderPool().getNumReaders() <= 2);
+	}
+
 }
@@ -0,0 +1,450 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import net.imglib2.Cursor;
+import net.imglib2.EuclideanSpace;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A mip-map pyramid of a {@link RandomAccessibleInterval}. Level 0 is the
+ * source itself, every further level is downsampled by integer factors per
+ * dimension.  Levels are computed lazily by block-averaging the first time
+ * they are requested, preferably from the next finer level, and are then
+ * kept.  A {@link LevelStore} decides where levels are kept, e.g. in memory
+ * or in a persistent cell image on disk from which they can be loaded again
+ * later.
+ *
+ * The voxel at position <em>x</em> of level <em>l</em> with downsampling
+ * factors <em>f</em> averages the source voxels from <em>min + f x</em> to
+ * <em>min + f (x + 1) - 1</em>, such that its center is at <em>min + f x +
+ * (f - 1) / 2</em> in source coordinates (see {@link #getLevelTransform(int)}).
+ * {@link #getBestLevel(AffineGet)} selects the coarsest level that is still
+ * sampled densely enough for rendering with a given source to screen
+ * transform.
+ *
+ * @author agent
+ */
+public class MultiResolutionImg< T extends RealType< T > & NativeType< T > > implements EuclideanSpace
+{
+	/**
+	 * Creates and optionally persists the images that hold the levels of a
+	 * {@link MultiResolutionImg}.
+	 */
+	public interface LevelStore< T >
+	{
+		/**
+		 * Load a level that has been stored before.
+		 *
+		 * @return the level or null if it has not been stored yet.
+		 */
+		public RandomAccessibleInterval< T > load( int level, long[] dimensions, T type );
+
+		/**
+		 * Create the image that the level is computed into.
+		 */
+		public Img< T > create( int level, long[] dimensions, T type );
+
+		/**
+		 * Called after the level has been computed into the image obtained
+		 * from {@link #create(int, long[], Object)}, e.g. to write it to disk.
+		 */
+		public void stored( int level, Img< T > img );
+	}
+
+	/**
+	 * A {@link LevelStore} that keeps levels in memory.
+	 */
+	public static class ImgFactoryLevelStore< T > implements LevelStore< T >
+	{
+		final protected ImgFactory< T > factory;
+
+		public ImgFactoryLevelStore( final ImgFactory< T > factory )
+		{
+			this.factory = factory;
+		}
+
+		@Override
+		public RandomAccessibleInterval< T > load( final int level, final long[] dimensions, final T type )
+		{
+			return null;
+		}
+
+		@Override
+		public Img< T > create( final int level, final long[] dimensions, final T type )
+		{
+			return factory.create( dimensions, type );
+		}
+
+		@Override
+		public void stored( final int level, final Img< T > img )
+		{}
+	}
+
+	final protected RandomAccessibleInterval< T > source;
+
+	final protected LevelStore< T > store;
+
+	final protected int n;
+
+	/**
+	 * downsampling factors of each level relative to the source.
+	 */
+	final protected long[][] factors;
+
+	/**
+	 * dimensions of each level.
+	 */
+	final protected long[][] dimensions;
+
+	final protected RandomAccessibleInterval< T >[] levels;
+
+	/**
+	 * Create a pyramid with the given downsampling factors.
+	 *
+	 * @param source
+	 *            the full resolution image, level 0.
+	 * @param factors
+	 *            downsampling factors of each level relative to the source,
+	 *            factors[ 0 ] must be all ones.  Factors that are multiples of
+	 *            those of the previous level allow to compute the level from
+	 *            the previous one.
+	 * @param store
+	 *            creates and keeps the images of the levels.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public MultiResolutionImg( final RandomAccessibleInterval< T > source, final long[][] factors, final LevelStore< T > store )
+	{
+		this.source = source;
+		this.store = store;
+		n = source.numDimensions();
+		this.factors = new long[ factors.length ][];
+		dimensions = new long[ factors.length ][ n ];
+		for ( int l = 0; l < factors.length; ++l )
+		{
+			if ( factors[ l ].length != n )
+				throw new IllegalArgumentException( "downsampling factors of level " + l + " have wrong dimensionality" );
+			this.factors[ l ] = factors[ l ].clone();
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( factors[ l ][ d ] < 1 || ( l == 0 && factors[ l ][ d ] != 1 ) )
+					throw new IllegalArgumentException( "invalid downsampling factor " + factors[ l ][ d ] + " at level " + l );
+				dimensions[ l ][ d ] = ( source.dimension( d ) + factors[ l ][ d ] - 1 ) / factors[ l ][ d ];
+			}
+		}
+		levels = new RandomAccessibleInterval[ factors.length ];
+		levels[ 0 ] = source;
+	}
+
+	/**
+	 * Create a pyramid that halves the resolution in all dimensions from level
+	 * to level, until the smallest dimension of the coarsest level is at most
+	 * minSize.
+	 */
+	public MultiResolutionImg( final RandomAccessibleInterval< T > source, final int minSize, final LevelStore< T > store )
+	{
+		this( source, powerOfTwoFactors( source, minSize ), store );
+	}
+
+	/**
+	 * Create a pyramid that halves the resolution in all dimensions from level
+	 * to level, until the smallest dimension of the coarsest level is at most
+	 * minSize, keeping levels in images created by the given factory.
+	 */
+	public MultiResolutionImg( final RandomAccessibleInterval< T > source, final int minSize, final ImgFactory< T > factory )
+	{
+		this( source, minSize, new ImgFactoryLevelStore< T >( factory ) );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return the number of levels including the source.
+	 */
+	public int numLevels()
+	{
+		return factors.length;
+	}
+
+	/**
+	 * @return the downsampling factors of a level relative to the source.
+	 */
+	public long[] getDownsamplingFactors( final int level )
+	{
+		return factors[ level ].clone();
+	}
+
+	/**
+	 * @return the dimensions of a level.
+	 */
+	public long[] getDimensions( final int level )
+	{
+		return dimensions[ level ].clone();
+	}
+
+	/**
+	 * Get a level, computing it if it has not been computed or loaded yet.
+	 * The level has its min at the origin.
+	 */
+	public RandomAccessibleInterval< T > getLevel( final int level )
+	{
+		synchronized ( levels )
+		{
+			if ( levels[ level ] != null )
+				return levels[ level ];
+		}
+		final RandomAccessibleInterval< T > img = loadOrCompute( level );
+		synchronized ( levels )
+		{
+			if ( levels[ level ] == null )
+				levels[ level ] = img;
+			return levels[ level ];
+		}
+	}
+
+	/**
+	 * Get the transform from coordinates of a level into source coordinates,
+	 * e.g. to render the level with the transforms of the source.
+	 */
+	public AffineTransform getLevelTransform( final int level )
+	{
+		final AffineTransform transform = new AffineTransform( n );
+		for ( int d = 0; d < n; ++d )
+		{
+			final long f = factors[ level ][ d ];
+			transform.set( f, d, d );
+			transform.set( source.min( d ) + 0.5 * ( f - 1 ), d, n );
+		}
+		return transform;
+	}
+
+	/**
+	 * Select the level to render with a given transform from source into
+	 * screen coordinates.  That is the coarsest level whose voxels are not
+	 * larger than a screen pixel in the screen plane (the first two
+	 * dimensions of the screen), or level 0 if even source voxels are larger
+	 * than a screen pixel.
+	 *
+	 * @param sourceToScreen
+	 *            transforms source coordinates into screen coordinates, e.g.
+	 *            an {@link AffineTransform3D} of a 3D viewer.
+	 */
+	public int getBestLevel( final AffineGet sourceToScreen )
+	{
+		final int m = sourceToScreen.numDimensions();
+		if ( m != n || m < 2 )
+			throw new IllegalArgumentException( "transform has wrong dimensionality" );
+
+		// screen xy length of a unit step along each source dimension
+		final double[] stepSize = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			final double x = sourceToScreen.get( 0, d );
+			final double y = sourceToScreen.get( 1, d );
+			stepSize[ d ] = Math.sqrt( x * x + y * y );
+		}
+
+		int best = 0;
+		for ( int l = 1; l < factors.length; ++l )
+		{
+			double voxelSize = 0;
+			for ( int d = 0; d < n; ++d )
+				voxelSize = Math.max( voxelSize, stepSize[ d ] * factors[ l ][ d ] );
+			if ( voxelSize <= 1.0 + 1e-6 )
+				best = l;
+		}
+		return best;
+	}
+
+	/**
+	 * Downsampling factors that double from level to level in every dimension
+	 * until the smallest dimension of the coarsest level is at most minSize.
+	 */
+	public static long[][] powerOfTwoFactors( final RandomAccessibleInterval< ? > source, final int minSize )
+	{
+		final int n = source.numDimensions();
+		long minDimension = Long.MAX_VALUE;
+		for ( int d = 0; d < n; ++d )
+			minDimension = Math.min( minDimension, source.dimension( d ) );
+		int numLevels = 1;
+		while ( ( minDimension >> ( numLevels - 1 ) ) > Math.max( 1, minSize ) )
+			++numLevels;
+		final long[][] factors = new long[ numLevels ][ n ];
+		for ( int l = 0; l < numLevels; ++l )
+			for ( int d = 0; d < n; ++d )
+				factors[ l ][ d ] = 1l << l;
+		return factors;
+	}
+
+	protected RandomAccessibleInterval< T > loadOrCompute( final int level )
+	{
+		final T type = source.randomAccess().get().createVariable();
+		final RandomAccessibleInterval< T > stored = store.load( level, dimensions[ level ], type );
+		if ( stored != null )
+			return stored;
+
+		// find the finest level this level can be computed from
+		int parent = level - 1;
+		while ( parent > 0 && !isMultiple( level, parent ) )
+			--parent;
+		final RandomAccessibleInterval< T > parentImg = getLevel( parent );
+		final long[] relative = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			relative[ d ] = factors[ level ][ d ] / factors[ parent ][ d ];
+
+		final Img< T > img = store.create( level, dimensions[ level ], type );
+		downsample( parentImg, relative, factors[ parent ], dimensions[ 0 ], img );
+		store.stored( level, img );
+		return img;
+	}
+
+	protected boolean isMultiple( final int level, final int parent )
+	{
+		for ( int d = 0; d < n; ++d )
+			if ( factors[ level ][ d ] % factors[ parent ][ d ] != 0 )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Block-average source into target.  Blocks at the max border of source
+	 * may be cut off, they are averaged over the voxels they contain.
+	 *
+	 * @param source
+	 *            the image to downsample.
+	 * @param factors
+	 *            block size in each dimension.
+	 * @param target
+	 *            the downsampled image, its dimensions must be
+	 *            ceil( source dimension / factor ).
+	 */
+	public static < T extends RealType< T > > void downsample( final RandomAccessibleInterval< T > source, final long[] factors, final Img< T > target )
+	{
+		final int n = source.numDimensions();
+		final long[] sourceFactors = new long[ n ];
+		final long[] sourceDimensions = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			sourceFactors[ d ] = 1;
+		source.dimensions( sourceDimensions );
+		downsample( source, factors, sourceFactors, sourceDimensions, target );
+	}
+
+	/**
+	 * Block-average source, which is itself a level of a pyramid downsampled
+	 * by sourceFactors from a full resolution image, into target.  The voxels
+	 * at the max border of source may cover fewer full resolution voxels than
+	 * the others, every voxel is weighted by the number of full resolution
+	 * voxels it covers, such that target is the average of the full
+	 * resolution voxels in each of its blocks.
+	 *
+	 * @param source
+	 *            the image to downsample.
+	 * @param factors
+	 *            block size in each dimension.
+	 * @param sourceFactors
+	 *            downsampling factors of source relative to the full
+	 *            resolution image.
+	 * @param fullDimensions
+	 *            dimensions of the full resolution image.
+	 * @param target
+	 *            the downsampled image, its dimensions must be
+	 *            ceil( source dimension / factor ).
+	 */
+	public static < T extends RealType< T > > void downsample( final RandomAccessibleInterval< T > source, final long[] factors, final long[] sourceFactors, final long[] fullDimensions, final Img< T > target )
+	{
+		final int n = source.numDimensions();
+		final long[] sourceMin = new long[ n ];
+		final long[] sourceMax = new long[ n ];
+		source.min( sourceMin );
+		source.max( sourceMax );
+
+		final long[] position = new long[ n ];
+		final long[] blockMin = new long[ n ];
+		final long[] blockMax = new long[ n ];
+		final RandomAccess< T > in = source.randomAccess();
+		final Cursor< T > out = target.localizingCursor();
+		while ( out.hasNext() )
+		{
+			out.fwd();
+			out.localize( position );
+			long count = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				blockMin[ d ] = sourceMin[ d ] + position[ d ] * factors[ d ];
+				blockMax[ d ] = Math.min( blockMin[ d ] + factors[ d ] - 1, sourceMax[ d ] );
+				count *= blockMax[ d ] - blockMin[ d ] + 1;
+			}
+
+			// iterate the block, dimension 0 fastest
+			double sum = 0;
+			double weights = 0;
+			in.setPosition( blockMin );
+			for ( long i = 0; i < count; ++i )
+			{
+				// number of full resolution voxels covered by this voxel
+				double weight = 1;
+				for ( int d = 0; d < n; ++d )
+				{
+					final long first = ( in.getLongPosition( d ) - sourceMin[ d ] ) * sourceFactors[ d ];
+					weight *= Math.min( sourceFactors[ d ], fullDimensions[ d ] - first );
+				}
+				sum += weight * in.get().getRealDouble();
+				weights += weight;
+				for ( int d = 0; d < n; ++d )
+				{
+					if ( in.getLongPosition( d ) < blockMax[ d ] )
+					{
+						in.fwd( d );
+						break;
+					}
+					in.setPosition( blockMin[ d ], d );
+				}
+			}
+			out.get().setReal( sum / weights );
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package net.imglib2.realtransform;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiResolutionImgTest
+{
+	final static private Img< FloatType > createSource( final long... dimensions )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final RandomAccess< FloatType > a = img.randomAccess();
+		for ( int y = 0; y < dimensions[ 1 ]; ++y )
+			for ( int x = 0; x < dimensions[ 0 ]; ++x )
+			{
+				a.setPosition( x, 0 );
+				a.setPosition( y, 1 );
+				a.get().set( x + 100 * y );
+			}
+		return img;
+	}
+
+	final static private float get( final RandomAccessibleInterval< FloatType > img, final long x, final long y )
+	{
+		final RandomAccess< FloatType > a = img.randomAccess();
+		a.setPosition( x, 0 );
+		a.setPosition( y, 1 );
+		return a.get().get();
+	}
+
+	@Test
+	public void testLevels()
+	{
+		final Img< FloatType > source = createSource( 17, 8 );
+		final MultiResolutionImg< FloatType > mipmap = new MultiResolutionImg< FloatType >( source, 1, new ArrayImgFactory< FloatType >() );
+
+		Assert.assertEquals( 4, mipmap.numLevels() );
+		Assert.assertSame( source, mipmap.getLevel( 0 ) );
+		Assert.assertArrayEquals( new long[] { 9, 4 }, mipmap.getDimensions( 1 ) );
+		Assert.assertArrayEquals( new long[] { 3, 1 }, mipmap.getDimensions( 3 ) );
+
+		final RandomAccessibleInterval< FloatType > level1 = mipmap.getLevel( 1 );
+		Assert.assertSame( level1, mipmap.getLevel( 1 ) );
+		Assert.assertEquals( 0.5 + 50, get( level1, 0, 0 ), 0.0001 );
+		Assert.assertEquals( 6.5 + 250, get( level1, 3, 1 ), 0.0001 );
+		/* cut off border block */
+		Assert.assertEquals( 16 + 50, get( level1, 8, 0 ), 0.0001 );
+
+		final RandomAccessibleInterval< FloatType > level2 = mipmap.getLevel( 2 );
+		Assert.assertEquals( 1.5 + 150, get( level2, 0, 0 ), 0.0001 );
+		Assert.assertEquals( 16 + 150, get( level2, 4, 0 ), 0.0001 );
+	}
+
+	@Test
+	public void testCutOffParentBlocks()
+	{
+		/* level 2 is computed from level 1 whose last column covers one source column only */
+		final MultiResolutionImg< FloatType > mipmap = new MultiResolutionImg< FloatType >( createSource( 7, 4 ), new long[][] { { 1, 1 }, { 2, 2 }, { 4, 4 } }, new MultiResolutionImg.ImgFactoryLevelStore< FloatType >( new ArrayImgFactory< FloatType >() ) );
+		Assert.assertEquals( 1.5 + 150, get( mipmap.getLevel( 2 ), 0, 0 ), 0.0001 );
+		Assert.assertEquals( 5 + 150, get( mipmap.getLevel( 2 ), 1, 0 ), 0.0001 );
+	}
+
+	@Test
+	public void testLevelTransform()
+	{
+		final MultiResolutionImg< FloatType > mipmap = new MultiResolutionImg< FloatType >( createSource( 16, 16 ), 1, new ArrayImgFactory< FloatType >() );
+		final double[] x = new double[] { 1, 2 };
+		final double[] y = new double[ 2 ];
+		mipmap.getLevelTransform( 2 ).apply( x, y );
+		Assert.assertArrayEquals( new double[] { 5.5, 9.5 }, y, 0.0001 );
+	}
+
+	@Test
+	public void testBestLevel()
+	{
+		final MultiResolutionImg< FloatType > mipmap = new MultiResolutionImg< FloatType >( createSource( 64, 64 ), 1, new ArrayImgFactory< FloatType >() );
+		final AffineTransform2D sourceToScreen = new AffineTransform2D();
+
+		Assert.assertEquals( 0, mipmap.getBestLevel( sourceToScreen ) );
+		sourceToScreen.scale( 0.5 );
+		Assert.assertEquals( 1, mipmap.getBestLevel( sourceToScreen ) );
+		sourceToScreen.scale( 0.3 );
+		Assert.assertEquals( 2, mipmap.getBestLevel( sourceToScreen ) );
+		sourceToScreen.rotate( 0.5 );
+		Assert.assertEquals( 2, mipmap.getBestLevel( sourceToScreen ) );
+		sourceToScreen.scale( 100 );
+		Assert.assertEquals( 0, mipmap.getBestLevel( sourceToScreen ) );
+	}
+}
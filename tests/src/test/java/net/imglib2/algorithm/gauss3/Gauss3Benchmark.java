@@ -27,6 +27,8 @@
 package net.imglib2.algorithm.gauss3;
 
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.imglib2.Point;
 import net.imglib2.RandomAccessible;
@@ -76,6 +78,9 @@ public class Gauss3Benchmark
 		benchmarkGeneric( dimensions, sigma, printIndividualTimes, numRuns );
 		System.out.println( " ================================== " );
 		benchmarkInFloat( dimensions, sigma, printIndividualTimes, numRuns );
+		System.out.println( " ================================== " );
+		// 2048 x 2048 x 2048 needs more than 64GB for source, target, and temporaries
+		benchmarkStreaming( new long[] { 256, 256, 256 }, sigma, printIndividualTimes, 10 );
 
 //		visualise( dimensions, sigma );
 	}
@@ -225,6 +230,72 @@ public class Gauss3Benchmark
 	    } );
 	}
 
+	public static void benchmarkStreaming( final long[] dimensions, final double sigma, final boolean printIndividualTimes, final int numRuns) throws ImgIOException
+	{
+		final FloatType type = new FloatType();
+		final ArrayImgFactory< FloatType > factory = new ArrayImgFactory< FloatType >();
+		final Img< FloatType > img = factory.create( dimensions, type );
+	    final Img< FloatType > convolved = factory.create( dimensions, type );
+		fillRandom( img );
+
+	    final int n = img.numDimensions();
+	    final double[] sigmas = new double[ n ];
+	    for ( int d = 0; d < n; ++d )
+	    	sigmas[ d ] = sigma;
+		final double[][] halfkernels = Gauss3.halfkernels( sigmas );
+
+		final ExecutorService service = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+
+	    System.out.print( "streaming slices of a " );
+	    for ( int d = 0; d < n; ++d )
+			System.out.print( ( d == 0 ? "" : " x " ) + dimensions[ d ] );
+	    System.out.println( " image" );
+
+	    System.out.println( "Gauss3 with shared ExecutorService (should stream slices)" );
+	    BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable() {
+			@Override
+			public void run()
+			{
+				try
+				{
+					Gauss3.gauss( sigmas, Views.extendMirrorSingle( img ), convolved, service );
+				}
+				catch ( final IncompatibleTypeException e )
+				{
+					e.printStackTrace();
+				}
+			}
+	    } );
+
+	    System.out.println( "SeparableSymmetricConvolution with FloatConvolverRealTypeBuffered and full size temporaries" );
+	    BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable() {
+			@Override
+			public void run()
+			{
+				final ConvolverFactory< FloatType, FloatType > cff = FloatConvolverRealTypeBuffered.< FloatType, FloatType >factory();
+				SeparableSymmetricConvolution.convolve( halfkernels, Views.extendMirrorSingle( img ), convolved, cff, cff, cff, cff, factory, type, service );
+			}
+	    } );
+
+	    System.out.println( "Gauss3 with a new thread pool per call" );
+	    BenchmarkHelper.benchmarkAndPrint( numRuns, printIndividualTimes, new Runnable() {
+			@Override
+			public void run()
+			{
+				try
+				{
+					Gauss3.gauss( sigmas, Views.extendMirrorSingle( img ), convolved );
+				}
+				catch ( final IncompatibleTypeException e )
+				{
+					e.printStackTrace();
+				}
+			}
+	    } );
+
+		service.shutdown();
+	}
+
 	static void fillRandom( final Img< FloatType > img )
 	{
 		final Random random = new Random( 1232324970l );
@@ -3,6 +3,7 @@ package net.imglib2.converter;
 import ij.ImageJ;
 import net.imglib2.Cursor;
 import net.imglib2.display.RealARGBConverter;
+import net.imglib2.display.XYProjector;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
@@ -37,6 +38,18 @@ public class RealARGBConverterBenchmark
 			}
 		} );
 
+		// the projector maps the primitive arrays through a lookup table
+		final XYProjector< UnsignedByteType, ARGBType > projector = new XYProjector< UnsignedByteType, ARGBType >( img, argbImg, new RealARGBConverter< UnsignedByteType >( 0, 1000 ) );
+		BenchmarkHelper.benchmarkAndPrint( 15, true, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for ( int i = 0; i < 10; ++i )
+					projector.map();
+			}
+		} );
+
 		ImageJFunctions.show( argbImg );
 	}
 
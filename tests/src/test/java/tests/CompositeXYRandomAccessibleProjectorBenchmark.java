@@ -27,6 +27,10 @@
 package tests;
 
 import ij.ImageJ;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import net.imglib2.display.ChannelARGBConverter;
 import net.imglib2.display.CompositeXYRandomAccessibleProjector;
 import net.imglib2.exception.IncompatibleTypeException;
@@ -54,6 +58,7 @@ public class CompositeXYRandomAccessibleProjectorBenchmark
 			dim[ d ] = img.dimension( d );
 		argbImg = new ArrayImgFactory< ARGBType >().create( dim, new ARGBType() );
 		convert( img, argbImg );
+		convertParallel( img, argbImg );
 
 		ImageJFunctions.show( argbImg );
 	}
@@ -75,6 +80,35 @@ public class CompositeXYRandomAccessibleProjectorBenchmark
 		}
 	}
 
+	/**
+	 * Measure how mapping in parallel bands of rows scales with the number of
+	 * threads, doubling up to the number of available cores.
+	 */
+	public void convertParallel( final Img< UnsignedByteType > in, final Img< ARGBType > out )
+	{
+		final int numCores = Runtime.getRuntime().availableProcessors();
+		final CompositeXYRandomAccessibleProjector< UnsignedByteType > projector = new CompositeXYRandomAccessibleProjector< UnsignedByteType >( in, out, ChannelARGBConverter.converterListRGBA, 2 );
+		projector.setComposite( true );
+		for ( int numThreads = 1; numThreads < 2 * numCores; numThreads *= 2 )
+		{
+			final int n = Math.min( numThreads, numCores );
+			final ExecutorService executor = Executors.newFixedThreadPool( n );
+			projector.setExecutorService( executor, n );
+			long best = Long.MAX_VALUE;
+			for ( int iteration = 0; iteration < 10; ++iteration )
+			{
+				final long start = System.currentTimeMillis();
+				for ( int i = 0; i < 10; ++i )
+					projector.map();
+				best = Math.min( best, System.currentTimeMillis() - start );
+			}
+			executor.shutdown();
+			System.out.println( n + " threads: " + best + " ms (best of 10)" );
+			if ( n == numCores )
+				break;
+		}
+	}
+
 	public static void main( final String[] args ) throws IncompatibleTypeException, ImgIOException
 	{
 		new ImageJ();
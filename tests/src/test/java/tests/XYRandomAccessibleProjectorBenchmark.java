@@ -27,6 +27,10 @@
 package tests;
 
 import ij.ImageJ;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import net.imglib2.display.RealARGBConverter;
 import net.imglib2.display.XYRandomAccessibleProjector;
 import net.imglib2.exception.IncompatibleTypeException;
@@ -51,6 +55,7 @@ public class XYRandomAccessibleProjectorBenchmark
 		img = new ImgOpener().openImg( filename, factory, new UnsignedByteType() );
 		argbImg = new ArrayImgFactory< ARGBType >().create( img, new ARGBType() );
 		convert( img, argbImg );
+		convertParallel( img, argbImg );
 
 		ImageJFunctions.show( argbImg );
 	}
@@ -68,6 +73,34 @@ public class XYRandomAccessibleProjectorBenchmark
 		}
 	}
 
+	/**
+	 * Measure how mapping in parallel bands of rows scales with the number of
+	 * threads, doubling up to the number of available cores.
+	 */
+	public void convertParallel( final Img< UnsignedByteType > in, final Img< ARGBType > out )
+	{
+		final int numCores = Runtime.getRuntime().availableProcessors();
+		final XYRandomAccessibleProjector< UnsignedByteType, ARGBType > projector = new XYRandomAccessibleProjector< UnsignedByteType, ARGBType >( in, out, new RealARGBConverter< UnsignedByteType >(0, 1000) );
+		for ( int numThreads = 1; numThreads < 2 * numCores; numThreads *= 2 )
+		{
+			final int n = Math.min( numThreads, numCores );
+			final ExecutorService executor = Executors.newFixedThreadPool( n );
+			projector.setExecutorService( executor, n );
+			long best = Long.MAX_VALUE;
+			for ( int iteration = 0; iteration < 10; ++iteration )
+			{
+				final long start = System.currentTimeMillis();
+				for ( int i = 0; i < 50; ++i )
+					projector.map();
+				best = Math.min( best, System.currentTimeMillis() - start );
+			}
+			executor.shutdown();
+			System.out.println( n + " threads: " + best + " ms (best of 10)" );
+			if ( n == numCores )
+				break;
+		}
+	}
+
 	public static void main( final String[] args ) throws IncompatibleTypeException, ImgIOException
 	{
 		new ImageJ();
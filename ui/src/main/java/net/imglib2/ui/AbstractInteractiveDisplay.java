@@ -149,4 +149,10 @@ public abstract class AbstractInteractiveDisplay
 	 * Add new event handler.
 	 */
 	public abstract void addHandler( final Object handler );
+
+	/**
+	 * The screen images that are rendered into and displayed in turn, e.g.
+	 * to query frame time and dropped frame metrics.
+	 */
+	public abstract ScreenImageBuffers getScreenImages();
 }
@@ -52,7 +52,13 @@ import net.imglib2.ui.swing.SwingInteractiveDisplay3D;
 public abstract class AbstractInteractiveViewer3D< T extends NumericType< T > > implements ScreenImageRenderer, TransformListener3D
 {
 	/**
-	 * render target
+	 * Screen images that are rendered into and displayed in turn.
+	 */
+	protected ScreenImageBuffers screenImages;
+
+	/**
+	 * render target, the back buffer of {@link #screenImages} that the
+	 * current frame is rendered into.
 	 */
 	protected ARGBScreenImage screenImage;
 
@@ -75,10 +81,31 @@ public abstract class AbstractInteractiveViewer3D< T extends NumericType< T > >
 	final protected AffineTransform3D sourceToScreen = new AffineTransform3D();
 
 	/**
-	 * Currently active projector, used to re-paint the display. It maps the
-	 * {@link #source} data to {@link #screenImage}.
+	 * Transformations from {@link #source} to the screen images of all
+	 * {@link ProgressiveRenderer#getScreenScale(int) screen scales}, that is
+	 * {@link #sourceToScreen} followed by the screen scaling.
+	 */
+	protected AffineTransform3D[] screenScaledSourceToScreen;
+
+	/**
+	 * Projectors for all {@link #screenImages buffers} and
+	 * {@link ProgressiveRenderer#getScreenScale(int) screen scales}, used to
+	 * re-paint the display. projectors[ b ][ 0 ] maps the {@link #source}
+	 * data to buffer b, projectors[ b ][ i &gt; 0 ] are shared between buffers
+	 * and map to the coarse screen images of the {@link #progressiveRenderer}.
+	 */
+	protected XYRandomAccessibleProjector< T, ARGBType >[][] projectors;
+
+	/**
+	 * The projector that is currently mapping, canceled if the transform
+	 * changes.
+	 */
+	protected XYRandomAccessibleProjector< T, ARGBType > currentProjector = null;
+
+	/**
+	 * Selects the screen scale to render and upsamples coarse frames.
 	 */
-	protected XYRandomAccessibleProjector< T, ARGBType > projector;
+	final protected ProgressiveRenderer progressiveRenderer = new ProgressiveRenderer();
 
 	/**
 	 * Window used for displaying the rendered {@link #screenImage}.
@@ -97,31 +124,141 @@ public abstract class AbstractInteractiveViewer3D< T extends NumericType< T > >
 	public void setSourceTransform( final AffineTransform3D transform )
 	{
 		sourceTransform.set( transform );
+		requestNewFrame();
 		display.requestRepaint();
 	}
 
 	@Override
-	public void screenImageChanged( final ARGBScreenImage img )
+	public void screenImagesChanged( final ScreenImageBuffers buffers )
 	{
-		screenImage = img;
-		projector = createProjector();
+		synchronized ( this )
+		{
+			screenImages = buffers;
+			progressiveRenderer.screenImageChanged( buffers.getScreenImage( 0 ) );
+		}
+		createProjectors();
 	}
 
-	protected abstract XYRandomAccessibleProjector< T, ARGBType > createProjector();
+	/**
+	 * Create a projector that maps the {@link #source} into target.
+	 *
+	 * @param sourceToScreen
+	 *            transformation from {@link #source} to target, the projector
+	 *            should follow changes of this transform.
+	 * @param screenImage
+	 *            the target.
+	 */
+	protected abstract XYRandomAccessibleProjector< T, ARGBType > createProjector( final AffineTransform3D sourceToScreen, final ARGBScreenImage screenImage );
 
+	/**
+	 * (Re-)create the {@link #projectors} for all buffers and screen scales,
+	 * e.g. after the screen images or the interpolation changed.
+	 */
+	@SuppressWarnings( "unchecked" )
+	protected synchronized void createProjectors()
+	{
+		if ( screenImages == null )
+			return;
+		final int n = progressiveRenderer.numScreenScales();
+		if ( screenScaledSourceToScreen == null )
+		{
+			screenScaledSourceToScreen = new AffineTransform3D[ n ];
+			for ( int i = 0; i < n; ++i )
+				screenScaledSourceToScreen[ i ] = new AffineTransform3D();
+		}
+		if ( currentProjector != null )
+			currentProjector.setCanceled( true );
+		final int numBuffers = screenImages.numBuffers();
+		projectors = new XYRandomAccessibleProjector[ numBuffers ][ n ];
+		for ( int b = 0; b < numBuffers; ++b )
+			projectors[ b ][ 0 ] = createProjector( screenScaledSourceToScreen[ 0 ], screenImages.getScreenImage( b ) );
+		for ( int i = 1; i < n; ++i )
+		{
+			final XYRandomAccessibleProjector< T, ARGBType > p = createProjector( screenScaledSourceToScreen[ i ], progressiveRenderer.getScreenImage( i ) );
+			for ( int b = 0; b < numBuffers; ++b )
+				projectors[ b ][ i ] = p;
+		}
+		progressiveRenderer.requestNewFrame();
+	}
+
+	/**
+	 * Start over with a coarse frame, canceling the frame currently being
+	 * rendered.
+	 */
+	protected synchronized void requestNewFrame()
+	{
+		progressiveRenderer.requestNewFrame();
+		if ( currentProjector != null )
+			currentProjector.setCanceled( true );
+	}
+
+	/**
+	 * Render the next step of the current frame into the back buffer of
+	 * {@link #screenImages}, starting at a coarse screen scale and refining
+	 * on subsequent calls.  Canceled frames are discarded.
+	 *
+	 * @return true if the full resolution frame is complete, false if there
+	 *         are finer screen scales left, the frame was canceled, or not
+	 *         all data was {@link VolatileXYRandomAccessibleProjector#isValid()
+	 *         valid}.
+	 */
 	@Override
 	public boolean drawScreenImage()
 	{
-		synchronized( viewerTransform )
+		final int screenScaleIndex;
+		final XYRandomAccessibleProjector< T, ARGBType > p;
+		synchronized ( this )
 		{
-			sourceToScreen.set( viewerTransform );
+			screenScaleIndex = progressiveRenderer.beginFrame();
+			final int backBufferIndex = screenImages.getBackBufferIndex();
+			screenImage = screenImages.getScreenImage( backBufferIndex );
+			synchronized( viewerTransform )
+			{
+				sourceToScreen.set( viewerTransform );
+			}
+			sourceToScreen.concatenate( sourceTransform );
+			final AffineTransform3D t = screenScaledSourceToScreen[ screenScaleIndex ];
+			t.set( sourceToScreen );
+			t.preConcatenate( screenScale( progressiveRenderer.getScreenScale( screenScaleIndex ) ) );
+			p = projectors[ backBufferIndex ][ screenScaleIndex ];
+			p.setCanceled( false );
+			currentProjector = p;
 		}
-		sourceToScreen.concatenate( sourceTransform );
-		projector.map();
-		if ( VolatileXYRandomAccessibleProjector.class.isInstance( projector ) )
-			return ( ( VolatileXYRandomAccessibleProjector< ?, ?, ? > )projector ).isValid();
+
+		final long t0 = System.nanoTime();
+		p.map();
+		final long renderNanos = System.nanoTime() - t0;
+
+		synchronized ( this )
+		{
+			currentProjector = null;
+			if ( p.isCanceled() )
+			{
+				screenImages.cancelFrame();
+				return false;
+			}
+		}
+
+		final boolean complete = progressiveRenderer.endFrame( screenScaleIndex, renderNanos, screenImage );
+		if ( VolatileXYRandomAccessibleProjector.class.isInstance( p ) )
+			return complete && ( ( VolatileXYRandomAccessibleProjector< ?, ?, ? > )p ).isValid();
 		else
-			return true;
+			return complete;
+	}
+
+	/**
+	 * Transformation from full resolution screen coordinates to the
+	 * coordinates of a screen image scaled by s, such that pixel centers
+	 * align.
+	 */
+	protected static AffineTransform3D screenScale( final double s )
+	{
+		final AffineTransform3D scale = new AffineTransform3D();
+		scale.set( s, 0, 0 );
+		scale.set( s, 1, 1 );
+		scale.set( 0.5 * ( s - 1 ), 0, 3 );
+		scale.set( 0.5 * ( s - 1 ), 1, 3 );
+		return scale;
 	}
 
 	@Override
@@ -134,6 +271,7 @@ public abstract class AbstractInteractiveViewer3D< T extends NumericType< T > >
 		{
 			viewerTransform.set( transform );
 		}
+		requestNewFrame();
 	}
 
 	public AbstractInteractiveDisplay3D getDisplay()
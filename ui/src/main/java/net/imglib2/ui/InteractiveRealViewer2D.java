@@ -40,6 +40,7 @@ package net.imglib2.ui;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealRandomAccessible;
 import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.display.XYRandomAccessibleProjector;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.realtransform.AffineRandomAccessible;
@@ -86,7 +87,7 @@ public class InteractiveRealViewer2D< T extends NumericType< T > > extends Abstr
 		super( width, height, sourceTransform, displayType );
 		this.source = source;
 		this.converter = converter;
-		projector = createProjector();
+		createProjectors();
 		display.startPainter();
 	}
 
@@ -96,12 +97,12 @@ public class InteractiveRealViewer2D< T extends NumericType< T > > extends Abstr
 	{
 		++interpolation;
 		interpolation %= 2;
-		projector = createProjector();
+		createProjectors();
 		display.requestRepaint();
 	}
 
 	@Override
-	protected XYRandomAccessibleProjector< T, ARGBType > createProjector()
+	protected XYRandomAccessibleProjector< T, ARGBType > createProjector( final AffineTransform2D sourceToScreen, final ARGBScreenImage screenImage )
 	{
 		final AffineRandomAccessible< T, AffineGet > mapping = new AffineRandomAccessible< T, AffineGet >( source, sourceToScreen.inverse() );
 		return new XYRandomAccessibleProjector< T, ARGBType >( mapping, screenImage, converter );
@@ -41,6 +41,7 @@ import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealRandomAccessible;
 import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.display.XYRandomAccessibleProjector;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.realtransform.AffineRandomAccessible;
@@ -87,12 +88,12 @@ public class InteractiveRealViewer3D< T extends NumericType< T > > extends Abstr
 		super( width, height, sourceInterval, sourceTransform, displayType );
 		this.source = source;
 		this.converter = converter;
-		projector = createProjector();
+		createProjectors();
 		display.startPainter();
 	}
 
 	@Override
-	protected XYRandomAccessibleProjector< T, ARGBType > createProjector()
+	protected XYRandomAccessibleProjector< T, ARGBType > createProjector( final AffineTransform3D sourceToScreen, final ARGBScreenImage screenImage )
 	{
 		final AffineRandomAccessible< T, AffineGet > mapping = new AffineRandomAccessible< T, AffineGet >( source, sourceToScreen.inverse() );
 		return new XYRandomAccessibleProjector< T, ARGBType >( mapping, screenImage, converter );
@@ -42,6 +42,7 @@ import java.awt.event.KeyListener;
 
 import net.imglib2.RandomAccessible;
 import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.display.XYRandomAccessibleProjector;
 import net.imglib2.interpolation.Interpolant;
 import net.imglib2.interpolation.InterpolatorFactory;
@@ -92,7 +93,7 @@ public class InteractiveViewer2D< T extends NumericType< T > > extends AbstractI
 		super( width, height, sourceTransform, displayType );
 		this.source = source;
 		this.converter = converter;
-		projector = createProjector();
+		createProjectors();
 		display.startPainter();
 
 		// add KeyHandler for toggling interpolation
@@ -118,12 +119,12 @@ public class InteractiveViewer2D< T extends NumericType< T > > extends AbstractI
 	{
 		++interpolation;
 		interpolation %= 2;
-		projector = createProjector();
+		createProjectors();
 		display.requestRepaint();
 	}
 
 	@Override
-	protected XYRandomAccessibleProjector< T, ARGBType > createProjector()
+	protected XYRandomAccessibleProjector< T, ARGBType > createProjector( final AffineTransform2D sourceToScreen, final ARGBScreenImage screenImage )
 	{
 		final InterpolatorFactory< T, RandomAccessible< T > > interpolatorFactory;
 		switch ( interpolation )
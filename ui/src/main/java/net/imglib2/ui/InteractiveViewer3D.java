@@ -43,6 +43,7 @@ import java.awt.event.KeyListener;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.display.XYRandomAccessibleProjector;
 import net.imglib2.interpolation.Interpolant;
 import net.imglib2.interpolation.InterpolatorFactory;
@@ -94,7 +95,7 @@ public class InteractiveViewer3D< T extends NumericType< T > > extends AbstractI
 		super( width, height, sourceInterval, sourceTransform, displayType );
 		this.source = source;
 		this.converter = converter;
-		projector = createProjector();
+		createProjectors();
 		display.startPainter();
 
 		// add KeyHandler for toggling interpolation
@@ -120,13 +121,13 @@ public class InteractiveViewer3D< T extends NumericType< T > > extends AbstractI
 	{
 		++interpolation;
 		interpolation %= 2;
-		projector = createProjector();
+		createProjectors();
 		display.requestRepaint();
 	}
 
 	@SuppressWarnings( { "unchecked", "rawtypes" } )
 	@Override
-	protected XYRandomAccessibleProjector< T, ARGBType > createProjector()
+	protected XYRandomAccessibleProjector< T, ARGBType > createProjector( final AffineTransform3D sourceToScreen, final ARGBScreenImage screenImage )
 	{
 		final InterpolatorFactory< T, RandomAccessible< T > > interpolatorFactory;
 		switch ( interpolation )
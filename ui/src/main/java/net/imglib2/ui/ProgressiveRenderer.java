@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.ui;
+
+import java.util.Arrays;
+
+import net.imglib2.display.ARGBScreenImage;
+
+/**
+ * Bookkeeping for coarse-to-fine rendering of interactive viewers.  A
+ * {@link ProgressiveRenderer} keeps a set of {@link ARGBScreenImage screen
+ * images} at decreasing resolutions.  When a new frame is requested, the
+ * viewer starts rendering at the finest screen scale that is expected to
+ * complete within the target frame time, based on the measured render time
+ * per pixel, and then refines step by step until the full resolution image
+ * is rendered.  Coarse images are upsampled into the full resolution screen
+ * image that is displayed next.
+ *
+ * @author agent
+ */
+public class ProgressiveRenderer
+{
+	final static public double[] DEFAULT_SCREEN_SCALES = new double[] { 1, 0.5, 0.25, 0.125 };
+
+	/**
+	 * 30 fps
+	 */
+	final static public long DEFAULT_TARGET_RENDER_NANOS = 1000000000l / 30;
+
+	/**
+	 * Scale factors from full resolution screen to screen image, starting
+	 * with 1 and decreasing.
+	 */
+	final protected double[] screenScales;
+
+	/**
+	 * Try to render new frames within this time.
+	 */
+	final protected long targetRenderNanos;
+
+	/**
+	 * Screen images for all {@link #screenScales}.  screenImages[ 0 ] is the
+	 * full resolution image that determines the size of the others, the
+	 * display may render into other images of that size.
+	 */
+	final protected ARGBScreenImage[] screenImages;
+
+	/**
+	 * The int[] arrays backing the coarse {@link #screenImages}, reused
+	 * across {@link #screenImageChanged(ARGBScreenImage) resizes} as long as
+	 * they are large enough.
+	 */
+	final protected int[][] data;
+
+	/**
+	 * Estimated time to render one pixel, 0 if unknown.
+	 */
+	protected double renderNanosPerPixel = 0;
+
+	/**
+	 * Index of the screen scale to render next.
+	 */
+	protected int currentScreenScaleIndex;
+
+	/**
+	 * Whether the next frame should start over at a coarse scale.
+	 */
+	protected boolean newFrameRequest = true;
+
+	public ProgressiveRenderer( final double[] screenScales, final long targetRenderNanos )
+	{
+		if ( screenScales.length == 0 || screenScales[ 0 ] != 1 )
+			throw new IllegalArgumentException( "screen scales must start with 1" );
+		this.screenScales = screenScales.clone();
+		this.targetRenderNanos = targetRenderNanos;
+		screenImages = new ARGBScreenImage[ screenScales.length ];
+		data = new int[ screenScales.length ][];
+		currentScreenScaleIndex = screenScales.length - 1;
+	}
+
+	public ProgressiveRenderer()
+	{
+		this( DEFAULT_SCREEN_SCALES, DEFAULT_TARGET_RENDER_NANOS );
+	}
+
+	public int numScreenScales()
+	{
+		return screenScales.length;
+	}
+
+	public double getScreenScale( final int i )
+	{
+		return screenScales[ i ];
+	}
+
+	public ARGBScreenImage getScreenImage( final int i )
+	{
+		return screenImages[ i ];
+	}
+
+	/**
+	 * Create the coarse screen images for a new full resolution screen image.
+	 * Backing arrays are reused if they are large enough, otherwise they are
+	 * replaced with arrays that leave room for growing a bit further.
+	 */
+	public synchronized void screenImageChanged( final ARGBScreenImage screenImage )
+	{
+		screenImages[ 0 ] = screenImage;
+		final long w = screenImage.dimension( 0 );
+		final long h = screenImage.dimension( 1 );
+		for ( int i = 1; i < screenScales.length; ++i )
+		{
+			final int width = ( int ) Math.max( 1, Math.ceil( w * screenScales[ i ] ) );
+			final int height = ( int ) Math.max( 1, Math.ceil( h * screenScales[ i ] ) );
+			final int size = width * height;
+			if ( data[ i ] == null || data[ i ].length < size )
+				data[ i ] = new int[ data[ i ] == null ? size : size + size / 4 ];
+			else
+				Arrays.fill( data[ i ], 0, size, 0 );
+			screenImages[ i ] = new ARGBScreenImage( width, height, data[ i ] );
+		}
+		newFrameRequest = true;
+	}
+
+	/**
+	 * The next {@link #beginFrame()} starts a new frame at a coarse scale.
+	 */
+	public synchronized void requestNewFrame()
+	{
+		newFrameRequest = true;
+	}
+
+	/**
+	 * @return the index of the screen scale to render now.
+	 */
+	public synchronized int beginFrame()
+	{
+		if ( newFrameRequest )
+		{
+			newFrameRequest = false;
+			currentScreenScaleIndex = screenScales.length - 1;
+			if ( renderNanosPerPixel > 0 )
+			{
+				// finest scale that is expected to finish in time
+				for ( int i = 0; i < screenScales.length; ++i )
+				{
+					if ( renderNanosPerPixel * numPixels( i ) <= targetRenderNanos )
+					{
+						currentScreenScaleIndex = i;
+						break;
+					}
+				}
+			}
+		}
+		return currentScreenScaleIndex;
+	}
+
+	/**
+	 * Report a completely rendered screen image.  Updates the render time
+	 * estimate, upsamples the screen image into the full resolution target
+	 * image, and steps to the next finer scale.
+	 *
+	 * @param screenScaleIndex
+	 *            the scale that was rendered.
+	 * @param renderNanos
+	 *            time it took to render.
+	 * @param target
+	 *            full resolution image to upsample coarse screen images into.
+	 * @return true if the full resolution image has been rendered, false if
+	 *         there are finer scales left to render.
+	 */
+	public boolean endFrame( final int screenScaleIndex, final long renderNanos, final ARGBScreenImage target )
+	{
+		final double nanosPerPixel = ( double ) renderNanos / numPixels( screenScaleIndex );
+		synchronized ( this )
+		{
+			renderNanosPerPixel = renderNanosPerPixel == 0 ? nanosPerPixel : 0.75 * renderNanosPerPixel + 0.25 * nanosPerPixel;
+		}
+
+		if ( screenScaleIndex > 0 )
+			upsample( screenImages[ screenScaleIndex ], target, screenScales[ screenScaleIndex ] );
+
+		synchronized ( this )
+		{
+			if ( newFrameRequest )
+				return false;
+			if ( screenScaleIndex > 0 )
+			{
+				currentScreenScaleIndex = screenScaleIndex - 1;
+				return false;
+			}
+			return true;
+		}
+	}
+
+	protected long numPixels( final int i )
+	{
+		return screenImages[ i ].dimension( 0 ) * screenImages[ i ].dimension( 1 );
+	}
+
+	/**
+	 * Nearest neighbor upsampling of a coarse screen image that was rendered
+	 * at the given scale.
+	 */
+	public static void upsample( final ARGBScreenImage coarse, final ARGBScreenImage full, final double scale )
+	{
+		final int[] in = coarse.getData();
+		final int[] out = full.getData();
+		final int cw = ( int ) coarse.dimension( 0 );
+		final int ch = ( int ) coarse.dimension( 1 );
+		final int w = ( int ) full.dimension( 0 );
+		final int h = ( int ) full.dimension( 1 );
+
+		final int[] xs = new int[ w ];
+		for ( int x = 0; x < w; ++x )
+			xs[ x ] = Math.min( cw - 1, ( int ) ( ( x + 0.5 ) * scale ) );
+
+		for ( int y = 0, o = 0; y < h; ++y )
+		{
+			final int i = Math.min( ch - 1, ( int ) ( ( y + 0.5 ) * scale ) ) * cw;
+			for ( int x = 0; x < w; ++x, ++o )
+				out[ o ] = in[ i + xs[ x ] ];
+		}
+	}
+}
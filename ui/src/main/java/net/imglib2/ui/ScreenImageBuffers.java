@@ -0,0 +1,374 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2013 Stephan Preibisch, Tobias Pietzsch, Barry DeZonia,
+ * Stephan Saalfeld, Albert Cardona, Curtis Rueden, Christian Dietz, Jean-Yves
+ * Tinevez, Johannes Schindelin, Lee Kamentsky, Larry Lindsey, Grant Harris,
+ * Mark Hiner, Aivar Grislis, Martin Horn, Nick Perry, Michael Zinsmaier,
+ * Steffen Jaensch, Jan Funke, Mark Longair, and Dimiter Prodanov.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package net.imglib2.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+import net.imglib2.display.ARGBScreenImage;
+
+/**
+ * A set of two or three {@link ARGBScreenImage}s that are rendered into and
+ * presented in turn, such that rendering a new frame never writes into the
+ * image that is currently displayed.
+ *
+ * <p>
+ * The rendering thread calls {@link #beginFrame()}, renders into
+ * {@link #getBackBuffer()}, and calls {@link #endFrame()} to make it the
+ * front buffer (or {@link #cancelFrame()} before, to discard an incomplete
+ * frame). The painting thread brackets drawing the front buffer by
+ * {@link #present()} and {@link #donePresenting()}. With two buffers,
+ * {@link #beginFrame()} may have to wait for a presentation in progress to
+ * finish, with three buffers it never does.
+ * </p>
+ *
+ * <p>
+ * The int[] arrays backing the images are kept across {@link #resize(int, int)
+ * resizes} and reused as long as they are large enough. Frame times and the
+ * number of frames that were replaced before being presented are recorded.
+ * </p>
+ *
+ * @author agent
+ */
+public class ScreenImageBuffers
+{
+	static final public ColorModel RGB_COLOR_MODEL = new DirectColorModel( 24, 0xff0000, 0xff00, 0xff );
+
+	final protected int numBuffers;
+
+	/**
+	 * Whether {@link #getBufferedImage(int)} ignores the alpha channel.
+	 */
+	final protected boolean discardAlpha;
+
+	final protected int[][] data;
+
+	final protected ARGBScreenImage[] screenImages;
+
+	final protected BufferedImage[] bufferedImages;
+
+	/**
+	 * Time stamp of the last {@link #present()} of each buffer, used to pick
+	 * the back buffer that was shown longest ago.
+	 */
+	final protected long[] presentedAt;
+
+	protected int width = 0;
+
+	protected int height = 0;
+
+	protected int front = 0;
+
+	protected int back = 1;
+
+	/**
+	 * Index of the buffer being presented, -1 if none.
+	 */
+	protected int presenting = -1;
+
+	/**
+	 * Whether a frame was begun and not canceled.
+	 */
+	protected boolean frameOpen = false;
+
+	protected boolean frontPresented = true;
+
+	protected long presentations = 0;
+
+	protected long frameStartNanos;
+
+	protected long numFrames = 0;
+
+	protected long numDroppedFrames = 0;
+
+	protected long lastFrameNanos = 0;
+
+	/**
+	 * Exponential moving average of the frame time.
+	 */
+	protected double meanFrameNanos = 0;
+
+	/**
+	 * @param numBuffers
+	 *            2 for double or 3 for triple buffering.
+	 * @param discardAlpha
+	 *            whether the images returned by {@link #getBufferedImage(int)}
+	 *            should be opaque.
+	 */
+	public ScreenImageBuffers( final int numBuffers, final boolean discardAlpha )
+	{
+		if ( numBuffers < 2 || numBuffers > 3 )
+			throw new IllegalArgumentException( "only double and triple buffering are supported" );
+		this.numBuffers = numBuffers;
+		this.discardAlpha = discardAlpha;
+		data = new int[ numBuffers ][];
+		screenImages = new ARGBScreenImage[ numBuffers ];
+		bufferedImages = new BufferedImage[ numBuffers ];
+		presentedAt = new long[ numBuffers ];
+	}
+
+	public ScreenImageBuffers( final int numBuffers )
+	{
+		this( numBuffers, false );
+	}
+
+	public int numBuffers()
+	{
+		return numBuffers;
+	}
+
+	public synchronized int width()
+	{
+		return width;
+	}
+
+	public synchronized int height()
+	{
+		return height;
+	}
+
+	/**
+	 * (Re-)create the screen images if the size changed.  Backing arrays are
+	 * reused if they are large enough, otherwise they are replaced with arrays
+	 * that leave room for growing a bit further.  Waits for a presentation in
+	 * progress to finish.
+	 *
+	 * @return true if the screen images were re-created.
+	 */
+	public synchronized boolean resize( final int width, final int height )
+	{
+		if ( screenImages[ 0 ] != null && this.width == width && this.height == height )
+			return false;
+
+		waitWhilePresenting( -1 );
+		final int size = width * height;
+		for ( int i = 0; i < numBuffers; ++i )
+		{
+			if ( data[ i ] == null || data[ i ].length < size )
+				data[ i ] = new int[ data[ i ] == null ? size : size + size / 4 ];
+			else
+				Arrays.fill( data[ i ], 0, size, 0 );
+			screenImages[ i ] = new ARGBScreenImage( width, height, data[ i ] );
+			bufferedImages[ i ] = discardAlpha ? opaque( screenImages[ i ].image() ) : screenImages[ i ].image();
+		}
+		this.width = width;
+		this.height = height;
+		frameOpen = false;
+		frontPresented = true;
+		return true;
+	}
+
+	public ARGBScreenImage getScreenImage( final int i )
+	{
+		return screenImages[ i ];
+	}
+
+	/**
+	 * The {@link BufferedImage} to draw for buffer i, sharing its data with
+	 * {@link #getScreenImage(int)}.
+	 */
+	public BufferedImage getBufferedImage( final int i )
+	{
+		return bufferedImages[ i ];
+	}
+
+	/**
+	 * Start rendering a new frame into the back buffer, the buffer that is
+	 * neither the front buffer nor presented, and that was presented longest
+	 * ago.
+	 *
+	 * @return the index of the back buffer.
+	 */
+	public synchronized int beginFrame()
+	{
+		back = -1;
+		while ( back < 0 )
+		{
+			for ( int i = 0; i < numBuffers; ++i )
+				if ( i != front && i != presenting && ( back < 0 || presentedAt[ i ] < presentedAt[ back ] ) )
+					back = i;
+			if ( back < 0 )
+				waitWhilePresenting( presenting );
+		}
+		frameOpen = true;
+		frameStartNanos = System.nanoTime();
+		return back;
+	}
+
+	public synchronized int getBackBufferIndex()
+	{
+		return back;
+	}
+
+	public synchronized ARGBScreenImage getBackBuffer()
+	{
+		return screenImages[ back ];
+	}
+
+	/**
+	 * Discard the current frame, {@link #endFrame()} will not swap.  Called
+	 * if the frame was not completely rendered.
+	 */
+	public synchronized void cancelFrame()
+	{
+		frameOpen = false;
+	}
+
+	/**
+	 * Make the back buffer the front buffer, unless the frame was
+	 * {@link #cancelFrame() canceled}.  A previous front buffer that was never
+	 * presented counts as a dropped frame.
+	 *
+	 * @return true if the buffers were swapped.
+	 */
+	public synchronized boolean endFrame()
+	{
+		if ( !frameOpen )
+			return false;
+		frameOpen = false;
+
+		lastFrameNanos = System.nanoTime() - frameStartNanos;
+		meanFrameNanos = numFrames == 0 ? lastFrameNanos : 0.9 * meanFrameNanos + 0.1 * lastFrameNanos;
+		++numFrames;
+		if ( !frontPresented )
+			++numDroppedFrames;
+
+		front = back;
+		frontPresented = false;
+		return true;
+	}
+
+	/**
+	 * Mark the front buffer as being presented.  Must be followed by
+	 * {@link #donePresenting()} when it is no longer read.
+	 *
+	 * @return index of the buffer to present.
+	 */
+	public synchronized int present()
+	{
+		presenting = front;
+		presentedAt[ front ] = ++presentations;
+		frontPresented = true;
+		return front;
+	}
+
+	public synchronized void donePresenting()
+	{
+		presenting = -1;
+		notifyAll();
+	}
+
+	/**
+	 * Wait until buffer i (any buffer if i &lt; 0) is no longer presented.
+	 */
+	protected void waitWhilePresenting( final int i )
+	{
+		while ( presenting >= 0 && ( i < 0 || presenting == i ) )
+		{
+			try
+			{
+				wait();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return number of frames swapped to the front.
+	 */
+	public synchronized long getNumFrames()
+	{
+		return numFrames;
+	}
+
+	/**
+	 * @return number of frames that were replaced by the next frame before
+	 *         being presented.
+	 */
+	public synchronized long getNumDroppedFrames()
+	{
+		return numDroppedFrames;
+	}
+
+	/**
+	 * @return time from {@link #beginFrame()} to {@link #endFrame()} of the
+	 *         last frame in nanoseconds.
+	 */
+	public synchronized long getLastFrameNanos()
+	{
+		return lastFrameNanos;
+	}
+
+	/**
+	 * @return moving average of the frame time in nanoseconds.
+	 */
+	public synchronized double getMeanFrameNanos()
+	{
+		return meanFrameNanos;
+	}
+
+	public synchronized void resetMetrics()
+	{
+		numFrames = 0;
+		numDroppedFrames = 0;
+		lastFrameNanos = 0;
+		meanFrameNanos = 0;
+	}
+
+	/**
+	 * Re-wrap the data of an ARGB {@link BufferedImage} using a RGB color
+	 * model.
+	 */
+	public static BufferedImage opaque( final BufferedImage argb )
+	{
+		final SampleModel sampleModel = RGB_COLOR_MODEL.createCompatibleWritableRaster( 1, 1 ).getSampleModel().createCompatibleSampleModel( argb.getWidth(), argb.getHeight() );
+		final DataBuffer dataBuffer = argb.getRaster().getDataBuffer();
+		final WritableRaster rgbRaster = Raster.createWritableRaster( sampleModel, dataBuffer, null );
+		return new BufferedImage( RGB_COLOR_MODEL, rgbRaster, false, null );
+	}
+}
@@ -39,17 +39,20 @@ package net.imglib2.ui;
 
 import java.awt.Graphics;
 
-import net.imglib2.display.ARGBScreenImage;
-
 public interface ScreenImageRenderer
 {
 	/**
-	 * This is called, when the {@link #screenImage} was updated.
+	 * This is called, when the screen images of {@code screenImages} were
+	 * (re-)created, e.g. because the display was resized.
 	 */
-	public void screenImageChanged( final ARGBScreenImage screenImage );
+	public void screenImagesChanged( final ScreenImageBuffers screenImages );
 
 	/**
-	 * Render the {@link #screenImage}.
+	 * Render into the {@link ScreenImageBuffers#getBackBuffer() back buffer}.
+	 * The display {@link ScreenImageBuffers#beginFrame() begins} the frame
+	 * before and {@link ScreenImageBuffers#endFrame() ends} it after this
+	 * call.  If the rendered image should not be shown, call
+	 * {@link ScreenImageBuffers#cancelFrame()}.
 	 * 
 	 * @return true if drawing was successful AND complete, returning false
 	 *   does not mean that the result is entirely unusable but it may not
@@ -44,21 +44,22 @@ import ij.process.ColorProcessor;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
-import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.realtransform.AffineTransform2D;
 import net.imglib2.ui.AbstractInteractiveDisplay2D;
+import net.imglib2.ui.ScreenImageBuffers;
 import net.imglib2.ui.ScreenImageRenderer;
 import net.imglib2.ui.TransformListener2D;
 
 public class ImagePlusInteractiveDisplay2D extends AbstractInteractiveDisplay2D implements TransformListener2D
 {
 	/**
-	 * Used to render into {@link #imp}.
+	 * Triple buffered screen images that are rendered into and shown in
+	 * {@link #imp} in turn.
 	 */
-	protected ARGBScreenImage screenImage;
+	final protected ScreenImageBuffers screenImages;
 
 	/**
-	 * Transformation from {@link #sourceInterval} to {@link #screenImage}.
+	 * Transformation from {@link #sourceInterval} to {@link #screenImages}.
 	 */
 	final protected AffineTransform2D sourceToScreen;
 
@@ -85,11 +86,13 @@ public class ImagePlusInteractiveDisplay2D extends AbstractInteractiveDisplay2D
 	{
 		sourceToScreen = new AffineTransform2D();
 
-		final ColorProcessor cp = new ColorProcessor( width, height );
-		screenImage = new ARGBScreenImage( cp.getWidth(), cp.getHeight(), ( int[] ) cp.getPixels() );
+		screenImages = new ScreenImageBuffers( 3 );
+		screenImages.resize( width, height );
+		final ColorProcessor cp = new ColorProcessor( width, height, screenImages.getScreenImage( screenImages.present() ).getData() );
+		screenImages.donePresenting();
 
 		this.renderer = renderer;
-		renderer.screenImageChanged( screenImage );
+		renderer.screenImagesChanged( screenImages );
 		this.renderTransformListener = renderTransformListener;
 
 		imp = new ImagePlus( "argbScreenProjection", cp );
@@ -146,12 +149,40 @@ public class ImagePlusInteractiveDisplay2D extends AbstractInteractiveDisplay2D
 	@Override
 	public boolean paint()
 	{
+		screenImages.beginFrame();
 		final boolean valid = renderer.drawScreenImage();
-		renderer.drawOverlays( screenImage.image().getGraphics() );
-		imp.draw();
+		renderer.drawOverlays( screenImages.getBackBuffer().image().getGraphics() );
+		if ( screenImages.endFrame() )
+			show();
 		return valid;
 	}
 
+	/**
+	 * Show the front buffer in {@link #imp}.  ImageJ paints asynchronously,
+	 * the buffer is safe to render into again only because of triple
+	 * buffering: the next frame goes to the buffer that was shown longest
+	 * ago.
+	 */
+	protected void show()
+	{
+		final int i = screenImages.present();
+		try
+		{
+			imp.getProcessor().setPixels( screenImages.getScreenImage( i ).getData() );
+			imp.updateAndDraw();
+		}
+		finally
+		{
+			screenImages.donePresenting();
+		}
+	}
+
+	@Override
+	public ScreenImageBuffers getScreenImages()
+	{
+		return screenImages;
+	}
+
 	@Override
 	public void transformChanged( final AffineTransform2D transform )
 	{
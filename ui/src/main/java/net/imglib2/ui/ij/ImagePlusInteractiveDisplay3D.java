@@ -49,6 +49,7 @@ import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.ui.AbstractInteractiveDisplay3D;
 import net.imglib2.ui.BoxOverlay;
+import net.imglib2.ui.ScreenImageBuffers;
 import net.imglib2.ui.ScreenImageRenderer;
 import net.imglib2.ui.TransformListener3D;
 import net.imglib2.util.Intervals;
@@ -69,9 +70,10 @@ public class ImagePlusInteractiveDisplay3D extends AbstractInteractiveDisplay3D
 	final protected AffineTransform3D sourceTransform;
 
 	/**
-	 * Used to render into {@link #imp}.
+	 * Triple buffered screen images that are rendered into and shown in
+	 * {@link #imp} in turn.
 	 */
-	protected ARGBScreenImage screenImage;
+	final protected ScreenImageBuffers screenImages;
 
 	/**
 	 * The transformation interactively set by the user.
@@ -79,7 +81,7 @@ public class ImagePlusInteractiveDisplay3D extends AbstractInteractiveDisplay3D
 	final protected AffineTransform3D viewerTransform;
 
 	/**
-	 * Transformation from {@link #source} to {@link #screenImage}. This is a
+	 * Transformation from {@link #source} to {@link #screenImages}. This is a
 	 * concatenation of {@link #sourceTransform} and the interactive
 	 * {@link #viewerTransform transform} set by the user.
 	 */
@@ -142,11 +144,13 @@ public class ImagePlusInteractiveDisplay3D extends AbstractInteractiveDisplay3D
 		boxInterval = Intervals.createMinSize( 10, 10, 80, 60 );
 		box = new BoxOverlay();
 
-		final ColorProcessor cp = new ColorProcessor( width, height );
-		screenImage = new ARGBScreenImage( cp.getWidth(), cp.getHeight(), ( int[] ) cp.getPixels() );
+		screenImages = new ScreenImageBuffers( 3 );
+		screenImages.resize( width, height );
+		final ColorProcessor cp = new ColorProcessor( width, height, screenImages.getScreenImage( screenImages.present() ).getData() );
+		screenImages.donePresenting();
 
 		this.renderer = renderer;
-		renderer.screenImageChanged( screenImage );
+		renderer.screenImagesChanged( screenImages );
 		this.renderTransformListener = renderTransformListener;
 
 		imp = new ImagePlus( "argbScreenProjection", cp );
@@ -203,18 +207,47 @@ public class ImagePlusInteractiveDisplay3D extends AbstractInteractiveDisplay3D
 	@Override
 	public boolean paint()
 	{
+		screenImages.beginFrame();
 		final boolean valid = renderer.drawScreenImage();
 		synchronized( viewerTransform )
 		{
 			sourceToScreen.set( viewerTransform );
 		}
 		sourceToScreen.concatenate( sourceTransform );
+		final ARGBScreenImage screenImage = screenImages.getBackBuffer();
 		box.paint( ( Graphics2D ) screenImage.image().getGraphics(), sourceInterval, screenImage, sourceToScreen, boxInterval );
 		renderer.drawOverlays( screenImage.image().getGraphics() );
-		imp.draw();
+		if ( screenImages.endFrame() )
+			show();
 		return valid;
 	}
 
+	/**
+	 * Show the front buffer in {@link #imp}.  ImageJ paints asynchronously,
+	 * the buffer is safe to render into again only because of triple
+	 * buffering: the next frame goes to the buffer that was shown longest
+	 * ago.
+	 */
+	protected void show()
+	{
+		final int i = screenImages.present();
+		try
+		{
+			imp.getProcessor().setPixels( screenImages.getScreenImage( i ).getData() );
+			imp.updateAndDraw();
+		}
+		finally
+		{
+			screenImages.donePresenting();
+		}
+	}
+
+	@Override
+	public ScreenImageBuffers getScreenImages()
+	{
+		return screenImages;
+	}
+
 	@Override
 	public void transformChanged( final AffineTransform3D transform )
 	{
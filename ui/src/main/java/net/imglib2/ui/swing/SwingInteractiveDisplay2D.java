@@ -56,6 +56,7 @@ import javax.swing.JFrame;
 import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.realtransform.AffineTransform2D;
 import net.imglib2.ui.AbstractInteractiveDisplay2D;
+import net.imglib2.ui.ScreenImageBuffers;
 import net.imglib2.ui.ScreenImageRenderer;
 import net.imglib2.ui.TransformEventHandler2D;
 import net.imglib2.ui.TransformListener2D;
@@ -63,12 +64,13 @@ import net.imglib2.ui.TransformListener2D;
 public class SwingInteractiveDisplay2D extends AbstractInteractiveDisplay2D implements TransformListener2D
 {
 	/**
-	 * Used to render the image for on-screen display.
+	 * Triple buffered screen images that are rendered into and shown in
+	 * turn.
 	 */
-	protected ARGBScreenImage screenImage;
+	final protected ScreenImageBuffers screenImages;
 
 	/**
-	 * Transformation from {@link #sourceInterval} to {@link #screenImage}.
+	 * Transformation from {@link #sourceInterval} to {@link #screenImages}.
 	 */
 	final protected AffineTransform2D sourceToScreen;
 
@@ -87,10 +89,11 @@ public class SwingInteractiveDisplay2D extends AbstractInteractiveDisplay2D impl
 
 	public SwingInteractiveDisplay2D( final int width, final int height, final ScreenImageRenderer renderer, final TransformListener2D renderTransformListener )
 	{
-		this.screenImage = new ARGBScreenImage( width, height );
+		screenImages = new ScreenImageBuffers( 3 );
+		screenImages.resize( width, height );
 		sourceToScreen = new AffineTransform2D();
 		this.renderer = renderer;
-		renderer.screenImageChanged( screenImage );
+		renderer.screenImagesChanged( screenImages );
 		this.renderTransformListener = renderTransformListener;
 
 		handler = new TransformEventHandler2D( this );
@@ -111,8 +114,8 @@ public class SwingInteractiveDisplay2D extends AbstractInteractiveDisplay2D impl
 			@Override
 			public void componentResized( final ComponentEvent e )
 			{
-				final int oldW = ( int ) screenImage.dimension( 0 );
-				final int oldH = ( int ) screenImage.dimension( 1 );
+				final int oldW = screenImages.width();
+				final int oldH = screenImages.height();
 				final int w = canvas.getWidth();
 				final int h = canvas.getHeight();
 				synchronized( sourceToScreen )
@@ -174,7 +177,15 @@ public class SwingInteractiveDisplay2D extends AbstractInteractiveDisplay2D impl
 		@Override
 		public void paintComponent( final Graphics g )
 		{
-			g.drawImage( screenImage.image(), 0, 0, getWidth(), getHeight(), null );
+			final int i = screenImages.present();
+			try
+			{
+				g.drawImage( screenImages.getBufferedImage( i ), 0, 0, getWidth(), getHeight(), null );
+			}
+			finally
+			{
+				screenImages.donePresenting();
+			}
 			renderer.drawOverlays( g );
 		}
 	}
@@ -198,16 +209,21 @@ public class SwingInteractiveDisplay2D extends AbstractInteractiveDisplay2D impl
 	{
 		final int w = canvas.getWidth();
 		final int h = canvas.getHeight();
-		if ( screenImage.dimension( 0 ) != w || screenImage.dimension( 1 ) != h )
-		{
-			screenImage = new ARGBScreenImage( w, h );
-			renderer.screenImageChanged( screenImage );
-		}
+		if ( screenImages.resize( w, h ) )
+			renderer.screenImagesChanged( screenImages );
+		screenImages.beginFrame();
 		final boolean valid = renderer.drawScreenImage();
-		canvas.repaint();
+		if ( screenImages.endFrame() )
+			canvas.repaint();
 		return valid;
 	}
 
+	@Override
+	public ScreenImageBuffers getScreenImages()
+	{
+		return screenImages;
+	}
+
 	@Override
 	public void transformChanged( final AffineTransform2D transform )
 	{
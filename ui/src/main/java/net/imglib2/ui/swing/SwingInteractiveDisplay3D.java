@@ -49,13 +49,7 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelListener;
-import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
-import java.awt.image.DataBuffer;
-import java.awt.image.DirectColorModel;
-import java.awt.image.Raster;
-import java.awt.image.SampleModel;
-import java.awt.image.WritableRaster;
 
 import javax.swing.JComponent;
 import javax.swing.JFrame;
@@ -65,6 +59,7 @@ import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.ui.AbstractInteractiveDisplay3D;
 import net.imglib2.ui.BoxOverlay;
+import net.imglib2.ui.ScreenImageBuffers;
 import net.imglib2.ui.ScreenImageRenderer;
 import net.imglib2.ui.TransformEventHandler3D;
 import net.imglib2.ui.TransformListener3D;
@@ -86,9 +81,10 @@ public class SwingInteractiveDisplay3D extends AbstractInteractiveDisplay3D impl
 	final protected AffineTransform3D sourceTransform;
 
 	/**
-	 * Used to render the image for on-screen display.
+	 * Triple buffered screen images that are rendered into and shown in
+	 * turn.
 	 */
-	protected ARGBScreenImage screenImage;
+	final protected ScreenImageBuffers screenImages;
 
 	/**
 	 * The transformation interactively set by the user.
@@ -96,7 +92,7 @@ public class SwingInteractiveDisplay3D extends AbstractInteractiveDisplay3D impl
 	final protected AffineTransform3D viewerTransform;
 
 	/**
-	 * Transformation from {@link #source} to {@link #screenImage}. This is a
+	 * Transformation from {@link #source} to {@link #screenImages}. This is a
 	 * concatenation of {@link #sourceTransform} and the interactive
 	 * {@link #viewerTransform transform} set by the user.
 	 */
@@ -126,15 +122,7 @@ public class SwingInteractiveDisplay3D extends AbstractInteractiveDisplay3D impl
 	final protected TransformListener3D renderTransformListener;
 
 	/**
-	 * The {@link BufferedImage} that is actually drawn on the canvas. Depending
-	 * on {@link #discardAlpha} this is either the {@link BufferedImage}
-	 * obtained from {@link #screenImage}, or {@link #screenImage}s buffer
-	 * re-wrapped using a RGB color model.
-	 */
-	protected BufferedImage bufferedImage;
-
-	/**
-	 * Whether to discard the {@link #screenImage} alpha components when drawing.
+	 * Whether to discard the {@link #screenImages} alpha components when drawing.
 	 */
 	final protected boolean discardAlpha = true;
 
@@ -160,12 +148,12 @@ public class SwingInteractiveDisplay3D extends AbstractInteractiveDisplay3D impl
 	{
 		this.sourceInterval = sourceInterval;
 		this.sourceTransform = sourceTransform;
-		this.screenImage = new ARGBScreenImage( width, height );
-		this.bufferedImage = getBufferedImage( screenImage );
+		screenImages = new ScreenImageBuffers( 3, discardAlpha );
+		screenImages.resize( width, height );
 		viewerTransform = new AffineTransform3D();
 		sourceToScreen = new AffineTransform3D();
 		this.renderer = renderer;
-		renderer.screenImageChanged( screenImage );
+		renderer.screenImagesChanged( screenImages );
 		this.renderTransformListener = renderTransformListener;
 
 		boxInterval = Intervals.createMinSize( 10, 10, 80, 60 );
@@ -189,8 +177,8 @@ public class SwingInteractiveDisplay3D extends AbstractInteractiveDisplay3D impl
 			@Override
 			public void componentResized( final ComponentEvent e )
 			{
-				final int oldW = ( int ) screenImage.dimension( 0 );
-				final int oldH = ( int ) screenImage.dimension( 1 );
+				final int oldW = screenImages.width();
+				final int oldH = screenImages.height();
 				final int w = canvas.getWidth();
 				final int h = canvas.getHeight();
 				synchronized( viewerTransform )
@@ -239,22 +227,6 @@ public class SwingInteractiveDisplay3D extends AbstractInteractiveDisplay3D impl
 			canvas.addMouseWheelListener( ( MouseWheelListener ) h );
 	}
 
-	static final private ColorModel RGB_COLOR_MODEL = new DirectColorModel(24, 0xff0000, 0xff00, 0xff);
-
-	private BufferedImage getBufferedImage( final ARGBScreenImage img )
-	{
-		if ( discardAlpha )
-		{
-			final BufferedImage si = img.image();
-			final SampleModel sampleModel = RGB_COLOR_MODEL.createCompatibleWritableRaster( 1, 1 ).getSampleModel().createCompatibleSampleModel( si.getWidth(), si.getHeight() );
-			final DataBuffer dataBuffer = si.getRaster().getDataBuffer();
-			final WritableRaster rgbRaster = Raster.createWritableRaster( sampleModel, dataBuffer, null );
-			return new BufferedImage( RGB_COLOR_MODEL, rgbRaster, false, null );
-		}
-		else
-			return img.image();
-	}
-
 	final protected class Viewer3DCanvas extends JComponent
 	{
 		private static final long serialVersionUID = 2040463400821436135L;
@@ -268,13 +240,21 @@ public class SwingInteractiveDisplay3D extends AbstractInteractiveDisplay3D impl
 		@Override
 		public void paintComponent( final Graphics g )
 		{
-			g.drawImage( bufferedImage, 0, 0, getWidth(), getHeight(), null );
+			final int i = screenImages.present();
+			try
+			{
+				g.drawImage( screenImages.getBufferedImage( i ), 0, 0, getWidth(), getHeight(), null );
+			}
+			finally
+			{
+				screenImages.donePresenting();
+			}
 			synchronized( viewerTransform )
 			{
 				sourceToScreen.set( viewerTransform );
 			}
 			sourceToScreen.concatenate( sourceTransform );
-			box.paint( ( Graphics2D ) g, sourceInterval, screenImage, sourceToScreen, boxInterval );
+			box.paint( ( Graphics2D ) g, sourceInterval, screenImages.getScreenImage( i ), sourceToScreen, boxInterval );
 			renderer.drawOverlays( g );
 		}
 	}
@@ -298,17 +278,21 @@ public class SwingInteractiveDisplay3D extends AbstractInteractiveDisplay3D impl
 	{
 		final int w = canvas.getWidth();
 		final int h = canvas.getHeight();
-		if ( screenImage.dimension( 0 ) != w || screenImage.dimension( 1 ) != h )
-		{
-			screenImage = new ARGBScreenImage( w, h );
-			bufferedImage = getBufferedImage( screenImage );
-			renderer.screenImageChanged( screenImage );
-		}
+		if ( screenImages.resize( w, h ) )
+			renderer.screenImagesChanged( screenImages );
+		screenImages.beginFrame();
 		final boolean valid = renderer.drawScreenImage();
-		canvas.repaint();
+		if ( screenImages.endFrame() )
+			canvas.repaint();
 		return valid;
 	}
 
+	@Override
+	public ScreenImageBuffers getScreenImages()
+	{
+		return screenImages;
+	}
+
 	@Override
 	public void transformChanged( final AffineTransform3D transform )
 	{